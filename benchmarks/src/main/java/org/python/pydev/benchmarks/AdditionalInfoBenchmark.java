@@ -0,0 +1,216 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+
+import com.python.pydev.analysis.additionalinfo.AbstractAdditionalTokensInfo;
+import com.python.pydev.analysis.additionalinfo.FuncInfo;
+import com.python.pydev.analysis.additionalinfo.InitialsToInfoIndex;
+
+/**
+ * Lookups in the additional info (used in the code-completion for tokens which still weren't imported and in the
+ * global tokens search) and a comparison of the index it uses against the PyPublicTreeMap<String, Set<IInfo>>
+ * which was used before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AdditionalInfoBenchmark {
+
+    private static final String[] QUALIFIERS = new String[] { "Cla", "Class1", "fun", "function_1_", "met",
+            "CONSTANT_9", "zzz" };
+
+    @Param({ "200" })
+    public int modules;
+
+    /**
+     * Number of infos in the standalone index comparison.
+     */
+    @Param({ "100000" })
+    public int infos;
+
+    private BenchmarkAdditionalInfo additionalInfo;
+
+    private InitialsToInfoIndex index;
+    private PyPublicTreeMap<String, Set<IInfo>> treeMap;
+    private String[] prefixes;
+    private TreeMap<String, List<IInfo>> moduleToAdd;
+
+    private static final class BenchmarkAdditionalInfo extends AbstractAdditionalTokensInfo {
+
+        private final IPythonNature nature;
+
+        private BenchmarkAdditionalInfo(IPythonNature nature) {
+            this.nature = nature;
+        }
+
+        @Override
+        protected IPythonNature getNature() {
+            return nature;
+        }
+
+        @Override
+        protected void addModulesKeyForFolderToIndex(ModulesKey key, boolean generateDelta) {
+        }
+
+        @Override
+        protected File getPersistingLocation() {
+            return null;
+        }
+
+        @Override
+        protected File getPersistingFolder() {
+            return null;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        BenchmarkNature nature = new BenchmarkNature(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_11);
+        additionalInfo = new BenchmarkAdditionalInfo(nature);
+        for (int i = 0; i < modules; i++) {
+            String contents = Corpus.createModule(i, 10);
+            SimpleNode ast = (SimpleNode) PyParser.reparseDocument(new PyParser.ParserInfo(
+                    new Document(contents), nature.getGrammarVersion(), null)).ast;
+            additionalInfo.addAstInfo(ast, new ModulesKey("pack.mod" + i, null), false);
+        }
+
+        // Identifiers with a distribution of initials closer to a real interpreter than the corpus.
+        Random random = new Random(0);
+        TreeMap<String, Set<IInfo>> map = new TreeMap<>();
+        List<String> names = new ArrayList<>(infos);
+        for (int i = 0; i < infos; i++) {
+            String name = createName(random);
+            names.add(name);
+            String initials = name.substring(0, 3);
+            IInfo info = new FuncInfo(name, "mod" + (i % 1000), null, true, nature, null, 1, 1);
+            map.computeIfAbsent(initials, k -> new HashSet<>()).add(info);
+        }
+        index = InitialsToInfoIndex.fromMap(map); // copies the sets to arrays
+        treeMap = new PyPublicTreeMap<>(map);
+
+        prefixes = new String[64];
+        for (int i = 0; i < prefixes.length; i++) {
+            String name = names.get(random.nextInt(names.size()));
+            prefixes[i] = name.substring(0, 1 + (i % 3));
+        }
+
+        moduleToAdd = new TreeMap<>();
+        for (int i = 0; i < 50; i++) {
+            String name = createName(random);
+            IInfo info = new FuncInfo(name, "new_module", null, true, nature, null, 1, 1);
+            moduleToAdd.computeIfAbsent(name.substring(0, 3), k -> new ArrayList<>()).add(info);
+        }
+    }
+
+    private static String createName(Random random) {
+        int len = 4 + random.nextInt(12);
+        char[] chars = new char[len];
+        for (int j = 0; j < len; j++) {
+            chars[j] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+
+    @Benchmark
+    public void getTokensStartingWith(Blackhole bh) {
+        for (String qualifier : QUALIFIERS) {
+            bh.consume(additionalInfo.getTokensStartingWith(qualifier, AbstractAdditionalTokensInfo.TOP_LEVEL));
+            bh.consume(additionalInfo.getTokensStartingWith(qualifier, AbstractAdditionalTokensInfo.INNER));
+        }
+    }
+
+    @Benchmark
+    public int prefixLookupInitialsToInfoIndex() {
+        int found = 0;
+        InitialsToInfoIndex.Snapshot snapshot = index.getSnapshot();
+        String[] keys = snapshot.keys;
+        for (String prefix : prefixes) {
+            for (int i = snapshot.lowerBound(prefix); i < keys.length && keys[i].startsWith(prefix); i++) {
+                found += snapshot.values[i].length;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int prefixLookupPyPublicTreeMap() {
+        int found = 0;
+        for (String prefix : prefixes) {
+            for (Entry<String, Set<IInfo>> entry : treeMap.tailMap(prefix).entrySet()) {
+                if (!entry.getKey().startsWith(prefix)) {
+                    break;
+                }
+                found += entry.getValue().size();
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds and removes the infos of a module (as done when a module is changed).
+     */
+    @Benchmark
+    public int addRemoveModuleInitialsToInfoIndex() {
+        index.addAll(moduleToAdd);
+        int size = index.getSnapshot().size();
+        index.removeInfoFromModule("new_module");
+        return size;
+    }
+
+    @Benchmark
+    public int addRemoveModulePyPublicTreeMap() {
+        for (Entry<String, List<IInfo>> entry : moduleToAdd.entrySet()) {
+            Set<IInfo> set = treeMap.get(entry.getKey());
+            if (set == null) {
+                set = new HashSet<>();
+                treeMap.put(entry.getKey(), set);
+            }
+            set.addAll(entry.getValue());
+        }
+        int size = treeMap.size();
+        for (Collection<IInfo> values : moduleToAdd.values()) {
+            for (IInfo info : values) {
+                String initials = info.getName().substring(0, 3);
+                Set<IInfo> set = treeMap.get(initials);
+                set.remove(info);
+                if (set.isEmpty()) {
+                    treeMap.remove(initials);
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,65 @@
+package org.python.pydev.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.IAdaptable;
+
+import com.python.pydev.analysis.AbstractAnalysisPreferences;
+
+/**
+ * Default severities (without pep8, which runs an external process).
+ */
+public final class AnalysisPreferencesForBenchmark extends AbstractAnalysisPreferences {
+
+    @Override
+    public int getSeverityForType(int type) {
+        switch (type) {
+            case TYPE_UNDEFINED_VARIABLE:
+            case TYPE_DUPLICATED_SIGNATURE:
+            case TYPE_UNRESOLVED_IMPORT:
+            case TYPE_NO_SELF:
+            case TYPE_FSTRING_SYNTAX_ERROR:
+            case TYPE_INVALID_ENCODING:
+                return IMarker.SEVERITY_ERROR;
+
+            case TYPE_PEP8:
+            case TYPE_ARGUMENTS_MISATCH:
+                return IMarker.SEVERITY_INFO;
+
+            default:
+                return IMarker.SEVERITY_WARNING;
+        }
+    }
+
+    @Override
+    public boolean makeCodeAnalysis() {
+        return true;
+    }
+
+    @Override
+    public Set<String> getNamesIgnoredByUnusedVariable() {
+        Set<String> names = new HashSet<String>();
+        names.add("dummy");
+        names.add("_");
+        return names;
+    }
+
+    @Override
+    public Set<String> getModuleNamePatternsToBeIgnored() {
+        Set<String> names = new HashSet<String>();
+        names.add("__init__");
+        return names;
+    }
+
+    @Override
+    public Set<String> getTokensAlwaysInGlobals() {
+        return new HashSet<String>();
+    }
+
+    @Override
+    public IAdaptable getProjectAdaptable() {
+        return null;
+    }
+}
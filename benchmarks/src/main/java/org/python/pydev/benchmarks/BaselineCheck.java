@@ -0,0 +1,138 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.python.pydev.json.eclipsesource.JsonObject;
+import org.python.pydev.json.eclipsesource.JsonValue;
+
+/**
+ * Compares the results of a JMH run (-rf json) against the checked-in baseline.
+ *
+ * Usage: BaselineCheck <results.json> <baseline.json> [--update]
+ *
+ * Exits with 1 if some benchmark is slower than the baseline by more than the baseline threshold or if it has no
+ * entry in the baseline (with --update the baseline is rewritten with the results instead).
+ */
+public final class BaselineCheck {
+
+    public static final double DEFAULT_THRESHOLD = 0.15;
+
+    private BaselineCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCheck <results.json> <baseline.json> [--update]");
+            System.exit(2);
+        }
+        File resultsFile = new File(args[0]);
+        File baselineFile = new File(args[1]);
+        boolean update = args.length > 2 && args[2].equals("--update");
+
+        JsonObject results = toScores(read(resultsFile).asArray());
+        JsonObject baseline = baselineFile.exists() ? read(baselineFile).asObject() : new JsonObject();
+        JsonValue thresholdValue = baseline.get("threshold");
+        double threshold = thresholdValue != null ? thresholdValue.asDouble() : DEFAULT_THRESHOLD;
+
+        if (update) {
+            JsonObject newBaseline = new JsonObject();
+            newBaseline.add("threshold", threshold);
+            newBaseline.add("benchmarks", results);
+            Files.write(baselineFile.toPath(), newBaseline.toPrettyString().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Baseline updated with " + results.size() + " benchmarks: " + baselineFile);
+            return;
+        }
+
+        JsonValue baselineBenchmarks = baseline.get("benchmarks");
+        List<String> regressions = compare(
+                baselineBenchmarks != null ? baselineBenchmarks.asObject() : new JsonObject(), results, threshold);
+        if (regressions.size() > 0) {
+            System.out.println("Regressions found (threshold: " + threshold + "):");
+            for (String regression : regressions) {
+                System.out.println("  " + regression);
+            }
+            if (baselineBenchmarks == null || baselineBenchmarks.asObject().isEmpty()) {
+                System.out.println("The baseline is empty: record it (in the machine used for the checks) with:");
+                System.out.println("  BaselineCheck " + resultsFile + " " + baselineFile + " --update");
+            }
+            System.exit(1);
+        }
+        System.out.println("No regressions found (threshold: " + threshold + ").");
+    }
+
+    private static JsonValue read(File f) throws IOException {
+        return JsonValue.readFrom(new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return a json object with a key for each benchmark (name + params) and the mode, score and unit as value.
+     */
+    public static JsonObject toScores(Iterable<JsonValue> jmhResults) {
+        JsonObject scores = new JsonObject();
+        for (JsonValue value : jmhResults) {
+            JsonObject result = value.asObject();
+            JsonObject primaryMetric = result.get("primaryMetric").asObject();
+            JsonObject score = new JsonObject();
+            score.add("mode", result.get("mode").asString());
+            score.add("score", primaryMetric.get("score").asDouble());
+            score.add("unit", primaryMetric.get("scoreUnit").asString());
+            scores.add(createKey(result), score);
+        }
+        return scores;
+    }
+
+    private static String createKey(JsonObject result) {
+        String key = result.get("benchmark").asString();
+        JsonValue params = result.get("params");
+        if (params != null) {
+            JsonObject paramsObj = params.asObject();
+            List<String> names = new ArrayList<>(paramsObj.names());
+            Collections.sort(names);
+            for (String name : names) {
+                key += ":" + name + "=" + paramsObj.get(name).asString();
+            }
+        }
+        return key;
+    }
+
+    /**
+     * @return a description of the benchmarks whose score is worse than the baseline by more than the threshold
+     * and of the benchmarks which aren't in the baseline (so, a new benchmark or an empty baseline fails the check
+     * until the baseline is recorded).
+     */
+    public static List<String> compare(JsonObject baseline, JsonObject results, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        for (String key : results.names()) {
+            JsonValue expectedValue = baseline.get(key);
+            if (expectedValue == null) {
+                regressions.add(key + ": not in the baseline. Please update the baseline.");
+                continue;
+            }
+            JsonObject expected = expectedValue.asObject();
+            JsonObject found = results.get(key).asObject();
+            if (!expected.get("unit").asString().equals(found.get("unit").asString())) {
+                regressions.add(key + ": unit changed (" + expected.get("unit").asString() + " -> "
+                        + found.get("unit").asString() + "). Please update the baseline.");
+                continue;
+            }
+            double expectedScore = expected.get("score").asDouble();
+            double foundScore = found.get("score").asDouble();
+
+            // In throughput mode bigger is better. In the others (time per operation) smaller is better.
+            boolean biggerIsBetter = "thrpt".equals(found.get("mode").asString());
+            double change = biggerIsBetter ? (expectedScore - foundScore) / expectedScore
+                    : (foundScore - expectedScore) / expectedScore;
+            if (change > threshold) {
+                regressions.add(String.format("%s: %.3f -> %.3f %s (%.1f%% worse)", key, expectedScore, foundScore,
+                        found.get("unit").asString(), change * 100));
+            }
+        }
+        return regressions;
+    }
+}
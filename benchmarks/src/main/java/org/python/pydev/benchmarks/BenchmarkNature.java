@@ -0,0 +1,218 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IAdaptable;
+import org.python.pydev.ast.codecompletion.revisited.ASTManager;
+import org.python.pydev.ast.codecompletion.revisited.ProjectModulesManager;
+import org.python.pydev.core.ICodeCompletionASTManager;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IInterpreterManager;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.IModuleRequestState;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.IPythonPathNature;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.TokensList;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * A nature which works without the workspace: it only has the modules added to its modules manager (there's no
+ * interpreter, so, there are no builtins nor system modules).
+ */
+public class BenchmarkNature implements IPythonNature, IAdaptable {
+
+    private final int grammarVersion;
+    private final ASTManager astManager;
+
+    public BenchmarkNature(int grammarVersion) {
+        this.grammarVersion = grammarVersion;
+        this.astManager = new ASTManager();
+        getModulesManager().setPythonNature(this);
+    }
+
+    public ProjectModulesManager getModulesManager() {
+        return (ProjectModulesManager) astManager.getModulesManager();
+    }
+
+    @Override
+    public int getGrammarVersion() {
+        return grammarVersion;
+    }
+
+    @Override
+    public AdditionalGrammarVersionsToCheck getAdditionalGrammarVersions() throws MisconfigurationException {
+        return null;
+    }
+
+    @Override
+    public ICodeCompletionASTManager getAstManager() {
+        return astManager;
+    }
+
+    @Override
+    public TokensList getBuiltinCompletions(IModuleRequestState moduleRequest) {
+        return new TokensList();
+    }
+
+    @Override
+    public IModule getBuiltinMod(IModuleRequestState moduleRequest) {
+        return null;
+    }
+
+    @Override
+    public boolean startRequests() {
+        return astManager.getModulesManager().startCompletionCache();
+    }
+
+    @Override
+    public void endRequests() {
+        astManager.getModulesManager().endCompletionCache();
+    }
+
+    @Override
+    public IInterpreterInfo getProjectInterpreter() throws MisconfigurationException {
+        throw new MisconfigurationException("No interpreter available in the benchmarks.");
+    }
+
+    @Override
+    public IInterpreterManager getRelatedInterpreterManager() {
+        return null;
+    }
+
+    @Override
+    public boolean isOkToUse() {
+        return true;
+    }
+
+    @Override
+    public File getCompletionsCacheDir() {
+        return null;
+    }
+
+    @Override
+    public IProject getProject() {
+        return null;
+    }
+
+    @Override
+    public <T> T getAdapter(Class<T> adapter) {
+        return null;
+    }
+
+    @Override
+    public IPythonPathNature getPythonPathNature() {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public int getInterpreterType() throws CoreException {
+        return IInterpreterManager.INTERPRETER_TYPE_PYTHON;
+    }
+
+    @Override
+    public String getVersion(boolean translateIfInterpreter) throws CoreException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public Tuple<String, String> getVersionAndError(boolean translateIfInterpreter) throws CoreException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void setVersion(String version, String interpreter) throws CoreException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public boolean isResourceInPythonpath(IResource resource) {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public boolean isResourceInPythonpath(String resource) {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public boolean isResourceInPythonpathProjectSources(IResource resource, boolean addExternal)
+            throws MisconfigurationException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public boolean isResourceInPythonpathProjectSources(String resource, boolean addExternal)
+            throws MisconfigurationException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void rebuildPath() {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public String resolveModule(File file) {
+        return getModulesManager().resolveModule(file.getAbsolutePath(), false);
+    }
+
+    @Override
+    public String resolveModule(String fileAbsolutePath) {
+        return getModulesManager().resolveModule(fileAbsolutePath, false);
+    }
+
+    @Override
+    public String resolveModule(IResource resource) {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public String resolveModuleOnlyInProjectSources(String fileAbsolutePath, boolean addExternal)
+            throws CoreException, MisconfigurationException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public String resolveModuleOnlyInProjectSources(IResource fileAbsolutePath, boolean addExternal)
+            throws CoreException, MisconfigurationException {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void saveAstManager() {
+    }
+
+    @Override
+    public void clearBuiltinCompletions() {
+    }
+
+    @Override
+    public void clearBuiltinMod() {
+    }
+
+    @Override
+    public void configure() throws CoreException {
+    }
+
+    @Override
+    public void deconfigure() throws CoreException {
+    }
+
+    @Override
+    public void setProject(IProject project) {
+        throw new RuntimeException("Not implemented");
+    }
+
+    @Override
+    public void updateMtime() {
+    }
+
+    @Override
+    public long getMtime() {
+        return 0;
+    }
+}
@@ -0,0 +1,104 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Creates the (synthetic) python code used in the benchmarks.
+ *
+ * The contents are always the same for the same parameters so that results may be compared among runs.
+ */
+public final class Corpus {
+
+    private Corpus() {
+    }
+
+    /**
+     * @param index used to give different names to the tokens of different modules.
+     * @param classes the number of classes (each class has 5 methods and there's a function for each class).
+     * @return the contents of a module.
+     */
+    public static String createModule(int index, int classes) {
+        FastStringBuffer buf = new FastStringBuffer(classes * 1200);
+        buf.append("# -*- coding: utf-8 -*-\n");
+        buf.append("'''Module ").append(index).append(" docstring.'''\n");
+        buf.append("from __future__ import annotations\n\n");
+        buf.append("CONSTANT_").append(index).append(" = {'a': 1, 'b': [1, 2, 3], 'c': (4, 5)}\n\n\n");
+
+        for (int i = 0; i < classes; i++) {
+            String className = "Class" + index + "_" + i;
+            buf.append("@decorator_").append(i % 3).append("\n");
+            buf.append("class ").append(className).append("(object):\n");
+            buf.append("    '''\n    Docstring for ").append(className).append(".\n    '''\n\n");
+            buf.append("    attribute_").append(i).append(" = ").append(i).append("\n\n");
+            buf.append("    def __init__(self, a, b=10, *args, **kwargs):\n");
+            buf.append("        self.a = a\n");
+            buf.append("        self.b = b\n");
+            buf.append("        self.items = [x * 2 for x in args if x % 2 == 0]\n\n");
+            for (int j = 0; j < 4; j++) {
+                buf.append("    def method_").append(j).append("(self, value: int, other=None) -> int:\n");
+                buf.append("        # comment in method ").append(j).append("\n");
+                buf.append("        total = 0\n");
+                buf.append("        for i, item in enumerate(self.items):\n");
+                buf.append("            if item > value and other is not None:\n");
+                buf.append("                total += item * i\n");
+                buf.append("            elif item == value:\n");
+                buf.append("                total -= 1\n");
+                buf.append("            else:\n");
+                buf.append("                continue\n");
+                buf.append("        try:\n");
+                buf.append("            result = {k: v for k, v in zip(self.items, self.items)}\n");
+                buf.append("        except (KeyError, ValueError) as e:\n");
+                buf.append("            raise RuntimeError('failed: %s' % (e,))\n");
+                buf.append("        return total + len(result) + self.a * self.b\n\n");
+            }
+            buf.append("\n");
+            buf.append("def function_").append(index).append('_').append(i).append("(param1, param2):\n");
+            buf.append("    obj = ").append(className).append("(param1, b=param2)\n");
+            buf.append("    lst = [obj.method_0(k) for k in range(10)]\n");
+            buf.append("    return lambda x: x + sum(lst) + CONSTANT_").append(index).append("['a']\n\n\n");
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Writes a package with the given number of modules in the given directory.
+     *
+     * @return the names of the modules written (i.e.: pack0.mod0).
+     */
+    public static List<String> writePackage(File dir, String packageName, int modules, int classes)
+            throws IOException {
+        File packageDir = new File(dir, packageName);
+        packageDir.mkdirs();
+        Files.write(new File(packageDir, "__init__.py").toPath(), new byte[0]);
+
+        List<String> names = new ArrayList<>(modules);
+        for (int i = 0; i < modules; i++) {
+            String name = "mod" + i;
+            Files.write(new File(packageDir, name + ".py").toPath(),
+                    createModule(i, classes).getBytes(StandardCharsets.UTF_8));
+            names.add(packageName + "." + name);
+        }
+        return names;
+    }
+
+    public static void deleteDir(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                if (f.isDirectory()) {
+                    deleteDir(f);
+                } else {
+                    f.delete();
+                }
+            }
+        }
+        dir.delete();
+    }
+}
@@ -0,0 +1,77 @@
+package org.python.pydev.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocumentPartitioner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.python.pydev.core.partition.PyPartitionScanner;
+import org.python.pydev.core.partition.PyPartitioner;
+
+/**
+ * Partitioning of a large document: the initial partitioning and the incremental update when typing (both in the
+ * code and opening/closing a string, which changes the partitions up to the end of the document).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastPartitionerBenchmark {
+
+    /**
+     * 500 classes is around 600k chars.
+     */
+    @Param({ "500" })
+    public int classes;
+
+    private String contents;
+    private Document editedDoc;
+    private IDocumentPartitioner editedPartitioner;
+    private int editOffset;
+
+    @Setup
+    public void setup() {
+        contents = Corpus.createModule(0, classes);
+        editedDoc = new Document(contents);
+        editedPartitioner = PyPartitionScanner.addPartitionScanner(editedDoc, null);
+        editOffset = contents.indexOf("total = 0", contents.length() / 2);
+    }
+
+    @Benchmark
+    public Object connect() {
+        Document doc = new Document(contents);
+        PyPartitioner partitioner = PyPartitionScanner.createPyPartitioner();
+        partitioner.connect(doc, false);
+        Object ret = partitioner.computePartitioning(0, doc.getLength(), false);
+        partitioner.disconnect();
+        return ret;
+    }
+
+    @Benchmark
+    public Object typeInCode() throws BadLocationException {
+        editedDoc.replace(editOffset, 0, "a");
+        editedDoc.replace(editOffset, 1, "");
+        return editedPartitioner.getPartition(editOffset);
+    }
+
+    @Benchmark
+    public Object typeStringDelimiter() throws BadLocationException {
+        editedDoc.replace(editOffset, 0, "'''");
+        Object ret = editedPartitioner.getPartition(editedDoc.getLength() - 1);
+        editedDoc.replace(editOffset, 3, "");
+        return ret;
+    }
+}
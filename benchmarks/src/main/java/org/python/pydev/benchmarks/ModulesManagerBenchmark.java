@@ -0,0 +1,93 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.python.pydev.ast.codecompletion.revisited.ModulesManager;
+import org.python.pydev.ast.codecompletion.revisited.ProjectModulesManager;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.IModule;
+import org.python.pydev.core.ModulesKey;
+
+/**
+ * Getting modules from the modules manager when they're in its cache and when they have to be loaded from the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModulesManagerBenchmark {
+
+    @Param({ "500" })
+    public int modules;
+
+    private File baseDir;
+    private BenchmarkNature nature;
+    private ProjectModulesManager modulesManager;
+    private String[] names;
+    private int current;
+
+    @Setup
+    public void setup() throws IOException {
+        baseDir = Files.createTempDirectory("pydev_benchmark").toFile();
+        List<String> created = Corpus.writePackage(baseDir, "pack", modules, 5);
+        names = created.toArray(new String[0]);
+
+        nature = new BenchmarkNature(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_11);
+        modulesManager = nature.getModulesManager();
+        File packageDir = new File(baseDir, "pack");
+        modulesManager.addModule(new ModulesKey("pack.__init__", new File(packageDir, "__init__.py")));
+        for (String name : names) {
+            String modName = name.substring(name.indexOf('.') + 1);
+            modulesManager.addModule(new ModulesKey(name, new File(packageDir, modName + ".py")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        ModulesManager.clearCache();
+        Corpus.deleteDir(baseDir);
+    }
+
+    private String nextName() {
+        current++;
+        if (current >= names.length) {
+            current = 0;
+        }
+        return names[current];
+    }
+
+    /**
+     * The modules requested are in the cache (so, this is just the lookup).
+     */
+    @Benchmark
+    public IModule getModuleCached() {
+        return modulesManager.getModuleInDirectManager(nextName(), nature, true, null);
+    }
+
+    /**
+     * The cache is cleared, so, the module has to be read from the disk and parsed.
+     */
+    @Benchmark
+    public IModule getModuleUncached() {
+        ModulesManager.clearCache();
+        return modulesManager.getModuleInDirectManager(nextName(), nature, true, null);
+    }
+}
@@ -0,0 +1,77 @@
+package org.python.pydev.benchmarks;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jface.text.Document;
+import org.eclipse.jface.text.IDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.core.IGrammarVersionProvider;
+import org.python.pydev.core.autoedit.TestIndentPrefs;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+
+import com.python.pydev.analysis.OccurrencesAnalyzer;
+
+/**
+ * Code analysis of the modules of a synthetic corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccurrencesAnalyzerBenchmark {
+
+    @Param({ "10" })
+    public int modules;
+
+    @Param({ "20" })
+    public int classes;
+
+    private BenchmarkNature nature;
+    private SourceModule[] sourceModules;
+    private IDocument[] documents;
+    private AnalysisPreferencesForBenchmark prefs;
+    private TestIndentPrefs indentPrefs;
+
+    @Setup
+    public void setup() {
+        nature = new BenchmarkNature(IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_11);
+        prefs = new AnalysisPreferencesForBenchmark();
+        indentPrefs = new TestIndentPrefs(true, 4);
+        sourceModules = new SourceModule[modules];
+        documents = new IDocument[modules];
+        for (int i = 0; i < modules; i++) {
+            documents[i] = new Document(Corpus.createModule(i, classes));
+            SimpleNode ast = (SimpleNode) PyParser.reparseDocument(new PyParser.ParserInfo(documents[i],
+                    nature.getGrammarVersion(), null)).ast;
+            String name = "pack.mod" + i;
+            sourceModules[i] = (SourceModule) AbstractModule.createModule(ast, new File("pack/mod" + i + ".py"),
+                    name, nature);
+        }
+    }
+
+    @Benchmark
+    public void analyzeDocument(Blackhole bh) {
+        for (int i = 0; i < modules; i++) {
+            bh.consume(new OccurrencesAnalyzer().analyzeDocument(nature, sourceModules[i], prefs, documents[i],
+                    new NullProgressMonitor(), indentPrefs));
+        }
+    }
+}
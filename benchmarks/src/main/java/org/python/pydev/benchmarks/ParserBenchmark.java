@@ -0,0 +1,65 @@
+package org.python.pydev.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jface.text.Document;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * Full parse of a module with each grammar and the fast parser (which only collects the definitions).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    /**
+     * See: IGrammarVersionProvider.GRAMMAR_PYTHON_VERSION_3_6, 3_8, 3_10 and 3_11.
+     */
+    @Param({ "100", "102", "104", "105" })
+    public int grammarVersion;
+
+    @Param({ "20" })
+    public int classes;
+
+    private String contents;
+
+    @Setup
+    public void setup() {
+        contents = Corpus.createModule(0, classes);
+        ParseOutput output = parse();
+        if (output.error != null) {
+            throw new RuntimeException("Error parsing benchmark corpus.", output.error);
+        }
+    }
+
+    private ParseOutput parse() {
+        return PyParser.reparseDocument(new PyParser.ParserInfo(new Document(contents), grammarVersion, null));
+    }
+
+    @Benchmark
+    public Object reparseDocument() {
+        return parse().ast;
+    }
+
+    @Benchmark
+    public Object fastDefinitionsParser() {
+        return FastDefinitionsParser.parse(contents);
+    }
+}
@@ -0,0 +1,56 @@
+package org.python.pydev.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.python.pydev.ast.formatter.PyFormatter;
+import org.python.pydev.core.docutils.SyntaxErrorException;
+import org.python.pydev.core.formatter.FormatStd;
+
+/**
+ * The PyDev formatter (the code is changed so that the formatter has something to do).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PyFormatterBenchmark {
+
+    @Param({ "50" })
+    public int classes;
+
+    private String contents;
+    private FormatStd std;
+
+    @Setup
+    public void setup() {
+        contents = Corpus.createModule(0, classes).replace(", ", ",").replace(" = ", "=").replace(" + ", "+");
+        std = new FormatStd();
+        std.spaceAfterComma = true;
+        std.parametersWithSpace = false;
+        std.assignWithSpaceInsideParens = false;
+        std.operatorsWithSpace = true;
+        std.addNewLineAtEndOfFile = true;
+        std.trimLines = true;
+        std.trimMultilineLiterals = false;
+        std.spacesBeforeComment = 2;
+        std.spacesInStartComment = 1;
+    }
+
+    @Benchmark
+    public Object formatStr() throws SyntaxErrorException {
+        return PyFormatter.formatStr(contents, std, 0, "\n", false);
+    }
+}
@@ -33,6 +33,8 @@ import org.python.pydev.parser.jython.ast.FunctionDef;
 import org.python.pydev.parser.jython.ast.exprType;
 import org.python.pydev.shared_core.structure.Location;
 
+import com.python.pydev.analysis.additionalinfo.ReferenceSearchesLucene;
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon;
 import com.python.pydev.analysis.flake8.Flake8PrefInitializer;
 import com.python.pydev.analysis.mypy.MypyPrefInitializer;
 import com.python.pydev.analysis.pylint.PyLintPrefInitializer;
@@ -124,6 +126,8 @@ public class AnalysisPlugin extends Plugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        ReferenceSearchesLucene.disposeAll();
+        ExternalAnalyzerDaemon.disposeAll();
         super.stop(context);
         plugin = null;
     }
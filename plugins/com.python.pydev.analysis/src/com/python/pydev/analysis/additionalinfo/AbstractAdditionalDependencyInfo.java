@@ -15,6 +15,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -58,6 +64,7 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.structure.Tuple3;
+import org.python.pydev.shared_core.utils.PlatformUtils;
 
 /**
  * Adds information on the modules being tracked.
@@ -78,6 +85,15 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
      */
     public DiskCache completeIndex;
 
+    /**
+     * Indexes the classes of each module and their bases (updated along with the completeIndex).
+     */
+    private volatile ClassHierarchyIndex classHierarchyIndex = new ClassHierarchyIndex();
+
+    public ClassHierarchyIndex getClassHierarchyIndex() {
+        return classHierarchyIndex;
+    }
+
     private volatile IReferenceSearches referenceSearches;
     private final Object referenceSearchesLock = new Object();
 
@@ -96,6 +112,23 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         this.referenceSearches = null;
     }
 
+    /**
+     * Lets the reference searches know that a module changed (so that its index is updated).
+     */
+    private void notifyModuleChanged(String moduleName) {
+        IReferenceSearches r = referenceSearches;
+        if (r instanceof ReferenceSearchesLucene) {
+            ((ReferenceSearchesLucene) r).onModuleChanged(moduleName);
+        }
+    }
+
+    private void notifyAllModulesChanged() {
+        IReferenceSearches r = referenceSearches;
+        if (r instanceof ReferenceSearchesLucene) {
+            ((ReferenceSearchesLucene) r).onAllModulesChanged();
+        }
+    }
+
     /**
      * default constructor
      * @throws MisconfigurationException
@@ -148,7 +181,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             } catch (NullPointerException e) {
                 //that's ok... because it might be called before actually having any values
             }
+            classHierarchyIndex.clear();
+            classHierarchyIndex.setComplete(true);
         }
+        notifyAllModulesChanged();
     }
 
     /**
@@ -339,8 +375,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                     completeIndexKey.lastModified = FileUtils.lastModified(key.file);
                 }
                 completeIndex.add(completeIndexKey);
+                classHierarchyIndex.addModule(key.name, node);
 
             }
+            notifyModuleChanged(key.name);
         } catch (Exception e) {
             Log.log(e);
         }
@@ -356,6 +394,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
             }
             completeIndex.add(completeIndexKey);
         }
+        notifyModuleChanged(key.name);
     }
 
     @Override
@@ -365,18 +404,28 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 throw new AssertionError("The module name may not be null.");
             }
             completeIndex.remove(new CompleteIndexKey(moduleName));
+            classHierarchyIndex.removeModule(moduleName);
             super.removeInfoFromModule(moduleName, generateDelta);
         }
+        notifyModuleChanged(moduleName);
     }
 
     @Override
-    protected void saveTo(OutputStreamWriter writer, FastStringBuffer tempBuf, File pathToSave) throws IOException {
+    protected void saveTo(TreeIO.SectionsWriter out, File pathToSave) throws IOException {
         synchronized (lock) {
+            FastStringBuffer tempBuf = new FastStringBuffer();
             completeIndex.writeTo(tempBuf);
+            Writer writer = new OutputStreamWriter(out.startSection(TreeIO.SECTION_DISKCACHE),
+                    StandardCharsets.UTF_8);
             writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
-            tempBuf.clear();
+            writer.flush(); //Note: not closed as that'd close the file.
+            out.endSection();
+            tempBuf = null;
+
+            classHierarchyIndex.writeTo(out.startSection(TreeIO.SECTION_CLASS_HIERARCHY));
+            out.endSection();
 
-            super.saveTo(writer, tempBuf, pathToSave);
+            super.saveTo(out, pathToSave);
         }
     }
 
@@ -403,6 +452,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
             super.restoreSavedInfo(readFromFile.o1);
         }
+        notifyAllModulesChanged();
     }
 
     /**
@@ -452,10 +502,130 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
 
     private Object loadContentsFromFile(File file, IPythonNature nature)
             throws FileNotFoundException, IOException, MisconfigurationException {
+        ByteBuffer buffer = mapFile(file);
+        if (buffer.remaining() >= 8 && buffer.getInt(0) == TreeIO.BINARY_MAGIC) {
+            return loadContentsFromBuffer(file, buffer, nature);
+        }
+        return loadContentsFromTextFile(file, nature);
+    }
+
+    /**
+     * Gets the contents of the file to be decoded (the contents are always fully decoded to the in-memory
+     * structures -- nothing is queried from the buffer afterwards, so, mapping is just a way to read it without
+     * copying it to the heap first).
+     *
+     * Note: on Windows a file which is mapped can't be overwritten until the mapping is garbage-collected (and we
+     * save to the same file later on), so, in that case the contents are read into the heap.
+     */
+    private static ByteBuffer mapFile(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too big: " + file);
+            }
+            if (!PlatformUtils.isWindowsPlatform()) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                //keep on reading
+            }
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    private Object loadContentsFromBuffer(File file, ByteBuffer buffer, IPythonNature nature)
+            throws IOException, MisconfigurationException {
+        buffer.getInt(); //magic
+        int version = buffer.getInt();
+        if (version != AbstractAdditionalTokensInfo.version) {
+            throw new RuntimeException("Version does not match. Found: " + version + ". Expected: "
+                    + AbstractAdditionalTokensInfo.version);
+        }
+        Tuple<Tuple3<Object, Object, Object>, Object> tupWithResults = new Tuple<Tuple3<Object, Object, Object>, Object>(
+                new Tuple3<Object, Object, Object>(
+                        null, null, null),
+                null);
+        Tuple3<Object, Object, Object> superTupWithResults = tupWithResults.o1;
+        //tupWithResults.o2 = DiskCache
+        ObjectsPoolMap objectsPoolMap = new ObjectsInternPool.ObjectsPoolMap();
+        String[] strings = null;
+        ClassHierarchyIndex loadedClassHierarchyIndex = null;
+
+        while (buffer.hasRemaining()) {
+            byte kind = buffer.get();
+            int len = buffer.getInt();
+            int sectionEnd = buffer.position() + len;
+            switch (kind) {
+                case TreeIO.SECTION_DISKCACHE:
+                    byte[] bytes = new byte[len];
+                    buffer.get(bytes);
+                    FastBufferedReader reader = new FastBufferedReader(
+                            new StringReader(new String(bytes, StandardCharsets.UTF_8)));
+                    FastStringBuffer line = reader.readLine();
+                    if (line == null || !line.startsWith("-- START DISKCACHE_" + DiskCache.VERSION)) {
+                        throw new RuntimeException("Disk cache version changed");
+                    }
+                    tupWithResults.o2 = DiskCache.loadFrom(reader, objectsPoolMap);
+                    break;
+
+                case TreeIO.SECTION_CLASS_HIERARCHY:
+                    loadedClassHierarchyIndex = new ClassHierarchyIndex();
+                    loadedClassHierarchyIndex.loadFrom(buffer);
+                    break;
+
+                case TreeIO.SECTION_STRINGS:
+                    strings = TreeIO.loadStrings(buffer);
+                    break;
+
+                case TreeIO.SECTION_TREE_TOP_LEVEL:
+                    superTupWithResults.o1 = TreeIO.loadTree(buffer, strings, nature);
+                    break;
+
+                case TreeIO.SECTION_TREE_INNER:
+                    superTupWithResults.o2 = TreeIO.loadTree(buffer, strings, nature);
+                    break;
+
+                default:
+                    throw new RuntimeException("Unexpected section: " + kind + " in: " + file);
+            }
+            if (buffer.position() != sectionEnd) {
+                throw new RuntimeException("Section: " + kind + " not properly read in: " + file);
+            }
+        }
+
+        // Note: the class hierarchy must be set before restoring the info as the pending deltas are applied
+        // (and the info saved) when it's restored.
+        if (loadedClassHierarchyIndex != null) {
+            classHierarchyIndex = loadedClassHierarchyIndex;
+        } else {
+            setClassHierarchyIndexIncomplete();
+        }
+        restoreSavedInfo(tupWithResults);
+        return tupWithResults;
+    }
+
+    /**
+     * Called when the info is restored from a format which didn't have the class hierarchy or when modules
+     * are restored without their AST (clients must not rely on the class hierarchy index until the info is
+     * rebuilt).
+     */
+    private void setClassHierarchyIndexIncomplete() {
+        ClassHierarchyIndex index = new ClassHierarchyIndex();
+        index.setComplete(false);
+        classHierarchyIndex = index;
+    }
+
+    /**
+     * Loads the info saved by previous versions (in the text format) and saves it again in the new format.
+     */
+    private Object loadContentsFromTextFile(File file, IPythonNature nature)
+            throws FileNotFoundException, IOException, MisconfigurationException {
         FileInputStream fileInputStream = new FileInputStream(file);
         try {
             //            Timer timer = new Timer();
-            String expected = "-- VERSION_" + AbstractAdditionalTokensInfo.version; //X is the version
+            String expected = "-- VERSION_" + AbstractAdditionalTokensInfo.lastTextVersion; //X is the version
             InputStreamReader reader = new InputStreamReader(fileInputStream);
             FastBufferedReader bufferedReader = new FastBufferedReader(reader);
             FastStringBuffer string = bufferedReader.readLine();
@@ -496,9 +666,11 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                                         tupWithResults.o2 = DiskCache.loadFrom(bufferedReader, objectsPoolMap);
 
                                     } else if (line.startsWith("-- VERSION_")) {
-                                        if (!line.endsWith(String.valueOf(AbstractAdditionalTokensInfo.version))) {
+                                        if (!line.endsWith(
+                                                String.valueOf(AbstractAdditionalTokensInfo.lastTextVersion))) {
                                             throw new RuntimeException("Expected the version to be: "
-                                                    + AbstractAdditionalTokensInfo.version + " Found: " + line);
+                                                    + AbstractAdditionalTokensInfo.lastTextVersion + " Found: "
+                                                    + line);
                                         }
                                     } else if (line.startsWith("-- END TREE")) {
                                         //just skip it in this situation.
@@ -514,8 +686,10 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                         reader.close();
                     }
 
+                    setClassHierarchyIndexIncomplete();
                     restoreSavedInfo(tupWithResults);
                     //                    timer.printDiff("Time taken");
+                    save(); //Save in new format!
                     return tupWithResults;
                 } else {
                     throw new RuntimeException("Version does not match. Found: " + string + ". Expected: " + expected);
@@ -526,6 +700,7 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
                 fileInputStream.close();
                 //                Timer timer2 = new Timer();
                 Object tupWithResults = IOUtils.readFromFile(file);
+                setClassHierarchyIndexIncomplete();
                 restoreSavedInfo(tupWithResults);
                 //                timer2.printDiff("IOUtils time");
                 save(); //Save in new format!
@@ -550,14 +725,11 @@ public abstract class AbstractAdditionalDependencyInfo extends AbstractAdditiona
         completeIndex.add(key);
 
         //current way (saves a list of iinfo)
-        for (Iterator<IInfo> it = data.o2.iterator(); it.hasNext();) {
-            IInfo info = it.next();
-            if (info.getPath() == null || info.getPath().length() == 0) {
-                this.add(info, TOP_LEVEL);
+        this.addAll(data.o2);
 
-            } else {
-                this.add(info, INNER);
-            }
+        // The delta has no AST, so, the classes of the module are unknown.
+        if (classHierarchyIndex.isComplete()) {
+            setClassHierarchyIndexIncomplete();
         }
     }
 
@@ -12,11 +12,13 @@ package com.python.pydev.analysis.additionalinfo;
 import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.OutputStreamWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -24,12 +26,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.TreeMap;
 
 import org.eclipse.jface.text.IDocument;
-import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.core.FileUtilsFileBuffer;
 import org.python.pydev.core.IInfo;
 import org.python.pydev.core.IPythonNature;
@@ -107,31 +108,29 @@ public abstract class AbstractAdditionalTokensInfo {
     public final static int INNER = 2;
 
     /**
-     * indexes used so that we can access the information faster - it is ordered through a tree map, and should be
+     * indexes used so that we can access the information faster - it is ordered by the initials, and should be
      * very fast to access given its initials.
      *
      * It contains only top/level information for a module
      *
-     * This map is persisted.
+     * This index is persisted.
+     *
+     * Note: changes must be done holding the lock, but reads may be done without it (see: InitialsToInfoIndex).
      */
-    protected SortedMap<String, Set<IInfo>> topLevelInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected final InitialsToInfoIndex topLevelInitialsToInfo = new InitialsToInfoIndex();
 
     /**
      * indexes so that we can get 'inner information' from classes, such as methods or inner classes from a class
      */
-    protected SortedMap<String, Set<IInfo>> innerInitialsToInfo = new PyPublicTreeMap<String, Set<IInfo>>();
+    protected final InitialsToInfoIndex innerInitialsToInfo = new InitialsToInfoIndex();
 
     /**
      * Should be used before re-creating the info, so that we have enough memory.
      */
     public void clearAllInfo() {
         synchronized (lock) {
-            if (topLevelInitialsToInfo != null) {
-                topLevelInitialsToInfo.clear();
-            }
-            if (innerInitialsToInfo != null) {
-                innerInitialsToInfo.clear();
-            }
+            topLevelInitialsToInfo.clear();
+            innerInitialsToInfo.clear();
         }
     }
 
@@ -183,8 +182,15 @@ public abstract class AbstractAdditionalTokensInfo {
      * 3: Changed from string-> list to string->set
      * 4: Keeping file, line and column for entries
      * 5: Fix when restoring information
+     * 6: Binary format (string table + trees with indexes into it)
+     * 7: Class hierarchy index
      */
-    protected static final int version = 5;
+    protected static final int version = 7;
+
+    /**
+     * The last version saved in the text format (still accepted when loading).
+     */
+    protected static final int lastTextVersion = 5;
 
     public AbstractAdditionalTokensInfo() {
     }
@@ -203,33 +209,63 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected void add(IInfo info, int doOn) {
         synchronized (lock) {
-            String name = info.getName();
-            String initials = getInitials(name);
-            SortedMap<String, Set<IInfo>> initialsToInfo;
-
-            if (doOn == TOP_LEVEL) {
-                if (info.getPath() != null && info.getPath().length() > 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
-                }
-                initialsToInfo = topLevelInitialsToInfo;
+            String initials = getInitials(info.getName());
+            getIndex(info, doOn).add(initials, info);
+        }
+    }
 
-            } else if (doOn == INNER) {
-                if (info.getPath() == null || info.getPath().length() == 0) {
-                    throw new RuntimeException(
-                            "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
-                                    + info);
-                }
-                initialsToInfo = innerInitialsToInfo;
+    /**
+     * Adds many infos at once: they're grouped by their initials so that each index is updated only once.
+     *
+     * Infos without a path are added as top level infos and the others as inner infos.
+     */
+    protected void addAll(Collection<IInfo> infos) {
+        SortedMap<String, List<IInfo>> topLevelBatch = new TreeMap<String, List<IInfo>>();
+        SortedMap<String, List<IInfo>> innerBatch = new TreeMap<String, List<IInfo>>();
+        for (IInfo info : infos) {
+            String path = info.getPath();
+            addToBatch(info, path == null || path.length() == 0 ? TOP_LEVEL : INNER, topLevelBatch, innerBatch);
+        }
+        synchronized (lock) {
+            topLevelInitialsToInfo.addAll(topLevelBatch);
+            innerInitialsToInfo.addAll(innerBatch);
+        }
+    }
 
-            } else {
-                throw new RuntimeException("List to add is invalid: " + doOn);
+    /**
+     * @return the index where the given info should be added (and checks that the info is valid for it).
+     */
+    private InitialsToInfoIndex getIndex(IInfo info, int doOn) {
+        if (doOn == TOP_LEVEL) {
+            if (info.getPath() != null && info.getPath().length() > 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'top level' info, but has path. Info:" + info);
+            }
+            return topLevelInitialsToInfo;
+
+        } else if (doOn == INNER) {
+            if (info.getPath() == null || info.getPath().length() == 0) {
+                throw new RuntimeException(
+                        "Error: the info being added is added as an 'inner' info, but does not have a path. Info: "
+                                + info);
             }
-            Set<IInfo> listForInitials = getAndCreateListForInitials(initials, initialsToInfo);
-            listForInitials.add(info);
+            return innerInitialsToInfo;
+
+        } else {
+            throw new RuntimeException("List to add is invalid: " + doOn);
         }
     }
 
+    /**
+     * Adds the info to the passed batches (which should later be added to the indexes with addBatches).
+     */
+    private void addToBatch(IInfo info, int doOn, SortedMap<String, List<IInfo>> topLevelBatch,
+            SortedMap<String, List<IInfo>> innerBatch) {
+        getIndex(info, doOn); //just to validate it
+        InitialsToInfoIndex.addToBatch(doOn == TOP_LEVEL ? topLevelBatch : innerBatch, getInitials(info.getName()),
+                info);
+    }
+
     /**
      * @param name the name from where we want to get the initials
      * @return the initials for the name
@@ -241,22 +277,8 @@ public abstract class AbstractAdditionalTokensInfo {
         return name.substring(0, NUMBER_OF_INITIALS_TO_INDEX).toLowerCase();
     }
 
-    /**
-     * @param initials the initials we are looking for
-     * @param initialsToInfo this is the list we should use (top level or inner)
-     * @return the list of tokens with the specified initials (must be exact match)
-     */
-    protected Set<IInfo> getAndCreateListForInitials(String initials, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Set<IInfo> lInfo = initialsToInfo.get(initials);
-        if (lInfo == null) {
-            lInfo = new HashSet<IInfo>();
-            initialsToInfo.put(initials, lInfo);
-        }
-        return lInfo;
-    }
-
     private IInfo addAssignTargets(ASTEntry entry, String moduleName, int doOn, String path, boolean lastIsMethod,
-            String file) {
+            String file, SortedMap<String, List<IInfo>> topLevelBatch, SortedMap<String, List<IInfo>> innerBatch) {
         String rep = NodeUtils.getFullRepresentationString(entry.node);
         if (lastIsMethod) {
             List<String> parts = StringUtils.dotSplit(rep);
@@ -264,21 +286,21 @@ public abstract class AbstractAdditionalTokensInfo {
                 //at least 2 parts are required
                 if (parts.get(0).equals("self")) {
                     rep = parts.get(1);
-                    //no intern construct (locked in the loop that calls this method)
-                    AttrInfo info = new AttrInfo(ObjectsInternPool.internUnsynched(rep), moduleName,
-                            ObjectsInternPool.internUnsynched(path), false, getNature(), file,
+                    //no intern construct (already interned)
+                    AttrInfo info = new AttrInfo(ObjectsInternPool.intern(rep), moduleName,
+                            ObjectsInternPool.intern(path), false, getNature(), file,
                             entry.node.beginLine, entry.node.beginColumn);
-                    add(info, doOn);
+                    addToBatch(info, doOn, topLevelBatch, innerBatch);
                     return info;
                 }
             }
         } else {
-            //no intern construct (locked in the loop that calls this method)
-            AttrInfo info = new AttrInfo(ObjectsInternPool.internUnsynched(FullRepIterable.getFirstPart(rep)),
+            //no intern construct (already interned)
+            AttrInfo info = new AttrInfo(ObjectsInternPool.intern(FullRepIterable.getFirstPart(rep)),
                     moduleName,
-                    ObjectsInternPool.internUnsynched(path), false, getNature(), file,
+                    ObjectsInternPool.intern(path), false, getNature(), file,
                     entry.node.beginLine, entry.node.beginColumn);
-            add(info, doOn);
+            addToBatch(info, doOn, topLevelBatch, innerBatch);
             return info;
         }
         return null;
@@ -362,94 +384,97 @@ public abstract class AbstractAdditionalTokensInfo {
                 Iterator<ASTEntry> entries = tup.o2;
 
                 FastStack<SimpleNode> tempStack = new FastStack<SimpleNode>(10);
+                SortedMap<String, List<IInfo>> topLevelBatch = new TreeMap<String, List<IInfo>>();
+                SortedMap<String, List<IInfo>> innerBatch = new TreeMap<String, List<IInfo>>();
+
+                final String file = key.file != null ? ObjectsInternPool.intern(key.file.toString())
+                        : null;
+                key.name = ObjectsInternPool.intern(key.name);
+
+                while (entries.hasNext()) {
+                    ASTEntry entry = entries.next();
+                    IInfo infoCreated = null;
+
+                    if (entry.parent == null) { //we only want those that are in the global scope
+                        if (entry.node instanceof ClassDef) {
+                            //no intern construct (already interned)
+                            NameTok name = (NameTok) ((ClassDef) entry.node).name;
+                            ClassInfo info = new ClassInfo(
+                                    ObjectsInternPool.intern(name.id),
+                                    key.name, null, false, getNature(), file, name.beginLine,
+                                    name.beginColumn);
+                            addToBatch(info, TOP_LEVEL, topLevelBatch, innerBatch);
+                            infoCreated = info;
+
+                        } else if (entry.node instanceof FunctionDef) {
+                            //no intern construct (already interned)
+                            NameTok name = (NameTok) ((FunctionDef) entry.node).name;
+                            FuncInfo info2 = new FuncInfo(
+                                    ObjectsInternPool.intern(name.id),
+                                    key.name, null, false, getNature(), file, name.beginLine,
+                                    name.beginColumn);
+                            addToBatch(info2, TOP_LEVEL, topLevelBatch, innerBatch);
+                            infoCreated = info2;
+
+                        } else {
+                            //it is an assign
+                            infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false, file,
+                                    topLevelBatch, innerBatch);
+
+                        }
+                    } else {
+                        if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
+                            //ok, it has a parent, so, let's check to see if the path we got only has class definitions
+                            //as the parent (and get that path)
+                            Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
+                                    tempStack);
+                            if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                //if the root is not valid, it is not only classes in the path (could be a method inside
+                                //a method, or something similar).
 
-                synchronized (this.lock) {
-                    synchronized (ObjectsInternPool.lock) {
-                        final String file = key.file != null ? ObjectsInternPool.internUnsynched(key.file.toString())
-                                : null;
-                        key.name = ObjectsInternPool.internUnsynched(key.name);
-
-                        while (entries.hasNext()) {
-                            ASTEntry entry = entries.next();
-                            IInfo infoCreated = null;
-
-                            if (entry.parent == null) { //we only want those that are in the global scope
                                 if (entry.node instanceof ClassDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((ClassDef) entry.node).name;
+                                    NameTok name = ((NameTok) ((ClassDef) entry.node).name);
                                     ClassInfo info = new ClassInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info, TOP_LEVEL);
+                                            ObjectsInternPool.intern(name.id),
+                                            key.name, ObjectsInternPool.intern(pathToRoot.o1), false,
+                                            getNature(), file, name.beginLine, name.beginColumn);
+                                    addToBatch(info, INNER, topLevelBatch, innerBatch);
                                     infoCreated = info;
 
-                                } else if (entry.node instanceof FunctionDef) {
-                                    //no intern construct (locked in this loop)
-                                    NameTok name = (NameTok) ((FunctionDef) entry.node).name;
+                                } else {
+                                    //FunctionDef
+                                    NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
                                     FuncInfo info2 = new FuncInfo(
-                                            ObjectsInternPool.internUnsynched(name.id),
-                                            key.name, null, false, getNature(), file, name.beginLine,
-                                            name.beginColumn);
-                                    add(info2, TOP_LEVEL);
+                                            ObjectsInternPool.intern(name.id),
+                                            key.name, ObjectsInternPool.intern(pathToRoot.o1), false,
+                                            getNature(), file, name.beginLine, name.beginColumn);
+                                    addToBatch(info2, INNER, topLevelBatch, innerBatch);
                                     infoCreated = info2;
 
-                                } else {
-                                    //it is an assign
-                                    infoCreated = this.addAssignTargets(entry, key.name, TOP_LEVEL, null, false, file);
-
-                                }
-                            } else {
-                                if (entry.node instanceof ClassDef || entry.node instanceof FunctionDef) {
-                                    //ok, it has a parent, so, let's check to see if the path we got only has class definitions
-                                    //as the parent (and get that path)
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, false, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        //if the root is not valid, it is not only classes in the path (could be a method inside
-                                        //a method, or something similar).
-
-                                        if (entry.node instanceof ClassDef) {
-                                            NameTok name = ((NameTok) ((ClassDef) entry.node).name);
-                                            ClassInfo info = new ClassInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info, INNER);
-                                            infoCreated = info;
-
-                                        } else {
-                                            //FunctionDef
-                                            NameTok name = ((NameTok) ((FunctionDef) entry.node).name);
-                                            FuncInfo info2 = new FuncInfo(
-                                                    ObjectsInternPool.internUnsynched(name.id),
-                                                    key.name, ObjectsInternPool.internUnsynched(pathToRoot.o1), false,
-                                                    getNature(), file, name.beginLine, name.beginColumn);
-                                            add(info2, INNER);
-                                            infoCreated = info2;
-
-                                        }
-                                    }
-                                } else {
-                                    //it is an assign
-                                    Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
-                                            tempStack);
-                                    if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
-                                        infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
-                                                pathToRoot.o2, file);
-                                    }
                                 }
                             }
-
-                            if (infoCreated != null) {
-                                createdInfos.add(infoCreated);
+                        } else {
+                            //it is an assign
+                            Tuple<String, Boolean> pathToRoot = this.getPathToRoot(entry, true, false,
+                                    tempStack);
+                            if (pathToRoot != null && pathToRoot.o1 != null && pathToRoot.o1.length() > 0) {
+                                infoCreated = this.addAssignTargets(entry, key.name, INNER, pathToRoot.o1,
+                                        pathToRoot.o2, file, topLevelBatch, innerBatch);
                             }
+                        }
+                    }
 
-                        } //end while
+                    if (infoCreated != null) {
+                        createdInfos.add(infoCreated);
+                    }
 
-                    } //end lock ObjectsPool.lock
+                } //end while
 
-                } //end this.lock
+                // Publish all the infos for the module at once.
+                synchronized (this.lock) {
+                    topLevelInitialsToInfo.addAll(topLevelBatch);
+                    innerInitialsToInfo.addAll(innerBatch);
+                }
 
             } catch (Exception e) {
                 Log.log(e);
@@ -476,21 +501,14 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     public Set<String> getAllModulesWithTokens() {
         HashSet<String> ret = new HashSet<String>();
-        synchronized (lock) {
-            Set<Entry<String, Set<IInfo>>> entrySet = this.topLevelInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
+        for (IInfo[] bucket : this.topLevelInitialsToInfo.getSnapshot().values) {
+            for (IInfo info : bucket) {
+                ret.add(info.getDeclaringModuleName());
             }
-
-            entrySet = this.innerInitialsToInfo.entrySet();
-            for (Entry<String, Set<IInfo>> entry : entrySet) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    ret.add(info.getDeclaringModuleName());
-                }
+        }
+        for (IInfo[] bucket : this.innerInitialsToInfo.getSnapshot().values) {
+            for (IInfo info : bucket) {
+                ret.add(info.getDeclaringModuleName());
             }
         }
         return ret;
@@ -574,78 +592,49 @@ public abstract class AbstractAdditionalTokensInfo {
             org.python.pydev.shared_core.log.ToLogFile.toLogFile(this, "Removing ast info from: " + moduleName);
         }
         synchronized (lock) {
-            removeInfoFromMap(moduleName, topLevelInitialsToInfo);
-            removeInfoFromMap(moduleName, innerInitialsToInfo);
+            topLevelInitialsToInfo.removeInfoFromModule(moduleName);
+            innerInitialsToInfo.removeInfoFromModule(moduleName);
         }
 
     }
 
-    /**
-     * @param moduleName
-     * @param initialsToInfo
-     */
-    private void removeInfoFromMap(String moduleName, SortedMap<String, Set<IInfo>> initialsToInfo) {
-        Iterator<Set<IInfo>> itListOfInfo = initialsToInfo.values().iterator();
-        while (itListOfInfo.hasNext()) {
-
-            Iterator<IInfo> it = itListOfInfo.next().iterator();
-            while (it.hasNext()) {
-
-                IInfo info = it.next();
-                if (info != null && info.getDeclaringModuleName() != null) {
-                    if (info.getDeclaringModuleName().equals(moduleName)) {
-                        it.remove();
-                    }
-                }
-            }
-        }
-    }
-
     /**
      * This is the function for which we are most optimized!
      *
+     * Note: queries don't need to lock (they're done in the current snapshot of the indexes).
+     *
      * @param qualifier the tokens returned have to start with the given qualifier
      * @return a list of info, all starting with the given qualifier
      */
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, null);
     }
 
     public Collection<IInfo> getTokensStartingWith(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
-        }
+        return getWithFilter(qualifier, getWhat, startingWithFilter, true, result);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, null);
     }
 
     public Collection<IInfo> getTokensEqualTo(String qualifier, int getWhat, Collection<IInfo> result) {
-        synchronized (lock) {
-            return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
-        }
+        return getWithFilter(qualifier, getWhat, equalsFilter, false, result);
     }
 
     protected Collection<IInfo> getWithFilter(String qualifier, int getWhat, Filter filter, boolean useLowerCaseQual,
             Collection<IInfo> result) {
-        synchronized (lock) {
-            if (result == null) {
-                result = new ArrayList<IInfo>();
-            }
+        if (result == null) {
+            result = new ArrayList<IInfo>();
+        }
 
-            if ((getWhat & TOP_LEVEL) != 0) {
-                getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            if ((getWhat & INNER) != 0) {
-                getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
-            }
-            return result;
+        if ((getWhat & TOP_LEVEL) != 0) {
+            getWithFilter(qualifier, topLevelInitialsToInfo, result, filter, useLowerCaseQual);
+        }
+        if ((getWhat & INNER) != 0) {
+            getWithFilter(qualifier, innerInitialsToInfo, result, filter, useLowerCaseQual);
         }
+        return result;
     }
 
     /**
@@ -654,7 +643,7 @@ public abstract class AbstractAdditionalTokensInfo {
      * @param toks (out) the tokens will be added to this list
      * @return
      */
-    protected void getWithFilter(String qualifier, SortedMap<String, Set<IInfo>> initialsToInfo,
+    protected void getWithFilter(String qualifier, InitialsToInfoIndex initialsToInfo,
             Collection<IInfo> toks, Filter filter, boolean useLowerCaseQual) {
         String initials = getInitials(qualifier);
         String qualToCompare = qualifier;
@@ -662,12 +651,14 @@ public abstract class AbstractAdditionalTokensInfo {
             qualToCompare = qualifier.toLowerCase();
         }
 
-        //get until the end of the alphabet
-        SortedMap<String, Set<IInfo>> subMap = initialsToInfo.subMap(initials, initials + "\uffff\uffff\uffff\uffff");
+        InitialsToInfoIndex.Snapshot snapshot = initialsToInfo.getSnapshot();
 
-        for (Set<IInfo> listForInitials : subMap.values()) {
+        //get until the end of the alphabet
+        int start = snapshot.lowerBound(initials);
+        int end = snapshot.lowerBound(initials + "\uffff\uffff\uffff\uffff");
 
-            for (IInfo info : listForInitials) {
+        for (int i = start; i < end; i++) {
+            for (IInfo info : snapshot.values[i]) {
                 if (filter.doCompare(qualToCompare, info)) {
                     toks.add(info);
                 }
@@ -679,24 +670,10 @@ public abstract class AbstractAdditionalTokensInfo {
      * @return all the tokens that are in this info (top level or inner)
      */
     public Collection<IInfo> getAllTokens() {
-        synchronized (lock) {
-            Collection<Set<IInfo>> lInfo = this.topLevelInitialsToInfo.values();
-
-            ArrayList<IInfo> toks = new ArrayList<IInfo>();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-
-            lInfo = this.innerInitialsToInfo.values();
-            for (Set<IInfo> list : lInfo) {
-                for (IInfo info : list) {
-                    toks.add(info);
-                }
-            }
-            return toks;
-        }
+        ArrayList<IInfo> toks = new ArrayList<IInfo>();
+        this.topLevelInitialsToInfo.addAllInfosTo(toks);
+        this.innerInitialsToInfo.addAllInfosTo(toks);
+        return toks;
     }
 
     /**
@@ -719,28 +696,27 @@ public abstract class AbstractAdditionalTokensInfo {
 
     }
 
+    /**
+     * Saves to a temporary file which is then renamed to the given location (so, a failure while saving
+     * doesn't leave a truncated file in place of the previous info).
+     */
     protected void save(File persistingLocation) {
-        try {
-            FileOutputStream stream = new FileOutputStream(persistingLocation);
-            OutputStreamWriter writer = new OutputStreamWriter(stream);
+        synchronized (lock) {
+            File tempFile = new File(persistingLocation.getParentFile(), persistingLocation.getName() + ".tmp");
             try {
-                FastStringBuffer tempBuf = new FastStringBuffer();
-                tempBuf.append("-- VERSION_");
-                tempBuf.append(AbstractAdditionalTokensInfo.version);
-                tempBuf.append('\n');
-                writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
-                tempBuf.clear();
-
-                saveTo(writer, tempBuf, persistingLocation);
-            } finally {
-                try {
-                    writer.close();
-                } finally {
-                    stream.close();
+                try (TreeIO.SectionsWriter out = new TreeIO.SectionsWriter(FileChannel.open(tempFile.toPath(),
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING))) {
+                    out.getOut().writeInt(TreeIO.BINARY_MAGIC);
+                    out.getOut().writeInt(AbstractAdditionalTokensInfo.version);
+                    saveTo(out, persistingLocation);
                 }
+                Files.move(tempFile.toPath(), persistingLocation.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (Exception e) {
+                tempFile.delete();
+                Log.log(e);
             }
-        } catch (Exception e) {
-            Log.log(e);
         }
     }
 
@@ -756,31 +732,28 @@ public abstract class AbstractAdditionalTokensInfo {
      */
     protected abstract File getPersistingFolder();
 
-    protected void saveTo(OutputStreamWriter writer, FastStringBuffer tempBuf, File pathToSave) throws IOException {
+    protected void saveTo(TreeIO.SectionsWriter out, File pathToSave) throws IOException {
         synchronized (lock) {
             if (DEBUG_ADDITIONAL_INFO) {
                 System.out.println("Saving info " + this.getClass().getName() + " to file (size = "
                         + getAllTokens().size() + ") " + pathToSave);
             }
 
-            Map<String, Integer> dictionary = new HashMap<String, Integer>();
-            tempBuf.append("-- START TREE 1\n");
-            TreeIO.dumpTreeToBuffer(this.topLevelInitialsToInfo, tempBuf, dictionary);
-
-            tempBuf.append("-- START TREE 2\n");
-            TreeIO.dumpTreeToBuffer(this.innerInitialsToInfo, tempBuf, dictionary);
+            InitialsToInfoIndex.Snapshot topLevel = this.topLevelInitialsToInfo.getSnapshot();
+            InitialsToInfoIndex.Snapshot inner = this.innerInitialsToInfo.getSnapshot();
 
-            FastStringBuffer buf2 = new FastStringBuffer(50 * (dictionary.size() + 4));
-            TreeIO.dumpDictToBuffer(dictionary, buf2);
+            //Write the strings before the actual trees.
+            Map<String, Integer> dictionary = new HashMap<String, Integer>();
+            TreeIO.collectStrings(topLevel, dictionary);
+            TreeIO.collectStrings(inner, dictionary);
+            TreeIO.dumpStrings(dictionary, out.startSection(TreeIO.SECTION_STRINGS));
+            out.endSection();
 
-            //Write the dictionary before the actual trees.
-            writer.write(buf2.getInternalCharsArray(), 0, buf2.length());
-            buf2 = null;
+            TreeIO.dumpTree(topLevel, out.startSection(TreeIO.SECTION_TREE_TOP_LEVEL), dictionary);
+            out.endSection();
 
-            //Note: tried LZFFileInputStream from https://github.com/ning/compress
-            //and Snappy from https://github.com/dain/snappy checking to see if by writing less we'd
-            //get a better time but it got a bit slower (gzip was slowest, then snappy and the faster was LZFFileInputStream)
-            writer.write(tempBuf.getInternalCharsArray(), 0, tempBuf.length());
+            TreeIO.dumpTree(inner, out.startSection(TreeIO.SECTION_TREE_INNER), dictionary);
+            out.endSection();
         }
     }
 
@@ -793,17 +766,14 @@ public abstract class AbstractAdditionalTokensInfo {
     protected void restoreSavedInfo(Object o) throws MisconfigurationException {
         synchronized (lock) {
             Tuple3<Object, Object, Object> readFromFile = (Tuple3<Object, Object, Object>) o;
-            SortedMap<String, Set<IInfo>> o1 = (SortedMap<String, Set<IInfo>>) readFromFile.o1;
-            SortedMap<String, Set<IInfo>> o2 = (SortedMap<String, Set<IInfo>>) readFromFile.o2;
-
-            if (o1 == null) {
+            if (readFromFile.o1 == null) {
                 throw new RuntimeException("Error in I/O (topLevelInitialsToInfo is null). Rebuilding internal info.");
             }
-            if (o2 == null) {
+            if (readFromFile.o2 == null) {
                 throw new RuntimeException("Error in I/O (innerInitialsToInfo is null). Rebuilding internal info.");
             }
-            this.topLevelInitialsToInfo = o1;
-            this.innerInitialsToInfo = o2;
+            this.topLevelInitialsToInfo.setContents(toIndex(readFromFile.o1));
+            this.innerInitialsToInfo.setContents(toIndex(readFromFile.o2));
             if (readFromFile.o3 != null) {
                 //may be null in new format (where that's checked during load time).
                 if (AbstractAdditionalTokensInfo.version != (Integer) readFromFile.o3) {
@@ -813,6 +783,17 @@ public abstract class AbstractAdditionalTokensInfo {
         }
     }
 
+    /**
+     * @param o the index or a sorted map (as restored from previous versions).
+     */
+    @SuppressWarnings("unchecked")
+    private static InitialsToInfoIndex toIndex(Object o) {
+        if (o instanceof InitialsToInfoIndex) {
+            return (InitialsToInfoIndex) o;
+        }
+        return InitialsToInfoIndex.fromMap((SortedMap<String, Set<IInfo>>) o);
+    }
+
     @Override
     public String toString() {
         synchronized (lock) {
@@ -820,10 +801,10 @@ public abstract class AbstractAdditionalTokensInfo {
             buffer.append("AdditionalInfo{");
 
             buffer.append("topLevel=[");
-            entrySetToString(buffer, this.topLevelInitialsToInfo.entrySet());
+            entrySetToString(buffer, this.topLevelInitialsToInfo);
             buffer.append("]\n");
             buffer.append("inner=[");
-            entrySetToString(buffer, this.innerInitialsToInfo.entrySet());
+            entrySetToString(buffer, this.innerInitialsToInfo);
             buffer.append("]");
 
             buffer.append("}");
@@ -833,16 +814,13 @@ public abstract class AbstractAdditionalTokensInfo {
 
     /**
      * @param buffer
-     * @param name
+     * @param index
      */
-    private void entrySetToString(FastStringBuffer buffer, Set<Entry<String, Set<IInfo>>> name) {
-        synchronized (lock) {
-            for (Entry<String, Set<IInfo>> entry : name) {
-                Set<IInfo> value = entry.getValue();
-                for (IInfo info : value) {
-                    buffer.append(info.toString());
-                    buffer.append("\n");
-                }
+    private void entrySetToString(FastStringBuffer buffer, InitialsToInfoIndex index) {
+        for (IInfo[] bucket : index.getSnapshot().values) {
+            for (IInfo info : bucket) {
+                buffer.append(info.toString());
+                buffer.append("\n");
             }
         }
     }
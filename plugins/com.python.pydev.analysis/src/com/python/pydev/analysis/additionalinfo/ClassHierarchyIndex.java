@@ -0,0 +1,250 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.python.pydev.core.ObjectsInternPool;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.visitors.NodeUtils;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
+import org.python.pydev.parser.visitors.scope.EasyASTIteratorVisitor;
+import org.python.pydev.shared_core.string.FullRepIterable;
+
+/**
+ * An index with the classes of each module and their bases (as written in the class definition, i.e.: 'mod.Base')
+ * along with the reverse edges (from the last part of a base name to the modules with classes which have it as
+ * a base).
+ *
+ * It's kept along with the additional info (updated whenever the info for a module is added/removed) so that
+ * the subclasses of a class may be found without loading and traversing the modules which just reference
+ * its name.
+ *
+ * Note that the bases aren't resolved (the modules are indexed without resolving imports), so, the reverse edges
+ * are by name: the modules returned must still be checked by clients.
+ */
+public final class ClassHierarchyIndex {
+
+    private static final String[] EMPTY_BASES = new String[0];
+
+    /**
+     * A class in a module and its bases.
+     */
+    public static final class ClassEntry {
+
+        public final String name;
+        public final String[] bases;
+
+        public ClassEntry(String name, String[] bases) {
+            this.name = name;
+            this.bases = bases;
+        }
+
+        @Override
+        public String toString() {
+            return name + Arrays.toString(bases);
+        }
+    }
+
+    /**
+     * Module name -> classes in the module (only modules with classes are kept).
+     */
+    private final Map<String, ClassEntry[]> moduleToClasses = new HashMap<String, ClassEntry[]>();
+
+    /**
+     * Last part of a base name -> modules which have classes with that base.
+     */
+    private final Map<String, Set<String>> baseToModules = new HashMap<String, Set<String>>();
+
+    /**
+     * If false, the index doesn't have the information for all the modules (i.e.: it was restored from a version
+     * which didn't keep it) and clients should not rely on it.
+     */
+    private boolean complete = true;
+
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    public synchronized void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    public synchronized void clear() {
+        moduleToClasses.clear();
+        baseToModules.clear();
+    }
+
+    /**
+     * Sets the classes of the given module (replacing any previous information on the module).
+     */
+    public void addModule(String moduleName, SimpleNode ast) {
+        List<ClassEntry> classes = new ArrayList<ClassEntry>();
+        Iterator<ASTEntry> it = EasyASTIteratorVisitor.createClassIterator(ast);
+        while (it.hasNext()) {
+            ClassDef def = (ClassDef) it.next().node;
+            String[] bases = EMPTY_BASES;
+            if (def.bases != null && def.bases.length > 0) {
+                List<String> baseNames = new ArrayList<String>(def.bases.length);
+                for (exprType base : def.bases) {
+                    String rep = NodeUtils.getFullRepresentationString(base);
+                    if (rep != null && rep.length() > 0) {
+                        baseNames.add(ObjectsInternPool.intern(rep));
+                    }
+                }
+                bases = baseNames.toArray(new String[baseNames.size()]);
+            }
+            classes.add(new ClassEntry(ObjectsInternPool.intern(((NameTok) def.name).id), bases));
+        }
+        setModule(moduleName, classes.toArray(new ClassEntry[classes.size()]));
+    }
+
+    private synchronized void setModule(String moduleName, ClassEntry[] classes) {
+        removeModule(moduleName);
+        if (classes.length == 0) {
+            return;
+        }
+        moduleToClasses.put(moduleName, classes);
+        for (ClassEntry entry : classes) {
+            for (String base : entry.bases) {
+                String key = FullRepIterable.getLastPart(base);
+                Set<String> modules = baseToModules.get(key);
+                if (modules == null) {
+                    modules = new HashSet<String>(2);
+                    baseToModules.put(key, modules);
+                }
+                modules.add(moduleName);
+            }
+        }
+    }
+
+    public synchronized void removeModule(String moduleName) {
+        ClassEntry[] classes = moduleToClasses.remove(moduleName);
+        if (classes == null) {
+            return;
+        }
+        for (ClassEntry entry : classes) {
+            for (String base : entry.bases) {
+                String key = FullRepIterable.getLastPart(base);
+                Set<String> modules = baseToModules.get(key);
+                if (modules != null) {
+                    modules.remove(moduleName);
+                    if (modules.isEmpty()) {
+                        baseToModules.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param className the name of the class (without the module).
+     * @return the names of the modules which have classes with a base whose last part is the given name.
+     */
+    public synchronized Set<String> getModulesWithSubclasses(String className) {
+        Set<String> modules = baseToModules.get(className);
+        if (modules == null) {
+            return Collections.emptySet();
+        }
+        return new HashSet<String>(modules);
+    }
+
+    /**
+     * @return the classes in the given module (empty if the module has no classes or isn't in the index).
+     */
+    public synchronized List<ClassEntry> getClasses(String moduleName) {
+        ClassEntry[] classes = moduleToClasses.get(moduleName);
+        if (classes == null) {
+            return Collections.emptyList();
+        }
+        return Arrays.asList(classes);
+    }
+
+    private static int getStrIndex(Map<String, Integer> strToInt, String str) {
+        Integer integer = strToInt.get(str);
+        if (integer == null) {
+            integer = strToInt.size();
+            strToInt.put(str, integer);
+        }
+        return integer;
+    }
+
+    /**
+     * The index is written (in binary) as:
+     *
+     * byte: 1 if complete and 0 otherwise
+     * strings table (see TreeIO.dumpStrings)
+     * int: number of modules
+     * for each module:
+     *     int: module name, int: number of classes
+     *     for each class:
+     *         int: class name, int: number of bases, int for each base
+     *
+     * (where the ints for names are indexes in the strings table).
+     */
+    public synchronized void writeTo(DataOutputStream out) throws IOException {
+        // The strings table is written first, so, collect the strings before writing the modules.
+        Map<String, Integer> strToInt = new HashMap<String, Integer>();
+        for (Entry<String, ClassEntry[]> entry : moduleToClasses.entrySet()) {
+            getStrIndex(strToInt, entry.getKey());
+            for (ClassEntry classEntry : entry.getValue()) {
+                getStrIndex(strToInt, classEntry.name);
+                for (String base : classEntry.bases) {
+                    getStrIndex(strToInt, base);
+                }
+            }
+        }
+
+        out.writeByte(complete ? 1 : 0);
+        TreeIO.dumpStrings(strToInt, out);
+        out.writeInt(moduleToClasses.size());
+        for (Entry<String, ClassEntry[]> entry : moduleToClasses.entrySet()) {
+            out.writeInt(strToInt.get(entry.getKey()));
+            ClassEntry[] classes = entry.getValue();
+            out.writeInt(classes.length);
+            for (ClassEntry classEntry : classes) {
+                out.writeInt(strToInt.get(classEntry.name));
+                out.writeInt(classEntry.bases.length);
+                for (String base : classEntry.bases) {
+                    out.writeInt(strToInt.get(base));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the contents of this index with the contents written by writeTo.
+     */
+    public synchronized void loadFrom(ByteBuffer buffer) {
+        clear();
+        complete = buffer.get() == 1;
+        String[] strings = TreeIO.loadStrings(buffer);
+        int modulesLen = buffer.getInt();
+        for (int i = 0; i < modulesLen; i++) {
+            String moduleName = strings[buffer.getInt()];
+            ClassEntry[] classes = new ClassEntry[buffer.getInt()];
+            for (int j = 0; j < classes.length; j++) {
+                String name = strings[buffer.getInt()];
+                String[] bases = new String[buffer.getInt()];
+                for (int k = 0; k < bases.length; k++) {
+                    bases[k] = strings[buffer.getInt()];
+                }
+                classes[j] = new ClassEntry(name, bases.length == 0 ? EMPTY_BASES : bases);
+            }
+            setModule(moduleName, classes);
+        }
+    }
+}
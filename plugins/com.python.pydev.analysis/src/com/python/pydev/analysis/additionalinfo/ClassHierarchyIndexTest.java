@@ -0,0 +1,85 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.python.pydev.parser.fastparser.FastDefinitionsParser;
+
+import com.python.pydev.analysis.additionalinfo.ClassHierarchyIndex.ClassEntry;
+
+import junit.framework.TestCase;
+
+public class ClassHierarchyIndexTest extends TestCase {
+
+    private ClassHierarchyIndex index;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        index = new ClassHierarchyIndex();
+        index.addModule("mod1", FastDefinitionsParser.parse("" +
+                "class Base(object):\n" +
+                "    pass\n" +
+                "class Child(Base):\n" +
+                "    class Inner(other.Base):\n" +
+                "        pass\n" +
+                ""));
+        index.addModule("mod2", FastDefinitionsParser.parse("" +
+                "import mod1\n" +
+                "class GrandChild(mod1.Child, metaclass=Meta):\n" +
+                "    pass\n" +
+                ""));
+        index.addModule("mod3", FastDefinitionsParser.parse("" +
+                "from mod1 import Child\n" +
+                "c = Child()\n" +
+                ""));
+    }
+
+    public void testSubclasses() throws Exception {
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), index.getModulesWithSubclasses("Base"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), index.getModulesWithSubclasses("Child"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), index.getModulesWithSubclasses("object"));
+        assertEquals(Collections.emptySet(), index.getModulesWithSubclasses("GrandChild"));
+        assertEquals(Collections.emptySet(), index.getModulesWithSubclasses("Meta"));
+
+        List<ClassEntry> classes = index.getClasses("mod1");
+        assertEquals(3, classes.size());
+        assertEquals("Child", classes.get(1).name);
+        assertEquals(Arrays.asList("Base"), Arrays.asList(classes.get(1).bases));
+        assertEquals("Inner", classes.get(2).name);
+        assertEquals(Arrays.asList("other.Base"), Arrays.asList(classes.get(2).bases));
+        assertEquals(0, index.getClasses("mod3").size());
+    }
+
+    public void testUpdateAndRemove() throws Exception {
+        index.addModule("mod1", FastDefinitionsParser.parse("" +
+                "class Child(Other):\n" +
+                "    pass\n" +
+                ""));
+        assertEquals(Collections.emptySet(), index.getModulesWithSubclasses("Base"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), index.getModulesWithSubclasses("Other"));
+
+        index.removeModule("mod1");
+        assertEquals(Collections.emptySet(), index.getModulesWithSubclasses("Other"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), index.getModulesWithSubclasses("Child"));
+    }
+
+    public void testWriteAndLoad() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        index.writeTo(new DataOutputStream(out));
+
+        ClassHierarchyIndex loaded = new ClassHierarchyIndex();
+        loaded.setComplete(false);
+        loaded.loadFrom(ByteBuffer.wrap(out.toByteArray()));
+        assertTrue(loaded.isComplete());
+        assertEquals(new HashSet<String>(Arrays.asList("mod1")), loaded.getModulesWithSubclasses("Base"));
+        assertEquals(new HashSet<String>(Arrays.asList("mod2")), loaded.getModulesWithSubclasses("Child"));
+        assertEquals(3, loaded.getClasses("mod1").size());
+        assertEquals(Arrays.asList("mod1.Child"), Arrays.asList(loaded.getClasses("mod2").get(0).bases));
+    }
+}
@@ -0,0 +1,320 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.python.pydev.core.IInfo;
+
+/**
+ * An index from initials to the infos with those initials.
+ *
+ * It's kept as a sorted array of keys (the initials) and an array with the infos for each key (so, it has a much
+ * lower memory footprint than a tree map with a set for each entry).
+ *
+ * Readers don't need any lock: a change which adds or removes keys creates a new snapshot which is published
+ * atomically (the arrays of the buckets which weren't changed are shared among snapshots). When only existing keys
+ * receive new infos, the changed buckets are replaced in the current snapshot (buckets themselves are never changed,
+ * so, a reader sees either the old or the new bucket for a key).
+ *
+ * Writers must synchronize externally (in the additional info, the changes are done holding its lock).
+ */
+public final class InitialsToInfoIndex {
+
+    private static final String[] EMPTY_KEYS = new String[0];
+    private static final IInfo[][] EMPTY_VALUES = new IInfo[0][];
+
+    /**
+     * If a bucket has more than this number of entries, a set is used to check for duplicates when adding.
+     */
+    private static final int LINEAR_SEARCH_THRESHOLD = 16;
+
+    /**
+     * View of the index (its keys never change, but a bucket may be replaced by a new one with more infos).
+     */
+    public static final class Snapshot {
+
+        public final String[] keys;
+        public final IInfo[][] values;
+
+        private Snapshot(String[] keys, IInfo[][] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /**
+         * @return the index of the first key >= the passed key.
+         */
+        public int lowerBound(String key) {
+            int low = 0;
+            int high = keys.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid].compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        public IInfo[] get(String key) {
+            int i = lowerBound(key);
+            if (i < keys.length && keys[i].equals(key)) {
+                return values[i];
+            }
+            return null;
+        }
+
+        public int size() {
+            return keys.length;
+        }
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(EMPTY_KEYS, EMPTY_VALUES);
+
+    public InitialsToInfoIndex() {
+    }
+
+    /**
+     * Creates the index from keys which are already sorted (and where each key has a matching list of infos).
+     */
+    public static InitialsToInfoIndex fromSorted(String[] keys, IInfo[][] values) {
+        InitialsToInfoIndex index = new InitialsToInfoIndex();
+        index.snapshot = new Snapshot(keys, values);
+        return index;
+    }
+
+    public static InitialsToInfoIndex fromMap(SortedMap<String, Set<IInfo>> map) {
+        String[] keys = new String[map.size()];
+        IInfo[][] values = new IInfo[map.size()][];
+        int i = 0;
+        for (Entry<String, Set<IInfo>> entry : map.entrySet()) {
+            keys[i] = entry.getKey();
+            values[i] = entry.getValue().toArray(new IInfo[0]);
+            i++;
+        }
+        return fromSorted(keys, values);
+    }
+
+    /**
+     * @return the current snapshot (which may be used without any lock and whose keys won't change).
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the contents of this index with the contents of the passed index (which shouldn't be changed
+     * afterwards, as the buckets of the snapshot may be replaced in place).
+     */
+    public void setContents(InitialsToInfoIndex other) {
+        this.snapshot = other.snapshot;
+    }
+
+    public void clear() {
+        this.snapshot = new Snapshot(EMPTY_KEYS, EMPTY_VALUES);
+    }
+
+    public void add(String key, IInfo info) {
+        List<IInfo> lst = new ArrayList<IInfo>(1);
+        lst.add(info);
+        TreeMap<String, List<IInfo>> toAdd = new TreeMap<String, List<IInfo>>();
+        toAdd.put(key, lst);
+        addAll(toAdd);
+    }
+
+    /**
+     * Adds many infos at once (if there are new keys a new snapshot is created only once for all of those,
+     * otherwise only the changed buckets are replaced).
+     */
+    public void addAll(SortedMap<String, List<IInfo>> toAdd) {
+        if (toAdd.isEmpty()) {
+            return;
+        }
+        Snapshot current = this.snapshot;
+        String[] keys = current.keys;
+        IInfo[][] values = current.values;
+
+        // Check which keys are new.
+        int newKeys = 0;
+        for (String key : toAdd.keySet()) {
+            if (current.get(key) == null) {
+                newKeys++;
+            }
+        }
+
+        if (newKeys == 0) {
+            for (Entry<String, List<IInfo>> entry : toAdd.entrySet()) {
+                int i = current.lowerBound(entry.getKey());
+                values[i] = merge(values[i], entry.getValue());
+            }
+            // Publish it again so that the new buckets are visible to readers which get the snapshot afterwards.
+            this.snapshot = current;
+            return;
+        }
+
+        // Merge the two sorted sequences.
+        int total = keys.length + newKeys;
+        String[] resultKeys = new String[total];
+        IInfo[][] resultValues = new IInfo[total][];
+        int i = 0;
+        int j = 0;
+        for (Entry<String, List<IInfo>> entry : toAdd.entrySet()) {
+            String key = entry.getKey();
+            while (i < keys.length && keys[i].compareTo(key) < 0) {
+                resultKeys[j] = keys[i];
+                resultValues[j] = values[i];
+                i++;
+                j++;
+            }
+            if (i < keys.length && keys[i].equals(key)) {
+                resultKeys[j] = key;
+                resultValues[j] = merge(values[i], entry.getValue());
+                i++;
+            } else {
+                resultKeys[j] = key;
+                resultValues[j] = merge(null, entry.getValue());
+            }
+            j++;
+        }
+        System.arraycopy(keys, i, resultKeys, j, keys.length - i);
+        System.arraycopy(values, i, resultValues, j, values.length - i);
+        this.snapshot = new Snapshot(resultKeys, resultValues);
+    }
+
+    /**
+     * @return a new array with the contents of the existing array and the new infos (duplicates aren't added).
+     */
+    private static IInfo[] merge(IInfo[] existing, List<IInfo> toAdd) {
+        int existingLen = existing == null ? 0 : existing.length;
+        IInfo[] result = new IInfo[existingLen + toAdd.size()];
+        if (existingLen > 0) {
+            System.arraycopy(existing, 0, result, 0, existingLen);
+        }
+        int len = existingLen;
+        Set<IInfo> found = null;
+        if (existingLen + toAdd.size() > LINEAR_SEARCH_THRESHOLD) {
+            found = new HashSet<IInfo>(Arrays.asList(result).subList(0, existingLen));
+        }
+        for (IInfo info : toAdd) {
+            if (found != null) {
+                if (!found.add(info)) {
+                    continue;
+                }
+            } else if (contains(result, len, info)) {
+                continue;
+            }
+            result[len] = info;
+            len++;
+        }
+        if (len != result.length) {
+            result = Arrays.copyOf(result, len);
+        }
+        return result;
+    }
+
+    private static boolean contains(IInfo[] infos, int len, IInfo info) {
+        for (int i = 0; i < len; i++) {
+            if (infos[i].equals(info)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all the infos declared in the given module (keys which end up without any info are removed).
+     */
+    public void removeInfoFromModule(String moduleName) {
+        Snapshot current = this.snapshot;
+        String[] keys = current.keys;
+        IInfo[][] values = current.values;
+
+        String[] resultKeys = null;
+        IInfo[][] resultValues = null;
+        int j = 0;
+        for (int i = 0; i < keys.length; i++) {
+            IInfo[] bucket = values[i];
+            IInfo[] newBucket = removeFromBucket(bucket, moduleName);
+            if (newBucket != bucket && resultKeys == null) {
+                // First change: copy what we have so far.
+                resultKeys = new String[keys.length];
+                resultValues = new IInfo[keys.length][];
+                System.arraycopy(keys, 0, resultKeys, 0, i);
+                System.arraycopy(values, 0, resultValues, 0, i);
+                j = i;
+            }
+            if (resultKeys != null) {
+                if (newBucket.length > 0) {
+                    resultKeys[j] = keys[i];
+                    resultValues[j] = newBucket;
+                    j++;
+                }
+            }
+        }
+        if (resultKeys != null) {
+            if (j != resultKeys.length) {
+                resultKeys = Arrays.copyOf(resultKeys, j);
+                resultValues = Arrays.copyOf(resultValues, j);
+            }
+            this.snapshot = new Snapshot(resultKeys, resultValues);
+        }
+    }
+
+    /**
+     * @return the same bucket if nothing was removed or a new bucket without the infos from the given module.
+     */
+    private static IInfo[] removeFromBucket(IInfo[] bucket, String moduleName) {
+        IInfo[] result = null;
+        int len = 0;
+        for (int i = 0; i < bucket.length; i++) {
+            IInfo info = bucket[i];
+            if (moduleName.equals(info.getDeclaringModuleName())) {
+                if (result == null) {
+                    result = new IInfo[bucket.length - 1];
+                    System.arraycopy(bucket, 0, result, 0, i);
+                    len = i;
+                }
+            } else if (result != null) {
+                result[len] = info;
+                len++;
+            }
+        }
+        if (result == null) {
+            return bucket;
+        }
+        return len == result.length ? result : Arrays.copyOf(result, len);
+    }
+
+    /**
+     * Adds to the given collection all the infos in this index.
+     */
+    public void addAllInfosTo(Collection<IInfo> toks) {
+        for (IInfo[] bucket : snapshot.values) {
+            for (IInfo info : bucket) {
+                toks.add(info);
+            }
+        }
+    }
+
+    /**
+     * Helper to group infos by their initials before calling addAll.
+     */
+    public static void addToBatch(Map<String, List<IInfo>> batch, String key, IInfo info) {
+        List<IInfo> lst = batch.get(key);
+        if (lst == null) {
+            lst = new ArrayList<IInfo>();
+            batch.put(key, lst);
+        }
+        lst.add(info);
+    }
+}
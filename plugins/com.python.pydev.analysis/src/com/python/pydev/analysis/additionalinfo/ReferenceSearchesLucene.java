@@ -12,6 +12,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.ref.WeakReference;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -27,7 +28,10 @@ import java.util.zip.ZipFile;
 
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.python.pydev.ast.codecompletion.revisited.modules.IModulesKeyForJava;
 import org.python.pydev.core.ModulesKey;
 import org.python.pydev.core.ModulesKeyForZip;
@@ -35,6 +39,8 @@ import org.python.pydev.core.cache.CompleteIndexKey;
 import org.python.pydev.core.cache.DiskCache;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.plugin.nature.PythonNature;
+import org.python.pydev.shared_core.index.BulkIndexStats;
+import org.python.pydev.shared_core.index.IBulkDocument;
 import org.python.pydev.shared_core.index.IndexApi;
 import org.python.pydev.shared_core.index.IndexApi.DocumentInfo;
 import org.python.pydev.shared_core.index.IndexApi.IDocumentsVisitor;
@@ -45,19 +51,176 @@ import org.python.pydev.shared_core.utils.Timer;
 
 import com.python.pydev.analysis.system_info_builder.InterpreterInfoBuilder;
 
+/**
+ * Searches for modules with some tokens using a lucene index with the contents of the modules.
+ *
+ * The index is kept open (one per index directory) and is updated in the background as modules are changed
+ * (the additional info notifies about changed modules), so, a search is usually just a query in the index.
+ *
+ * Searches may be done concurrently (updates to the index are synchronized).
+ */
 public class ReferenceSearchesLucene implements IReferenceSearches {
 
-    private static final Object lock = new Object();
-    private static final Map<File, Object> indexDirToLock = new HashMap<File, Object>();
     private static final boolean DEBUG = false;
-    private WeakReference<AbstractAdditionalDependencyInfo> abstractAdditionalDependencyInfo;
+
+    /**
+     * Time to wait after a module is changed to update the index (so that changes are applied in batches).
+     */
+    /*default*/ static long UPDATE_DELAY_MILLIS = 1000;
+
+    /**
+     * The stats on the indexing are logged when at least this number of modules is indexed at once.
+     */
+    private static final int LOG_BULK_STATS_MIN_DOCUMENTS = 1000;
+
+    /**
+     * The contents of an index directory (shared by all which use the same directory as lucene keeps a lock
+     * on the directory while the writer is open).
+     */
+    private static final class IndexInfo {
+
+        private final IndexApi indexApi;
+
+        /**
+         * Module name to the key (with the modified time) which is in the index (changes must be done holding
+         * the lock of this object).
+         */
+        private final Map<String, CompleteIndexKey> indexed = new HashMap<>();
+
+        private IndexInfo(File indexDir) throws IOException {
+            // Note: we should be able to deal with entries already deleted (so, applyAllDeletes = false)!
+            indexApi = new IndexApi(indexDir, false);
+            indexApi.visitAllDocs(new IDocumentsVisitor() {
+
+                @Override
+                public void visit(DocumentInfo documentInfo) {
+                    String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
+                    String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                    if (modKey != null && modTime != null) {
+                        ModulesKey keyFromIO = ModulesKey.fromIO(modKey);
+                        indexed.put(keyFromIO.name, new CompleteIndexKey(keyFromIO, Long.parseLong(modTime)));
+                    }
+                }
+            }, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
+        }
+    }
+
+    private static final Map<File, IndexInfo> indexDirToIndexInfo = new HashMap<File, IndexInfo>();
+
+    private static IndexInfo getIndexInfo(File indexDir) throws IOException {
+        synchronized (indexDirToIndexInfo) {
+            IndexInfo indexInfo = indexDirToIndexInfo.get(indexDir);
+            if (indexInfo == null) {
+                indexInfo = new IndexInfo(indexDir);
+                indexDirToIndexInfo.put(indexDir, indexInfo);
+            }
+            return indexInfo;
+        }
+    }
+
+    /**
+     * Closes all the indexes which are open.
+     */
+    public static void disposeAll() {
+        synchronized (indexDirToIndexInfo) {
+            for (IndexInfo indexInfo : indexDirToIndexInfo.values()) {
+                synchronized (indexInfo) {
+                    indexInfo.indexApi.dispose();
+                }
+            }
+            indexDirToIndexInfo.clear();
+        }
+    }
+
+    private final WeakReference<AbstractAdditionalDependencyInfo> abstractAdditionalDependencyInfo;
+
+    private final Map<IProject, Long> projectToLastMtime = new HashMap<>();
+
+    /**
+     * The index used (only available after the first search).
+     */
+    private volatile IndexInfo indexInfo;
+    private File indexDir;
+    private final Object openLock = new Object();
+
+    private final Object pendingLock = new Object();
+    /**
+     * Modules changed which weren't still updated in the index.
+     */
+    private Set<String> pendingModules = new HashSet<>();
+    /**
+     * If true all the modules must be checked (i.e.: we don't know which modules changed).
+     */
+    private boolean pendingAll = true;
+
+    private final Job updateJob = new Job("Update modules references index") {
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            try {
+                update(monitor);
+            } catch (OperationCanceledException e) {
+                // Ok, will be done later on.
+            } catch (Exception e) {
+                Log.log(e);
+            }
+            return Status.OK_STATUS;
+        }
+    };
 
     public ReferenceSearchesLucene(AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo) {
         this.abstractAdditionalDependencyInfo = new WeakReference<>(abstractAdditionalDependencyInfo);
+        updateJob.setSystem(true);
+        updateJob.setPriority(Job.DECORATE);
+    }
+
+    /**
+     * Notifies that the given module was added, changed or removed in the additional info.
+     */
+    public void onModuleChanged(String moduleName) {
+        synchronized (pendingLock) {
+            if (!pendingAll) {
+                pendingModules.add(moduleName);
+            }
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Notifies that all the modules may have changed in the additional info.
+     */
+    public void onAllModulesChanged() {
+        synchronized (pendingLock) {
+            pendingAll = true;
+            pendingModules.clear();
+        }
+        scheduleUpdate();
+    }
+
+    /**
+     * Marks the given modules to be checked again in the next update (i.e.: indexing them failed).
+     */
+    private void addPendingModules(Collection<String> moduleNames) {
+        if (moduleNames.isEmpty()) {
+            return;
+        }
+        synchronized (pendingLock) {
+            if (!pendingAll) {
+                pendingModules.addAll(moduleNames);
+            }
+        }
+    }
+
+    private void scheduleUpdate() {
+        // Only keep it updated in the background after it's been used (until then, the update is done in the
+        // first search).
+        if (indexInfo != null) {
+            updateJob.schedule(UPDATE_DELAY_MILLIS);
+        }
     }
 
     @Override
-    public synchronized List<ModulesKey> search(IProject project,
+    public List<ModulesKey> search(IProject project,
             final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
             throws OperationCanceledException {
         try {
@@ -70,9 +233,7 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
         }
     }
 
-    private final Map<IProject, Long> projectToLastMtime = new HashMap<>();
-
-    private synchronized List<ModulesKey> internalSearch(IProject project,
+    private List<ModulesKey> internalSearch(IProject project,
             final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
             throws OperationCanceledException {
 
@@ -90,274 +251,392 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
             return ret;
         }
 
-        Long lastMtime = projectToLastMtime.get(project);
-        if (lastMtime == null) {
-            lastMtime = 0L;
-        }
-        long currMtime = nature.getMtime();
-        if (lastMtime != currMtime) {
-            projectToLastMtime.put(project, currMtime);
-            Timer timer = null;
-            if (DEBUG) {
-                System.out.println("Curr mtime: " + currMtime + " last time: " + lastMtime);
-                System.out.println("Start sync: " + project);
-                timer = new Timer();
+        synchronized (projectToLastMtime) {
+            Long lastMtime = projectToLastMtime.get(project);
+            if (lastMtime == null) {
+                lastMtime = 0L;
             }
-            new InterpreterInfoBuilder().syncInfoToPythonPath(monitor, nature);
-            if (DEBUG) {
-                timer.printDiff("Sync time");
+            long currMtime = nature.getMtime();
+            if (lastMtime != currMtime) {
+                projectToLastMtime.put(project, currMtime);
+                Timer timer = null;
+                if (DEBUG) {
+                    System.out.println("Curr mtime: " + currMtime + " last time: " + lastMtime);
+                    System.out.println("Start sync: " + project);
+                    timer = new Timer();
+                }
+                new InterpreterInfoBuilder().syncInfoToPythonPath(monitor, nature);
+                if (DEBUG) {
+                    timer.printDiff("Sync time");
+                }
             }
         }
 
-        boolean mustCommitChange = false;
-
         final String name = "Search modules with token in: " + abstractAdditionalDependencyInfo.getUIRepresentation();
-        monitor.beginTask(name, 7);
+        monitor.beginTask(name, 3);
         monitor.setTaskName(name);
+        return searchInIndex(abstractAdditionalDependencyInfo, fieldNameToValues, monitor);
+    }
 
-        DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
-
-        // Note: we should be able to deal with entries already deleted!
-        boolean applyAllDeletes = false;
+    /**
+     * Applies the pending changes to the index and searches in it (the additional info must be already synchronized
+     * with the pythonpath).
+     */
+    /*default*/ List<ModulesKey> searchInIndex(AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo,
+            final OrderedMap<String, Set<String>> fieldNameToValues, IProgressMonitor monitor)
+            throws OperationCanceledException {
+        final List<ModulesKey> ret = new ArrayList<ModulesKey>();
 
-        String folderToPersist = completeIndex.getFolderToPersist();
-        Object indexApiLock;
-        File indexDir = new File(folderToPersist, "lc" + IndexApi.luceneSuffix);
-        synchronized (lock) {
-            indexApiLock = indexDirToLock.get(indexDir);
-            if (indexApiLock == null) {
-                try {
-                    indexApiLock = new Object();
-                    indexDirToLock.put(indexDir, indexApiLock);
-                } catch (Exception e) {
-                    Log.log(e);
-                    return ret;
-                }
-            }
+        // Usually a no-op (changes are applied in the background).
+        IndexInfo indexInfo = update(monitor);
+        if (indexInfo == null) {
+            return ret;
         }
+        incrementAndCheckProgress("Updated index", monitor);
 
-        IndexApi indexApi = null;
+        // Ok, things should be in-place at this point... let's actually do the search now
+        final DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
         try {
-            synchronized (indexApiLock) {
-                indexApi = new IndexApi(indexDir, applyAllDeletes);
-                final Map<ModulesKey, CompleteIndexKey> indexMap = new HashMap<>(); // Key to CompleteIndexKey (has modified time).
-
-                IDocumentsVisitor visitor = new IDocumentsVisitor() {
+            if (DEBUG) {
+                System.out.println("Searching: " + fieldNameToValues);
+            }
+            IDocumentsVisitor visitor = new IDocumentsVisitor() {
 
-                    @Override
-                    public void visit(DocumentInfo documentInfo) {
-                        ModulesKey keyFromIO = ModulesKey.fromIO(documentInfo.get(FIELD_MODULES_KEY_IO));
-                        String modifiedTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                        indexMap.put(keyFromIO, new CompleteIndexKey(keyFromIO, Long.parseLong(modifiedTime)));
+                @Override
+                public void visit(DocumentInfo documentInfo) {
+                    try {
+                        String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
+                        String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
+                        if (modKey != null && modTime != null) {
+                            ModulesKey fromIO = ModulesKey.fromIO(modKey);
+                            CompleteIndexKey existing = completeIndex.get(new CompleteIndexKey(fromIO));
+                            // Deal with deleted entries still hanging around.
+                            if (existing != null && existing.lastModified == Long.parseLong(modTime)) {
+                                // Ok, we have a match!
+                                ret.add(existing.key);
+                            }
+                        }
+                    } catch (Exception e) {
+                        Log.log(e);
                     }
-                };
+                }
+            };
+            indexInfo.indexApi.searchWildcard(fieldNameToValues, false, visitor, null, FIELD_MODULES_KEY_IO,
+                    FIELD_MODIFIED_TIME);
+        } catch (Exception e) {
+            Log.log(e);
+        }
+        incrementAndCheckProgress("Searched index", monitor);
+        return ret;
+    }
+
+    /**
+     * Applies the pending changes to the index (opening it if needed).
+     *
+     * @return the index info used or null if it wasn't possible to open it.
+     */
+    private IndexInfo update(IProgressMonitor monitor) throws OperationCanceledException {
+        AbstractAdditionalDependencyInfo abstractAdditionalDependencyInfo = this.abstractAdditionalDependencyInfo.get();
+        if (abstractAdditionalDependencyInfo == null) {
+            return null;
+        }
+        DiskCache completeIndex = abstractAdditionalDependencyInfo.completeIndex;
+        File currIndexDir = new File(completeIndex.getFolderToPersist(), "lc" + IndexApi.luceneSuffix);
+
+        IndexInfo indexInfo;
+        synchronized (openLock) {
+            if (!currIndexDir.equals(indexDir)) {
                 try {
-                    indexApi.visitAllDocs(visitor, FIELD_MODULES_KEY_IO, FIELD_MODIFIED_TIME);
-                } catch (IOException e) {
+                    indexInfo = getIndexInfo(currIndexDir);
+                } catch (Exception e) {
                     Log.log(e);
+                    return null;
                 }
+                synchronized (pendingLock) {
+                    // We don't know what changed in the index in the meanwhile.
+                    pendingAll = true;
+                    pendingModules.clear();
+                }
+                this.indexDir = currIndexDir;
+                this.indexInfo = indexInfo;
+            } else {
+                indexInfo = this.indexInfo;
+            }
+        }
 
-                incrementAndCheckProgress("Visited current index", monitor);
-
-                Set<CompleteIndexKey> docsToRemove = new HashSet<>();
-                Set<CompleteIndexKey> modulesToAdd = new HashSet<>();
-                Map<File, Set<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
+        synchronized (indexInfo) {
+            Set<String> changed;
+            boolean all;
+            synchronized (pendingLock) {
+                all = pendingAll;
+                changed = pendingModules;
+                if (!all && changed.isEmpty()) {
+                    return indexInfo;
+                }
+                pendingAll = false;
+                pendingModules = new HashSet<>();
+            }
 
+            boolean finished = false;
+            try {
                 // Wait for the integrity check before getting the keys!
                 abstractAdditionalDependencyInfo.waitForIntegrityCheck();
-
-                final Map<CompleteIndexKey, CompleteIndexKey> currentKeys = completeIndex.keys();
-
-                // Step 1: remove entries which were in the index but are already removed
-                // from the modules (or have a different time).
-                for (Entry<ModulesKey, CompleteIndexKey> entryInIndex : indexMap.entrySet()) {
-                    CompleteIndexKey indexModule = entryInIndex.getValue();
-
-                    CompleteIndexKey currentModule = currentKeys.get(indexModule);
-                    if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
-                        docsToRemove.add(indexModule);
-
-                    } else {
-                        // exists, but we also need to check the modified time
-                        boolean changed = currentModule.lastModified != indexModule.lastModified;
-                        if (!changed) {
-                            ModulesKey keyCurrentModule = currentModule.key;
-                            ModulesKey keyIndexModule = indexModule.key;
-                            boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
-                            boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
-                            changed = currentIsZip != indexIsZip;
-
-                            if (!changed) {
-                                changed = !currentModule.key.file.equals(indexModule.key.file);
-                            }
-                        }
-
-                        if (changed) {
-                            // remove and add
-                            docsToRemove.add(indexModule);
-
-                            add(modulesToAdd, zipModulesToAdd, currentModule);
+                updateIndex(indexInfo, completeIndex, all, changed, monitor);
+                finished = true;
+            } finally {
+                if (!finished) {
+                    // Something bad happened (or it was cancelled): check the changes again later on.
+                    synchronized (pendingLock) {
+                        if (all) {
+                            pendingAll = true;
+                            pendingModules.clear();
+                        } else if (!pendingAll) {
+                            pendingModules.addAll(changed);
                         }
                     }
                 }
-                // --- Progress
-                incrementAndCheckProgress("Updating for removal", monitor);
-
-                // Step 2: add new entries in current and not in the index
-                for (Entry<CompleteIndexKey, CompleteIndexKey> currentEntry : currentKeys.entrySet()) {
-                    CompleteIndexKey completeIndexKey = currentEntry.getValue();
-                    if (!indexMap.containsKey(completeIndexKey.key)) {
-                        ModulesKey modulesKey = completeIndexKey.key;
-                        if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null
-                                || !modulesKey.file.isFile()) {
-                            //ignore this one (we can't do anything with it).
-                            continue;
-                        }
-
-                        if (modulesKey instanceof ModulesKeyForZip) {
-                            ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
-                            if (!modulesKeyForZip.isFile) {
-                                continue; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
-                            }
-                        }
+            }
+        }
+        return indexInfo;
+    }
 
-                        add(modulesToAdd, zipModulesToAdd, completeIndexKey);
-                    }
+    /**
+     * Must be called while synchronized in the indexInfo.
+     */
+    private void updateIndex(IndexInfo indexInfo, DiskCache completeIndex, boolean all, Set<String> changed,
+            IProgressMonitor monitor) {
+        Map<String, CompleteIndexKey> current = new HashMap<>();
+        if (all) {
+            if (DEBUG) {
+                System.out.println("Checking all modules in the index.");
+            }
+            changed = new HashSet<>(indexInfo.indexed.keySet());
+            for (CompleteIndexKey key : completeIndex.keys().values()) {
+                changed.add(key.key.name);
+                current.put(key.key.name, key);
+            }
+        } else {
+            for (String moduleName : changed) {
+                CompleteIndexKey key = completeIndex.get(new CompleteIndexKey(moduleName));
+                if (key != null) {
+                    current.put(moduleName, key);
                 }
-                // --- Progress
-                incrementAndCheckProgress("Updating for addition", monitor);
+            }
+        }
 
-                Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
-                Collection<String> lstToRemove = new ArrayList<>(docsToRemove.size());
+        Collection<String> toRemove = new ArrayList<>();
+        List<CompleteIndexKey> modulesToAdd = new ArrayList<>();
+        Map<File, List<CompleteIndexKey>> zipModulesToAdd = new HashMap<>();
 
-                FastStringBuffer tempBuf = new FastStringBuffer();
-                for (Iterator<CompleteIndexKey> it = docsToRemove.iterator(); it.hasNext();) {
-                    it.next().key.toIO(tempBuf.clear());
-                    lstToRemove.add(tempBuf.toString());
-                }
+        for (String moduleName : changed) {
+            CompleteIndexKey indexModule = indexInfo.indexed.get(moduleName);
+            CompleteIndexKey currentModule = current.get(moduleName);
 
-                incrementAndCheckProgress("Removing outdated entries", monitor);
-                if (lstToRemove.size() > 0) {
-                    fieldToValuesToRemove.put(FIELD_MODULES_KEY_IO, lstToRemove);
-                    try {
-                        mustCommitChange = true;
-                        if (DEBUG) {
-                            System.out.println("Removing: " + fieldToValuesToRemove);
-                        }
-                        indexApi.removeDocs(fieldToValuesToRemove);
-                    } catch (IOException e) {
-                        Log.log(e);
-                    }
+            if (currentModule == null || currentModule.key == null || currentModule.key.file == null) {
+                if (indexModule != null) {
+                    toRemove.add(moduleName);
+                }
+                continue;
+            }
+            if (indexModule != null) {
+                if (!isChanged(indexModule, currentModule)) {
+                    continue;
                 }
+                toRemove.add(moduleName);
+            }
+            if (canIndex(currentModule.key)) {
+                add(modulesToAdd, zipModulesToAdd, currentModule);
+            }
+        }
+        checkCancelled(monitor);
 
-                incrementAndCheckProgress("Indexing new entries", monitor);
-                if (modulesToAdd.size() > 0) {
-                    mustCommitChange = true;
-                    for (CompleteIndexKey key : modulesToAdd) {
-                        File f = key.key.file;
-                        if (f.isFile()) {
-                            if (DEBUG) {
-                                System.out.println("Indexing: " + f);
-                            }
-                            try (BufferedReader reader = new BufferedReader(new FileReader(f));) {
-                                indexApi.index(createFieldsToIndex(key, tempBuf), reader, FIELD_CONTENTS);
-                            } catch (Exception e) {
-                                Log.log(e);
-                            }
-                        }
+        if (toRemove.isEmpty() && modulesToAdd.isEmpty() && zipModulesToAdd.isEmpty()) {
+            return;
+        }
+
+        IndexApi indexApi = indexInfo.indexApi;
+        if (toRemove.size() > 0) {
+            if (DEBUG) {
+                System.out.println("Removing: " + toRemove);
+            }
+            Map<String, Collection<String>> fieldToValuesToRemove = new HashMap<>();
+            fieldToValuesToRemove.put(FIELD_MODULE_NAME, toRemove);
+            try {
+                indexApi.removeDocs(fieldToValuesToRemove);
+                for (String moduleName : toRemove) {
+                    indexInfo.indexed.remove(moduleName);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+                // Don't add the new contents (the old ones are still there): check those again later on.
+                addPendingModules(toRemove);
+                toRemove.clear();
+                for (Iterator<CompleteIndexKey> it = modulesToAdd.iterator(); it.hasNext();) {
+                    if (indexInfo.indexed.containsKey(it.next().key.name)) {
+                        it.remove();
                     }
                 }
-
-                Set<Entry<File, Set<CompleteIndexKey>>> entrySet = zipModulesToAdd.entrySet();
-                for (Entry<File, Set<CompleteIndexKey>> entry : entrySet) {
-                    File f = entry.getKey();
-                    if (f.exists()) {
-                        try (ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);) {
-                            Set<CompleteIndexKey> value = entry.getValue();
-                            for (CompleteIndexKey completeIndexKey2 : value) {
-                                ModulesKeyForZip forZip = (ModulesKeyForZip) completeIndexKey2.key;
-                                try (InputStream inputStream = zipFile
-                                        .getInputStream(zipFile.getEntry(forZip.zipModulePath));) {
-                                    InputStreamReader reader = new InputStreamReader(inputStream,
-                                            StandardCharsets.UTF_8);
-                                    mustCommitChange = true;
-                                    if (DEBUG) {
-                                        System.out.println("Indexing: " + completeIndexKey2);
-                                    }
-                                    indexApi.index(createFieldsToIndex(completeIndexKey2, tempBuf), reader,
-                                            FIELD_CONTENTS);
-                                }
-                            }
-                        } catch (Exception e) {
-                            Log.log(e);
+                for (List<CompleteIndexKey> zipModules : zipModulesToAdd.values()) {
+                    for (Iterator<CompleteIndexKey> it = zipModules.iterator(); it.hasNext();) {
+                        if (indexInfo.indexed.containsKey(it.next().key.name)) {
+                            it.remove();
                         }
                     }
                 }
+            }
+        }
 
-                incrementAndCheckProgress("Committing result", monitor);
-                if (mustCommitChange) {
-                    if (DEBUG) {
-                        System.out.println("Commit result");
+        FastStringBuffer tempBuf = new FastStringBuffer();
+        if (modulesToAdd.size() > 0) {
+            // Files are read and tokenized in many threads (which is what makes the first search in a big
+            // interpreter -- with tens of thousands of modules -- slow).
+            List<ModuleToIndex> modulesToIndex = new ArrayList<>(modulesToAdd.size());
+            for (CompleteIndexKey key : modulesToAdd) {
+                modulesToIndex.add(new ModuleToIndex(key, createFieldsToIndex(key, tempBuf)));
+            }
+            try {
+                BulkIndexStats stats = indexApi.indexInBulk(modulesToIndex.iterator(), FIELD_CONTENTS,
+                        IndexApi.BULK_INDEX_THREADS, monitor);
+                if (DEBUG || stats.documents >= LOG_BULK_STATS_MIN_DOCUMENTS) {
+                    Log.logInfo("References index: " + stats);
+                }
+            } catch (IOException e) {
+                Log.log(e);
+                // The modules which weren't indexed (and whose previous contents may have been already removed)
+                // must be checked again in the next update.
+                List<String> notIndexed = new ArrayList<>();
+                for (ModuleToIndex moduleToIndex : modulesToIndex) {
+                    if (!moduleToIndex.indexed) {
+                        notIndexed.add(moduleToIndex.key.key.name);
                     }
-                    try {
-                        indexApi.commit();
-                    } catch (IOException e) {
-                        Log.log(e);
+                }
+                addPendingModules(notIndexed);
+            } finally {
+                // Note: also done if cancelled (what was indexed is still in the index).
+                for (ModuleToIndex moduleToIndex : modulesToIndex) {
+                    if (moduleToIndex.indexed) {
+                        indexInfo.indexed.put(moduleToIndex.key.key.name, moduleToIndex.key);
                     }
                 }
+            }
+        }
 
-                // Ok, things should be in-place at this point... let's actually do the search now
-                incrementAndCheckProgress("Searching index", monitor);
-
-                try {
-                    if (DEBUG) {
-                        System.out.println("Searching: " + fieldNameToValues);
-                    }
-                    visitor = new IDocumentsVisitor() {
-
-                        @Override
-                        public void visit(DocumentInfo documentInfo) {
-                            try {
-                                String modKey = documentInfo.get(FIELD_MODULES_KEY_IO);
-                                String modTime = documentInfo.get(FIELD_MODIFIED_TIME);
-                                if (modKey != null && modTime != null) {
-                                    ModulesKey fromIO = ModulesKey.fromIO(modKey);
-                                    CompleteIndexKey existing = currentKeys.get(new CompleteIndexKey(fromIO));
-                                    // Deal with deleted entries still hanging around.
-                                    if (existing != null && existing.lastModified == Long.parseLong(modTime)) {
-                                        // Ok, we have a match!
-                                        ret.add(existing.key);
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.log(e);
+        for (Entry<File, List<CompleteIndexKey>> entry : zipModulesToAdd.entrySet()) {
+            checkCancelled(monitor);
+            File f = entry.getKey();
+            if (f.exists()) {
+                Set<String> notIndexed = new HashSet<>();
+                for (CompleteIndexKey completeIndexKey : entry.getValue()) {
+                    notIndexed.add(completeIndexKey.key.name);
+                }
+                try (ZipFile zipFile = new ZipFile(f, ZipFile.OPEN_READ);) {
+                    for (CompleteIndexKey completeIndexKey : entry.getValue()) {
+                        ModulesKeyForZip forZip = (ModulesKeyForZip) completeIndexKey.key;
+                        try (InputStream inputStream = zipFile
+                                .getInputStream(zipFile.getEntry(forZip.zipModulePath));) {
+                            InputStreamReader reader = new InputStreamReader(inputStream,
+                                    StandardCharsets.UTF_8);
+                            if (DEBUG) {
+                                System.out.println("Indexing: " + completeIndexKey);
                             }
+                            indexApi.index(createFieldsToIndex(completeIndexKey, tempBuf), reader,
+                                    FIELD_CONTENTS);
+                            indexInfo.indexed.put(completeIndexKey.key.name, completeIndexKey);
+                            notIndexed.remove(completeIndexKey.key.name);
                         }
-                    };
-                    indexApi.searchWildcard(fieldNameToValues, applyAllDeletes, visitor, null, FIELD_MODULES_KEY_IO,
-                            FIELD_MODIFIED_TIME);
+                    }
                 } catch (Exception e) {
                     Log.log(e);
+                    addPendingModules(notIndexed);
                 }
             }
-        } catch (Exception e) {
+        }
+
+        if (DEBUG) {
+            System.out.println("Commit result");
+        }
+        try {
+            indexApi.commit();
+            indexApi.refresh();
+        } catch (IOException e) {
             Log.log(e);
-        } finally {
-            if (indexApi != null) {
-                indexApi.dispose();
+        }
+    }
+
+    /**
+     * A module to be indexed with IndexApi.indexInBulk (the file is read in an indexing thread).
+     */
+    private static final class ModuleToIndex implements IBulkDocument {
+
+        private final CompleteIndexKey key;
+        private final Map<String, String> fields;
+        private volatile boolean indexed;
+
+        private ModuleToIndex(CompleteIndexKey key, Map<String, String> fields) {
+            this.key = key;
+            this.fields = fields;
+        }
+
+        @Override
+        public Map<String, String> getFields() {
+            return fields;
+        }
+
+        @Override
+        public Reader createContentsReader() throws IOException {
+            if (DEBUG) {
+                System.out.println("Indexing: " + key.key.file);
             }
+            return new BufferedReader(new FileReader(key.key.file));
+        }
+
+        @Override
+        public void onIndexed() {
+            indexed = true;
         }
-        return ret;
     }
 
-    private void incrementAndCheckProgress(String msg, IProgressMonitor monitor) throws OperationCanceledException {
-        // monitor.setTaskName(msg);
-        monitor.worked(1);
+    private static boolean isChanged(CompleteIndexKey indexModule, CompleteIndexKey currentModule) {
+        if (currentModule.lastModified != indexModule.lastModified) {
+            return true;
+        }
+        ModulesKey keyCurrentModule = currentModule.key;
+        ModulesKey keyIndexModule = indexModule.key;
+        boolean currentIsZip = keyCurrentModule instanceof ModulesKeyForZip;
+        boolean indexIsZip = keyIndexModule instanceof ModulesKeyForZip;
+        if (currentIsZip != indexIsZip) {
+            return true;
+        }
+        return !keyCurrentModule.file.equals(keyIndexModule.file);
+    }
+
+    private static boolean canIndex(ModulesKey modulesKey) {
+        if (modulesKey instanceof IModulesKeyForJava || modulesKey.file == null || !modulesKey.file.isFile()) {
+            //ignore this one (we can't do anything with it).
+            return false;
+        }
+
+        if (modulesKey instanceof ModulesKeyForZip) {
+            ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) modulesKey;
+            if (!modulesKeyForZip.isFile) {
+                return false; // Ignore folders in zips (happens for jython folders which may not have an __init__.py)
+            }
+        }
+        return true;
+    }
+
+    private void checkCancelled(IProgressMonitor monitor) throws OperationCanceledException {
         if (monitor.isCanceled()) {
             throw new OperationCanceledException();
         }
     }
 
+    private void incrementAndCheckProgress(String msg, IProgressMonitor monitor) throws OperationCanceledException {
+        // monitor.setTaskName(msg);
+        monitor.worked(1);
+        checkCancelled(monitor);
+    }
+
     private Map<String, String> createFieldsToIndex(CompleteIndexKey key, FastStringBuffer buf) {
         key.key.toIO(buf.clear());
         Map<String, String> fieldsToIndex = new HashMap<>();
@@ -367,15 +646,15 @@ public class ReferenceSearchesLucene implements IReferenceSearches {
         return fieldsToIndex;
     }
 
-    private void add(Set<CompleteIndexKey> modulesToAdd, Map<File, Set<CompleteIndexKey>> zipModulesToAdd,
+    private void add(List<CompleteIndexKey> modulesToAdd, Map<File, List<CompleteIndexKey>> zipModulesToAdd,
             CompleteIndexKey currentModule) {
         if (currentModule.key instanceof ModulesKeyForZip) {
-            Set<CompleteIndexKey> set = zipModulesToAdd.get(currentModule.key.file);
-            if (set == null) {
-                set = new HashSet<>();
-                zipModulesToAdd.put(currentModule.key.file, set);
+            List<CompleteIndexKey> lst = zipModulesToAdd.get(currentModule.key.file);
+            if (lst == null) {
+                lst = new ArrayList<>();
+                zipModulesToAdd.put(currentModule.key.file, lst);
             }
-            set.add(currentModule);
+            lst.add(currentModule);
 
         } else {
             modulesToAdd.add(currentModule);
@@ -6,14 +6,21 @@
  */
 package com.python.pydev.analysis.additionalinfo;
 
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.SortedMap;
 
 import org.python.pydev.ast.codecompletion.revisited.PyPublicTreeMap;
 import org.python.pydev.core.FastBufferedReader;
@@ -39,98 +46,257 @@ public class TreeIO {
     private static final char COL_CHAR_SEPARATOR = '*';
 
     /**
-     * Tree is written as:
-     * line 1= tree size
-     * cub|2|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
+     * Identifies the binary format (written as the first int of the file, followed by the version).
      */
-    public static void dumpTreeToBuffer(SortedMap<String, Set<IInfo>> tree, FastStringBuffer tempBuf,
-            Map<String, Integer> strToInt) {
-        Set<Entry<String, Set<IInfo>>> entrySet = tree.entrySet();
-        Iterator<Entry<String, Set<IInfo>>> it = entrySet.iterator();
-        tempBuf.append(entrySet.size());
-        tempBuf.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Set<IInfo>> next = it.next();
-            tempBuf.append(next.getKey());
-            Set<IInfo> value = next.getValue();
-
-            tempBuf.append('|');
-            tempBuf.append(value.size());
-            tempBuf.append('|');
-
-            Iterator<IInfo> it2 = value.iterator();
-            Integer integer;
-            while (it2.hasNext()) {
-                IInfo info = it2.next();
-                tempBuf.append(info.getName());
-                tempBuf.append(NAME_CHAR_SEPARATOR);
-
-                String path = info.getPath();
-                if (path != null) {
-                    integer = strToInt.get(path);
-                    if (integer == null) {
-                        integer = strToInt.size() + 1;
-                        strToInt.put(path, integer);
-                    }
-                    tempBuf.append(integer);
-                    tempBuf.append(PATH_CHAR_SEPARATOR);
-                }
+    public static final int BINARY_MAGIC = 0x50444149; //PDAI
 
-                String file = info.getFile();
-                if (file != null) {
-                    integer = strToInt.get(file);
-                    if (integer == null) {
-                        integer = strToInt.size() + 1;
-                        strToInt.put(file, integer);
-                    }
-                    tempBuf.append(integer);
-                    tempBuf.append(FILE_CHAR_SEPARATOR);
-                }
-                tempBuf.append(info.getLine());
-                tempBuf.append(LINE_CHAR_SEPARATOR);
+    public static final byte SECTION_DISKCACHE = 1;
+    public static final byte SECTION_STRINGS = 2;
+    public static final byte SECTION_TREE_TOP_LEVEL = 3;
+    public static final byte SECTION_TREE_INNER = 4;
+    public static final byte SECTION_CLASS_HIERARCHY = 5;
+
+    /**
+     * The binary format is a sequence of sections, where each section is written as:
+     *
+     * byte: section kind
+     * int: payload length in bytes
+     * payload
+     *
+     * The sections are written straight to the file channel: as the length of a section is only known after it's
+     * written, a placeholder is written and back-patched when the section ends.
+     */
+    public static final class SectionsWriter implements Closeable {
 
-                tempBuf.append(info.getCol());
-                tempBuf.append(COL_CHAR_SEPARATOR);
+        private final FileChannel channel;
+        private final DataOutputStream out;
+        private long sectionStart = -1;
 
-                String modName = info.getDeclaringModuleName();
+        public SectionsWriter(FileChannel channel) {
+            this.channel = channel;
+            this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+        }
 
-                integer = strToInt.get(modName);
-                if (integer == null) {
-                    integer = strToInt.size() + 1;
-                    strToInt.put(modName, integer);
-                }
+        /**
+         * @return the stream used to write contents which aren't in a section (i.e.: the header).
+         */
+        public DataOutputStream getOut() {
+            return out;
+        }
 
-                int v = integer << 3;
-                v |= info.getType();
-                tempBuf.append(v); //Write a single for name+type
+        /**
+         * @return the stream where the payload of the section should be written (endSection() must be called
+         * after the payload is written).
+         */
+        public DataOutputStream startSection(byte kind) throws IOException {
+            if (sectionStart != -1) {
+                throw new AssertionError("The previous section was not ended.");
+            }
+            out.writeByte(kind);
+            out.writeInt(0); //placeholder for the length
+            out.flush();
+            sectionStart = channel.position();
+            return out;
+        }
 
-                tempBuf.append('@');
+        public void endSection() throws IOException {
+            out.flush();
+            long len = channel.position() - sectionStart;
+            if (len > Integer.MAX_VALUE) {
+                throw new IOException("Section too big: " + len);
+            }
+            ByteBuffer buf = ByteBuffer.allocate(4);
+            buf.putInt((int) len);
+            buf.flip();
+            long pos = sectionStart - 4;
+            while (buf.hasRemaining()) {
+                pos += channel.write(buf, pos);
             }
-            tempBuf.append('\n');
+            sectionStart = -1;
         }
-        tempBuf.append("-- END TREE\n");
+
+        @Override
+        public void close() throws IOException {
+            out.close(); //also closes the channel
+        }
+    }
+
+    private static int getStrIndex(Map<String, Integer> strToInt, String str) {
+        if (str == null) {
+            return -1;
+        }
+        Integer integer = strToInt.get(str);
+        if (integer == null) {
+            integer = strToInt.size();
+            strToInt.put(str, integer);
+        }
+        return integer;
     }
 
     /**
-     * Dict format is the following:
-     * -- START DICTIONARY
-     * dictionary size
-     * name=integer
+     * Adds all the strings used in the given tree to strToInt (so that the strings table can be written before
+     * the tree itself).
+     */
+    public static void collectStrings(InitialsToInfoIndex.Snapshot tree, Map<String, Integer> strToInt) {
+        String[] keys = tree.keys;
+        for (int i = 0; i < keys.length; i++) {
+            getStrIndex(strToInt, keys[i]);
+            for (IInfo info : tree.values[i]) {
+                getStrIndex(strToInt, info.getName());
+                getStrIndex(strToInt, info.getPath());
+                getStrIndex(strToInt, info.getFile());
+                getStrIndex(strToInt, info.getDeclaringModuleName());
+            }
+        }
+    }
+
+    /**
+     * Tree is written (in binary) as:
+     *
+     * int: tree size
+     * for each entry:
+     *     int: key (index in the strings table)
+     *     int: number of infos
+     *     for each info:
+     *         int: name, int: path (or -1), int: file (or -1), int: line, int: col, int: module << 3 | type
+     *
+     * The strings are gotten from strToInt (see: collectStrings -- any string not there is added to it).
      */
-    public static void dumpDictToBuffer(Map<String, Integer> strToInt, FastStringBuffer buf2) {
-        Iterator<Entry<String, Integer>> it = strToInt.entrySet().iterator();
-
-        buf2.append("-- START DICTIONARY\n");
-        buf2.append(strToInt.size());
-        buf2.append('\n');
-        while (it.hasNext()) {
-            Entry<String, Integer> next = it.next();
-            buf2.append(next.getValue());
-            buf2.append('=');
-            buf2.append(next.getKey());
-            buf2.append('\n');
+    public static void dumpTree(InitialsToInfoIndex.Snapshot tree, DataOutputStream out,
+            Map<String, Integer> strToInt) throws IOException {
+        String[] keys = tree.keys;
+        out.writeInt(keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            IInfo[] value = tree.values[i];
+            out.writeInt(getStrIndex(strToInt, keys[i]));
+            out.writeInt(value.length);
+            for (IInfo info : value) {
+                out.writeInt(getStrIndex(strToInt, info.getName()));
+                out.writeInt(getStrIndex(strToInt, info.getPath()));
+                out.writeInt(getStrIndex(strToInt, info.getFile()));
+                out.writeInt(info.getLine());
+                out.writeInt(info.getCol());
+
+                int v = getStrIndex(strToInt, info.getDeclaringModuleName()) << 3;
+                v |= info.getType();
+                out.writeInt(v); //Write a single for name+type
+            }
+        }
+    }
+
+    /**
+     * Strings table is written as:
+     *
+     * int: number of strings
+     * for each string (in the order of its index): int: length in bytes, utf-8 bytes
+     */
+    public static void dumpStrings(Map<String, Integer> strToInt, DataOutputStream out) throws IOException {
+        String[] strings = new String[strToInt.size()];
+        for (Entry<String, Integer> entry : strToInt.entrySet()) {
+            strings[entry.getValue()] = entry.getKey();
+        }
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    public static String[] loadStrings(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        String[] strings = new String[size];
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < size; i++) {
+            int len = buffer.getInt();
+            if (len > bytes.length) {
+                bytes = new byte[Math.max(len, bytes.length * 2)];
+            }
+            buffer.get(bytes, 0, len);
+            strings[i] = new String(bytes, 0, len, StandardCharsets.UTF_8);
+        }
+        //Share the strings with the ones created when parsing modules.
+        ObjectsInternPool.internAll(strings);
+        return strings;
+    }
+
+    private static String getStr(String[] strings, int i) {
+        return i < 0 ? null : strings[i];
+    }
+
+    public static InitialsToInfoIndex loadTree(ByteBuffer buffer, String[] strings, IPythonNature nature) {
+        final int size = buffer.getInt();
+        final String[] keys = new String[size];
+        final IInfo[][] values = new IInfo[size][];
+        for (int iEntry = 0; iEntry < size; iEntry++) {
+            keys[iEntry] = strings[buffer.getInt()];
+            int bucketSize = buffer.getInt();
+            IInfo[] bucket = new IInfo[bucketSize];
+            int len = 0;
+            for (int j = 0; j < bucketSize; j++) {
+                String infoName = strings[buffer.getInt()];
+                String path = getStr(strings, buffer.getInt());
+                String file = getStr(strings, buffer.getInt());
+                int line = buffer.getInt();
+                int col = buffer.getInt();
+                int dictKey = buffer.getInt();
+                byte type = (byte) (dictKey & 0x07);
+                String moduleDeclared = strings[dictKey >> 3];
+                IInfo info = createInfo(type, infoName, moduleDeclared, path, nature, file, line, col);
+                if (info != null) {
+                    bucket[len] = info;
+                    len++;
+                }
+            }
+            values[iEntry] = len == bucketSize ? bucket : Arrays.copyOf(bucket, len);
+        }
+        return InitialsToInfoIndex.fromSorted(keys, values);
+    }
+
+    private static IInfo createInfo(byte type, String infoName, String moduleDeclared, String path,
+            IPythonNature nature, String file, int line, int col) {
+        switch (type) {
+            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                return new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                return new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                return new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.NAME_WITH_IMPORT_TYPE:
+                return new NameInfo(infoName, moduleDeclared, path, false, nature, file, line, col);
+            case IInfo.MOD_IMPORT_TYPE:
+                return new ModInfo(infoName, false, nature, file, line, col);
+            default:
+                Log.log("Unexpected type: " + type);
+                return null;
+        }
+    }
+
+    private static void buildFromSorted(PyPublicTreeMap<String, Set<IInfo>> tree, final Entry[] entries) {
+        try {
+            tree.buildFromSorted(entries.length, new Iterator() {
+                private int iNext;
+
+                @Override
+                public boolean hasNext() {
+                    return iNext < entries.length;
+                }
+
+                @Override
+                public Object next() {
+                    Object o = entries[iNext];
+                    iNext++;
+                    return o;
+                }
+
+                @Override
+                public void remove() {
+                }
+
+            }, null, null);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
         }
-        buf2.append("-- END DICTIONARY\n");
     }
 
     /**
@@ -163,6 +329,10 @@ public class TreeIO {
         }
     }
 
+    /**
+     * Loads a tree in the old (text) format. Only used to restore info saved by previous versions (which is then
+     * saved again in the binary format).
+     */
     public static PyPublicTreeMap<String, Set<IInfo>> loadTreeFrom(final FastBufferedReader reader,
             final Map<Integer, String> dictionary, FastStringBuffer buf, ObjectsPoolMap objectsPoolMap,
             IPythonNature nature)
@@ -170,163 +340,142 @@ public class TreeIO {
         PyPublicTreeMap<String, Set<IInfo>> tree = new PyPublicTreeMap<String, Set<IInfo>>();
         final int size = StringUtils.parsePositiveInt(reader.readLine());
 
-        try {
-
-            final Entry[] entries = new Entry[size];
-            //each line is something as: cub|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
-            //note: the path (2nd int in record) is optional
-            for (int iEntry = 0; iEntry < size; iEntry++) {
-                buf.clear();
-                FastStringBuffer readLine = reader.readLine();
-                if (readLine == null || readLine.startsWith("-- ")) {
-                    throw new RuntimeException("Unexpected line: " + readLine);
-                }
-                char[] internalCharsArray = readLine.getInternalCharsArray();
-                int length = readLine.length();
-                String key = null;
-                String infoName = null;
-                String path = null;
-                String file = null;
-                int line = 0;
-                int col = 0;
-
-                int i = 0;
-
-                OUT: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            key = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            i++;
-                            break OUT;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
+        final Entry[] entries = new Entry[size];
+        //each line is something as: cub|CubeColourDialog!13&999@CUBIC!263@cube!202&999@
+        //note: the path (2nd int in record) is optional
+        for (int iEntry = 0; iEntry < size; iEntry++) {
+            buf.clear();
+            FastStringBuffer readLine = reader.readLine();
+            if (readLine == null || readLine.startsWith("-- ")) {
+                throw new RuntimeException("Unexpected line: " + readLine);
+            }
+            char[] internalCharsArray = readLine.getInternalCharsArray();
+            int length = readLine.length();
+            String key = null;
+            String infoName = null;
+            String path = null;
+            String file = null;
+            int line = 0;
+            int col = 0;
+
+            int i = 0;
+
+            OUT: for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case '|':
+                        key = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
+                        buf.clear();
+                        i++;
+                        break OUT;
+                    default:
+                        buf.appendResizeOnExc(c);
                 }
+            }
 
-                int hashSize = 0;
-                OUT2: for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case '|':
-                            hashSize = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            i++;
-                            break OUT2;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
-                }
-                HashSet<IInfo> set = new HashSet<IInfo>(hashSize);
-
-                for (; i < length; i++) {
-                    char c = internalCharsArray[i];
-                    switch (c) {
-                        case NAME_CHAR_SEPARATOR:
-                            infoName = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
-                            buf.clear();
-                            break;
-
-                        case PATH_CHAR_SEPARATOR:
-                            path = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case FILE_CHAR_SEPARATOR:
-                            file = dictionary.get(StringUtils.parsePositiveInt(buf));
-                            buf.clear();
-                            break;
-
-                        case LINE_CHAR_SEPARATOR:
-                            line = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case COL_CHAR_SEPARATOR:
-                            col = StringUtils.parsePositiveInt(buf);
-                            buf.clear();
-                            break;
-
-                        case END_IINFO_SEPARATOR:
-                            int dictKey = StringUtils.parsePositiveInt(buf);
-                            byte type = (byte) dictKey;
-                            type &= 0x07; //leave only the 3 least significant bits there (this is the type -- value from 0 - 8).
-
-                            dictKey = (dictKey >> 3); // the entry in the dict doesn't have the least significant bits there.
-                            buf.clear();
-                            String moduleDeclared = dictionary.get(dictKey);
-                            if (moduleDeclared == null) {
-                                throw new AssertionError("Unable to find key: " + dictKey);
-                            }
-                            if (infoName == null) {
-                                throw new AssertionError("Info name may not be null. Line: " + line);
-                            }
-                            switch (type) {
-                                case IInfo.CLASS_WITH_IMPORT_TYPE:
-                                    set.add(new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.METHOD_WITH_IMPORT_TYPE:
-                                    set.add(new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
-                                    set.add(new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.NAME_WITH_IMPORT_TYPE:
-                                    set.add(new NameInfo(infoName, moduleDeclared, path, false, nature, file, line,
-                                            col));
-                                    break;
-                                case IInfo.MOD_IMPORT_TYPE:
-                                    set.add(new ModInfo(infoName, false, nature, file, line, col));
-                                    break;
-                                default:
-                                    Log.log("Unexpected type: " + type);
-                            }
-                            file = null;
-                            infoName = null;
-                            path = null;
-                            file = null;
-                            line = 0;
-                            col = 0;
-
-                            break;
-                        default:
-                            buf.appendResizeOnExc(c);
-                    }
+            int hashSize = 0;
+            OUT2: for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case '|':
+                        hashSize = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        i++;
+                        break OUT2;
+                    default:
+                        buf.appendResizeOnExc(c);
                 }
-
-                entries[iEntry] = new MapEntry(key, set);
             }
+            HashSet<IInfo> set = new HashSet<IInfo>(hashSize);
 
-            tree.buildFromSorted(size, new Iterator() {
-                private int iNext;
+            for (; i < length; i++) {
+                char c = internalCharsArray[i];
+                switch (c) {
+                    case NAME_CHAR_SEPARATOR:
+                        infoName = ObjectsInternPool.internLocal(objectsPoolMap, buf.toString());
+                        buf.clear();
+                        break;
 
-                @Override
-                public boolean hasNext() {
-                    return iNext > size;
-                }
+                    case PATH_CHAR_SEPARATOR:
+                        path = dictionary.get(StringUtils.parsePositiveInt(buf));
+                        buf.clear();
+                        break;
 
-                @Override
-                public Object next() {
-                    Object o = entries[iNext];
-                    iNext++;
-                    return o;
-                }
+                    case FILE_CHAR_SEPARATOR:
+                        file = dictionary.get(StringUtils.parsePositiveInt(buf));
+                        buf.clear();
+                        break;
 
-                @Override
-                public void remove() {
+                    case LINE_CHAR_SEPARATOR:
+                        line = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        break;
+
+                    case COL_CHAR_SEPARATOR:
+                        col = StringUtils.parsePositiveInt(buf);
+                        buf.clear();
+                        break;
+
+                    case END_IINFO_SEPARATOR:
+                        int dictKey = StringUtils.parsePositiveInt(buf);
+                        byte type = (byte) dictKey;
+                        type &= 0x07; //leave only the 3 least significant bits there (this is the type -- value from 0 - 8).
+
+                        dictKey = (dictKey >> 3); // the entry in the dict doesn't have the least significant bits there.
+                        buf.clear();
+                        String moduleDeclared = dictionary.get(dictKey);
+                        if (moduleDeclared == null) {
+                            throw new AssertionError("Unable to find key: " + dictKey);
+                        }
+                        if (infoName == null) {
+                            throw new AssertionError("Info name may not be null. Line: " + line);
+                        }
+                        switch (type) {
+                            case IInfo.CLASS_WITH_IMPORT_TYPE:
+                                set.add(new ClassInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.METHOD_WITH_IMPORT_TYPE:
+                                set.add(new FuncInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.ATTRIBUTE_WITH_IMPORT_TYPE:
+                                set.add(new AttrInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.NAME_WITH_IMPORT_TYPE:
+                                set.add(new NameInfo(infoName, moduleDeclared, path, false, nature, file, line,
+                                        col));
+                                break;
+                            case IInfo.MOD_IMPORT_TYPE:
+                                set.add(new ModInfo(infoName, false, nature, file, line, col));
+                                break;
+                            default:
+                                Log.log("Unexpected type: " + type);
+                        }
+                        file = null;
+                        infoName = null;
+                        path = null;
+                        file = null;
+                        line = 0;
+                        col = 0;
+
+                        break;
+                    default:
+                        buf.appendResizeOnExc(c);
                 }
+            }
 
-            }, null, null);
-        } catch (ClassNotFoundException e) {
-            throw new RuntimeException(e);
+            entries[iEntry] = new MapEntry(key, set);
         }
+
+        buildFromSorted(tree, entries);
         return tree;
     }
 
+    /**
+     * Loads the dictionary in the old (text) format (see: loadTreeFrom).
+     */
     public static Map<Integer, String> loadDictFrom(FastBufferedReader reader, FastStringBuffer buf,
             ObjectsPoolMap objectsPoolMap) throws IOException {
         int size = StringUtils.parsePositiveInt(reader.readLine());
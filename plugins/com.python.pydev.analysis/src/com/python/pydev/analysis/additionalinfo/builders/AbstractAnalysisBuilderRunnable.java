@@ -6,6 +6,8 @@
  */
 package com.python.pydev.analysis.additionalinfo.builders;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
@@ -52,6 +54,16 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
 
     protected IPythonNature nature;
     protected volatile boolean runFinished = false;
+
+    private static final int STATE_NOT_STARTED = 0;
+    private static final int STATE_RUNNING = 1;
+    private static final int STATE_FINISHED = 2;
+
+    /**
+     * Used so that a runnable which is stopped before starting is dropped right away (so that it doesn't keep
+     * a slot in the scheduler nor makes a newer runnable wait for it).
+     */
+    private final AtomicInteger state = new AtomicInteger(STATE_NOT_STARTED);
     private IAnalysisBuilderRunnable oldAnalysisBuilderThread;
     private long documentTime;
     private long resourceModificationStamp;
@@ -94,7 +106,19 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
 
     @Override
     public synchronized boolean getRunFinished() {
-        return runFinished;
+        if (!runFinished) {
+            return false;
+        }
+        //if it was dropped before starting, the previous runnable may still be running (so, it's only
+        //really finished when that one is finished).
+        IAnalysisBuilderRunnable old = this.oldAnalysisBuilderThread;
+        if (old != null) {
+            if (!old.getRunFinished()) {
+                return false;
+            }
+            this.oldAnalysisBuilderThread = null;
+        }
+        return true;
     }
 
     @Override
@@ -130,6 +154,10 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
      */
     @Override
     public void run() {
+        if (!state.compareAndSet(STATE_NOT_STARTED, STATE_RUNNING)) {
+            //already dropped (stopped before starting).
+            return;
+        }
         try {
             try {
                 if (oldAnalysisBuilderThread != null) {
@@ -177,6 +205,7 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
             } catch (Throwable e) {
                 Log.log(e);
             } finally {
+                state.set(STATE_FINISHED);
                 runFinished = true;
             }
 
@@ -200,6 +229,21 @@ public abstract class AbstractAnalysisBuilderRunnable implements IAnalysisBuilde
     @Override
     public synchronized void stopAnalysis() {
         this.internalCancelMonitor.setCanceled(true);
+        if (state.compareAndSet(STATE_NOT_STARTED, STATE_FINISHED)) {
+            //it's still in the queue: drop it right away (note that oldAnalysisBuilderThread is kept so that
+            //getRunFinished() only returns true when the previous one is also finished).
+            logOperationCancelled();
+            try {
+                AnalysisBuilderRunnableFactory.removeFromThreads(key, this);
+            } catch (Throwable e) {
+                Log.log(e);
+            } finally {
+                runFinished = true;
+            }
+            IAnalysisBuilderRunnable old = this.oldAnalysisBuilderThread;
+            dispose();
+            this.oldAnalysisBuilderThread = old;
+        }
     }
 
     private final static OperationCanceledException operationCanceledException = new OperationCanceledException();
@@ -15,6 +15,7 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.concurrency.PriorityLanesExecutor;
 import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.parser.preferences.PyDevBuilderPreferences;
 import org.python.pydev.shared_core.cache.LRUCache;
@@ -41,6 +42,38 @@ public class AnalysisBuilderRunnableFactory {
 
     private static final Object lock = new Object();
 
+    /**
+     * Lanes used to schedule the analysis (the lower the lane, the higher the priority).
+     */
+    public static final int LANE_EDITOR = 0;
+    public static final int LANE_BUILD = 1;
+    public static final int LANE_FULL_BUILD = 2;
+
+    private static PriorityLanesExecutor executor;
+
+    /**
+     * @return the executor where the analysis should be scheduled.
+     */
+    public static synchronized PriorityLanesExecutor getExecutor() {
+        if (executor == null) {
+            int parallelism = Integer.getInteger("pydev.analysis.threads",
+                    Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+            executor = new PriorityLanesExecutor("PyDev: Code Analysis", parallelism, 3);
+        }
+        return executor;
+    }
+
+    /**
+     * @return the lane where the given runnable should be scheduled: requests from the editor (i.e.: the user is
+     * typing in it) come first, then requests from incremental builds and then requests from a full build.
+     */
+    public static int getLane(IAnalysisBuilderRunnable runnable, boolean isFullBuild) {
+        if (runnable.getAnalysisCause() == IAnalysisBuilderRunnable.ANALYSIS_CAUSE_PARSER) {
+            return LANE_EDITOR;
+        }
+        return isFullBuild ? LANE_FULL_BUILD : LANE_BUILD;
+    }
+
     /**
      * @return Returns the availableThreads.
      */
@@ -24,7 +24,7 @@ import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.IModule;
 import org.python.pydev.core.IPythonNature;
 import org.python.pydev.core.MisconfigurationException;
-import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
+import org.python.pydev.core.concurrency.PriorityLanesExecutor;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.parser.fastparser.FastDefinitionsParser;
@@ -62,7 +62,7 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
         //Put things from the memo to final variables as we might need them later on and we cannot get them from
         //the memo later.
         final String moduleName;
-        final SourceModule[] module = new SourceModule[] { null };
+        final SourceModule[] module = new SourceModule[] { getModuleFromCache(resource) };
         final IDocument doc;
         doc = document.call();
         if (doc == null) {
@@ -89,25 +89,15 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
 
                 if (arg == IAnalysisBuilderRunnable.FULL_MODULE) {
 
-                    if (module[0] != null) {
-                        return module[0];
-                    } else {
-                        try {
-                            module[0] = getSourceModule(resource, doc, nature);
-                        } catch (MisconfigurationException e1) {
-                            throw new RuntimeException(e1);
-                        }
-                        if (module[0] != null) {
-                            return module[0];
-                        }
-
+                    //Note: the module from the memo (if any) was already gotten when the visit was done.
+                    if (module[0] == null) {
                         try {
                             module[0] = createSoureModule(resource, doc, moduleName);
                         } catch (MisconfigurationException e) {
                             throw new RuntimeException(e);
                         }
-                        return module[0];
                     }
+                    return module[0];
 
                 } else if (arg == IAnalysisBuilderRunnable.DEFINITIONS_MODULE) {
                     if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
@@ -264,11 +254,42 @@ public class AnalysisBuilderVisitor extends PyDevBuilderVisitor {
      */
     private void execRunnable(final String moduleName, final IAnalysisBuilderRunnable runnable,
             boolean forceAnalyzeInThisThread) {
-        if (isFullBuild() || forceAnalyzeInThisThread) {
+        if (forceAnalyzeInThisThread) {
             runnable.run();
+            return;
+        }
+        boolean isFullBuild = isFullBuild();
+        int lane = AnalysisBuilderRunnableFactory.getLane(runnable, isFullBuild);
+        if (isFullBuild) {
+            //on a full build we block if too many modules are pending (and wait for all in visitingEnded).
+            PriorityLanesExecutor.Group group = fullBuildGroup;
+            if (group == null) {
+                PriorityLanesExecutor executor = AnalysisBuilderRunnableFactory.getExecutor();
+                group = fullBuildGroup = executor.createGroup(executor.getParallelism() * 4);
+            }
+            group.schedule(runnable, lane);
         } else {
-            RunnableAsJobsPoolThread.getSingleton().scheduleToRun(runnable, "PyDev: Code Analysis:" + moduleName);
+            AnalysisBuilderRunnableFactory.getExecutor().schedule(runnable, lane);
+        }
+    }
+
+    /**
+     * Group with the runnables scheduled in a full build (created on demand).
+     */
+    private PriorityLanesExecutor.Group fullBuildGroup;
+
+    @Override
+    public void visitingEnded(IProgressMonitor monitor) {
+        PriorityLanesExecutor.Group group = fullBuildGroup;
+        if (group != null) {
+            fullBuildGroup = null;
+            group.waitToFinish();
+            if (DebugSettings.DEBUG_ANALYSIS_REQUESTS) {
+                org.python.pydev.shared_core.log.ToLogFile.toLogFile(this,
+                        "Full build analysis finished: " + AnalysisBuilderRunnableFactory.getExecutor());
+            }
         }
+        super.visitingEnded(monitor);
     }
 
     @Override
@@ -10,6 +10,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.io.ThreadStreamReader;
+import org.python.pydev.shared_core.structure.Tuple;
 
 public final class ExternalAnalizerProcessWatchDoc extends Thread {
     private final IExternalCodeAnalysisStream out;
@@ -19,6 +20,16 @@ public final class ExternalAnalizerProcessWatchDoc extends Thread {
     private final boolean useProjectLock;
     private final IProject project;
 
+    /**
+     * If set, it's used to run the analysis in a linter daemon (if it fails, the process is launched).
+     */
+    private ICallback0<Tuple<String, String>> runInDaemonCallback;
+
+    /**
+     * If set, it's used to run the analysis along with other files (if it fails, the process is launched).
+     */
+    private ICallback0<Tuple<String, String>> runInBatchCallback;
+
     public ExternalAnalizerProcessWatchDoc(IExternalCodeAnalysisStream out, IProgressMonitor monitor,
             IExternalAnalyzer externalAnalyzer, ICallback0<Process> launchProcessCallback, IProject project,
             boolean useProjectLock) {
@@ -34,9 +45,26 @@ public final class ExternalAnalizerProcessWatchDoc extends Thread {
         }
     }
 
+    /**
+     * @param runInDaemonCallback callback which returns the output (stdout, stderr) of running the analysis in a
+     * linter daemon (or null if the monitor was cancelled).
+     */
+    public void setRunInDaemonCallback(ICallback0<Tuple<String, String>> runInDaemonCallback) {
+        this.runInDaemonCallback = runInDaemonCallback;
+    }
+
+    /**
+     * @param runInBatchCallback callback which returns the output (stdout, stderr) of running the analysis in a
+     * batch with other files -- see: ExternalAnalysisBatcher (or null if the monitor was cancelled). Note that
+     * the project lock isn't held while it's called (the batch gets the lock when it's actually run).
+     */
+    public void setRunInBatchCallback(ICallback0<Tuple<String, String>> runInBatchCallback) {
+        this.runInBatchCallback = runInBatchCallback;
+    }
+
     private static Map<IProject, Semaphore> projectToSemaphore = new HashMap<>();
 
-    private static Semaphore getProjectSemaphore(final IProject project) {
+    /*default*/ static Semaphore getProjectSemaphore(final IProject project) {
         synchronized (projectToSemaphore) {
             Semaphore semaphore = projectToSemaphore.get(project);
             if (semaphore != null) {
@@ -51,6 +79,23 @@ public final class ExternalAnalizerProcessWatchDoc extends Thread {
 
     @Override
     public void run() {
+        if (runInBatchCallback != null) {
+            Tuple<String, String> output = null;
+            try {
+                output = runInBatchCallback.call();
+            } catch (Exception e) {
+                Log.log("Error running analysis in batch (a new process will be used).", e);
+            }
+            if (output != null) {
+                if (!monitor.isCanceled()) {
+                    this.externalAnalyzer.afterRunProcess(output.o1, output.o2, out);
+                }
+                return;
+            }
+            if (monitor.isCanceled()) {
+                return;
+            }
+        }
         Semaphore semaphore = null;
         if (useProjectLock) {
             semaphore = getProjectSemaphore(project);
@@ -64,6 +109,23 @@ public final class ExternalAnalizerProcessWatchDoc extends Thread {
         ThreadStreamReader std;
         ThreadStreamReader err;
         try {
+            if (runInDaemonCallback != null) {
+                Tuple<String, String> output = null;
+                try {
+                    output = runInDaemonCallback.call();
+                } catch (Exception e) {
+                    Log.log("Error running analysis in linter daemon (a new process will be used).", e);
+                }
+                if (output != null) {
+                    if (!monitor.isCanceled()) {
+                        this.externalAnalyzer.afterRunProcess(output.o1, output.o2, out);
+                    }
+                    return;
+                }
+                if (monitor.isCanceled()) {
+                    return;
+                }
+            }
             Process process;
             try {
                 process = launchProcessCallback.call();
@@ -0,0 +1,324 @@
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.ThreadStreamReader;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Runs the analysis of many files in a single invocation of an external analyzer (i.e.: 'flake8 f1 f2 ... fN')
+ * and demultiplexes its output back to each file.
+ *
+ * Analyses which may be done in the same command line (same tool, working dir and arguments) use the same batch key.
+ * An analysis requested while another one with the same key is running is queued and all the queued analyses are
+ * then run together (in chunks of at most CHUNK_SIZE files). So, a single analysis (i.e.: when editing) still runs
+ * right away while the analyses of a full build end up being done in chunks.
+ */
+public final class ExternalAnalysisBatcher {
+
+    /**
+     * May be disabled with -Dpydev.linter.batch=false (in which case each file is analyzed in its own run).
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.linter.batch"));
+
+    /**
+     * The maximum number of files analyzed in a single run.
+     *
+     * May be customized with -Dpydev.linter.batch.size=N
+     */
+    /*default*/ static int CHUNK_SIZE = Math.max(1, Integer.getInteger("pydev.linter.batch.size", 50));
+
+    public interface IBatchRunner {
+
+        /**
+         * Runs the analyzer in the given targets.
+         *
+         * @return the stdout and stderr of the run or null if the monitor was cancelled.
+         */
+        Tuple<String, String> run(List<String> targets, IProgressMonitor monitor) throws Exception;
+    }
+
+    private static final class Request {
+
+        private final String target;
+        private final IProgressMonitor monitor;
+        private Tuple<String, String> output;
+        private Exception error;
+        private boolean done;
+
+        private Request(String target, IProgressMonitor monitor) {
+            this.target = target;
+            this.monitor = monitor;
+        }
+    }
+
+    private static final class Batch {
+
+        private final Deque<Request> pending = new ArrayDeque<>();
+        private boolean running;
+    }
+
+    private static final Map<String, Batch> batches = new HashMap<>();
+
+    private ExternalAnalysisBatcher() {
+    }
+
+    /**
+     * Runs the analysis of the given target along with other targets with the same batch key.
+     *
+     * @param project if given, the run of the batch holds the project lock of the ExternalAnalizerProcessWatchDoc.
+     *
+     * @return the stdout (with only the lines related to the target) and stderr of the run or null if the monitor
+     * was cancelled.
+     *
+     * @throws Exception if the run of the batch failed (in which case the caller may run the analysis in a new
+     * process).
+     */
+    public static Tuple<String, String> run(String batchKey, IProject project, File workingDir, String target,
+            IBatchRunner runner, IProgressMonitor monitor) throws Exception {
+        Request request = new Request(target, monitor);
+        Batch batch;
+        synchronized (batches) {
+            batch = batches.get(batchKey);
+            if (batch == null) {
+                batch = new Batch();
+                batches.put(batchKey, batch);
+            }
+            batch.pending.addLast(request);
+        }
+        while (true) {
+            List<Request> chunk;
+            synchronized (batches) {
+                // While some other thread is running a batch, wait for it to finish (our request may be in that
+                // batch or we may have to run the next one).
+                while (batch.running && !request.done) {
+                    if (monitor.isCanceled() && batch.pending.remove(request)) {
+                        removeIfUnused(batchKey, batch);
+                        return null;
+                    }
+                    batches.wait(50);
+                }
+                if (request.done) {
+                    return getResult(request);
+                }
+                batch.running = true;
+                chunk = takeChunk(batch);
+            }
+            try {
+                runChunk(project, workingDir, runner, chunk);
+            } finally {
+                synchronized (batches) {
+                    for (Request r : chunk) {
+                        r.done = true;
+                    }
+                    batch.running = false;
+                    removeIfUnused(batchKey, batch);
+                    batches.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the next requests to be run (in the order requested).
+     */
+    private static List<Request> takeChunk(Batch batch) {
+        List<Request> chunk = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (Iterator<Request> it = batch.pending.iterator(); it.hasNext() && chunk.size() < CHUNK_SIZE;) {
+            Request r = it.next();
+            // Files with the same name are left for another run (mypy fails a run when 2 files map to the same
+            // module name).
+            if (names.add(new File(r.target).getName())) {
+                it.remove();
+                chunk.add(r);
+            }
+        }
+        return chunk;
+    }
+
+    /**
+     * Runs the analysis of the given target alone (the output is the same as the one from run()).
+     */
+    public static Tuple<String, String> runSingle(IProject project, File workingDir, String target,
+            IBatchRunner runner, IProgressMonitor monitor) throws Exception {
+        Request request = new Request(target, monitor);
+        runChunk(project, workingDir, runner, Arrays.asList(request));
+        return getResult(request);
+    }
+
+    private static Tuple<String, String> getResult(Request request) throws Exception {
+        if (request.error != null) {
+            throw request.error;
+        }
+        return request.output;
+    }
+
+    private static void removeIfUnused(String batchKey, Batch batch) {
+        if (!batch.running && batch.pending.isEmpty()) {
+            batches.remove(batchKey);
+        }
+    }
+
+    private static void runChunk(IProject project, File workingDir, IBatchRunner runner, final List<Request> chunk) {
+        List<String> targets = new ArrayList<>(chunk.size());
+        for (Request r : chunk) {
+            targets.add(r.target);
+        }
+        // The run is only cancelled if all the requests in it are cancelled.
+        IProgressMonitor monitor = new NullProgressMonitor() {
+            @Override
+            public boolean isCanceled() {
+                for (Request r : chunk) {
+                    if (!r.monitor.isCanceled()) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+
+        Semaphore semaphore = null;
+        try {
+            if (project != null) {
+                semaphore = ExternalAnalizerProcessWatchDoc.getProjectSemaphore(project);
+                semaphore.acquire();
+            }
+            Tuple<String, String> output = runner.run(targets, monitor);
+            if (output == null) {
+                return; // Cancelled (output remains null).
+            }
+            List<String> targetsOutput = demultiplex(output.o1, workingDir, targets);
+            for (int i = 0; i < chunk.size(); i++) {
+                chunk.get(i).output = new Tuple<String, String>(targetsOutput.get(i), output.o2);
+            }
+        } catch (Exception e) {
+            for (Request r : chunk) {
+                r.error = e;
+            }
+        } finally {
+            if (semaphore != null) {
+                semaphore.release();
+            }
+        }
+    }
+
+    /**
+     * Matches the file in a line such as: 'path/to/file.py:10:5: E100 message' (note that the path may have
+     * a ':' in windows: 'c:\path\file.py:10: message').
+     */
+    private static final Pattern FILE_LINE_PATTERN = Pattern.compile("\\A\\s*(.+?)(:\\s*\\d+\\s*:.*)\\z");
+
+    /**
+     * @return a list with the output for each target (in the same order as the targets). Each line is changed to
+     * start with the target as it was passed to the analyzer (lines which aren't related to any target are
+     * removed).
+     */
+    /*default*/ static List<String> demultiplex(String output, File workingDir, List<String> targets) {
+        Map<String, Integer> normalizedToIndex = new HashMap<>();
+        List<FastStringBuffer> bufs = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            normalizedToIndex.put(normalize(targets.get(i)), i);
+            bufs.add(new FastStringBuffer());
+        }
+        String normalizedWorkingDir = workingDir != null ? normalize(workingDir.toString()) : null;
+
+        for (String line : StringUtils.iterLines(output)) {
+            Matcher m = FILE_LINE_PATTERN.matcher(StringUtils.rightTrimNewLineChars(line));
+            if (!m.matches()) {
+                continue;
+            }
+            String file = normalize(m.group(1));
+            if (file.startsWith("./")) {
+                file = file.substring(2);
+            }
+            Integer index = normalizedToIndex.get(file);
+            if (index == null && normalizedWorkingDir != null) {
+                // The analyzer may print the path relative to the working dir.
+                index = normalizedToIndex.get(normalizedWorkingDir + '/' + file);
+            }
+            if (index != null) {
+                bufs.get(index).append(targets.get(index)).append(m.group(2)).append('\n');
+            }
+        }
+        List<String> ret = new ArrayList<>(targets.size());
+        for (FastStringBuffer buf : bufs) {
+            ret.add(buf.toString());
+        }
+        return ret;
+    }
+
+    private static String normalize(String path) {
+        FastStringBuffer buf = new FastStringBuffer(path.trim(), 0).replaceAll('\\', '/');
+        while (buf.length() > 1 && buf.lastChar() == '/') {
+            buf.deleteLast();
+        }
+        return buf.toString().toLowerCase(); // Make all comparisons lower-case.
+    }
+
+    /**
+     * Creates a runner which runs the analysis in a linter daemon (if given) or in a new process (if the daemon is
+     * not available or if it fails).
+     *
+     * @param launchProcess callback which launches the analyzer process with the given targets.
+     * @param runInDaemon callback which returns the output (stdout, stderr) of running the analysis with the given
+     * targets in a linter daemon (or null if the monitor was cancelled). May be null.
+     */
+    public static IBatchRunner createRunner(ICallback<Process, List<String>> launchProcess,
+            ICallback<Tuple<String, String>, List<String>> runInDaemon) {
+        return (targets, monitor) -> {
+            if (runInDaemon != null) {
+                try {
+                    return runInDaemon.call(targets);
+                } catch (Exception e) {
+                    Log.log("Error running analysis in linter daemon (a new process will be used).", e);
+                }
+                if (monitor.isCanceled()) {
+                    return null;
+                }
+            }
+            Process process = launchProcess.call(targets);
+            //No need to synchronize as we'll wait for the process to finish before getting the contents.
+            ThreadStreamReader std = new ThreadStreamReader(process.getInputStream(), false, null);
+            ThreadStreamReader err = new ThreadStreamReader(process.getErrorStream(), false, null);
+            std.start();
+            err.start();
+            while (process.isAlive()) {
+                if (monitor.isCanceled()) {
+                    std.stopGettingOutput();
+                    err.stopGettingOutput();
+                    process.destroy();
+                    return null;
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    // Just proceed to another check.
+                }
+            }
+            std.join();
+            err.join();
+            return new Tuple<String, String>(std.getAndClearContents(), err.getAndClearContents());
+        };
+    }
+}
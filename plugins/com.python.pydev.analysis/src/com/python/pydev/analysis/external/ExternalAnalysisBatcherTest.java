@@ -0,0 +1,176 @@
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.IBatchRunner;
+
+import junit.framework.TestCase;
+
+public class ExternalAnalysisBatcherTest extends TestCase {
+
+    private int initialChunkSize;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        initialChunkSize = ExternalAnalysisBatcher.CHUNK_SIZE;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ExternalAnalysisBatcher.CHUNK_SIZE = initialChunkSize;
+        super.tearDown();
+    }
+
+    public void testDemultiplex() throws Exception {
+        File workingDir = new File("/project");
+        List<String> targets = Arrays.asList("/project/a.py", "/project/pack/b.py", "/other/c.py");
+        String output = "" +
+                "/project/a.py:1:1: E100 error a\n" +
+                "pack\\b.py:2:3: error: error b\n" +
+                "./a.py:3:1: W200 warning a\n" +
+                "/other/c.py:10:1: E300 error c\n" +
+                "/project/not_there.py:1:1: E100 other\n" +
+                "Found 4 errors in 3 files\n";
+
+        List<String> result = ExternalAnalysisBatcher.demultiplex(output, workingDir, targets);
+        assertEquals(Arrays.asList(
+                "/project/a.py:1:1: E100 error a\n/project/a.py:3:1: W200 warning a\n",
+                "/project/pack/b.py:2:3: error: error b\n",
+                "/other/c.py:10:1: E300 error c\n"), result);
+    }
+
+    public void testDemultiplexWindowsPaths() throws Exception {
+        List<String> targets = Arrays.asList("C:\\project\\a.py");
+        String output = "c:\\project\\a.py:1:1: E100 error a\n";
+
+        List<String> result = ExternalAnalysisBatcher.demultiplex(output, new File("C:\\project"), targets);
+        assertEquals(Arrays.asList("C:\\project\\a.py:1:1: E100 error a\n"), result);
+    }
+
+    public void testQueuedRequestsRunTogether() throws Exception {
+        final CountDownLatch firstRunStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+        final List<List<String>> runs = Collections.synchronizedList(new ArrayList<List<String>>());
+
+        final IBatchRunner runner = new IBatchRunner() {
+
+            @Override
+            public Tuple<String, String> run(List<String> targets, org.eclipse.core.runtime.IProgressMonitor monitor)
+                    throws Exception {
+                runs.add(new ArrayList<>(targets));
+                if (runs.size() == 1) {
+                    firstRunStarted.countDown();
+                    releaseFirstRun.await(10, TimeUnit.SECONDS);
+                }
+                StringBuilder buf = new StringBuilder();
+                for (String target : targets) {
+                    buf.append(target).append(":1:1: E100 error\n");
+                }
+                return new Tuple<String, String>(buf.toString(), "");
+            }
+        };
+
+        final List<Tuple<String, String>> results = Collections
+                .synchronizedList(new ArrayList<Tuple<String, String>>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            final String target = "/project/f" + i + ".py";
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        results.add(ExternalAnalysisBatcher.run("key", null, new File("/project"), target, runner,
+                                new NullProgressMonitor()));
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+            if (i == 0) {
+                assertTrue(firstRunStarted.await(10, TimeUnit.SECONDS));
+            }
+        }
+        // Wait for the other requests to be queued while the first run is blocked.
+        Thread.sleep(300);
+        releaseFirstRun.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(2, runs.size());
+        assertEquals(Arrays.asList("/project/f0.py"), runs.get(0));
+        assertEquals(4, runs.get(1).size());
+        assertEquals(5, results.size());
+        for (Tuple<String, String> result : results) {
+            assertTrue(result.o1, result.o1.matches("/project/f\\d\\.py:1:1: E100 error\n"));
+        }
+    }
+
+    public void testChunksAndSameNames() throws Exception {
+        ExternalAnalysisBatcher.CHUNK_SIZE = 2;
+        final CountDownLatch releaseFirstRun = new CountDownLatch(1);
+        final List<List<String>> runs = Collections.synchronizedList(new ArrayList<List<String>>());
+        final IBatchRunner runner = (targets, monitor) -> {
+            runs.add(new ArrayList<>(targets));
+            if (runs.size() == 1) {
+                releaseFirstRun.await(10, TimeUnit.SECONDS);
+            }
+            return new Tuple<String, String>("", "");
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        String[] targets = new String[] { "/project/first.py", "/project/a/__init__.py", "/project/b/__init__.py",
+                "/project/c.py" };
+        for (final String target : targets) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        ExternalAnalysisBatcher.run("key2", null, new File("/project"), target, runner,
+                                new NullProgressMonitor());
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+            Thread.sleep(100); // Keep the order of the requests.
+        }
+        releaseFirstRun.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        assertEquals(3, runs.size());
+        assertEquals(Arrays.asList("/project/first.py"), runs.get(0));
+        // The 2 __init__.py are not run together.
+        assertEquals(Arrays.asList("/project/a/__init__.py", "/project/c.py"), runs.get(1));
+        assertEquals(Arrays.asList("/project/b/__init__.py"), runs.get(2));
+    }
+
+    public void testErrorInRun() throws Exception {
+        IBatchRunner runner = (targets, monitor) -> {
+            throw new RuntimeException("Failed");
+        };
+        try {
+            ExternalAnalysisBatcher.run("key3", null, new File("/project"), "/project/a.py", runner,
+                    new NullProgressMonitor());
+            fail("Expected error.");
+        } catch (RuntimeException e) {
+            assertEquals("Failed", e.getMessage());
+        }
+    }
+}
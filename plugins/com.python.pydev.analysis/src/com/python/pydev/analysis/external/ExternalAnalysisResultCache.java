@@ -0,0 +1,331 @@
+package com.python.pydev.analysis.external;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Keeps the output of external analyzers for each file on disk (keyed by the tool, tool version, configuration,
+ * path of the file relative to the working dir and contents of the file), so that files which didn't change aren't
+ * analyzed again (even after a restart or a branch switch).
+ *
+ * Only for analyzers whose output for a file depends just on the file contents and path (i.e.: flake8, where the
+ * path is used in per-file-ignores, exclude and filename, but not mypy or pylint, which also check the modules
+ * imported).
+ *
+ * The output is saved without the path of the file (which is added back when it's gotten). As the key is based on
+ * the contents, entries never need to be invalidated (an entry which is no longer used is removed when the cache
+ * has more than MAX_FILES entries).
+ *
+ * May be disabled with -Dpydev.linter.cache=false.
+ */
+public final class ExternalAnalysisResultCache {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.linter.cache"));
+
+    /**
+     * When there are more entries than this, the least recently used entries are removed.
+     *
+     * May be customized with -Dpydev.linter.cache.max.files=XXX
+     */
+    private static final int MAX_FILES = Integer.getInteger("pydev.linter.cache.max.files", 50000);
+
+    /**
+     * The version of a tool is checked again after this time (so that an update of the tool is noticed).
+     */
+    /*default*/ static long VERSION_CHECK_INTERVAL_MILLIS = 5 * 60 * 1000;
+
+    private static final int MAGIC = 0x50594c43;
+
+    private static final String EXTENSION = ".out";
+
+    /**
+     * If null, the cache dir is created in the workspace metadata.
+     */
+    private static volatile File cacheDir;
+
+    private static final AtomicBoolean trimScheduled = new AtomicBoolean();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Tool id -> (version, time when it was gotten).
+     */
+    private static final Map<String, Tuple<String, Long>> toolToVersion = new HashMap<>();
+
+    private ExternalAnalysisResultCache() {
+    }
+
+    /**
+     * Just for tests.
+     *
+     * @return the previous cache dir.
+     */
+    /*default*/ static File setCacheDir(File dir) {
+        File previous = cacheDir;
+        cacheDir = dir;
+        return previous;
+    }
+
+    /**
+     * @return the directory with the cache or null if it's not available.
+     */
+    private static File getCacheDir() {
+        File dir = cacheDir;
+        if (dir == null) {
+            if (CorePlugin.pydevStatelocation == null) {
+                return null;
+            }
+            dir = CorePlugin.getWorkspaceMetadataFile("external_analysis_cache");
+            cacheDir = dir;
+        }
+        if (trimScheduled.compareAndSet(false, true)) {
+            final File d = dir;
+            Thread thread = new Thread("PyDev: trim external analysis cache") {
+                @Override
+                public void run() {
+                    FileUtils.trimLeastRecentlyModified(d, MAX_FILES);
+                }
+            };
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return dir;
+    }
+
+    /**
+     * @param toolId the tool and how it's run (i.e.: flake8 + interpreter or flake8 executable).
+     * @param getVersion callback which runs the tool to get its version (may return null if it's not available).
+     *
+     * @return the version of the tool (the version is kept for VERSION_CHECK_INTERVAL_MILLIS) or null if it's not
+     * available (in which case the cache shouldn't be used).
+     */
+    public static String getToolVersion(String toolId, ICallback0<String> getVersion) {
+        long now = System.currentTimeMillis();
+        synchronized (toolToVersion) {
+            Tuple<String, Long> versionAndTime = toolToVersion.get(toolId);
+            if (versionAndTime != null && now - versionAndTime.o2 < VERSION_CHECK_INTERVAL_MILLIS) {
+                return versionAndTime.o1;
+            }
+        }
+        String version = getVersion.call();
+        if (version != null) {
+            version = version.trim();
+            if (version.isEmpty()) {
+                version = null;
+            }
+        }
+        synchronized (toolToVersion) {
+            toolToVersion.put(toolId, new Tuple<String, Long>(version, now));
+        }
+        return version;
+    }
+
+    /**
+     * @return a hash of the arguments and the contents of the configuration files used in the analysis.
+     */
+    public static String createConfigHash(File workingDir, List<String> configArgs) {
+        MessageDigest digest = createDigest();
+        for (String arg : configArgs) {
+            digest.update(arg.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        for (File file : ExternalAnalyzerDaemon.getConfigFiles(workingDir, configArgs)) {
+            byte[] bytes;
+            try {
+                bytes = Files.readAllBytes(file.toPath());
+            } catch (IOException e) {
+                continue; // i.e.: it doesn't exist.
+            }
+            digest.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(bytes);
+            digest.update((byte) 0);
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @param target the file analyzed (its path relative to the working dir is part of the key, as the configuration
+     * may have options which depend on it).
+     *
+     * @return the key for the given file contents to be used in get() and put().
+     */
+    public static String createKey(String tool, String toolVersion, String configHash, File workingDir,
+            String target, String contents) {
+        MessageDigest digest = createDigest();
+        digest.update(new FastStringBuffer().append(tool).append('|').append(toolVersion).append('|')
+                .append(configHash).append('|').append(getRelativePath(workingDir, target)).append('|').toString()
+                .getBytes(StandardCharsets.UTF_8));
+        digest.update(contents.getBytes(StandardCharsets.UTF_8));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return the path of the target relative to the working dir (with '/' as the separator) or the target itself if
+     * it's not inside the working dir.
+     */
+    /*default*/ static String getRelativePath(File workingDir, String target) {
+        try {
+            Path targetPath = Paths.get(target).toAbsolutePath().normalize();
+            Path dir = workingDir.toPath().toAbsolutePath().normalize();
+            if (targetPath.startsWith(dir)) {
+                return dir.relativize(targetPath).toString().replace('\\', '/');
+            }
+        } catch (InvalidPathException e) {
+            // Just use the target as is.
+        }
+        return target;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static File getFile(File dir, String key) {
+        return new File(new File(dir, key.substring(0, 2)), key + EXTENSION);
+    }
+
+    /**
+     * @param target the path of the file to be used in the returned output.
+     *
+     * @return the output for the given key (with each line starting with the target) or null if it's not in the
+     * cache.
+     */
+    public static String get(String key, String target) {
+        File dir = getCacheDir();
+        if (dir == null) {
+            return null;
+        }
+        File file = getFile(dir, key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            // i.e.: NoSuchFileException
+            misses.incrementAndGet();
+            return null;
+        }
+        String output;
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || !key.equals(in.readUTF())) {
+                throw new IOException("Invalid external analysis cache entry.");
+            }
+            byte[] outputBytes = new byte[in.readInt()];
+            in.readFully(outputBytes);
+            output = new String(outputBytes, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            // Corrupt: just remove it (it'll be written again).
+            file.delete();
+            misses.incrementAndGet();
+            return null;
+        }
+        // Keep the last access so that entries in use aren't removed when trimming.
+        file.setLastModified(System.currentTimeMillis());
+        hits.incrementAndGet();
+
+        FastStringBuffer buf = new FastStringBuffer(output.length() + 64);
+        for (String line : StringUtils.iterLines(output)) {
+            buf.append(target).append(line);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * Adds the output of the analysis of a file to the cache (errors are ignored: the cache is just not updated).
+     *
+     * @param output the output of the analysis, where each line must start with the target.
+     */
+    public static void put(String key, String target, String output) {
+        File dir = getCacheDir();
+        if (dir == null) {
+            return;
+        }
+        FastStringBuffer buf = new FastStringBuffer(output.length());
+        for (String line : StringUtils.iterLines(output)) {
+            if (!line.startsWith(target)) {
+                return; // Unexpected: don't cache it.
+            }
+            buf.append(line.substring(target.length()));
+        }
+        byte[] outputBytes = buf.toString().getBytes(StandardCharsets.UTF_8);
+
+        File file = getFile(dir, key);
+        File parent = file.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File tempFile = new File(parent, key + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile), 8 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeUTF(key);
+                out.writeInt(outputBytes.length);
+                out.write(outputBytes);
+            }
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // i.e.: disk full: just don't cache it.
+            tempFile.delete();
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return a message with the hit rate of the cache (i.e.: 'hit rate: 90% (900 of 1000)').
+     */
+    public static String getHitRateMessage() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return new FastStringBuffer().append("hit rate: ").append(total == 0 ? 0 : (int) (h * 100 / total))
+                .append("% (").append(h).append(" of ").append(total).append(')').toString();
+    }
+}
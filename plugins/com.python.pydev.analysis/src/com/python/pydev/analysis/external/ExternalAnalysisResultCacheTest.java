@@ -0,0 +1,103 @@
+package com.python.pydev.analysis.external;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ExternalAnalysisResultCacheTest extends TestCase {
+
+    private File baseDir;
+    private File initialCacheDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_external_analysis_cache");
+        baseDir.mkdirs();
+        initialCacheDir = ExternalAnalysisResultCache.setCacheDir(new File(baseDir, "cache"));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ExternalAnalysisResultCache.setCacheDir(initialCacheDir);
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static String createKey(String toolVersion, String configHash, String target, String contents) {
+        return ExternalAnalysisResultCache.createKey("flake8", toolVersion, configHash, new File("/project"), target,
+                contents);
+    }
+
+    public void testPutGet() throws Exception {
+        String key = createKey("1.0", "config", "/project/a.py", "a = 10\n");
+        assertNull(ExternalAnalysisResultCache.get(key, "/project/a.py"));
+
+        ExternalAnalysisResultCache.put(key, "/project/a.py",
+                "/project/a.py:1:1: E100 error\n/project/a.py:2:1: W200 warning\n");
+        assertEquals("/project/a.py:1:1: E100 error\n/project/a.py:2:1: W200 warning\n",
+                ExternalAnalysisResultCache.get(key, "/project/a.py"));
+
+        // The same file in another checkout has the same key (and the output has the new target).
+        String otherKey = ExternalAnalysisResultCache.createKey("flake8", "1.0", "config", new File("/other"),
+                "/other/a.py", "a = 10\n");
+        assertEquals(key, otherKey);
+        assertEquals("/other/a.py:1:1: E100 error\n/other/a.py:2:1: W200 warning\n",
+                ExternalAnalysisResultCache.get(otherKey, "/other/a.py"));
+
+        // Empty output (no errors) is also kept.
+        String key2 = createKey("1.0", "config", "/project/a.py", "a = 20\n");
+        ExternalAnalysisResultCache.put(key2, "/project/a.py", "");
+        assertEquals("", ExternalAnalysisResultCache.get(key2, "/project/a.py"));
+    }
+
+    public void testKeyChanges() throws Exception {
+        String key = createKey("1.0", "config", "/project/a.py", "a = 10\n");
+        assertEquals(key, createKey("1.0", "config", "/project/a.py", "a = 10\n"));
+        assertFalse(key.equals(createKey("1.1", "config", "/project/a.py", "a = 10\n")));
+        assertFalse(key.equals(createKey("1.0", "config2", "/project/a.py", "a = 10\n")));
+        assertFalse(key.equals(createKey("1.0", "config", "/project/a.py", "a = 11\n")));
+        // The path may be used in the configuration (i.e.: per-file-ignores).
+        assertFalse(key.equals(createKey("1.0", "config", "/project/b.py", "a = 10\n")));
+        assertFalse(key.equals(createKey("1.0", "config", "/project/tests/a.py", "a = 10\n")));
+    }
+
+    public void testRelativePath() throws Exception {
+        assertEquals("pack/a.py", ExternalAnalysisResultCache.getRelativePath(new File("/project"),
+                "/project/pack/a.py"));
+        assertEquals("/other/a.py", ExternalAnalysisResultCache.getRelativePath(new File("/project"),
+                "/other/a.py"));
+    }
+
+    public void testConfigHash() throws Exception {
+        List<String> args = Arrays.asList("--max-line-length=120");
+        String hash = ExternalAnalysisResultCache.createConfigHash(baseDir, args);
+        assertEquals(hash, ExternalAnalysisResultCache.createConfigHash(baseDir, args));
+        assertFalse(hash.equals(ExternalAnalysisResultCache.createConfigHash(baseDir,
+                Arrays.asList("--max-line-length=100"))));
+
+        FileUtils.writeStrToFile("[flake8]\nignore = E100\n", new File(baseDir, "setup.cfg"));
+        String hash2 = ExternalAnalysisResultCache.createConfigHash(baseDir, args);
+        assertFalse(hash.equals(hash2));
+
+        FileUtils.writeStrToFile("[flake8]\nignore = E200\n", new File(baseDir, "setup.cfg"));
+        assertFalse(hash2.equals(ExternalAnalysisResultCache.createConfigHash(baseDir, args)));
+    }
+
+    public void testToolVersion() throws Exception {
+        final int[] calls = new int[1];
+        assertEquals("1.0", ExternalAnalysisResultCache.getToolVersion("tool_test", () -> {
+            calls[0]++;
+            return " 1.0\n";
+        }));
+        assertEquals("1.0", ExternalAnalysisResultCache.getToolVersion("tool_test", () -> {
+            calls[0]++;
+            return "2.0";
+        }));
+        assertEquals(1, calls[0]);
+    }
+}
@@ -0,0 +1,386 @@
+package com.python.pydev.analysis.external;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.python.pydev.ast.runners.SimplePythonRunner;
+import org.python.pydev.ast.runners.SimpleRunner;
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.json.eclipsesource.JsonArray;
+import org.python.pydev.json.eclipsesource.JsonObject;
+import org.python.pydev.json.eclipsesource.JsonValue;
+import org.python.pydev.shared_core.callbacks.ICallback;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.io.ThreadStreamReader;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.structure.Tuple;
+
+/**
+ * Runs linters which would be executed as 'python -m <module> <args>' in long-running processes (see:
+ * pydev_linter_daemon.py) so that the startup of the interpreter/linter isn't paid for each analyzed file.
+ *
+ * A pool of processes is kept for each (interpreter, project, module). The processes are restarted when the
+ * configuration changes (user arguments, environment -- i.e.: PYTHONPATH -- or configuration files) and
+ * are stopped after being idle for some time.
+ */
+public final class ExternalAnalyzerDaemon {
+
+    /**
+     * May be disabled with -Dpydev.linter.daemon=false (in which case a new process is created for each analysis).
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.linter.daemon"));
+
+    /**
+     * The maximum number of processes for each (interpreter, project, module).
+     *
+     * May be customized with -Dpydev.linter.daemon.pool.size=N
+     */
+    /*default*/ static int POOL_SIZE = Math.max(1, Integer.getInteger("pydev.linter.daemon.pool.size", 2));
+
+    /**
+     * Processes idle for more than this time are stopped.
+     *
+     * May be customized with -Dpydev.linter.daemon.idle.seconds=N
+     */
+    /*default*/ static long IDLE_TIMEOUT_MILLIS = Long.getLong("pydev.linter.daemon.idle.seconds", 5 * 60) * 1000;
+
+    /**
+     * Configuration files which the linters read from the working dir (if one of those changes the processes are
+     * restarted as plugins or caches may be stale).
+     */
+    private static final String[] CONFIG_FILES = new String[] { "pylintrc", ".pylintrc", ".flake8", "setup.cfg",
+            "tox.ini", "mypy.ini", ".mypy.ini", "pyproject.toml" };
+
+    private static final String SCRIPT_NAME = "pydev_linter_daemon.py";
+
+    private static final class Worker {
+
+        /**
+         * Put in the responses when the stdout of the process is closed.
+         */
+        private static final String EOF = new String("EOF");
+
+        private final Process process;
+        private final BufferedWriter writer;
+        private final ThreadStreamReader errReader;
+
+        /**
+         * The response lines read from the stdout of the process (by a thread which does blocking reads).
+         */
+        private final BlockingQueue<String> responses = new LinkedBlockingQueue<>();
+        private final int generation;
+        private long lastUsed;
+
+        private Worker(Process process, int generation) {
+            this.process = process;
+            this.generation = generation;
+            this.writer = new BufferedWriter(
+                    new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            Thread readerThread = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        responses.add(line);
+                    }
+                } catch (IOException e) {
+                    // The process was destroyed.
+                } finally {
+                    responses.add(EOF);
+                }
+            }, "Linter daemon reader");
+            readerThread.setDaemon(true);
+            readerThread.start();
+
+            // The output of the linters is sent in the response (so, this should only have internal errors).
+            this.errReader = new ThreadStreamReader(process.getErrorStream(), false, null);
+            this.errReader.start();
+        }
+
+        private boolean isAlive() {
+            return process.isAlive();
+        }
+
+        private void destroy() {
+            errReader.stopGettingOutput();
+            process.destroy();
+        }
+    }
+
+    private static final class Pool {
+
+        private final Deque<Worker> idle = new ArrayDeque<>();
+
+        /**
+         * Number of processes created in this pool which weren't destroyed (idle or running).
+         */
+        private int alive;
+
+        /**
+         * Incremented when the configuration changes (so that the running processes aren't reused).
+         */
+        private int generation;
+
+        private String configStamp;
+    }
+
+    private static final Object lock = new Object();
+
+    private static final Map<String, Pool> pools = new HashMap<>();
+
+    private static ScheduledExecutorService idleReaper;
+
+    private ExternalAnalyzerDaemon() {
+    }
+
+    /**
+     * Runs 'python -m <module> <args>' in a linter process.
+     *
+     * @param configArgs the arguments which define the configuration of the linter (i.e.: the user arguments
+     * without the target file).
+     * @param updateEnv callback to update the environment of the process (may be null).
+     *
+     * @return the stdout and stderr of the run or null if the monitor was cancelled.
+     *
+     * @throws Exception if it wasn't possible to run it in a linter process (in which case the caller may run
+     * it in a new process).
+     */
+    public static Tuple<String, String> run(IPythonNature nature, String interpreter, String module,
+            File workingDir, List<String> args, List<String> configArgs, ICallback<String[], String[]> updateEnv,
+            IProgressMonitor monitor) throws Exception {
+        String[] envp = SimpleRunner.getEnvironment(nature, nature.getProjectInterpreter(),
+                nature.getRelatedInterpreterManager());
+        if (updateEnv != null) {
+            envp = updateEnv.call(envp);
+        }
+        String key = interpreter + "|" + nature.getProject() + "|" + module;
+        String configStamp = createConfigStamp(workingDir, configArgs, envp);
+
+        Pool pool;
+        Worker worker = null;
+        int generation;
+        synchronized (lock) {
+            pool = pools.get(key);
+            if (pool == null) {
+                pool = new Pool();
+                pools.put(key, pool);
+            }
+            if (!configStamp.equals(pool.configStamp)) {
+                pool.configStamp = configStamp;
+                pool.generation++;
+                destroyIdle(pool);
+            }
+            while (true) {
+                worker = pool.idle.pollFirst();
+                if (worker != null) {
+                    if (worker.isAlive()) {
+                        break;
+                    }
+                    worker.destroy();
+                    pool.alive--;
+                    continue;
+                }
+                if (pool.alive < POOL_SIZE) {
+                    pool.alive++;
+                    break;
+                }
+                if (monitor.isCanceled()) {
+                    return null;
+                }
+                lock.wait(50);
+            }
+            generation = pool.generation;
+        }
+
+        if (worker == null) {
+            try {
+                worker = createWorker(interpreter, workingDir, envp, generation);
+            } catch (Exception e) {
+                synchronized (lock) {
+                    pool.alive--;
+                    lock.notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        boolean reuse = false;
+        try {
+            Tuple<String, String> output = runInWorker(worker, module, workingDir, args, monitor);
+            reuse = output != null;
+            return output;
+        } finally {
+            release(pool, worker, reuse);
+        }
+    }
+
+    private static Worker createWorker(String interpreter, File workingDir, String[] envp, int generation)
+            throws Exception {
+        String script = FileUtils.getFileAbsolutePath(CorePlugin.getScriptWithinPySrc(SCRIPT_NAME));
+        String[] cmdarray = SimplePythonRunner.preparePythonCallParameters(interpreter, script, new String[0]);
+        Process process = SimpleRunner.createProcess(cmdarray, envp, workingDir);
+        synchronized (lock) {
+            if (idleReaper == null) {
+                idleReaper = Executors.newSingleThreadScheduledExecutor((r) -> {
+                    Thread t = new Thread(r, "Linter daemon idle reaper");
+                    t.setDaemon(true);
+                    return t;
+                });
+                long period = Math.max(1000, IDLE_TIMEOUT_MILLIS / 2);
+                idleReaper.scheduleWithFixedDelay(ExternalAnalyzerDaemon::destroyIdleWorkers, period, period,
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        return new Worker(process, generation);
+    }
+
+    /**
+     * @return the output of the run or null if the monitor was cancelled.
+     */
+    private static Tuple<String, String> runInWorker(Worker worker, String module, File workingDir,
+            List<String> args, IProgressMonitor monitor)
+            throws IOException, InterruptedException {
+        JsonArray jsonArgs = new JsonArray();
+        for (String arg : args) {
+            jsonArgs.add(arg);
+        }
+        JsonObject request = new JsonObject();
+        request.add("module", module);
+        request.add("cwd", workingDir.toString());
+        request.add("args", jsonArgs);
+        worker.writer.write(request.toString());
+        worker.writer.write('\n');
+        worker.writer.flush();
+
+        String line;
+        while ((line = worker.responses.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            if (monitor.isCanceled()) {
+                // The process is still running the linter: it's not reused.
+                return null;
+            }
+        }
+        if (line == Worker.EOF) {
+            throw new IOException("Linter process finished unexpectedly. Stderr: "
+                    + worker.errReader.getAndClearContents());
+        }
+        JsonObject response = JsonValue.readFrom(line).asObject();
+        return new Tuple<String, String>(response.get("stdout").asString(), response.get("stderr").asString());
+    }
+
+    private static void release(Pool pool, Worker worker, boolean reuse) {
+        synchronized (lock) {
+            if (reuse && worker.generation == pool.generation && worker.isAlive()) {
+                worker.lastUsed = System.currentTimeMillis();
+                pool.idle.addFirst(worker);
+            } else {
+                worker.destroy();
+                pool.alive--;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private static void destroyIdle(Pool pool) {
+        for (Worker worker : pool.idle) {
+            worker.destroy();
+            pool.alive--;
+        }
+        pool.idle.clear();
+    }
+
+    private static void destroyIdleWorkers() {
+        long now = System.currentTimeMillis();
+        synchronized (lock) {
+            for (Iterator<Pool> it = pools.values().iterator(); it.hasNext();) {
+                Pool pool = it.next();
+                for (Iterator<Worker> workersIt = pool.idle.iterator(); workersIt.hasNext();) {
+                    Worker worker = workersIt.next();
+                    if (now - worker.lastUsed >= IDLE_TIMEOUT_MILLIS || !worker.isAlive()) {
+                        workersIt.remove();
+                        worker.destroy();
+                        pool.alive--;
+                    }
+                }
+                if (pool.alive == 0) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops all the idle linter processes (the running ones are stopped when they finish).
+     */
+    public static void disposeAll() {
+        synchronized (lock) {
+            for (Pool pool : pools.values()) {
+                pool.generation++;
+                destroyIdle(pool);
+            }
+            pools.clear();
+            if (idleReaper != null) {
+                idleReaper.shutdownNow();
+                idleReaper = null;
+            }
+        }
+    }
+
+    /**
+     * @return the files which may have the configuration of a linter run in the given working dir with the given
+     * arguments (the known configuration files in the working dir and the files passed as --xxx=<path>).
+     */
+    /*default*/ static List<File> getConfigFiles(File workingDir, List<String> configArgs) {
+        List<File> files = new ArrayList<>();
+        for (String name : CONFIG_FILES) {
+            files.add(new File(workingDir, name));
+        }
+        for (String arg : configArgs) {
+            // i.e.: --rcfile=<path>, --config=<path>, --config-file=<path>
+            int i = arg.indexOf('=');
+            if (arg.startsWith("--") && i > 0) {
+                File file = new File(arg.substring(i + 1));
+                files.add(file.isAbsolute() ? file : new File(workingDir, file.getPath()));
+            }
+        }
+        return files;
+    }
+
+    /*default*/ static String createConfigStamp(File workingDir, List<String> configArgs, String[] envp) {
+        FastStringBuffer buf = new FastStringBuffer();
+        for (String arg : configArgs) {
+            buf.append(arg).append('\n');
+        }
+        for (File file : getConfigFiles(workingDir, configArgs)) {
+            long lastModified = file.lastModified(); // 0 if it doesn't exist
+            if (lastModified != 0) {
+                buf.append(file.toString()).append(':').append(lastModified).append(':').append(file.length())
+                        .append('\n');
+            }
+        }
+        if (envp != null) {
+            buf.append(Arrays.hashCode(envp));
+        }
+        return buf.toString();
+    }
+}
@@ -36,7 +36,7 @@ import org.python.pydev.core.PythonNatureWithoutProjectException;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.SharedCorePlugin;
-import org.python.pydev.shared_core.callbacks.ICallback0;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.markers.PyMarkerUtils;
 import org.python.pydev.shared_core.markers.PyMarkerUtils.MarkerInfo;
@@ -46,6 +46,10 @@ import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 import com.python.pydev.analysis.external.ExternalAnalizerProcessWatchDoc;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.IBatchRunner;
+import com.python.pydev.analysis.external.ExternalAnalysisResultCache;
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon;
 import com.python.pydev.analysis.external.IExternalAnalyzer;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 import com.python.pydev.analysis.external.WriteToStreamHelper;
@@ -102,21 +106,24 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
             cmdList.add(s);
         }
         cmdList.add("--format=default");
-        cmdList.add(target);
+        // the arguments which define the configuration (the target(s) are added when running).
+        List<String> configArgs = cmdList;
 
         IPythonNature nature = PythonNature.getPythonNature(project);
-        ICallback0<Process> launchProcessCallback;
+        ICallback<Process, List<String>> launchProcess;
         if (flake8Location == null) {
             // use python -m flake8
-            launchProcessCallback = () -> {
+            launchProcess = (targets) -> {
                 String interpreter;
                 try {
                     interpreter = nature.getProjectInterpreter().getExecutableOrJar();
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
-                cmdList.add(0, "flake8");
-                String[] args = cmdList.toArray(new String[0]);
+                List<String> argsList = new ArrayList<>(configArgs);
+                argsList.add(0, "flake8");
+                argsList.addAll(targets);
+                String[] args = argsList.toArray(new String[0]);
                 WriteToStreamHelper.write("Flake8: Executing command line:", out, "python", "-m", args);
                 SimplePythonRunner runner = new SimplePythonRunner();
                 String[] parameters = SimplePythonRunner.preparePythonCallParameters(interpreter, "-m", args);
@@ -126,13 +133,15 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
             };
 
         } else {
-            launchProcessCallback = () -> {
+            launchProcess = (targets) -> {
                 SimpleRunner simpleRunner = new SimpleRunner();
 
                 String flake8Executable = FileUtils.getFileAbsolutePath(flake8Location);
-                cmdList.add(flake8Executable);
+                List<String> argsList = new ArrayList<>(configArgs);
+                argsList.add(0, flake8Executable);
+                argsList.addAll(targets);
 
-                String[] args = cmdList.toArray(new String[0]);
+                String[] args = argsList.toArray(new String[0]);
 
                 // run executable command (flake8 or flake8.bat or flake8.exe)
                 WriteToStreamHelper.write("Flake8: Executing command line:", out, (Object) args);
@@ -143,11 +152,96 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
                 return process;
             };
         }
-        this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this, launchProcessCallback, project,
-                true);
+        ICallback<Tuple<String, String>, List<String>> runInDaemon = null;
+        if (flake8Location == null && ExternalAnalyzerDaemon.ENABLED) {
+            runInDaemon = (targets) -> {
+                try {
+                    String interpreter = nature.getProjectInterpreter().getExecutableOrJar();
+                    List<String> args = new ArrayList<>(configArgs);
+                    args.addAll(targets);
+                    WriteToStreamHelper.write("Flake8: Executing command line (in linter daemon):", out, "python", "-m",
+                            "flake8", args.toArray(new String[0]));
+                    return ExternalAnalyzerDaemon.run(nature, interpreter, "flake8", workingDir, args, configArgs,
+                            null, monitor);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        }
+        final ICallback<Tuple<String, String>, List<String>> finalRunInDaemon = runInDaemon;
+
+        ExternalAnalizerProcessWatchDoc processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this,
+                () -> launchProcess.call(Arrays.asList(target)), project, true);
+        if (finalRunInDaemon != null) {
+            processWatchDoc.setRunInDaemonCallback(() -> finalRunInDaemon.call(Arrays.asList(target)));
+        }
+        if (resource instanceof IFile && fDocument != null
+                && (ExternalAnalysisBatcher.ENABLED || ExternalAnalysisResultCache.ENABLED)) {
+            String contents = fDocument.get();
+            IBatchRunner batchRunner = ExternalAnalysisBatcher.createRunner(launchProcess, finalRunInDaemon);
+            String toolId = "flake8|" + (flake8Location != null ? flake8Location
+                    : nature.getProjectInterpreter().getExecutableOrJar());
+            processWatchDoc.setRunInBatchCallback(() -> {
+                try {
+                    return runInBatch(toolId, workingDir, configArgs, target, contents, batchRunner, out);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        this.processWatchDoc = processWatchDoc;
         this.processWatchDoc.start();
     }
 
+    /**
+     * Gets the output for the target from the results cache or runs flake8 along with other files (and saves the
+     * output in the cache).
+     *
+     * @return the output (stdout, stderr) or null if the monitor was cancelled.
+     */
+    private Tuple<String, String> runInBatch(String toolId, File workingDir, List<String> configArgs, String target,
+            String contents, IBatchRunner batchRunner, IExternalCodeAnalysisStream out) throws Exception {
+        String cacheKey = null;
+        if (ExternalAnalysisResultCache.ENABLED) {
+            String version = ExternalAnalysisResultCache.getToolVersion(toolId, () -> {
+                try {
+                    Tuple<String, String> output = batchRunner.run(Arrays.asList("--version"), monitor);
+                    return output != null ? output.o1 : null;
+                } catch (Exception e) {
+                    Log.log(e);
+                    return null;
+                }
+            });
+            if (version != null) {
+                cacheKey = ExternalAnalysisResultCache.createKey("flake8", version,
+                        ExternalAnalysisResultCache.createConfigHash(workingDir, configArgs), workingDir, target,
+                        contents);
+                String cached = ExternalAnalysisResultCache.get(cacheKey, target);
+                if (cached != null) {
+                    WriteToStreamHelper.write("Flake8: Output gotten from the results cache for:", out, target,
+                            ExternalAnalysisResultCache.getHitRateMessage());
+                    return new Tuple<String, String>(cached, "");
+                }
+            }
+        }
+
+        Tuple<String, String> output;
+        if (ExternalAnalysisBatcher.ENABLED) {
+            String batchKey = new FastStringBuffer().append(toolId).append('|').append(workingDir.toString())
+                    .append('|').append(StringUtils.join("|", configArgs)).toString();
+            output = ExternalAnalysisBatcher.run(batchKey, resource.getProject(), workingDir, target, batchRunner,
+                    monitor);
+        } else {
+            output = ExternalAnalysisBatcher.runSingle(resource.getProject(), workingDir, target, batchRunner,
+                    monitor);
+        }
+        if (output != null && cacheKey != null && output.o2.trim().isEmpty()
+                && output.o1.indexOf("Traceback (most recent call last):") == -1) {
+            ExternalAnalysisResultCache.put(cacheKey, target, output.o1);
+        }
+        return output;
+    }
+
     @Override
     public void afterRunProcess(String output, String errors, IExternalCodeAnalysisStream out) {
         boolean resourceIsContainer = resource instanceof IContainer;
@@ -40,7 +40,6 @@ import org.python.pydev.core.docutils.PySelection;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.callbacks.ICallback;
-import org.python.pydev.shared_core.callbacks.ICallback0;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.markers.PyMarkerUtils;
 import org.python.pydev.shared_core.markers.PyMarkerUtils.MarkerInfo;
@@ -51,6 +50,9 @@ import org.python.pydev.shared_core.structure.Tuple;
 import org.python.pydev.shared_core.utils.ArrayUtils;
 
 import com.python.pydev.analysis.external.ExternalAnalizerProcessWatchDoc;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher;
+import com.python.pydev.analysis.external.ExternalAnalysisBatcher.IBatchRunner;
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon;
 import com.python.pydev.analysis.external.IExternalAnalyzer;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 import com.python.pydev.analysis.external.WriteToStreamHelper;
@@ -187,7 +189,8 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
         }
 
         cmdList.addAll(userArgsAsList);
-        cmdList.add(target);
+        // the arguments which define the configuration (the target(s) are added when running).
+        List<String> configArgs = cmdList;
 
         IPythonNature nature = PythonNature.getPythonNature(project);
         ICallback<String[], String[]> updateEnv = null;
@@ -228,19 +231,21 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
 
         final ICallback<String[], String[]> finalUpdateEnv = updateEnv;
 
-        ICallback0<Process> launchProcessCallback;
+        ICallback<Process, List<String>> launchProcess;
         if (mypyLocation == null) {
             // use python -m mypy
 
-            launchProcessCallback = () -> {
+            launchProcess = (targets) -> {
                 String interpreter;
                 try {
                     interpreter = nature.getProjectInterpreter().getExecutableOrJar();
                 } catch (Exception e) {
                     throw new RuntimeException(e);
                 }
-                cmdList.add(0, "mypy");
-                String[] args = cmdList.toArray(new String[0]);
+                List<String> argsList = new ArrayList<>(configArgs);
+                argsList.add(0, "mypy");
+                argsList.addAll(targets);
+                String[] args = argsList.toArray(new String[0]);
                 WriteToStreamHelper.write("MyPy: Executing command line:", out, "python", "-m", args);
                 SimplePythonRunner runner = new SimplePythonRunner();
                 String[] parameters = SimplePythonRunner.preparePythonCallParameters(interpreter, "-m", args);
@@ -251,10 +256,12 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
 
         } else {
             String mypyExecutable = FileUtils.getFileAbsolutePath(mypyLocation);
-            cmdList.add(0, mypyExecutable);
 
-            launchProcessCallback = () -> {
-                String[] args = cmdList.toArray(new String[0]);
+            launchProcess = (targets) -> {
+                List<String> argsList = new ArrayList<>(configArgs);
+                argsList.add(0, mypyExecutable);
+                argsList.addAll(targets);
+                String[] args = argsList.toArray(new String[0]);
 
                 // run executable command (mypy or mypy.bat or mypy.exe)
                 WriteToStreamHelper.write("Mypy: Executing command line:", out, (Object) args);
@@ -266,9 +273,47 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
                 return process;
             };
         }
+        ICallback<Tuple<String, String>, List<String>> runInDaemon = null;
+        if (mypyLocation == null && ExternalAnalyzerDaemon.ENABLED) {
+            runInDaemon = (targets) -> {
+                try {
+                    String interpreter = nature.getProjectInterpreter().getExecutableOrJar();
+                    List<String> args = new ArrayList<>(configArgs);
+                    args.addAll(targets);
+                    WriteToStreamHelper.write("MyPy: Executing command line (in linter daemon):", out, "python", "-m",
+                            "mypy", args.toArray(new String[0]));
+                    return ExternalAnalyzerDaemon.run(nature, interpreter, "mypy", workingDir, args, configArgs,
+                            finalUpdateEnv, monitor);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+        }
+        final ICallback<Tuple<String, String>, List<String>> finalRunInDaemon = runInDaemon;
 
-        this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this, launchProcessCallback, project,
-                true);
+        ExternalAnalizerProcessWatchDoc processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this,
+                () -> launchProcess.call(Arrays.asList(target)), project, true);
+        if (finalRunInDaemon != null) {
+            processWatchDoc.setRunInDaemonCallback(() -> finalRunInDaemon.call(Arrays.asList(target)));
+        }
+        if (resource instanceof IFile && ExternalAnalysisBatcher.ENABLED) {
+            // Note: the output of mypy for a file depends on the modules it imports, so, it's not kept in the
+            // ExternalAnalysisResultCache (but many files may still be checked in the same run).
+            IBatchRunner batchRunner = ExternalAnalysisBatcher.createRunner(launchProcess, finalRunInDaemon);
+            String batchKey = new FastStringBuffer().append("mypy|")
+                    .append(mypyLocation != null ? mypyLocation.toString()
+                            : nature.getProjectInterpreter().getExecutableOrJar())
+                    .append('|').append(workingDir.toString()).append('|').append(StringUtils.join("|", configArgs))
+                    .toString();
+            processWatchDoc.setRunInBatchCallback(() -> {
+                try {
+                    return ExternalAnalysisBatcher.run(batchKey, project, workingDir, target, batchRunner, monitor);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        this.processWatchDoc = processWatchDoc;
         this.processWatchDoc.start();
     }
 
@@ -35,6 +35,7 @@ import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 import com.python.pydev.analysis.external.ExternalAnalizerProcessWatchDoc;
+import com.python.pydev.analysis.external.ExternalAnalyzerDaemon;
 import com.python.pydev.analysis.external.IExternalAnalyzer;
 import com.python.pydev.analysis.external.IExternalCodeAnalysisStream;
 import com.python.pydev.analysis.external.WriteToStreamHelper;
@@ -93,6 +94,8 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
         }
         cmdList.add("--output-format=text");
         cmdList.add("--msg-template='{C}:{line:3d},{column:2d}: ({symbol}) {msg}'");
+        // the arguments which define the configuration (used to know when the linter daemon must be restarted)
+        List<String> configArgs = new ArrayList<>(cmdList);
         // target file to be linted
         cmdList.add(target);
 
@@ -101,9 +104,10 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
         File workingDir = project.getLocation().toFile();
         ICallback0<Process> launchProcessCallback;
 
+        PythonNature nature = PythonNature.getPythonNature(project);
+
         if (pyLintLocation == null) {
             // run python -m pylint with the interpreter of current project
-            PythonNature nature = PythonNature.getPythonNature(project);
             if (nature == null) {
                 Throwable e = new RuntimeException("PyLint ERROR: Nature not configured for: " + project);
                 Log.log(e);
@@ -134,13 +138,26 @@ import com.python.pydev.analysis.external.WriteToStreamHelper;
             launchProcessCallback = () -> {
                 WriteToStreamHelper.write("PyLint: Executing command line:", out, (Object) args);
                 SimpleRunner simpleRunner = new SimpleRunner();
-                Tuple<Process, String> r = simpleRunner.run(args, workingDir, PythonNature.getPythonNature(project),
-                        null);
+                Tuple<Process, String> r = simpleRunner.run(args, workingDir, nature, null);
                 return r.o1;
             };
         }
-        this.processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this, launchProcessCallback, null,
-                false);
+        ExternalAnalizerProcessWatchDoc processWatchDoc = new ExternalAnalizerProcessWatchDoc(out, monitor, this,
+                launchProcessCallback, null, false);
+        if (pyLintLocation == null && ExternalAnalyzerDaemon.ENABLED) {
+            processWatchDoc.setRunInDaemonCallback(() -> {
+                try {
+                    String interpreter = nature.getProjectInterpreter().getExecutableOrJar();
+                    WriteToStreamHelper.write("PyLint: Executing command line (in linter daemon):", out, "python",
+                            "-m", "pylint", cmdList.toArray(new String[0]));
+                    return ExternalAnalyzerDaemon.run(nature, interpreter, "pylint", workingDir, cmdList, configArgs,
+                            null, monitor);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        this.processWatchDoc = processWatchDoc;
         this.processWatchDoc.start();
     }
 
@@ -6,6 +6,8 @@ import org.eclipse.ltk.core.refactoring.Change;
 import org.eclipse.ltk.core.refactoring.CompositeChange;
 import org.python.pydev.core.concurrency.RunnableAsJobsPoolThread;
 
+import com.python.pydev.analysis.additionalinfo.builders.AnalysisBuilderRunnableFactory;
+
 public final class PyCompositeChange extends CompositeChange {
     private boolean makeUndo;
 
@@ -17,10 +19,12 @@ public final class PyCompositeChange extends CompositeChange {
     @Override
     public Change perform(IProgressMonitor pm) throws CoreException {
         RunnableAsJobsPoolThread.getSingleton().pushStopThreads();
+        AnalysisBuilderRunnableFactory.getExecutor().pushPause();
         Change ret;
         try {
             ret = super.perform(pm);
         } finally {
+            AnalysisBuilderRunnableFactory.getExecutor().popPause();
             RunnableAsJobsPoolThread.getSingleton().popStopThreads();
         }
         if (makeUndo) {
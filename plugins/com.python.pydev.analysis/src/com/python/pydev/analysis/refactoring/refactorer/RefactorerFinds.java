@@ -47,6 +47,7 @@ import org.python.pydev.shared_core.string.StringUtils;
 
 import com.python.pydev.analysis.additionalinfo.AbstractAdditionalDependencyInfo;
 import com.python.pydev.analysis.additionalinfo.AdditionalProjectInterpreterInfo;
+import com.python.pydev.analysis.additionalinfo.ClassHierarchyIndex;
 
 public class RefactorerFinds {
 
@@ -231,8 +232,17 @@ public class RefactorerFinds {
                 try {
                     request.pushMonitor(new SubProgressMonitor(monitor, 90));
                     if (additionalInfo instanceof AdditionalProjectInterpreterInfo) {
-                        AdditionalProjectInterpreterInfo additionalProjectInterpreterInfo = (AdditionalProjectInterpreterInfo) additionalInfo;
-                        modules = additionalProjectInterpreterInfo.getModulesWithToken(model.name, monitor);
+                        ClassHierarchyIndex classHierarchyIndex = additionalInfo.getClassHierarchyIndex();
+                        if (classHierarchyIndex.isComplete()) {
+                            //only the modules with classes which have a base with the name we're looking for
+                            modules = new ArrayList<ModulesKey>();
+                            for (String moduleName : classHierarchyIndex.getModulesWithSubclasses(model.name)) {
+                                modules.add(new ModulesKey(moduleName, null));
+                            }
+                        } else {
+                            AdditionalProjectInterpreterInfo additionalProjectInterpreterInfo = (AdditionalProjectInterpreterInfo) additionalInfo;
+                            modules = additionalProjectInterpreterInfo.getModulesWithToken(model.name, monitor);
+                        }
                     } else {
                         continue;
                     }
@@ -123,6 +123,12 @@ public abstract class AbstractRenameRefactorProcess implements IRefactorRenamePr
         } else {
             existent.addAll(oc);
         }
+        if (request != null) {
+            RefactoringRequest.IOccurrencesListener listener = request.getOccurrencesListener();
+            if (listener != null) {
+                listener.onOccurrencesFound(modName, file, oc);
+            }
+        }
     }
 
     public static SimpleNode getActualNode(ASTEntry entry) {
@@ -10,8 +10,16 @@
  */
 package com.python.pydev.analysis.refactoring.wizards.rename;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.SubProgressMonitor;
 import org.eclipse.ltk.core.refactoring.RefactoringStatus;
@@ -41,6 +49,50 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     public static final boolean DEBUG_FILTERED_MODULES = false || DebugFlags.DEBUG_FIND_REFERENCES;
 
+    /**
+     * The max number of modules searched at the same time for references (1 means that the modules are searched
+     * in the calling thread).
+     *
+     * May be customized with -Dpydev.find.references.parallelism=N
+     */
+    /*default*/ static int PARALLELISM = Math.max(1,
+            Integer.getInteger("pydev.find.references.parallelism", Runtime.getRuntime().availableProcessors()));
+
+    private static ForkJoinPool executor;
+
+    private static synchronized ForkJoinPool getExecutor() {
+        if (executor == null) {
+            final AtomicInteger threadId = new AtomicInteger();
+            executor = new ForkJoinPool(PARALLELISM, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+                @Override
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    thread.setName("PyDev: Find references " + threadId.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            }, null, false);
+        }
+        return executor;
+    }
+
+    /**
+     * The occurrences found in a module (along with the status of the search in that module).
+     */
+    private static final class ModuleOccurrences {
+
+        private final ModulesKey key;
+        private final List<ASTEntry> entries;
+        private final RefactoringStatus status;
+
+        private ModuleOccurrences(ModulesKey key, List<ASTEntry> entries, RefactoringStatus status) {
+            this.key = key;
+            this.entries = entries;
+            this.status = status;
+        }
+    }
+
     /**
      * May be used by subclasses
      */
@@ -186,40 +238,7 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
                             continue;
                         }
                         try {
-                            for (ModulesKey key : file.o1) {
-                                IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager()
-                                        .getModulesManager();
-
-                                request.checkCancelled();
-                                String modName = key.name;
-
-                                if (modName != null) {
-                                    if (!request.moduleName.equals(modName)) {
-                                        //we've already checked the module from the request...
-
-                                        request.checkCancelled();
-                                        IModule module = modulesManager
-                                                .getModuleInDirectManager(modName, nature, false,
-                                                        moduleRequest);
-
-                                        if (module instanceof SourceModule) {
-
-                                            SourceModule sourceModule = (SourceModule) module;
-                                            if (sourceModule.getAst() == null) {
-                                                status.addWarning("Unable to get AST for: " + modName);
-                                                continue;
-                                            }
-                                            request.checkCancelled();
-                                            List<ASTEntry> entryOccurrences = getOccurrencesInOtherModule(status,
-                                                    request, request.qualifier, (SourceModule) module, nature);
-
-                                            if (entryOccurrences.size() > 0) {
-                                                addOccurrences(entryOccurrences, key.file, modName);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
+                            findOccurrencesInModules(status, request, file.o1, nature, moduleRequest);
                         } finally {
                             nature.endRequests();
                         }
@@ -238,6 +257,117 @@ public abstract class AbstractRenameWorkspaceRefactorProcess extends AbstractRen
 
     }
 
+    /**
+     * Searches the occurrences in the given modules.
+     *
+     * The modules are searched in the executor (at most a window of modules is searched ahead) and the results
+     * are merged in the calling thread in the same order of the keys (so, the results and the status are the same
+     * as if the modules were searched one at a time).
+     */
+    private void findOccurrencesInModules(RefactoringStatus status, final RefactoringRequest request,
+            List<ModulesKey> keys, final PythonNature nature, final IModuleRequestState moduleRequest) {
+        List<ModulesKey> toSearch = new ArrayList<ModulesKey>(keys.size());
+        for (ModulesKey key : keys) {
+            //we've already checked the module from the request...
+            if (key.name != null && !request.moduleName.equals(key.name)) {
+                toSearch.add(key);
+            }
+        }
+        if (PARALLELISM <= 1 || toSearch.size() <= 1) {
+            for (ModulesKey key : toSearch) {
+                mergeOccurrences(status, findOccurrencesInModule(request, key, nature, moduleRequest));
+            }
+            return;
+        }
+
+        // The search in other threads only checks the monitor of the request for cancellation (the progress is
+        // only reported from this thread).
+        final IProgressMonitor monitor = request.getMonitor();
+        request.pushMonitor(new NullProgressMonitor() {
+
+            @Override
+            public boolean isCanceled() {
+                return monitor.isCanceled();
+            }
+
+            @Override
+            public void setCanceled(boolean cancelled) {
+                monitor.setCanceled(cancelled);
+            }
+        });
+
+        ForkJoinPool pool = getExecutor();
+        int window = PARALLELISM * 4;
+        @SuppressWarnings("unchecked")
+        CompletableFuture<ModuleOccurrences>[] futures = new CompletableFuture[toSearch.size()];
+        int submitted = 0;
+        try {
+            for (int i = 0; i < futures.length; i++) {
+                int until = Math.min(futures.length, i + window);
+                while (submitted < until) {
+                    final ModulesKey key = toSearch.get(submitted);
+                    futures[submitted] = CompletableFuture.supplyAsync(
+                            () -> findOccurrencesInModule(request, key, nature, moduleRequest), pool);
+                    submitted++;
+                }
+                CompletableFuture<ModuleOccurrences> future = futures[i];
+                futures[i] = null;
+                ModuleOccurrences found;
+                try {
+                    found = future.join();
+                } catch (CompletionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    throw e;
+                }
+                mergeOccurrences(status, found);
+                request.checkCancelled();
+            }
+        } finally {
+            // Only reached with pending futures on errors/cancellation: the ones not started are just skipped and
+            // the ones running stop on their next cancellation check.
+            for (int i = 0; i < submitted; i++) {
+                if (futures[i] != null) {
+                    futures[i].cancel(false);
+                }
+            }
+            request.popMonitor();
+        }
+    }
+
+    /**
+     * Searches the occurrences in a single module (may be called from any thread).
+     */
+    private ModuleOccurrences findOccurrencesInModule(RefactoringRequest request, ModulesKey key,
+            PythonNature nature, IModuleRequestState moduleRequest) {
+        request.checkCancelled();
+        RefactoringStatus status = new RefactoringStatus();
+        List<ASTEntry> entryOccurrences = null;
+        IProjectModulesManager modulesManager = (IProjectModulesManager) nature.getAstManager().getModulesManager();
+        IModule module = modulesManager.getModuleInDirectManager(key.name, nature, false, moduleRequest);
+
+        if (module instanceof SourceModule) {
+            SourceModule sourceModule = (SourceModule) module;
+            if (sourceModule.getAst() == null) {
+                status.addWarning("Unable to get AST for: " + key.name);
+            } else {
+                request.checkCancelled();
+                entryOccurrences = getOccurrencesInOtherModule(status, request, request.qualifier, sourceModule,
+                        nature);
+            }
+        }
+        return new ModuleOccurrences(key, entryOccurrences, status);
+    }
+
+    private void mergeOccurrences(RefactoringStatus status, ModuleOccurrences found) {
+        status.merge(found.status);
+        if (found.entries != null && found.entries.size() > 0) {
+            addOccurrences(found.entries, found.key.file, found.key.name);
+        }
+    }
+
     /**
      * This method is called for each module that may have some reference to the definition
      * we're looking for.
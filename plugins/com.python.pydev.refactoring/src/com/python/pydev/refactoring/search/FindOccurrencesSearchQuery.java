@@ -7,6 +7,8 @@
 package com.python.pydev.refactoring.search;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -66,72 +68,38 @@ public class FindOccurrencesSearchQuery extends AbstractPythonSearchQuery {
             monitor.beginTask("Searching...", 100);
             req.pushMonitor(monitor);
 
-            FindOccurrencesSearchResult searchResult = (FindOccurrencesSearchResult) getSearchResult();
+            final FindOccurrencesSearchResult searchResult = (FindOccurrencesSearchResult) getSearchResult();
+            final Map<IFile, Set<Integer>> foundOffsets = new HashMap<IFile, Set<Integer>>();
             Map<Tuple<String, File>, HashSet<ASTEntry>> occurrences;
             try {
                 req.pushMonitor(new SubProgressMonitor(monitor, 80));
+                // Show the matches in other modules as they're found (the final results are added later on,
+                // skipping the matches already added).
+                req.setOccurrencesListener(new RefactoringRequest.IOccurrencesListener() {
+
+                    @Override
+                    public void onOccurrencesFound(String moduleName, File file, Collection<ASTEntry> found) {
+                        addMatches(searchResult, foundOffsets, file, found);
+                    }
+                });
                 occurrences = pyRefactoring.findAllOccurrences(req);
             } finally {
+                req.setOccurrencesListener(null);
                 req.popMonitor().done();
             }
 
             if (occurrences == null) {
                 return Status.OK_STATUS;
             }
-            int length = req.qualifier.length();
 
-            HashSet<Integer> foundOffsets = new HashSet<Integer>();
             try {
                 req.pushMonitor(new SubProgressMonitor(monitor, 20));
                 Set<Entry<Tuple<String, File>, HashSet<ASTEntry>>> entrySet = occurrences.entrySet();
                 req.getMonitor().beginTask("Resolving occurrences...", entrySet.size());
                 for (Map.Entry<Tuple<String, File>, HashSet<ASTEntry>> o : entrySet) {
-
-                    foundOffsets.clear();
-
-                    IFile workspaceFile = null;
-                    try {
-                        IProject project = null;
-                        IPythonNature nature = req.nature;
-                        if (nature != null) {
-                            project = nature.getProject();
-                        }
-
-                        workspaceFile = FindWorkspaceFiles.getWorkspaceFile(o.getKey().o2, project);
-                        if (workspaceFile == null) {
-                            Log.logInfo(StringUtils.format("Ignoring: %s. "
-                                    + "Unable to resolve to a file in the Eclipse workspace.", o.getKey().o2));
-                            continue;
-                        }
-                    } catch (IllegalStateException e) {
-                        //this can happen on tests (but if not on tests, we want to re-throw it
-                        String message = e.getMessage();
-                        if (message == null || !message.equals("Workspace is closed.")) {
-                            throw e;
-                        }
-                        //otherwise, let's just keep going in the test...
-                        continue;
-                    }
-
-                    IDocument doc = FileUtilsFileBuffer.getDocFromResource(workspaceFile);
-                    req.getMonitor().setTaskName("Resolving occurrences... " + workspaceFile);
-
-                    for (ASTEntry entry : o.getValue()) {
-                        int offset = AbstractRenameRefactorProcess.getOffset(doc, entry);
-                        if (!foundOffsets.contains(offset)) {
-                            foundOffsets.add(offset);
-                            if (DebugFlags.DEBUG_FIND_REFERENCES) {
-                                System.out.println("Adding match:" + workspaceFile);
-                            }
-                            PySelection ps = new PySelection(doc, offset);
-                            int lineNumber = ps.getLineOfOffset();
-                            String lineContents = ps.getLine(lineNumber);
-                            int lineStartOffset = ps.getLineOffset(lineNumber);
-
-                            LineElement element = new LineElement(workspaceFile, lineNumber, lineStartOffset,
-                                    lineContents, offset - lineStartOffset);
-                            searchResult.addMatch(new FileMatch(workspaceFile, offset, length, element));
-                        }
+                    IFile workspaceFile = addMatches(searchResult, foundOffsets, o.getKey().o2, o.getValue());
+                    if (workspaceFile != null) {
+                        req.getMonitor().setTaskName("Resolving occurrences... " + workspaceFile);
                     }
                 }
             } finally {
@@ -145,6 +113,65 @@ public class FindOccurrencesSearchQuery extends AbstractPythonSearchQuery {
         return Status.OK_STATUS;
     }
 
+    /**
+     * Adds the matches for the given entries to the search result (entries whose offset was already added for the
+     * same file are skipped).
+     *
+     * @return the workspace file where the entries were found or null if it couldn't be resolved.
+     */
+    private synchronized IFile addMatches(FindOccurrencesSearchResult searchResult,
+            Map<IFile, Set<Integer>> foundOffsets, File file, Collection<ASTEntry> entries) {
+        IFile workspaceFile = null;
+        try {
+            IProject project = null;
+            IPythonNature nature = req.nature;
+            if (nature != null) {
+                project = nature.getProject();
+            }
+
+            workspaceFile = FindWorkspaceFiles.getWorkspaceFile(file, project);
+            if (workspaceFile == null) {
+                Log.logInfo(StringUtils.format("Ignoring: %s. "
+                        + "Unable to resolve to a file in the Eclipse workspace.", file));
+                return null;
+            }
+        } catch (IllegalStateException e) {
+            //this can happen on tests (but if not on tests, we want to re-throw it
+            String message = e.getMessage();
+            if (message == null || !message.equals("Workspace is closed.")) {
+                throw e;
+            }
+            //otherwise, let's just keep going in the test...
+            return null;
+        }
+
+        Set<Integer> fileOffsets = foundOffsets.get(workspaceFile);
+        if (fileOffsets == null) {
+            fileOffsets = new HashSet<Integer>();
+            foundOffsets.put(workspaceFile, fileOffsets);
+        }
+        int length = req.qualifier.length();
+        IDocument doc = FileUtilsFileBuffer.getDocFromResource(workspaceFile);
+
+        for (ASTEntry entry : entries) {
+            int offset = AbstractRenameRefactorProcess.getOffset(doc, entry);
+            if (fileOffsets.add(offset)) {
+                if (DebugFlags.DEBUG_FIND_REFERENCES) {
+                    System.out.println("Adding match:" + workspaceFile);
+                }
+                PySelection ps = new PySelection(doc, offset);
+                int lineNumber = ps.getLineOfOffset();
+                String lineContents = ps.getLine(lineNumber);
+                int lineStartOffset = ps.getLineOffset(lineNumber);
+
+                LineElement element = new LineElement(workspaceFile, lineNumber, lineStartOffset,
+                        lineContents, offset - lineStartOffset);
+                searchResult.addMatch(new FileMatch(workspaceFile, offset, length, element));
+            }
+        }
+        return workspaceFile;
+    }
+
     @Override
     public String getResultLabel(int nMatches) {
         String searchString = getSearchString();
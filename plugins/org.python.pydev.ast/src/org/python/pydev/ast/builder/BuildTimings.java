@@ -0,0 +1,49 @@
+package org.python.pydev.ast.builder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the time spent in each stage of a full build (used to report where the time of the build went).
+ */
+final class BuildTimings {
+
+    /**
+     * Whether the timings should be reported (in the error log) when a full build ends.
+     */
+    static final boolean REPORT = Boolean.getBoolean("pydev.builder.timings");
+
+    final LongAdder discoveryNanos = new LongAdder();
+
+    /**
+     * Note: summed over all the threads which load/parse documents.
+     */
+    final LongAdder loadNanos = new LongAdder();
+    final LongAdder parseNanos = new LongAdder();
+
+    /**
+     * Time that the builder thread spent waiting for a document which wasn't loaded/parsed yet.
+     */
+    final LongAdder waitPrefetchNanos = new LongAdder();
+    final LongAdder visitorsNanos = new LongAdder();
+    final LongAdder visitingEndedNanos = new LongAdder();
+
+    final LongAdder files = new LongAdder();
+    final LongAdder parsedFiles = new LongAdder();
+
+    private final long startNanos = System.nanoTime();
+
+    private static long millis(LongAdder nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "PyDev full build: " + files.sum() + " files (" + parsedFiles.sum() + " parsed ahead) in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + "ms -- discovery: "
+                + millis(discoveryNanos) + "ms, load (all threads): " + millis(loadNanos)
+                + "ms, parse (all threads): " + millis(parseNanos) + "ms, waiting for load/parse: "
+                + millis(waitPrefetchNanos) + "ms, visitors: " + millis(visitorsNanos)
+                + "ms, visiting ended (i.e.: waiting for analysis): " + millis(visitingEndedNanos) + "ms";
+    }
+}
@@ -0,0 +1,146 @@
+package org.python.pydev.ast.builder;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jface.text.IDocument;
+import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
+import org.python.pydev.core.FileUtilsFileBuffer;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.log.Log;
+
+/**
+ * On a full build, loads and parses the documents in parallel, ahead of the builder thread (which gets the
+ * results in order and calls the visitors -- so, visitors still see the files one at a time).
+ *
+ * At most a window of files is loaded ahead so that we don't keep the documents/asts of the whole project in
+ * memory.
+ */
+final class FullBuildPrefetcher implements AutoCloseable {
+
+    static final class Entry {
+
+        final IFile file;
+        final IPythonNature nature;
+        final String moduleName;
+
+        Entry(IFile file, IPythonNature nature, String moduleName) {
+            this.file = file;
+            this.nature = nature;
+            this.moduleName = moduleName;
+        }
+    }
+
+    static final class Prefetched {
+
+        final IDocument doc;
+        final SourceModule module;
+
+        Prefetched(IDocument doc, SourceModule module) {
+            this.doc = doc;
+            this.module = module;
+        }
+    }
+
+    private static final Prefetched NOT_PREFETCHED = new Prefetched(null, null);
+
+    private final List<Entry> entries;
+    private final boolean parse;
+    private final BuildTimings timings;
+    private final ForkJoinPool pool;
+    private final CompletableFuture<Prefetched>[] futures;
+    private final int window;
+    private int submitted = 0;
+
+    /**
+     * @param parse whether the documents should also be parsed (if false, only the documents are loaded).
+     */
+    @SuppressWarnings("unchecked")
+    FullBuildPrefetcher(List<Entry> entries, boolean parse, BuildTimings timings) {
+        this.entries = entries;
+        this.parse = parse;
+        this.timings = timings;
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.window = parallelism * 4;
+        this.pool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("PyDev: Full build parse");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, null, false);
+        this.futures = new CompletableFuture[entries.size()];
+    }
+
+    /**
+     * @return the document (and the module if it was parsed) for the entry at the given index. Must be called
+     * from the builder thread, in order.
+     */
+    Prefetched get(int i) {
+        int until = Math.min(entries.size(), i + window);
+        while (submitted < until) {
+            final Entry entry = entries.get(submitted);
+            futures[submitted] = CompletableFuture.supplyAsync(() -> prefetch(entry), pool);
+            submitted++;
+        }
+        CompletableFuture<Prefetched> future = futures[i];
+        futures[i] = null;
+        long initial = System.nanoTime();
+        try {
+            return future.join();
+        } catch (Exception e) {
+            Log.log(e);
+            return NOT_PREFETCHED;
+        } finally {
+            timings.waitPrefetchNanos.add(System.nanoTime() - initial);
+        }
+    }
+
+    private Prefetched prefetch(Entry entry) {
+        IFile file = entry.file;
+        // Note: if it's not synchronized it must be refreshed, which can only be done in the builder thread
+        // (so, we just let the builder thread load it).
+        if (!file.exists() || !file.isSynchronized(IResource.DEPTH_ZERO)) {
+            return NOT_PREFETCHED;
+        }
+        long initial = System.nanoTime();
+        IDocument doc = FileUtilsFileBuffer.getDocFromResource(file);
+        long loaded = System.nanoTime();
+        timings.loadNanos.add(loaded - initial);
+        if (doc == null) {
+            return NOT_PREFETCHED;
+        }
+        SourceModule module = null;
+        if (parse) {
+            IPath location = file.getLocation();
+            if (location != null) {
+                try {
+                    module = AbstractModule.createModuleFromDoc(entry.moduleName, new File(location.toOSString()),
+                            doc, entry.nature, true);
+                    if (module != null) {
+                        timings.parsedFiles.increment();
+                    }
+                } catch (Exception e) {
+                    Log.log(e);
+                }
+            }
+            timings.parseNanos.add(System.nanoTime() - loaded);
+        }
+        return new Prefetched(doc, module);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
@@ -194,9 +194,12 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
                     pythonPathNature.getProjectSourcePath(false); //this is just to update the paths (in case the project name has just changed)
 
                     List<IFile> resourcesToParse = new ArrayList<IFile>();
+                    BuildTimings timings = new BuildTimings();
 
                     List<PyDevBuilderVisitor> visitors = getVisitors();
-                    try (AutoCloseable closable = withStartEndVisitingNotifications(visitors, monitor, true, nature)) {
+                    try (AutoCloseable closable = withStartEndVisitingNotifications(visitors, monitor, true, nature,
+                            timings)) {
+                        long initialTime = System.nanoTime();
                         monitor.beginTask("Building...", (visitors.size() * 100) + 30);
 
                         IResource[] members = project.members();
@@ -235,11 +238,15 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
                                 }
                             }
                             monitor.worked(30);
-                            buildResources(resourcesToParse, monitor, visitors);
+                            timings.discoveryNanos.add(System.nanoTime() - initialTime);
+                            buildResources(resourcesToParse, monitor, visitors, timings);
                         }
                     } catch (Exception e1) {
                         Log.log(e1);
                     }
+                    if (BuildTimings.REPORT || DEBUG) {
+                        Log.logInfo(timings.toString());
+                    }
 
                 } finally {
                     nature.endRequests();
@@ -253,6 +260,15 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
     private AutoCloseable withStartEndVisitingNotifications(final List<PyDevBuilderVisitor> visitors,
             final IProgressMonitor monitor,
             boolean isFullBuild, IPythonNature nature) {
+        return withStartEndVisitingNotifications(visitors, monitor, isFullBuild, nature, null);
+    }
+
+    /**
+     * @param timings if given, the time spent in visitingEnded() is added to it.
+     */
+    private AutoCloseable withStartEndVisitingNotifications(final List<PyDevBuilderVisitor> visitors,
+            final IProgressMonitor monitor,
+            boolean isFullBuild, IPythonNature nature, final BuildTimings timings) {
         for (PyDevBuilderVisitor visitor : visitors) {
             try {
                 visitor.visitingWillStart(monitor, isFullBuild, nature);
@@ -263,6 +279,7 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
         return new AutoCloseable() {
             @Override
             public void close() throws Exception {
+                long initialTime = System.nanoTime();
                 for (PyDevBuilderVisitor visitor : visitors) {
                     try {
                         visitor.visitingEnded(monitor);
@@ -270,6 +287,9 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
                         Log.log(e);
                     }
                 }
+                if (timings != null) {
+                    timings.visitingEndedNanos.add(System.nanoTime() - initialTime);
+                }
             }
         };
     }
@@ -305,23 +325,25 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
      */
     public void buildResources(List<IFile> resourcesToParse, IProgressMonitor monitor,
             List<PyDevBuilderVisitor> visitors) {
+        buildResources(resourcesToParse, monitor, visitors, new BuildTimings());
+    }
 
-        // we have 100 units here
-        double inc = (visitors.size() * 100) / (double) resourcesToParse.size();
-
-        double total = 0;
-        int totalResources = resourcesToParse.size();
-        int i = 0;
-
-        FastStringBuffer bufferToCreateString = new FastStringBuffer();
+    /**
+     * The build is done in stages:
+     *
+     * 1. discovery: the nature and module name of each resource is computed.
+     * 2. documents are loaded and parsed in parallel (ahead of the visitors).
+     * 3. visitors are called in this thread for each resource in order (so, this thread is the only one which
+     * writes to the modules manager and additional info -- visitors may still do the heavy work in parallel,
+     * as the code analysis does).
+     */
+    private void buildResources(List<IFile> resourcesToParse, IProgressMonitor monitor,
+            List<PyDevBuilderVisitor> visitors, BuildTimings timings) {
 
+        long initialTime = System.nanoTime();
+        List<FullBuildPrefetcher.Entry> entries = new ArrayList<FullBuildPrefetcher.Entry>(resourcesToParse.size());
         boolean loggedMisconfiguration = false;
-        long lastProgressTime = 0;
-
-        Object memoSharedProjectState = null;
         for (Iterator<IFile> iter = resourcesToParse.iterator(); iter.hasNext() && monitor.isCanceled() == false;) {
-            i += 1;
-            total += inc;
             IFile r = iter.next();
 
             CorePlugin.markAsPyDevFileIfDetected(r);
@@ -351,44 +373,93 @@ public class PyDevBuilder extends IncrementalProjectBuilder {
                     }
                     continue;
                 }
+                entries.add(new FullBuildPrefetcher.Entry(r, nature, moduleName));
+            } finally {
+                nature.endRequests();
+            }
+        }
+        timings.discoveryNanos.add(System.nanoTime() - initialTime);
 
-                //create new memo for each resource
-                VisitorMemo memo = new VisitorMemo();
-                memo.setSharedProjectState(memoSharedProjectState);
-                memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+        int totalResources = entries.size();
+        if (totalResources == 0) {
+            return;
+        }
 
-                ICallback0<IDocument> doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
-                memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
+        // we have 100 units here
+        double inc = (visitors.size() * 100) / (double) totalResources;
+        double total = 0;
 
-                PyDevBuilderVisitor.setModuleNameInCache(memo, r, moduleName);
+        FastStringBuffer bufferToCreateString = new FastStringBuffer();
+        long lastProgressTime = 0;
 
-                for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
-                        && monitor.isCanceled() == false;) {
+        // If only the active editor is analyzed, the builder only needs the definitions (which are gotten
+        // with a fast parser), so, there's no point in doing a full parse ahead.
+        boolean parse = !PyDevBuilderPreferences.getAnalyzeOnlyActiveEditor();
 
-                    try {
-                        PyDevBuilderVisitor visitor = it.next();
-                        visitor.memo = memo; //setting the memo must be the first thing.
+        Object memoSharedProjectState = null;
+        try (FullBuildPrefetcher prefetcher = new FullBuildPrefetcher(entries, parse, timings)) {
+            for (int i = 0; i < totalResources && monitor.isCanceled() == false; i++) {
+                total += inc;
+                FullBuildPrefetcher.Entry entry = entries.get(i);
+                IFile r = entry.file;
+                IPythonNature nature = entry.nature;
+                FullBuildPrefetcher.Prefetched prefetched = prefetcher.get(i);
+
+                if (!nature.startRequests()) {
+                    continue;
+                }
+                long visitorsInitialTime = System.nanoTime();
+                try {
+                    //create new memo for each resource
+                    VisitorMemo memo = new VisitorMemo();
+                    memo.setSharedProjectState(memoSharedProjectState);
+                    memo.put(PyDevBuilderVisitor.IS_FULL_BUILD, true); //mark it as full build
+
+                    ICallback0<IDocument> doc;
+                    final IDocument prefetchedDoc = prefetched.doc;
+                    if (prefetchedDoc != null) {
+                        doc = () -> prefetchedDoc;
+                    } else {
+                        doc = FileUtilsFileBuffer.getDocOnCallbackFromResource(r);
+                    }
+                    memo.put(PyDevBuilderVisitor.DOCUMENT_TIME, System.currentTimeMillis());
 
-                        long currentTimeMillis = System.currentTimeMillis();
-                        if (currentTimeMillis - lastProgressTime > 300) {
-                            communicateProgress(monitor, totalResources, i, r, visitor, bufferToCreateString);
-                            lastProgressTime = currentTimeMillis;
-                        }
+                    PyDevBuilderVisitor.setModuleNameInCache(memo, r, entry.moduleName);
+                    if (prefetched.module != null) {
+                        PyDevBuilderVisitor.setModuleInCache(memo, r, prefetched.module);
+                    }
 
-                        //on a full build, all visits are as some add...
-                        visitor.visitAddedResource(r, doc, monitor);
-                    } catch (Exception e) {
-                        Log.log(e);
+                    for (Iterator<PyDevBuilderVisitor> it = visitors.iterator(); it.hasNext()
+                            && monitor.isCanceled() == false;) {
+
+                        try {
+                            PyDevBuilderVisitor visitor = it.next();
+                            visitor.memo = memo; //setting the memo must be the first thing.
+
+                            long currentTimeMillis = System.currentTimeMillis();
+                            if (currentTimeMillis - lastProgressTime > 300) {
+                                communicateProgress(monitor, totalResources, i + 1, r, visitor,
+                                        bufferToCreateString);
+                                lastProgressTime = currentTimeMillis;
+                            }
+
+                            //on a full build, all visits are as some add...
+                            visitor.visitAddedResource(r, doc, monitor);
+                        } catch (Exception e) {
+                            Log.log(e);
+                        }
                     }
-                }
 
-                if (total > 1) {
-                    monitor.worked((int) total);
-                    total -= (int) total;
+                    if (total > 1) {
+                        monitor.worked((int) total);
+                        total -= (int) total;
+                    }
+                    memoSharedProjectState = memo.getSharedProjectState();
+                    timings.files.increment();
+                } finally {
+                    nature.endRequests();
+                    timings.visitorsNanos.add(System.nanoTime() - visitorsInitialTime);
                 }
-                memoSharedProjectState = memo.getSharedProjectState();
-            } finally {
-                nature.endRequests();
             }
         }
     }
@@ -168,9 +168,23 @@ public abstract class PyDevBuilderVisitor implements Comparable<PyDevBuilderVisi
      * @param module this is the module to set in the cache
      */
     protected void setModuleInCache(IResource resource, IModule module) {
+        setModuleInCache(memo, resource, module);
+    }
+
+    /**
+     * Sets a module which was already created for the given resource (so that visitors don't need to parse it again).
+     */
+    public static void setModuleInCache(Map<String, Object> memo, IResource resource, IModule module) {
         memo.put(MODULE_CACHE + resource.getModificationStamp(), module);
     }
 
+    /**
+     * @return the module which was set in the cache for the given resource or null if it's not there.
+     */
+    protected SourceModule getModuleFromCache(IResource resource) {
+        return (SourceModule) memo.get(MODULE_CACHE + resource.getModificationStamp());
+    }
+
     /**
      * @param resource
      * @param document
@@ -0,0 +1,516 @@
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForFolder;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.utils.PlatformUtils;
+
+/**
+ * Persists the keys of a modules manager as an append-only journal of add/remove records.
+ *
+ * The file has a header followed by records in the format: [int payload length][int crc32 of payload][payload].
+ * When saving, only the keys changed since the last save are appended (the ModulesManager keeps track of those).
+ * When the file has too many obsolete records, it's compacted (rewritten with just the current keys in sorted order).
+ *
+ * A record which is truncated or has an invalid checksum (i.e.: the process was killed during a write) finishes
+ * the replay: everything up to it is kept and it's overwritten on the next save.
+ *
+ * Not thread-safe: the ModulesManager synchronizes the access.
+ */
+public final class ModulesKeysJournal {
+
+    public static final String FILENAME = "modulesKeys.journal";
+
+    private static final int MAGIC = 0x504D4B4A;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Just a sanity check so that we don't allocate a huge array when reading a corrupted record.
+     */
+    private static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final byte KIND_KEY = 0;
+    private static final byte KIND_FOLDER = 1;
+    private static final byte KIND_ZIP = 2;
+
+    /**
+     * The journal is compacted when it has more than this number of records + 2 * the number of keys.
+     */
+    /*default*/ static int COMPACT_SLACK = 1000;
+
+    private final File file;
+
+    /**
+     * Whether the contents of the file are known (if not, it must be rewritten in the next save).
+     */
+    private boolean inSync;
+
+    /**
+     * Number of records in the file.
+     */
+    private int records;
+
+    /**
+     * Length of the valid contents of the file (anything after it is discarded in the next append).
+     */
+    private long validLength;
+
+    /**
+     * File paths are written only once per file and then referenced by their index (the same zip file is
+     * referenced by all the modules inside it and folders share the same directories).
+     */
+    private final Map<String, Integer> stringToId = new HashMap<>();
+    private final List<String> idToString = new ArrayList<>();
+
+    public ModulesKeysJournal(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /*default*/ int getRecords() {
+        return records;
+    }
+
+    /**
+     * Replays the journal.
+     *
+     * @return the keys saved in the journal.
+     * @throws IOException if the file does not exist or its header is not valid.
+     */
+    public PyPublicTreeMap<ModulesKey, ModulesKey> load() throws IOException {
+        inSync = false;
+        records = 0;
+        validLength = 0;
+        stringToId.clear();
+        idToString.clear();
+
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("Invalid modules journal: " + file);
+            }
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Modules journal too big: " + file);
+            }
+            ByteBuffer buffer = read(channel, size);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Invalid modules journal header (or version changed): " + file);
+            }
+            keys = replay(buffer);
+        }
+        inSync = true;
+        return keys;
+    }
+
+    /**
+     * Maps the file (or reads it into the heap on Windows, where a file can't be truncated or replaced while it's
+     * mapped and the mapping is only released when the buffer is garbage-collected).
+     */
+    private static ByteBuffer read(FileChannel channel, long size) throws IOException {
+        if (!PlatformUtils.isWindowsPlatform()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            //keep on reading
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private PyPublicTreeMap<ModulesKey, ModulesKey> replay(ByteBuffer buffer) {
+        // A compacted journal starts with all the keys in sorted order: those are gathered in a list and the map is
+        // built in linear time (only the records after that are added one by one).
+        final ArrayList<ModulesKey> sorted = new ArrayList<>();
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = null;
+        CRC32 crc = new CRC32();
+        validLength = HEADER_SIZE;
+
+        while (buffer.remaining() >= 8) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > MAX_RECORD_SIZE || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice();
+            payload.limit(length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+
+            int stringsBefore = idToString.size();
+            byte op;
+            ModulesKey key;
+            try {
+                op = payload.get();
+                if (op == OP_ADD) {
+                    key = readKey(payload);
+                } else if (op == OP_REMOVE) {
+                    key = new ModulesKey(readString(payload), null);
+                } else {
+                    throw new IOException("Unexpected operation: " + op);
+                }
+                if (key.name == null) {
+                    throw new IOException("Module key without a name.");
+                }
+            } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+                // The checksum matched but the contents are not what we expected: stop here.
+                Log.log("Error reading modules journal: " + file, e);
+                while (idToString.size() > stringsBefore) {
+                    stringToId.remove(idToString.remove(idToString.size() - 1));
+                }
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            validLength += 8 + length;
+            records++;
+
+            if (keys == null) {
+                if (op == OP_ADD && (sorted.isEmpty() || sorted.get(sorted.size() - 1).compareTo(key) < 0)) {
+                    sorted.add(key);
+                    continue;
+                }
+                keys = buildFromSorted(sorted);
+            }
+            // Note: remove before adding so that the new key instance is the one kept (a ModulesKey is equal to
+            // another one with the same name even if the file is different).
+            keys.remove(key);
+            if (op == OP_ADD) {
+                keys.put(key, key);
+            }
+        }
+        if (keys == null) {
+            keys = buildFromSorted(sorted);
+        }
+        return keys;
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private static PyPublicTreeMap<ModulesKey, ModulesKey> buildFromSorted(final List<ModulesKey> sorted) {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
+        final Iterator<ModulesKey> it = sorted.iterator();
+        try {
+            keys.buildFromSorted(sorted.size(), new Iterator() {
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public Object next() {
+                    ModulesKey next = it.next();
+                    return new AbstractMap.SimpleImmutableEntry<ModulesKey, ModulesKey>(next, next);
+                }
+            }, null, null);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        return keys;
+    }
+
+    /**
+     * @return whether the changes may be appended with {@link #append(Collection, Collection, int)} (otherwise, the
+     * journal must be rewritten with {@link #rewrite(PyPublicTreeMap)}).
+     */
+    public boolean canAppend() {
+        return inSync && file.isFile() && file.length() >= validLength;
+    }
+
+    /**
+     * Appends the keys which were added (or changed) and removed since the last save.
+     *
+     * @param size the number of keys after the changes (used to decide whether it should be compacted).
+     * @return false if the changes were not appended (in which case the journal must be rewritten).
+     */
+    public boolean append(Collection<ModulesKey> added, Collection<ModulesKey> removed, int size) {
+        if (!canAppend()) {
+            return false;
+        }
+        int newRecords = added.size() + removed.size();
+        if (newRecords == 0) {
+            return true;
+        }
+        if (records + newRecords > 2 * size + COMPACT_SLACK) {
+            return false;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int stringsBefore = idToString.size();
+        try {
+            DataOutputStream out = new DataOutputStream(bytes);
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            CRC32 crc = new CRC32();
+            for (ModulesKey key : removed) {
+                payloadBytes.reset();
+                payload.writeByte(OP_REMOVE);
+                writeString(payload, key.name);
+                writeRecord(out, payloadBytes, crc);
+            }
+            for (ModulesKey key : added) {
+                payloadBytes.reset();
+                payload.writeByte(OP_ADD);
+                writeKey(payload, key);
+                writeRecord(out, payloadBytes, crc);
+            }
+
+            if (file.length() != validLength) {
+                // Discard a partially written record (if any).
+                try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                    channel.truncate(validLength);
+                }
+            }
+            try (OutputStream stream = new FileOutputStream(file, true)) {
+                bytes.writeTo(stream);
+            }
+        } catch (IOException e) {
+            // We don't know what's in the file anymore (and the strings written may not be there): rewrite it.
+            while (idToString.size() > stringsBefore) {
+                stringToId.remove(idToString.remove(idToString.size() - 1));
+            }
+            inSync = false;
+            Log.log("Unable to append to modules journal (it'll be rewritten): " + file, e);
+            return false;
+        }
+        validLength += bytes.size();
+        records += newRecords;
+        return true;
+    }
+
+    /**
+     * Rewrites the whole journal with just the given keys (in sorted order).
+     */
+    public void rewrite(PyPublicTreeMap<ModulesKey, ModulesKey> keys) throws IOException {
+        inSync = false;
+        records = 0;
+        validLength = 0;
+        stringToId.clear();
+        idToString.clear();
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tempFile = new File(parent, file.getName() + ".tmp");
+        int written;
+        long length;
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            CRC32 crc = new CRC32();
+            written = 0;
+            for (ModulesKey key : keys.values()) {
+                payloadBytes.reset();
+                payload.writeByte(OP_ADD);
+                writeKey(payload, key);
+                writeRecord(out, payloadBytes, crc);
+                written++;
+            }
+            length = out.size();
+        } catch (IOException e) {
+            tempFile.delete();
+            stringToId.clear();
+            idToString.clear();
+            throw e;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tempFile.delete();
+            stringToId.clear();
+            idToString.clear();
+            throw e;
+        }
+        records = written;
+        validLength = length;
+        inSync = true;
+    }
+
+    private static void writeRecord(DataOutputStream out, ByteArrayOutputStream payloadBytes, CRC32 crc)
+            throws IOException {
+        crc.reset();
+        crc.update(payloadBytes.toByteArray());
+        out.writeInt(payloadBytes.size());
+        out.writeInt((int) crc.getValue());
+        payloadBytes.writeTo(out);
+    }
+
+    /**
+     * @return whether the keys would be persisted the same way (ModulesKey.equals only checks the name).
+     */
+    /*default*/ static boolean isSame(ModulesKey k1, ModulesKey k2) {
+        if (k1.getClass() != k2.getClass() || !k1.name.equals(k2.name) || !Objects.equals(k1.file, k2.file)) {
+            return false;
+        }
+        if (k1 instanceof ModulesKeyForZip) {
+            ModulesKeyForZip z1 = (ModulesKeyForZip) k1;
+            ModulesKeyForZip z2 = (ModulesKeyForZip) k2;
+            return z1.isFile == z2.isFile && Objects.equals(z1.zipModulePath, z2.zipModulePath);
+        }
+        return true;
+    }
+
+    private void writeKey(DataOutputStream out, ModulesKey key) throws IOException {
+        if (key instanceof ModulesKeyForZip) {
+            ModulesKeyForZip zip = (ModulesKeyForZip) key;
+            out.writeByte(KIND_ZIP);
+            writeString(out, key.name);
+            writeFile(out, key.file);
+            writeString(out, zip.zipModulePath);
+            out.writeBoolean(zip.isFile);
+        } else {
+            out.writeByte(key instanceof ModulesKeyForFolder ? KIND_FOLDER : KIND_KEY);
+            writeString(out, key.name);
+            writeFile(out, key.file);
+        }
+    }
+
+    private ModulesKey readKey(ByteBuffer in) throws IOException {
+        byte kind = in.get();
+        String name = readString(in);
+        File f = readFile(in);
+        switch (kind) {
+            case KIND_KEY:
+                return new ModulesKey(name, f);
+            case KIND_FOLDER:
+                return new ModulesKeyForFolder(name, f);
+            case KIND_ZIP:
+                String zipModulePath = readString(in);
+                return new ModulesKeyForZip(name, f, zipModulePath, in.get() != 0);
+            default:
+                throw new IOException("Unexpected key kind: " + kind);
+        }
+    }
+
+    /**
+     * 0 = null, 1 = new path (written inline), n = reference to the path with index n - 2.
+     */
+    private void writeFile(DataOutputStream out, File f) throws IOException {
+        if (f == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        String path = f.toString();
+        Integer id = stringToId.get(path);
+        if (id != null) {
+            writeVarInt(out, id + 2);
+            return;
+        }
+        stringToId.put(path, idToString.size());
+        idToString.add(path);
+        writeVarInt(out, 1);
+        writeString(out, path);
+    }
+
+    private File readFile(ByteBuffer in) throws IOException {
+        int ref = readVarInt(in);
+        if (ref == 0) {
+            return null;
+        }
+        String path;
+        if (ref == 1) {
+            path = readString(in);
+            if (path == null) {
+                throw new IOException("Expected path.");
+            }
+            stringToId.put(path, idToString.size());
+            idToString.add(path);
+        } else {
+            int id = ref - 2;
+            if (id >= idToString.size()) {
+                throw new IOException("Invalid path reference: " + id);
+            }
+            path = idToString.get(id);
+        }
+        return new File(path);
+    }
+
+    /**
+     * Strings are written with a varint with the length + 1 (0 = null) and their UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int len = readVarInt(in);
+        if (len == 0) {
+            return null;
+        }
+        len--;
+        if (len > in.remaining()) {
+            throw new IOException("Invalid string length: " + len);
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    private static int readVarInt(ByteBuffer in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Invalid varint.");
+    }
+}
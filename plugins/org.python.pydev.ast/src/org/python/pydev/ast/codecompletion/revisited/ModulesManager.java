@@ -89,6 +89,8 @@ public abstract class ModulesManager implements IModulesManager {
     /**
      * MODULES_MANAGER_V3: fixed a bug when writing/reading ModulesKeyForZip entries.
      * MODULES_MANAGER_V3: support for namespace packages.
+     *
+     * Note: this text format is now only read (to convert to the ModulesKeysJournal).
      */
     private static final String MODULES_MANAGER_V3 = "MODULES_MANAGER_V3\n";
 
@@ -234,6 +236,29 @@ public abstract class ModulesManager implements IModulesManager {
 
     protected final Object modulesKeysLock = new Object();
 
+    /**
+     * The keys added, changed or removed since the last save (only their names are used: what's saved is what's in
+     * the modulesKeys when saving).
+     *
+     * Guarded by the modulesKeysLock.
+     */
+    private final Set<ModulesKey> changedKeys = new HashSet<ModulesKey>();
+
+    /**
+     * Whether all the keys must be saved (i.e.: they were replaced or the journal isn't in sync with them).
+     *
+     * Guarded by the modulesKeysLock.
+     */
+    private boolean allKeysChanged = true;
+
+    /**
+     * Where the keys are persisted (set when loaded or saved).
+     *
+     * Note: when both are needed, the journalLock must be acquired before the modulesKeysLock.
+     */
+    private ModulesKeysJournal journal;
+    private final Object journalLock = new Object();
+
     protected static final ModulesManagerCache cache = new ModulesManagerCache();
     protected static final ModulesManagerCache cachePredefined = new ModulesManagerCache();
     private static final CachePyiModules cachePyiModules = new CachePyiModules();
@@ -265,64 +290,53 @@ public abstract class ModulesManager implements IModulesManager {
             workspaceMetadataFile.mkdirs();
         }
 
-        File modulesKeysFile = new File(workspaceMetadataFile, "modulesKeys");
         File pythonpatHelperFile = new File(workspaceMetadataFile, "pythonpath");
-        FastStringBuffer buf;
-        HashMap<String, Integer> commonTokens = new HashMap<String, Integer>();
+        File journalFile = new File(workspaceMetadataFile, ModulesKeysJournal.FILENAME);
 
-        synchronized (modulesKeysLock) {
-            buf = new FastStringBuffer(this.modulesKeys.size() * 50);
-            buf.append(MODULES_MANAGER_V3);
-
-            for (Iterator<ModulesKey> iter = this.modulesKeys.keySet().iterator(); iter.hasNext();) {
-                ModulesKey next = iter.next();
-                buf.append(next.name);
-                if (next.file != null) {
-                    buf.append("|");
-                    if (next instanceof ModulesKeyForZip) {
-                        ModulesKeyForZip modulesKeyForZip = (ModulesKeyForZip) next;
-                        if (modulesKeyForZip.zipModulePath != null) {
-                            String fileStr = next.file.toString();
-                            Integer t = commonTokens.get(fileStr);
-                            if (t == null) {
-                                t = commonTokens.size();
-                                commonTokens.put(fileStr, t);
+        synchronized (journalLock) {
+            if (journal == null || !journal.getFile().equals(journalFile)) {
+                journal = new ModulesKeysJournal(journalFile);
+            }
+            try {
+                //Only the changes since the last save are appended (unless it has to be compacted).
+                List<ModulesKey> added = new ArrayList<ModulesKey>();
+                List<ModulesKey> removed = new ArrayList<ModulesKey>();
+                boolean rewrite;
+                int size;
+                synchronized (modulesKeysLock) {
+                    rewrite = allKeysChanged || !journal.canAppend();
+                    if (!rewrite) {
+                        for (ModulesKey key : changedKeys) {
+                            ModulesKey current = this.modulesKeys.get(key);
+                            if (current != null) {
+                                added.add(current);
+                            } else {
+                                removed.add(key);
                             }
-                            buf.append(t);
-                            buf.append("|");
-
-                            buf.append(modulesKeyForZip.zipModulePath);
-                            buf.append("|");
-                            buf.append(modulesKeyForZip.isFile ? '1' : '0');
                         }
-                    } else if (next instanceof ModulesKeyForFolder) {
-                        ModulesKeyForFolder modulesKeyForFolder = (ModulesKeyForFolder) next;
-                        if (modulesKeyForFolder.file != null) {
-                            buf.append(modulesKeyForFolder.file.toString());
-                            buf.append("|^");
-                        }
-                    } else {
-                        buf.append(next.file.toString());
                     }
+                    size = this.modulesKeys.size();
+                    changedKeys.clear();
+                    allKeysChanged = false;
+                }
+                if (rewrite || !journal.append(added, removed, size)) {
+                    PyPublicTreeMap<ModulesKey, ModulesKey> keys;
+                    synchronized (modulesKeysLock) {
+                        keys = new PyPublicTreeMap<ModulesKey, ModulesKey>(this.modulesKeys);
+                    }
+                    journal.rewrite(keys);
+                }
+            } catch (IOException e) {
+                synchronized (modulesKeysLock) {
+                    allKeysChanged = true;
                 }
-                buf.append('\n');
+                throw new RuntimeException(e);
             }
         }
-        if (commonTokens.size() > 0) {
-            FastStringBuffer header = new FastStringBuffer(buf.length() + (commonTokens.size() * 50));
-            header.append(MODULES_MANAGER_V3);
-            header.append("--COMMON--\n");
-            for (Map.Entry<String, Integer> entries : commonTokens.entrySet()) {
-                header.append(entries.getValue());
-                header.append('=');
-                header.append(entries.getKey());
-                header.append('\n');
-            }
-            header.append("--END-COMMON--\n");
-            header.append(buf);
-            buf = header;
+        File legacyModulesKeysFile = new File(workspaceMetadataFile, "modulesKeys");
+        if (legacyModulesKeysFile.exists()) {
+            legacyModulesKeysFile.delete();
         }
-        FileUtils.writeStrToFile(buf.toString(), modulesKeysFile);
 
         this.pythonPathHelper.saveToFile(pythonpatHelperFile);
     }
@@ -337,14 +351,60 @@ public abstract class ModulesManager implements IModulesManager {
             throw new IOException("Expecting: " + workspaceMetadataFile + " to be a directory.");
         }
         File modulesKeysFile = new File(workspaceMetadataFile, "modulesKeys");
+        File journalFile = new File(workspaceMetadataFile, ModulesKeysJournal.FILENAME);
         File pythonpatHelperFile = new File(workspaceMetadataFile, "pythonpath");
-        if (!modulesKeysFile.isFile()) {
-            throw new IOException("Expecting: " + modulesKeysFile + " to exist (and be a file).");
+        if (!journalFile.isFile() && !modulesKeysFile.isFile()) {
+            throw new IOException("Expecting: " + journalFile + " to exist (and be a file).");
         }
         if (!pythonpatHelperFile.isFile()) {
             throw new IOException("Expecting: " + pythonpatHelperFile + " to exist (and be a file).");
         }
 
+        if (journalFile.isFile()) {
+            ModulesKeysJournal journal = new ModulesKeysJournal(journalFile);
+            PyPublicTreeMap<ModulesKey, ModulesKey> keys = journal.load();
+            synchronized (modulesManager.journalLock) {
+                synchronized (modulesManager.modulesKeysLock) {
+                    modulesManager.replaceModulesKeys(keys);
+                    //The journal has exactly what was loaded.
+                    modulesManager.allKeysChanged = false;
+                }
+                modulesManager.journal = journal;
+            }
+        } else {
+            //Format used before the journal (converted to the journal in the next save).
+            loadFromLegacyFile(modulesManager, modulesKeysFile);
+            synchronized (modulesManager.modulesKeysLock) {
+                modulesManager.allKeysChanged = true;
+            }
+        }
+
+        if (modulesManager.pythonPathHelper == null) {
+            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
+                    + " dir:" + workspaceMetadataFile);
+        }
+        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
+
+        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
+            throw new IOException("Pythonpath helper pythonpath not properly restored. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
+            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
+            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
+            //Note: changed to a really low value because we now make a check after it's restored anyways.
+            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
+                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
+        }
+
+    }
+
+    private static void loadFromLegacyFile(ModulesManager modulesManager, File modulesKeysFile) {
         String fileContents = FileUtils.getFileContents(modulesKeysFile);
         if (!fileContents.startsWith(MODULES_MANAGER_V3)) {
             throw new RuntimeException(
@@ -378,30 +438,6 @@ public abstract class ModulesManager implements IModulesManager {
         }
 
         handleFileContents(modulesManager, fileContents, intToString);
-
-        if (modulesManager.pythonPathHelper == null) {
-            throw new IOException("Pythonpath helper not properly restored. " + modulesManager.getClass().getName()
-                    + " dir:" + workspaceMetadataFile);
-        }
-        modulesManager.pythonPathHelper.loadFromFile(pythonpatHelperFile);
-
-        if (modulesManager.pythonPathHelper.getPythonpath() == null) {
-            throw new IOException("Pythonpath helper pythonpath not properly restored. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.pythonPathHelper.getPythonpath().size() == 0) {
-            throw new IOException("Pythonpath helper pythonpath restored with no contents. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
-        if (modulesManager.modulesKeys.size() < 2) { //if we have few modules, that may indicate a problem...
-            //if the project is really small, modulesManager will be fast, otherwise, it'll fix the problem.
-            //Note: changed to a really low value because we now make a check after it's restored anyways.
-            throw new IOException("Only " + modulesManager.modulesKeys.size() + " modules restored in I/O. "
-                    + modulesManager.getClass().getName() + " dir:" + workspaceMetadataFile);
-        }
-
     }
 
     /**
@@ -588,8 +624,7 @@ public abstract class ModulesManager implements IModulesManager {
             cache.clear();
             cachePredefined.clear();
             //assign to instance variable
-            this.modulesKeys.clear();
-            this.modulesKeys.putAll(keys);
+            replaceModulesKeys(keys);
         }
 
     }
@@ -752,7 +787,9 @@ public abstract class ModulesManager implements IModulesManager {
             if (DEBUG_BUILD) {
                 System.out.println("Removing module:" + key + " - " + this.getClass());
             }
-            this.modulesKeys.remove(key);
+            if (this.modulesKeys.remove(key) != null) {
+                changedKeys.add(key);
+            }
             ModulesManager.cache.remove(key, this);
         }
     }
@@ -800,11 +837,26 @@ public abstract class ModulesManager implements IModulesManager {
             System.out.println("Adding module:" + key + " - " + this.getClass());
         }
         synchronized (modulesKeysLock) {
-            this.modulesKeys.put(key, key);
+            ModulesKey old = this.modulesKeys.put(key, key);
+            if (old == null || !ModulesKeysJournal.isSame(old, key)) {
+                changedKeys.add(key);
+            }
             ModulesManager.cache.add(key, n, this);
         }
     }
 
+    /**
+     * Replaces all the keys (all of those are saved in the next save).
+     *
+     * Note: the caller must hold the modulesKeysLock.
+     */
+    protected void replaceModulesKeys(Map<ModulesKey, ModulesKey> keys) {
+        this.modulesKeys.clear();
+        this.modulesKeys.putAll(keys);
+        changedKeys.clear();
+        allKeysChanged = true;
+    }
+
     /**
      * @return a set of all module keys
      *
@@ -1064,6 +1116,9 @@ public abstract class ModulesManager implements IModulesManager {
             }
 
             if (n != null) {
+                if (n instanceof SourceModule && shouldCompactAsts()) {
+                    ((SourceModule) n).compactAst();
+                }
                 doAddSingleModule(createModulesKey(name, e.f), n);
             } else {
                 Log.log(("The module " + name + " could not be found nor created!"));
@@ -1086,6 +1141,14 @@ public abstract class ModulesManager implements IModulesManager {
         return n;
     }
 
+    /**
+     * @return whether the asts of the source modules created by this manager should be compacted before being
+     * added to the cache (it's only worth it for managers with lots of modules which don't change much).
+     */
+    protected boolean shouldCompactAsts() {
+        return false;
+    }
+
     /**
      * Called after the creation of any module. Used as a workaround for filling tokens that are in no way
      * available in the code-completion through the regular inspection.
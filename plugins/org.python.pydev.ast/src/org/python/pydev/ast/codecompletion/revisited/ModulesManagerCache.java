@@ -7,70 +7,123 @@
 package org.python.pydev.ast.codecompletion.revisited;
 
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
 import org.python.pydev.core.ModulesKey;
-import org.python.pydev.shared_core.cache.LRUCache;
+import org.python.pydev.shared_core.cache.ConcurrentClockCache;
+import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
- * This is a 'global' cache implementation, that can have at most n objects in
+ * This is a 'global' cache implementation, that can have at most n bytes (estimated) of modules in
  * the memory at any time.
+ *
+ * Lookups which hit the cache don't lock (only a miss needs to synchronize with the modules manager to check
+ * whether the key is actually available).
  */
 final class ModulesManagerCache {
     /**
-     * Defines the maximum amount of modules that can be in the memory at any time (for all the managers)
+     * Defines the maximum amount of memory (in MB) that the modules in the cache may use (for all the managers).
+     *
+     * May be customized with -Dpydev.modules.cache.max.mb=XXX
      */
-    private static final int MAX_NUMBER_OF_MODULES = 400;
+    private static final long MAX_MODULES_SIZE_IN_BYTES = Long.getLong("pydev.modules.cache.max.mb", 128) * 1024
+            * 1024;
 
     /**
-     * The access to the cache is synchronized
+     * An empty module just has the name and the file.
      */
-    private LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
-    private final Object lock = new Object();
+    private static final int EMPTY_MODULE_WEIGHT = 512;
+
+    /**
+     * Used when we can't estimate the size of the module from the source (i.e.: compiled modules).
+     */
+    private static final int DEFAULT_MODULE_WEIGHT = 64 * 1024;
+
+    /**
+     * The AST (and related info) of a source module usually takes this many times the size of the source in memory.
+     */
+    private static final int AST_BYTES_PER_SOURCE_BYTE = 12;
+
+    /**
+     * Same as AST_BYTES_PER_SOURCE_BYTE for a compacted AST (see: CompactAstVisitor): it retains about 14% less
+     * memory (12 * 0.86 = ~10.3, rounded up so that the estimate doesn't get below the actual usage).
+     */
+    private static final int COMPACT_AST_BYTES_PER_SOURCE_BYTE = 11;
+
+    private static final ICallback<Integer, AbstractModule> WEIGHER = new ICallback<Integer, AbstractModule>() {
+
+        @Override
+        public Integer call(AbstractModule module) {
+            if (module instanceof EmptyModule) {
+                return EMPTY_MODULE_WEIGHT;
+            }
+            if (module instanceof SourceModule) {
+                // Note: the length is gotten when the module is created (so, no access to the file here).
+                SourceModule sourceModule = (SourceModule) module;
+                long fileLength = sourceModule.getFileLength();
+                if (fileLength >= 0) {
+                    long estimated = fileLength * (sourceModule.isCompactAst()
+                            ? COMPACT_AST_BYTES_PER_SOURCE_BYTE
+                            : AST_BYTES_PER_SOURCE_BYTE);
+                    return (int) Math.min(Integer.MAX_VALUE, Math.max(EMPTY_MODULE_WEIGHT, estimated));
+                }
+            }
+            return DEFAULT_MODULE_WEIGHT;
+        }
+    };
+
+    /**
+     * Note: the cache itself is thread-safe.
+     */
+    private final ConcurrentClockCache<Tuple<ModulesKey, ModulesManager>, AbstractModule> internalCache;
 
     ModulesManagerCache() {
-        internalCache = new LRUCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(MAX_NUMBER_OF_MODULES);
+        internalCache = new ConcurrentClockCache<Tuple<ModulesKey, ModulesManager>, AbstractModule>(
+                MAX_MODULES_SIZE_IN_BYTES, WEIGHER);
     }
 
     /**
      * Overridden so that if we do not find the key, we have the chance to create it.
      */
     public AbstractModule getObj(ModulesKey key, ModulesManager modulesManager) {
+        Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
+        AbstractModule obj = internalCache.getObj(keyTuple);
+        if (obj != null) {
+            return obj;
+        }
+
         synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-
-            synchronized (lock) {
-                AbstractModule obj = internalCache.getObj(keyTuple);
-                if (obj == null && modulesManager.modulesKeys.containsKey(key)) {
-                    key = modulesManager.modulesKeys.get(key); //get the 'real' key
-                    obj = AbstractModule.createEmptyModule(key);
-                    internalCache.add(keyTuple, obj);
-                }
-                return obj;
+            ModulesKey realKey = modulesManager.modulesKeys.get(key); //get the 'real' key
+            if (realKey == null) {
+                return null;
             }
+            // Note: the key passed may be changed by the caller afterwards, so, use the real key in the cache.
+            keyTuple = new Tuple<ModulesKey, ModulesManager>(realKey, modulesManager);
+            return internalCache.addIfAbsent(keyTuple, AbstractModule.createEmptyModule(realKey));
         }
     }
 
+    /**
+     * Note: when changing the modulesKeys, the caller should hold the modulesKeysLock so that both are kept in sync.
+     */
     public void remove(ModulesKey key, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.remove(keyTuple);
-            }
-        }
+        internalCache.remove(new Tuple<ModulesKey, ModulesManager>(key, modulesManager));
     }
 
+    /**
+     * Note: when changing the modulesKeys, the caller should hold the modulesKeysLock so that both are kept in sync.
+     */
     public void add(ModulesKey key, AbstractModule n, ModulesManager modulesManager) {
-        synchronized (modulesManager.modulesKeysLock) {
-            Tuple<ModulesKey, ModulesManager> keyTuple = new Tuple<ModulesKey, ModulesManager>(key, modulesManager);
-            synchronized (lock) {
-                internalCache.add(keyTuple, n);
-            }
-        }
+        internalCache.add(new Tuple<ModulesKey, ModulesManager>(key, modulesManager), n);
     }
 
     public void clear() {
-        synchronized (lock) {
-            internalCache.clear();
-        }
+        internalCache.clear();
+    }
+
+    @Override
+    public String toString() {
+        return internalCache.toString();
     }
-}
\ No newline at end of file
+}
@@ -34,6 +34,7 @@ import org.python.pydev.ast.interpreter_managers.InterpreterManagersAPI;
 import org.python.pydev.core.ExtensionHelper;
 import org.python.pydev.core.IInterpreterInfo;
 import org.python.pydev.core.IInterpreterManager;
+import org.python.pydev.core.ISystemModulesManager;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.core.preferences.PydevPrefs;
 import org.python.pydev.shared_core.SharedCorePlugin;
@@ -390,6 +391,11 @@ public class SyncSystemModulesManager {
             }
             long initial = System.currentTimeMillis();
             builder.syncInfoToPythonPath(monitor, info);
+            ISystemModulesManager modulesManager = info.getModulesManager();
+            if (modulesManager instanceof SystemModulesManager) {
+                //Modules may have been installed/upgraded: rebuild the compiled modules cache if needed.
+                ((SystemModulesManager) modulesManager).scheduleCompiledModulesCacheBuild();
+            }
             if (DEBUG) {
                 System.out.println("End Synchronizing PYTHONPATH info (" + (System.currentTimeMillis() - initial)
                         / 1000.0 + " secs.)");
@@ -452,6 +452,10 @@ public class SyncSystemModulesManagerScheduler implements IInterpreterManagerLis
                 InfoTracker tracker = new InfoTracker(manager, info, listener);
                 for (String string : pythonPath) {
                     File f = new File(string);
+                    if (!f.isDirectory()) {
+                        // i.e.: .zip/.egg files can't be watched (and a missing dir is only checked in the full sync).
+                        continue;
+                    }
                     if (SyncSystemModulesManager.DEBUG) {
                         System.out.println("Tracking file: " + f + " for: " + info.getNameForUI());
                     }
@@ -460,6 +464,10 @@ public class SyncSystemModulesManagerScheduler implements IInterpreterManagerLis
                     currTrackers.add(tracker);
                 }
             }
+            if (SyncSystemModulesManager.DEBUG) {
+                System.out.println("Paths being watched: " + pathWatch.getWatchCount() + " (max event lag: "
+                        + pathWatch.getMaxEventLagMillis() + " millis).");
+            }
         }
     }
 
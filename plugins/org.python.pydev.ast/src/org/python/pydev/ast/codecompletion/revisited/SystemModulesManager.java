@@ -23,9 +23,14 @@ import java.util.SortedMap;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.Assert;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.jface.text.IDocument;
 import org.python.pydev.ast.codecompletion.revisited.modules.AbstractModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModule;
+import org.python.pydev.ast.codecompletion.revisited.modules.CompiledModulesCache;
 import org.python.pydev.ast.codecompletion.revisited.modules.EmptyModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.PredefinedSourceModule;
 import org.python.pydev.ast.codecompletion.revisited.modules.SourceModule;
@@ -50,6 +55,7 @@ import org.python.pydev.core.TokensList;
 import org.python.pydev.core.log.Log;
 import org.python.pydev.parser.PyParser;
 import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.CompactAstVisitor;
 import org.python.pydev.plugin.nature.SystemPythonNature;
 import org.python.pydev.shared_core.cache.LRUCache;
 import org.python.pydev.shared_core.io.FileUtils;
@@ -66,6 +72,10 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
 
     private static final String DIR_NAME_FOR_COMPILED_CACHE = "shell";
 
+    private static final boolean DEBUG_COMPILED_MODULES_CACHE = false;
+
+    /*default*/ static long COMPILED_MODULES_CACHE_BUILD_DELAY_MILLIS = 3000;
+
     /**
      * The system modules manager may have a nature if we create a SystemASTManager
      */
@@ -76,6 +86,18 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      */
     private InterpreterInfo info;
 
+    /**
+     * The cache with the tokens for the forced builtins (null if not available).
+     */
+    private transient volatile CompiledModulesCache compiledModulesCache;
+
+    /**
+     * Whether we already tried to load the compiled modules cache from the disk.
+     */
+    private transient volatile boolean compiledModulesCacheLoaded;
+
+    private transient Job compiledModulesCacheJob;
+
     public SystemModulesManager(InterpreterInfo info) {
         this.info = info;
     }
@@ -94,6 +116,16 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
         save();
     }
 
+    /**
+     * The modules from the interpreter are many and rarely change, so, when enabled (-Dpydev.ast.compact=true),
+     * their asts are compacted so that a few more of those fit in the cache (see: CompactAstVisitor for what's
+     * actually saved).
+     */
+    @Override
+    protected boolean shouldCompactAsts() {
+        return CompactAstVisitor.ENABLED;
+    }
+
     @Override
     public IModulesManager[] getManagersInvolved(boolean checkSystemManager) {
         return new IModulesManager[] { this };
@@ -425,6 +457,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
                 "v1_sys_astdelta", readFromFileMethod,
                 toFileMethod);
         d.processDeltas(this); //process the current deltas (clears current deltas automatically and saves it when the processing is concluded)
+        scheduleCompiledModulesCacheBuild();
     }
 
     @Override
@@ -448,8 +481,7 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
      */
     public void updateKeysAndSave(PyPublicTreeMap<ModulesKey, ModulesKey> keysFound) {
         synchronized (modulesKeysLock) {
-            modulesKeys.clear();
-            modulesKeys.putAll(keysFound);
+            replaceModulesKeys(keysFound);
         }
         this.save();
     }
@@ -483,6 +515,109 @@ public final class SystemModulesManager extends ModulesManagerWithBuild implemen
             Log.log(e);
         }
         super.changePythonPath(pythonpath, project, monitor);
+        compiledModulesCache = null;
+        compiledModulesCacheLoaded = true; //Only available again after it's rebuilt.
+        scheduleCompiledModulesCacheBuild();
+    }
+
+    private File getCompiledModulesCacheFile() {
+        File ioDirectory = getIoDirectory();
+        if (ioDirectory == null) {
+            return null;
+        }
+        return new File(ioDirectory, CompiledModulesCache.FILENAME);
+    }
+
+    /**
+     * @return the cache with the tokens for the forced builtins or null if it's still not available.
+     */
+    public CompiledModulesCache getCompiledModulesCache() {
+        if (!compiledModulesCacheLoaded) {
+            synchronized (this) {
+                if (!compiledModulesCacheLoaded) {
+                    compiledModulesCache = loadCompiledModulesCache();
+                    compiledModulesCacheLoaded = true;
+                }
+            }
+        }
+        return compiledModulesCache;
+    }
+
+    /**
+     * @return the cache which is in the disk (if it's still valid for the interpreter) or null.
+     */
+    private CompiledModulesCache loadCompiledModulesCache() {
+        File file = getCompiledModulesCacheFile();
+        if (file == null || !file.exists()) {
+            return null;
+        }
+        try {
+            CompiledModulesCache cache = CompiledModulesCache.open(file);
+            if (cache.getKey().equals(CompiledModulesCache.computeKey(info.getPythonPath(), getBuiltins()))) {
+                return cache;
+            }
+        } catch (IOException e) {
+            Log.log(e);
+        }
+        return null;
+    }
+
+    /**
+     * Rebuilds the cache with the tokens for the forced builtins in the background (nothing is done if the
+     * current cache is still valid).
+     */
+    public void scheduleCompiledModulesCacheBuild() {
+        if (!CompiledModule.COMPILED_MODULES_ENABLED || getCompiledModulesCacheFile() == null) {
+            return;
+        }
+        synchronized (this) {
+            if (compiledModulesCacheJob == null) {
+                compiledModulesCacheJob = new Job("Caching compiled modules") {
+
+                    @Override
+                    protected IStatus run(IProgressMonitor monitor) {
+                        buildCompiledModulesCache(monitor);
+                        return Status.OK_STATUS;
+                    }
+                };
+                compiledModulesCacheJob.setSystem(true);
+                compiledModulesCacheJob.setPriority(Job.DECORATE);
+            }
+            // If it's already scheduled, the delay is restarted (changes usually come in bursts).
+            compiledModulesCacheJob.schedule(COMPILED_MODULES_CACHE_BUILD_DELAY_MILLIS);
+        }
+    }
+
+    private void buildCompiledModulesCache(IProgressMonitor monitor) {
+        File file = getCompiledModulesCacheFile();
+        if (file == null) {
+            return;
+        }
+        String key = CompiledModulesCache.computeKey(info.getPythonPath(), getBuiltins());
+        CompiledModulesCache current = getCompiledModulesCache();
+        if (current == null) {
+            current = loadCompiledModulesCache(); //It may be valid again (i.e.: the pythonpath was just restored).
+        }
+        if (current != null && key.equals(current.getKey())) {
+            compiledModulesCache = current;
+            return;
+        }
+        try {
+            long initial = System.currentTimeMillis();
+            CompiledModulesCache cache = CompiledModulesCache.build(this, file, key, monitor);
+            if (key.equals(CompiledModulesCache.computeKey(info.getPythonPath(), getBuiltins()))) {
+                compiledModulesCache = cache;
+                compiledModulesCacheLoaded = true;
+            }
+            if (DEBUG_COMPILED_MODULES_CACHE) {
+                System.out.println("Compiled modules cache: " + cache.size() + " modules in "
+                        + (System.currentTimeMillis() - initial) + " millis.");
+            }
+        } catch (OperationCanceledException e) {
+            //Ignore
+        } catch (Exception e) {
+            Log.log("Error building compiled modules cache for: " + info.getNameForUI(), e);
+        }
     }
 
     /**
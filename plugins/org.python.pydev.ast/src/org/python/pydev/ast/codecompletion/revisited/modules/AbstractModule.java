@@ -287,7 +287,11 @@ public abstract class AbstractModule implements IModule {
             throws IOException, MisconfigurationException {
         if (PythonPathHelper.isValidFileMod(f.getName())) {
             if (PythonPathHelper.isValidSourceFile(f.getName())) {
-                return createModuleFromDoc(name, f, FileUtilsFileBuffer.getDocFromFile(f), nature, checkForPath);
+                IDocument doc = FileUtilsFileBuffer.getDocFromFile(f);
+                if (PersistentAstCache.ENABLED && !FileTypesPreferences.isCythonFile(f.getName())) {
+                    return createModuleUsingAstCache(name, f, doc, nature, checkForPath);
+                }
+                return createModuleFromDoc(name, f, doc, nature, checkForPath);
 
             } else { //this should be a compiled extension... we have to get completions from the python shell.
                 return new CompiledModule(name, nature.getAstManager().getModulesManager(), nature);
@@ -298,6 +302,25 @@ public abstract class AbstractModule implements IModule {
         return null;
     }
 
+    /**
+     * Creates the module with the ast from the PersistentAstCache if available (otherwise parses it and adds the
+     * ast to the cache if it had no errors).
+     */
+    private static SourceModule createModuleUsingAstCache(String name, File f, IDocument doc, IPythonNature nature,
+            boolean checkForPath) throws MisconfigurationException {
+        String key = PersistentAstCache.createKey(doc.get(), nature.getGrammarVersion(),
+                nature.getAdditionalGrammarVersions());
+        SimpleNode ast = PersistentAstCache.get(key);
+        if (ast != null) {
+            return new SourceModule(name, f, ast, null, nature);
+        }
+        SourceModule module = createModuleFromDoc(name, f, doc, nature, checkForPath);
+        if (module != null && module.parseError == null) {
+            PersistentAstCache.put(key, module.getAst());
+        }
+        return module;
+    }
+
     public static SourceModule createModuleFromDoc(String name, File f, IDocument doc, IPythonNature nature,
             boolean checkForPath) throws MisconfigurationException {
         IGrammarVersionProvider grammarVersionProvider = nature;
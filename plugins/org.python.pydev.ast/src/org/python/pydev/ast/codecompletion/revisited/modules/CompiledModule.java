@@ -35,6 +35,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.eclipse.jface.text.Document;
 import org.python.pydev.ast.codecompletion.revisited.CompletionStateFactory;
+import org.python.pydev.ast.codecompletion.revisited.SystemModulesManager;
 import org.python.pydev.ast.codecompletion.revisited.visitors.Definition;
 import org.python.pydev.ast.codecompletion.shell.AbstractShell;
 import org.python.pydev.ast.codecompletion.shell.CompletionsShell;
@@ -299,6 +300,17 @@ public class CompiledModule extends AbstractModule {
      */
     private static Tuple<File, IToken[]> getCached(String name, IModulesManager manager) {
         ISystemModulesManager systemModulesManager = manager.getSystemModulesManager();
+        if (systemModulesManager instanceof SystemModulesManager) {
+            //The cache built in bulk for the forced builtins is checked first.
+            CompiledModulesCache compiledModulesCache = ((SystemModulesManager) systemModulesManager)
+                    .getCompiledModulesCache();
+            if (compiledModulesCache != null) {
+                Tuple<File, IToken[]> info = compiledModulesCache.get(name, systemModulesManager.getNature());
+                if (info != null) {
+                    return info;
+                }
+            }
+        }
         File f = getCacheFile(name, systemModulesManager);
 
         if (f != null && f.exists()) {
@@ -382,6 +394,15 @@ public class CompiledModule extends AbstractModule {
             Log.log(IStatus.INFO, ("Compiled modules: " + name + " file: " + completions.o1 + " found: "
                     + completions.o2.size() + " completions."), null);
         }
+        return createTokens(name, completions, nature);
+    }
+
+    /**
+     * @param completions the completions received from the shell for the module with the given name.
+     * @return the file for the module and its tokens.
+     */
+    /*default*/ static Tuple<File, IToken[]> createTokens(String name, Tuple<String, List<String[]>> completions,
+            IPythonNature nature) {
         File file = null;
         String fPath = completions.o1;
         if (fPath != null) {
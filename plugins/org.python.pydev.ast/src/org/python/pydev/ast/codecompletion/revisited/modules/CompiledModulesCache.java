@@ -0,0 +1,342 @@
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.python.pydev.ast.codecompletion.shell.AbstractShell;
+import org.python.pydev.ast.codecompletion.shell.CompletionsShell;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.ISystemModulesManager;
+import org.python.pydev.core.IToken;
+import org.python.pydev.core.ObjectsInternPool;
+import org.python.pydev.core.ShellId;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+import org.python.pydev.shared_core.utils.PlatformUtils;
+
+/**
+ * A single file with the tokens of the compiled modules (forced builtins) of an interpreter. It's built in bulk
+ * in the background (so, code-completion doesn't need to wait for a shell the first time such a module is used).
+ *
+ * The file has a header, a record for each module and an index (module name to the offset of its record) at the
+ * end. It's memory-mapped (read into the heap on Windows, where a mapped file can't be replaced) and a record is
+ * only decoded when its module is requested.
+ *
+ * The header has a key computed from the interpreter pythonpath (along with the modification time of its
+ * entries) and forced builtins: the cache is only valid while the key matches the one from the interpreter.
+ */
+public final class CompiledModulesCache {
+
+    public static final String FILENAME = "compiled_modules.cache";
+
+    private static final int MAGIC = 0x50434D43;
+
+    private static final int VERSION = 1;
+
+    /**
+     * Number of modules requested at once to a shell when building the cache.
+     */
+    /*default*/ static int BATCH_SIZE = 16;
+
+    private final File file;
+    private final String key;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> offsets;
+
+    private CompiledModulesCache(File file, String key, ByteBuffer buffer, Map<String, Integer> offsets) {
+        this.file = file;
+        this.key = key;
+        this.buffer = buffer;
+        this.offsets = offsets;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public int size() {
+        return offsets.size();
+    }
+
+    /**
+     * @return the file and tokens for the module with the given name or null if it's not in the cache.
+     */
+    public Tuple<File, IToken[]> get(String name, IPythonNature nature) {
+        Integer offset = offsets.get(name);
+        if (offset == null) {
+            return null;
+        }
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset);
+        try {
+            ObjectsInternPool.ObjectsPoolMap map = new ObjectsInternPool.ObjectsPoolMap();
+            String path = readString(in);
+            int size = in.getInt();
+            if (size < 0 || size > in.remaining()) {
+                throw new IOException("Invalid number of tokens: " + size);
+            }
+            IToken[] toks = new IToken[size];
+            for (int i = 0; i < size; i++) {
+                //Note intern (we probably have many empty strings -- or the same for parentPackage)
+                String rep = ObjectsInternPool.internLocal(map, readString(in));
+                int type = in.getInt();
+                String args = ObjectsInternPool.internLocal(map, readString(in));
+                String parentPackage = ObjectsInternPool.internLocal(map, readString(in));
+                toks[i] = new CompiledToken(rep, "", args, parentPackage, type, nature);
+            }
+            for (int i = 0; i < size; i++) {
+                toks[i].setDocStr(ObjectsInternPool.internLocal(map, readString(in)));
+            }
+            return new Tuple<File, IToken[]>(path != null ? new File(path) : null, toks);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            Log.log("Unable to read compiled module: " + name + " from: " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the key which identifies the contents of the cache for the given pythonpath and forced builtins.
+     */
+    public static String computeKey(List<String> pythonpath, String[] builtins) {
+        FastStringBuffer buf = new FastStringBuffer(pythonpath.size() * 64 + builtins.length * 16);
+        for (String path : pythonpath) {
+            // The modification time changes when a package is installed/removed in the folder.
+            buf.append(path).append('|').append(new File(path).lastModified()).append('\n');
+        }
+        buf.append('\n');
+        for (String builtin : builtins) {
+            buf.append(builtin).append('\n');
+        }
+        return StringUtils.md5(buf.toString());
+    }
+
+    /**
+     * Maps the given file (or reads it into the heap on Windows: the mapping is only released when the buffer is
+     * garbage-collected and the file couldn't be replaced by a new build while this instance is still referenced).
+     *
+     * @throws IOException if the file does not exist or is not valid.
+     */
+    public static CompiledModulesCache open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < 20 || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid compiled modules cache: " + file);
+            }
+            ByteBuffer buffer;
+            if (!PlatformUtils.isWindowsPlatform()) {
+                // Note: the mapping is still valid after the channel is closed.
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                    //keep on reading
+                }
+                buffer.flip();
+                if (buffer.remaining() != size) {
+                    throw new IOException("Unable to read compiled modules cache: " + file);
+                }
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Invalid compiled modules cache header (or version changed): " + file);
+            }
+            String key = readString(buffer);
+            int indexOffset = buffer.getInt((int) size - 8);
+            if (buffer.getInt((int) size - 4) != MAGIC || indexOffset < buffer.position()
+                    || indexOffset > size - 8) {
+                throw new IOException("Compiled modules cache not completely written: " + file);
+            }
+            ByteBuffer index = buffer.duplicate();
+            index.position(indexOffset);
+            int count = index.getInt();
+            Map<String, Integer> offsets = new HashMap<>(Math.max(16, count * 2));
+            for (int i = 0; i < count; i++) {
+                String name = readString(index);
+                offsets.put(name, index.getInt());
+            }
+            return new CompiledModulesCache(file, key, buffer, offsets);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Invalid compiled modules cache: " + file, e);
+        }
+    }
+
+    /**
+     * Writes the given modules (name to file and tokens) to the given file (a temporary file is written and then
+     * moved to the final location).
+     */
+    public static void write(File file, String key, Map<String, Tuple<File, IToken[]>> modules) throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tempFile = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, key);
+
+            Map<String, Integer> offsets = new TreeMap<>();
+            for (Map.Entry<String, Tuple<File, IToken[]>> entry : modules.entrySet()) {
+                offsets.put(entry.getKey(), out.size());
+                File f = entry.getValue().o1;
+                writeString(out, f != null ? f.toString() : null);
+
+                //The docstrings are written in a separate batch (as in the cache for a single module).
+                IToken[] toks = entry.getValue().o2;
+                out.writeInt(toks.length);
+                for (IToken tok : toks) {
+                    writeString(out, tok.getRepresentation());
+                    out.writeInt(tok.getType());
+                    writeString(out, tok.getArgs());
+                    writeString(out, tok.getParentPackage());
+                }
+                for (IToken tok : toks) {
+                    writeString(out, tok.getDocStr());
+                }
+            }
+
+            int indexOffset = out.size();
+            out.writeInt(offsets.size());
+            for (Map.Entry<String, Integer> entry : offsets.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(indexOffset);
+            out.writeInt(MAGIC);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+        try {
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the tokens of all the forced builtins of the given manager and writes them to the given file.
+     *
+     * The modules are requested in batches which are pipelined to the shells used for requests from non-UI
+     * threads (so, the introspection is done by many shell processes in parallel and the shell used by the UI
+     * thread is not blocked).
+     *
+     * @return the cache written.
+     * @throws OperationCanceledException if the monitor is cancelled.
+     */
+    public static CompiledModulesCache build(ISystemModulesManager manager, File file, String key,
+            final IProgressMonitor monitor) throws Exception {
+        final IPythonNature nature = manager.getNature();
+        final List<String> pythonpath = manager.getCompletePythonPath(nature.getProjectInterpreter(),
+                nature.getRelatedInterpreterManager());
+        List<String> builtins = Arrays.asList(manager.getBuiltins());
+
+        final ConcurrentLinkedQueue<List<String>> batches = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < builtins.size(); i += BATCH_SIZE) {
+            batches.add(builtins.subList(i, Math.min(builtins.size(), i + BATCH_SIZE)));
+        }
+        final Map<String, Tuple<File, IToken[]>> modules = new ConcurrentHashMap<>();
+        final AtomicReference<Exception> error = new AtomicReference<>();
+
+        int threads = Math.min(batches.size(), AbstractShell.getShellsPoolSize(ShellId.OTHER_THREADS_SHELL));
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread("PyDev: Compiled modules cache " + i) {
+                @Override
+                public void run() {
+                    try {
+                        List<String> batch;
+                        while ((batch = batches.poll()) != null && !monitor.isCanceled()) {
+                            CompletionsShell shell = (CompletionsShell) AbstractShell.getServerShell(nature,
+                                    ShellId.OTHER_THREADS_SHELL);
+                            List<Tuple<String, List<String[]>>> completions = shell.getImportCompletions(batch,
+                                    pythonpath);
+                            for (int j = 0; j < batch.size(); j++) {
+                                Tuple<String, List<String[]>> c = completions.get(j);
+                                // Modules which can't be imported have a single ERROR: entry.
+                                if (c == null || c.o2.size() == 0 || c.o2.get(0).length == 0
+                                        || "ERROR:".equals(c.o2.get(0)[0])) {
+                                    continue;
+                                }
+                                String name = batch.get(j);
+                                Tuple<File, IToken[]> info = CompiledModule.createTokens(name, c, nature);
+                                if (info.o2.length > 0) {
+                                    modules.put(name, info);
+                                }
+                            }
+                        }
+                    } catch (Exception e) {
+                        error.compareAndSet(null, e);
+                        batches.clear(); // Make the other workers stop.
+                    }
+                }
+            };
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+        for (Thread t : workers) {
+            t.join();
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+        if (monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+        write(file, key, new TreeMap<>(modules));
+        return open(file);
+    }
+
+    /**
+     * Strings are written with an int with the length (-1 = null) and their UTF-8 bytes.
+     */
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) throws IOException {
+        int len = in.getInt();
+        if (len == -1) {
+            return null;
+        }
+        if (len < 0 || len > in.remaining()) {
+            throw new IOException("Invalid string length: " + len);
+        }
+        byte[] bytes = new byte[len];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,242 @@
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.python.pydev.core.CorePlugin;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.parser.ParserPlugin;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SimpleNodeSerializer;
+import org.python.pydev.shared_core.io.FileUtils;
+
+/**
+ * Keeps the asts of the modules loaded from the filesystem on disk (keyed by a hash of the contents along with the
+ * grammar version and the parser version), so that a module may be recreated without running the grammar again
+ * after a restart or after it's evicted from the modules cache.
+ *
+ * Only asts without parse errors are kept. As the key is based on the contents, entries never need to be
+ * invalidated (an entry which is no longer used is removed when the cache has more than MAX_FILES entries).
+ *
+ * The disk writes (new entries and the update of the last access of the entries used) are done in a background
+ * thread so that they don't slow down the thread which is creating the module.
+ *
+ * May be disabled with -Dpydev.ast.cache=false.
+ */
+public final class PersistentAstCache {
+
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.ast.cache"));
+
+    /**
+     * When there are more entries than this, the least recently used entries are removed.
+     *
+     * May be customized with -Dpydev.ast.cache.max.files=XXX
+     */
+    private static final int MAX_FILES = Integer.getInteger("pydev.ast.cache.max.files", 30000);
+
+    private static final int MAGIC = 0x50594153;
+
+    private static final String EXTENSION = ".ast";
+
+    /**
+     * May be changed for tests (if null, the cache dir is created in the workspace metadata).
+     */
+    public static File cacheDir;
+
+    /**
+     * Writes which may be pending in the background (new writes are dropped if there are more than this).
+     */
+    private static final int MAX_PENDING_WRITES = 1000;
+
+    private static final ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_PENDING_WRITES), r -> {
+                Thread t = new Thread(r, "PyDev: write ast cache");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    static {
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    private static final AtomicBoolean trimScheduled = new AtomicBoolean();
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private PersistentAstCache() {
+    }
+
+    /**
+     * @return the directory with the cache or null if it's not available.
+     */
+    private static File getCacheDir() {
+        File dir = cacheDir;
+        if (dir == null) {
+            if (CorePlugin.pydevStatelocation == null) {
+                return null;
+            }
+            dir = CorePlugin.getWorkspaceMetadataFile("ast_cache");
+            cacheDir = dir;
+        }
+        if (trimScheduled.compareAndSet(false, true)) {
+            final File d = dir;
+            Thread thread = new Thread("PyDev: trim ast cache") {
+                @Override
+                public void run() {
+                    FileUtils.trimLeastRecentlyModified(d, MAX_FILES);
+                }
+            };
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+        return dir;
+    }
+
+    /**
+     * @return the key for the given contents to be used in get() and put().
+     */
+    public static String createKey(String contents, int grammarVersion,
+            AdditionalGrammarVersionsToCheck additionalGrammarVersions) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        StringBuilder grammars = new StringBuilder().append(grammarVersion);
+        if (additionalGrammarVersions != null) {
+            // Sorted so that the key is always the same.
+            for (Integer v : new TreeSet<Integer>(additionalGrammarVersions.getGrammarVersions())) {
+                grammars.append(',').append(v);
+            }
+        }
+        grammars.append('|').append(SimpleNodeSerializer.FORMAT_VERSION).append('|').append(ParserPlugin.getVersion())
+                .append('|');
+        digest.update(grammars.toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(contents.getBytes(StandardCharsets.UTF_8));
+
+        byte[] bytes = digest.digest();
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xF, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xF, 16);
+        }
+        return new String(hex);
+    }
+
+    private static File getFile(File dir, String key) {
+        return new File(new File(dir, key.substring(0, 2)), key + EXTENSION);
+    }
+
+    /**
+     * @return the ast for the given key or null if it's not in the cache.
+     */
+    public static SimpleNode get(String key) {
+        File dir = getCacheDir();
+        if (dir == null) {
+            return null;
+        }
+        File file = getFile(dir, key);
+        byte[] bytes;
+        try {
+            bytes = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            // i.e.: NoSuchFileException
+            misses.incrementAndGet();
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != MAGIC || in.readInt() != SimpleNodeSerializer.FORMAT_VERSION
+                    || !key.equals(in.readUTF())) {
+                throw new IOException("Invalid ast cache entry.");
+            }
+            SimpleNode ast = SimpleNodeSerializer.read(in);
+            // Keep the last access so that entries in use aren't removed when trimming.
+            writer.execute(() -> file.setLastModified(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return ast;
+        } catch (IOException e) {
+            // Corrupt or from a different version: just remove it (it'll be written again).
+            file.delete();
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Adds the given ast to the cache (errors are ignored: the cache is just not updated).
+     *
+     * Note: the ast is serialized in this thread (as it may be changed afterwards) but it's written to disk
+     * in the background.
+     */
+    public static void put(String key, SimpleNode ast) {
+        File dir = getCacheDir();
+        if (dir == null || ast == null) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 * 1024);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(SimpleNodeSerializer.FORMAT_VERSION);
+            out.writeUTF(key);
+            SimpleNodeSerializer.write(ast, out);
+        } catch (IOException e) {
+            // i.e.: something which can't be serialized: just don't cache it.
+            return;
+        }
+        File file = getFile(dir, key);
+        writer.execute(() -> write(file, bytes));
+    }
+
+    private static void write(File file, ByteArrayOutputStream bytes) {
+        File parent = file.getParentFile();
+        if (!parent.exists()) {
+            parent.mkdirs();
+        }
+        File tempFile = new File(parent, file.getName() + ".tmp");
+        try {
+            Files.write(tempFile.toPath(), bytes.toByteArray());
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // i.e.: disk full: just don't cache it.
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Waits for the writes pending in the background (mostly for tests).
+     */
+    public static void waitForPendingWrites() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        writer.execute(latch::countDown);
+        latch.await(30, TimeUnit.SECONDS);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+}
@@ -13,6 +13,8 @@ package org.python.pydev.ast.codecompletion.revisited.modules;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -22,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 
 import org.python.pydev.ast.codecompletion.revisited.AbstractASTManager;
 import org.python.pydev.ast.codecompletion.revisited.AbstractToken;
@@ -67,6 +70,7 @@ import org.python.pydev.parser.jython.ast.Module;
 import org.python.pydev.parser.jython.ast.Name;
 import org.python.pydev.parser.jython.ast.Str;
 import org.python.pydev.parser.jython.ast.exprType;
+import org.python.pydev.parser.visitors.CompactAstVisitor;
 import org.python.pydev.parser.visitors.NodeUtils;
 import org.python.pydev.parser.visitors.TypeInfo;
 import org.python.pydev.shared_core.cache.Cache;
@@ -114,6 +118,11 @@ public class SourceModule extends AbstractModule implements ISourceModule {
      */
     private SimpleNode ast;
 
+    /**
+     * Whether the ast was compacted (see: CompactAstVisitor).
+     */
+    private volatile boolean compactAst;
+
     /**
      * File that originated the syntax tree.
      */
@@ -144,6 +153,12 @@ public class SourceModule extends AbstractModule implements ISourceModule {
      */
     private long lastModified;
 
+    /**
+     * The length of the file when the module was created (-1 if there's no file). Used to estimate the memory
+     * used by the module without having to access the file again.
+     */
+    private long fileLength = -1;
+
     /**
      * The object may be a SourceToken or a List<SourceToken>
      */
@@ -474,11 +489,25 @@ public class SourceModule extends AbstractModule implements ISourceModule {
         this.file = f;
         this.parseError = parseError;
         if (f != null) {
-            this.lastModified = FileUtils.lastModified(f);
+            try {
+                // Get the time and length with a single access to the file.
+                BasicFileAttributes attributes = Files.readAttributes(f.toPath(), BasicFileAttributes.class);
+                this.lastModified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+                this.fileLength = attributes.size();
+            } catch (Exception e) {
+                this.lastModified = FileUtils.lastModified(f);
+            }
         }
         this.nature = nature;
     }
 
+    /**
+     * @return the length of the file when the module was created (-1 if not available).
+     */
+    public long getFileLength() {
+        return fileLength;
+    }
+
     /**
      * @see org.python.pydev.core.IModule#getGlobalTokens(org.python.pydev.core.ICompletionState, org.python.pydev.core.ICodeCompletionASTManager)
      */
@@ -1622,6 +1651,19 @@ public class SourceModule extends AbstractModule implements ISourceModule {
         return ast;
     }
 
+    /**
+     * Compacts the ast of this module so that it uses less memory (should be called before the module is
+     * shared with other threads).
+     */
+    public void compactAst() {
+        CompactAstVisitor.compact(ast);
+        compactAst = true;
+    }
+
+    public boolean isCompactAst() {
+        return compactAst;
+    }
+
     /**
      * @return the line that ends a given scope (or -1 if not found)
      */
@@ -11,18 +11,13 @@ package org.python.pydev.ast.codecompletion.shell;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 
 import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
 import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
 import org.python.pydev.ast.codecompletion.PyCodeCompletionPreferences;
@@ -37,7 +32,6 @@ import org.python.pydev.core.logging.DebugSettings;
 import org.python.pydev.core.proposals.CompletionProposalFactory;
 import org.python.pydev.shared_core.SharedCorePlugin;
 import org.python.pydev.shared_core.io.FileUtils;
-import org.python.pydev.shared_core.io.HttpProtocolUtils;
 import org.python.pydev.shared_core.net.SocketUtil;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.python.pydev.shared_core.string.StringUtils;
@@ -47,7 +41,8 @@ import org.python.pydev.shared_core.utils.Timer;
  * This is the shell that 'talks' to the python / jython process (it is intended to be subclassed so that
  * we know how to deal with each).
  *
- * Its methods are synched to prevent concurrent access.
+ * Requests are tagged with an id, so, many requests may be in-flight at the same time (the shell processes them
+ * in sequence and the responses are routed back to the requester -- see ShellConnection).
  *
  * @author fabioz
  *
@@ -81,16 +76,13 @@ public abstract class AbstractShell {
      */
     private volatile boolean isConnected = false;
 
-    private volatile boolean isInRead = false;
-
-    private volatile boolean isInWrite = false;
-
     private volatile boolean isInRestart = false;
 
     private IInterpreterInfo shellInterpreter;
 
     /**
-     * Lock to know if there is someone already using this shell for some operation
+     * Lock held while the messages of some operation are written (so that the messages written by different
+     * operations aren't interleaved -- the wait for the results is done without holding it).
      */
     private final Semaphore semaphore = new Semaphore(1);
 
@@ -122,9 +114,9 @@ public abstract class AbstractShell {
     protected ProcessCreationInfo process;
 
     /**
-     * We should read this socket.
+     * The connection used to talk to the shell (null if not connected).
      */
-    private Socket socket;
+    private volatile ShellConnection connection;
 
     /**
      * Python file that works as the server.
@@ -219,6 +211,13 @@ public abstract class AbstractShell {
         return ShellsContainer.getServerShell(nature, id);
     }
 
+    /**
+     * @return the number of shells (processes) which may answer requests in parallel for the given id.
+     */
+    public static int getShellsPoolSize(ShellId id) {
+        return ShellsPool.getSize(id);
+    }
+
     /**
      * This method creates the python server process and starts the sockets, so that we
      * can talk with the server.
@@ -320,9 +319,7 @@ public abstract class AbstractShell {
                                     }
                                 }
                                 if (accept != null) {
-                                    socket = accept.socket();
-                                    dbg("socketToRead.setSoTimeout(8000) ", 1);
-                                    socket.setSoTimeout(8 * 1000); //let's give it a higher timeout
+                                    connection = new ShellConnection(accept, getClass().getSimpleName());
                                     connected = true;
                                     dbg("connected! ", 1);
                                 } else {
@@ -344,7 +341,7 @@ public abstract class AbstractShell {
                                 //Don't log first failed attempt.
                                 String msg = "Attempt: " + attempt + " of " + maxAttempts
                                         + " failed, trying again...(socket connected: "
-                                        + (socket == null ? "still null" : socket.isConnected()) + ")";
+                                        + (connection == null ? "still null" : !connection.isClosed()) + ")";
 
                                 dbg(msg, 1);
                                 Log.log(msg);
@@ -412,155 +409,111 @@ public abstract class AbstractShell {
             throws IOException, JDTNotAvailableException, MisconfigurationException;
 
     /**
-     * @param operation
-     * @return
-     * @throws IOException
+     * Sends the given message to the shell without waiting for the results (which should be gotten
+     * with getResults).
+     *
+     * @return the request sent or null if it wasn't possible to send it (in which case the shell is restarted).
      */
-    private FastStringBuffer read(boolean useContentLen, IProgressMonitor monitor) throws IOException {
-        synchronized (ioLock) {
-
+    /*default*/ ShellConnection.Request writeAsync(String... str) throws CoreException {
+        ShellConnection conn = this.connection;
+        try {
             if (finishedForGood) {
                 throw new RuntimeException(
-                        "Shells are already finished for good, so, it is an invalid state to try to read from it.");
+                        "Shells are already finished for good, so, it is an invalid state to try to write to it.");
             }
             if (inStart) {
                 throw new RuntimeException(
-                        "The shell is still not completely started, so, it is an invalid state to try to read from it.");
-            }
-            if (!isConnected) {
-                throw new RuntimeException(
-                        "The shell is still not connected, so, it is an invalid state to try to read from it.");
-            }
-            if (isInRead) {
-                throw new RuntimeException(
-                        "The shell is already in read mode, so, it is an invalid state to try to read from it.");
+                        "The shell is still not completely started, so, it is an invalid state to try to write to it.");
             }
-            if (isInWrite) {
+            if (!isConnected || conn == null) {
                 throw new RuntimeException(
-                        "The shell is already in write mode, so, it is an invalid state to try to read from it.");
+                        "The shell is still not connected, so, it is an invalid state to try to write to it.");
             }
+            return conn.send(StringUtils.join("", str));
+        } catch (Exception e) {
+            onError("ERROR writing to shell. Message sent: " + StringUtils.join("", str) + "\n", e, conn);
+            return null;
+        }
+    }
 
-            isInRead = true;
-
-            try {
-
-                if (useContentLen) {
-                    String read = readWithContentLen(this.socket.getInputStream());
-                    return new FastStringBuffer(read, 0);
-                }
-
-                FastStringBuffer strBuf = new FastStringBuffer(AbstractShell.BUFFER_SIZE);
-                byte[] b = new byte[AbstractShell.BUFFER_SIZE];
-                int searchFrom = 0;
-                while (true) {
-
-                    int len = this.socket.getInputStream().read(b);
-                    if (len <= 0) {
-                        break;
-                    }
-
-                    String s = new String(b, 0, len);
-                    searchFrom = strBuf.length() - 5; //-5 because that's the len of END@@
-                    if (searchFrom < 0) {
-                        searchFrom = 0;
-                    }
-                    strBuf.append(s);
+    /**
+     * @param useContentLen if false the response is expected in the format: @@COMPLETIONS...END@@ (and the
+     * result is what's in the middle of it), otherwise, the contents are returned as is.
+     *
+     * @return the results for the given request (or null if some error happened -- in which case the shell is
+     * restarted).
+     */
+    /*default*/ FastStringBuffer getResults(boolean useContentLen, ShellConnection.Request request)
+            throws CoreException {
+        if (request == null) {
+            return null;
+        }
+        try {
+            String response = request.connection.getResponse(request);
+            if (useContentLen) {
+                return new FastStringBuffer(response, 0);
+            }
 
-                    if (strBuf.indexOf("END@@", searchFrom) != -1) {
-                        break;
-                    } else {
-                        sleepALittle(10);
-                    }
-                }
+            FastStringBuffer strBuf = new FastStringBuffer(response, 0);
+            strBuf.replaceFirst("@@COMPLETIONS", "");
 
-                strBuf.replaceFirst("@@COMPLETIONS", "");
-                searchFrom -= "@@COMPLETIONS".length();
-                if (searchFrom < 0) {
-                    searchFrom = 0;
-                }
+            //remove END@@
+            int endIndex = strBuf.indexOf("END@@");
+            if (endIndex != -1) {
+                strBuf.setCount(endIndex);
+                return strBuf;
+            }
+            if (strBuf.length() > 500) {
+                strBuf.setCount(499).append("...(continued)...");//if the string gets too big, it can crash Eclipse...
+            }
+            Log.log(IStatus.ERROR, ("ERROR WITH STRING:" + strBuf),
+                    new RuntimeException("Couldn't find END@@ on received string."));
+            return new FastStringBuffer();
 
-                //remove END@@
-                try {
-                    int endIndex = strBuf.indexOf("END@@", searchFrom);
-                    if (endIndex != -1) {
-                        strBuf.setCount(endIndex);
-                        return strBuf;
-                    } else {
-                        throw new RuntimeException("Couldn't find END@@ on received string.");
-                    }
-                } catch (RuntimeException e) {
-                    if (strBuf.length() > 500) {
-                        strBuf.setCount(499).append("...(continued)...");//if the string gets too big, it can crash Eclipse...
-                    }
-                    Log.log(IStatus.ERROR, ("ERROR WITH STRING:" + strBuf), e);
-                    return new FastStringBuffer();
-                }
-            } finally {
-                isInRead = false;
+        } catch (Exception e) {
+            onError("ERROR reading shell. Message sent: " + request.contents + "\n", e, request.connection);
+            return null;
+        } finally {
+            if (process != null) {
+                //Clear the contents from the output from time to time
+                //Note: it's important having a thread reading the stdout and stderr, otherwise the
+                //python client could become halted and would need to be restarted.
+                process.clearOutput();
             }
         }
     }
 
-    private final HttpProtocolUtils httpProtocol = new HttpProtocolUtils();
-
-    private String readWithContentLen(InputStream in) throws IOException {
-        return httpProtocol.readContents(in, null);
+    /**
+     * @return whether the shell is connected and able to receive requests.
+     */
+    /*default*/ boolean isAlive() {
+        ShellConnection conn = this.connection;
+        return isConnected && !inStart && conn != null && !conn.isClosed();
     }
 
     /**
-     * @return s string with the contents read.
-     * @throws IOException
+     * @return the number of requests sent to the shell which are still waiting for a response.
      */
-    private FastStringBuffer read(boolean useContentLen) throws IOException {
-        FastStringBuffer r = read(useContentLen, null);
-        //System.out.println("RETURNING:"+URLDecoder.decode(URLDecoder.decode(r,ENCODING_UTF_8),ENCODING_UTF_8));
-        return r;
+    /*default*/ int getPendingRequests() {
+        ShellConnection conn = this.connection;
+        return conn != null ? conn.getPendingCount() : 0;
     }
 
     /**
-     * @param str
-     * @throws IOException
+     * @return for how long the oldest request sent to the shell is waiting for a response (0 if there's none).
      */
-    private void write(boolean useContentLen, String str) throws IOException {
-        synchronized (ioLock) {
-
-            if (finishedForGood) {
-                throw new RuntimeException(
-                        "Shells are already finished for good, so, it is an invalid state to try to write to it.");
-            }
-            if (inStart) {
-                throw new RuntimeException(
-                        "The shell is still not completely started, so, it is an invalid state to try to write to it.");
-            }
-            if (!isConnected) {
-                throw new RuntimeException(
-                        "The shell is still not connected, so, it is an invalid state to try to write to it.");
-            }
-            if (isInRead) {
-                throw new RuntimeException(
-                        "The shell is already in read mode, so, it is an invalid state to try to write to it.");
-            }
-            if (isInWrite) {
-                throw new RuntimeException(
-                        "The shell is already in write mode, so, it is an invalid state to try to write to it.");
-            }
-
-            isInWrite = true;
+    /*default*/ long getOldestPendingMillis() {
+        ShellConnection conn = this.connection;
+        return conn != null ? conn.getOldestPendingMillis() : 0;
+    }
 
-            try {
-                OutputStream outputStream = this.socket.getOutputStream();
-                byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
-                if (useContentLen) {
-                    FastStringBuffer buf = new FastStringBuffer("Content-Length: ", 20).append(bytes.length)
-                            .append("\r\n\r\n");
-                    outputStream.write(buf.getBytes());
-                }
-                outputStream.write(bytes);
-                outputStream.flush();
-            } finally {
-                isInWrite = false;
-            }
+    private void onError(String message, Exception e, ShellConnection conn) throws CoreException {
+        ProcessCreationInfo p = process;
+        if (p != null) {
+            message += "\n" + p.getProcessLog();
         }
+        Log.log(IStatus.ERROR, message, e);
+        restartShell(conn);
     }
 
     /**
@@ -574,12 +527,12 @@ public abstract class AbstractShell {
         //        }
         synchronized (ioLock) {
             try {
-                if (socket != null) {
-                    socket.close();
+                if (connection != null) {
+                    connection.close();
                 }
             } catch (Exception e) {
             }
-            socket = null;
+            connection = null;
 
             try {
                 if (serverSocketChannel != null) {
@@ -608,7 +561,7 @@ public abstract class AbstractShell {
      */
     /*default*/void shutdown() {
         synchronized (ioLock) {
-            socket = null;
+            connection = null;
             serverSocket = null;
             serverSocketChannel = null;
             if (process != null) {
@@ -647,11 +600,15 @@ public abstract class AbstractShell {
     }
 
     /**
+     * @param failedConnection the connection where some error happened (if the shell was already restarted
+     * -- i.e.: because of an error in another request to the same connection -- it's not restarted again).
      * @throws CoreException
-     *
      */
-    private void restartShell() throws CoreException {
+    private void restartShell(ShellConnection failedConnection) throws CoreException {
         synchronized (ioLock) {
+            if (failedConnection != connection) {
+                return;
+            }
             if (!isInRestart) {// we don't want to end up in a loop here...
                 isInRestart = true;
                 try {
@@ -703,31 +660,7 @@ public abstract class AbstractShell {
     }
 
     protected FastStringBuffer writeAndGetResults(boolean useContentLen, String... str) throws CoreException {
-
-        try {
-            synchronized (ioLock) {
-                this.write(useContentLen, StringUtils.join("", str));
-                FastStringBuffer read = this.read(useContentLen);
-                return read;
-            }
-
-        } catch (Exception e) {
-            String message = "ERROR reading shell. Message sent: " + StringUtils.join("", str) + "\n";
-            if (process != null) {
-                message += "\n" + process.getProcessLog();
-            }
-            Log.log(IStatus.ERROR, message, e);
-
-            restartShell();
-            return null;
-        } finally {
-            if (process != null) {
-                //Clear the contents from the output from time to time
-                //Note: it's important having a thread reading the stdout and stderr, otherwise the
-                //python client could become halted and would need to be restarted.
-                process.clearOutput();
-            }
-        }
+        return getResults(useContentLen, writeAsync(str));
     }
 
 }
@@ -23,6 +23,9 @@ public abstract class CompletionsShell extends AbstractShell {
     }
 
     /**
+     * Changes the pythonpath in the shell if needed (it doesn't wait for the results, so, it must be called
+     * along with the request which uses it while the permit to write is held).
+     *
      * @param pythonpath
      */
     private void internalChangePythonPath(List<String> pythonpath) throws Exception {
@@ -41,7 +44,7 @@ public abstract class CompletionsShell extends AbstractShell {
             lastPythonPath = pythonpathStr;
         }
         try {
-            writeAndGetResults("@@CHANGE_PYTHONPATH:", URLEncoder.encode(pythonpathStr, ENCODING_UTF_8), "\nEND@@");
+            writeAsync("@@CHANGE_PYTHONPATH:", URLEncoder.encode(pythonpathStr, ENCODING_UTF_8), "\nEND@@");
         } catch (Exception e) {
             Log.log("Error changing the pythonpath to: " + StringUtils.join("\n", pythonpath), e);
             throw e;
@@ -58,13 +61,40 @@ public abstract class CompletionsShell extends AbstractShell {
 
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
+        ShellConnection.Request request;
         try (AutoCloseable permit = acquire(StringUtils.join("", "getImportCompletions: ", str))) {
             internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@IMPORTS:", str, "\nEND@@");
+            request = this.writeAsync("@@IMPORTS:", str, "\nEND@@");
         }
+        read = this.getResults(false, request);
         return ShellConvert.convertStringToCompletions(read);
     }
 
+    /**
+     * Gets the completions for many modules at once (all the requests are sent before waiting for the first
+     * response).
+     *
+     * @return a list with the completions for each module name (in the same order) -- an entry is null if it
+     * wasn't possible to get the completions for the related module.
+     */
+    public List<Tuple<String, List<String[]>>> getImportCompletions(List<String> names, List<String> pythonpath)
+            throws Exception {
+        List<ShellConnection.Request> requests = new ArrayList<>(names.size());
+        try (AutoCloseable permit = acquire(StringUtils.join("", "getImportCompletions: ", names.size(),
+                " modules"))) {
+            internalChangePythonPath(pythonpath);
+            for (String name : names) {
+                requests.add(this.writeAsync("@@IMPORTS:", URLEncoder.encode(name, ENCODING_UTF_8), "\nEND@@"));
+            }
+        }
+        List<Tuple<String, List<String[]>>> ret = new ArrayList<>(names.size());
+        for (ShellConnection.Request request : requests) {
+            FastStringBuffer read = this.getResults(false, request);
+            ret.add(read != null ? ShellConvert.convertStringToCompletions(read) : null);
+        }
+        return ret;
+    }
+
     /**
      * @param moduleName the name of the module where the token is defined
      * @param token the token we are looking for
@@ -78,10 +108,12 @@ public abstract class CompletionsShell extends AbstractShell {
         String str = moduleName + "." + token;
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
+        ShellConnection.Request request;
         try (AutoCloseable permit = acquire("getLineCol")) {
             internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@SEARCH", str, "\nEND@@");
+            request = this.writeAsync("@@SEARCH", str, "\nEND@@");
         }
+        read = this.getResults(false, request);
 
         Tuple<String, List<String[]>> theCompletions = ShellConvert.convertStringToCompletions(read);
 
@@ -117,10 +149,12 @@ public abstract class CompletionsShell extends AbstractShell {
 
         str = URLEncoder.encode(str, ENCODING_UTF_8);
 
+        ShellConnection.Request request;
         try (AutoCloseable permit = acquire("getJediCompletions")) {
             internalChangePythonPath(pythonpath);
-            read = this.writeAndGetResults("@@MSG_JEDI:", str, "\nEND@@");
+            request = this.writeAsync("@@MSG_JEDI:", str, "\nEND@@");
         }
+        read = this.getResults(false, request);
 
         Tuple<String, List<String[]>> theCompletions = ShellConvert.convertStringToCompletions(read);
         ArrayList<IToken> lst = new ArrayList<>(theCompletions.o2.size());
@@ -0,0 +1,301 @@
+package org.python.pydev.ast.codecompletion.shell;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.io.HttpMessageDecoder;
+import org.python.pydev.shared_core.io.HttpMessageDecoder.Message;
+
+/**
+ * The connection to a shell process.
+ *
+ * Each request is sent with a Content-Length and a Request-Id header and the shell answers with the same
+ * Request-Id, so, many requests may be in-flight at the same time (the responses are read by a thread which
+ * waits on a selector and are dispatched to the request with the matching id -- or to the oldest request if
+ * the shell doesn't send the Request-Id back).
+ */
+final class ShellConnection {
+
+    private static final String REQUEST_ID = "Request-Id";
+
+    /**
+     * A request fails if no data is received from the shell in this time.
+     */
+    /*default*/ static int RESPONSE_TIMEOUT_MILLIS = 8 * 1000;
+
+    /**
+     * A request which was sent to the shell (and whose response may still not be available).
+     */
+    static final class Request {
+
+        final ShellConnection connection;
+        final String contents;
+        private final int id;
+        private final long sentMillis = System.currentTimeMillis();
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+
+        private Request(ShellConnection connection, int id, String contents) {
+            this.connection = connection;
+            this.id = id;
+            this.contents = contents;
+        }
+
+        @Override
+        public String toString() {
+            return "Request[" + id + "]";
+        }
+    }
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final Object writeLock = new Object();
+
+    /**
+     * Only used if a write can't be done at once (created lazily with the writeLock held).
+     */
+    private volatile Selector writeSelector;
+
+    /**
+     * Requests waiting for a response (in the order they were sent).
+     */
+    private final Map<Integer, Request> pending = new LinkedHashMap<>();
+    private int nextRequestId = 0;
+
+    private volatile boolean closed = false;
+    private volatile long lastReceivedMillis;
+
+    ShellConnection(SocketChannel channel, String name) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+        this.selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_READ);
+        this.lastReceivedMillis = System.currentTimeMillis();
+
+        Thread thread = new Thread("PyDev: " + name + " reader") {
+            @Override
+            public void run() {
+                readLoop();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends the given contents to the shell (the response may be gotten later on with getResponse).
+     */
+    Request send(String contents) throws IOException {
+        Request request;
+        synchronized (pending) {
+            if (closed) {
+                throw new IOException("Connection to the shell already closed.");
+            }
+            request = new Request(this, ++nextRequestId, contents);
+            // Added before writing as the response may arrive before the write returns.
+            pending.put(request.id, request);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(
+                HttpMessageDecoder.encode(contents, REQUEST_ID, String.valueOf(request.id)));
+        try {
+            synchronized (writeLock) {
+                writeFully(buf);
+            }
+        } catch (IOException e) {
+            close(e);
+            throw e;
+        }
+        return request;
+    }
+
+    private void writeFully(ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (channel.write(buf) > 0) {
+                continue;
+            }
+            // The socket buffer is full: wait until the shell reads something.
+            if (writeSelector == null) {
+                writeSelector = Selector.open();
+                channel.register(writeSelector, SelectionKey.OP_WRITE);
+            }
+            if (writeSelector.select(RESPONSE_TIMEOUT_MILLIS) == 0) {
+                if (closed) {
+                    throw new IOException("Connection to the shell already closed.");
+                }
+                throw new IOException("Timed out writing to the shell.");
+            }
+            writeSelector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * @return the response to the given request.
+     * @throws IOException if the connection is closed or if no data is received from the shell for
+     * RESPONSE_TIMEOUT_MILLIS (even if other responses are still being received, the timeout is
+     * restarted whenever something is received, as the requests before it may take some time).
+     */
+    String getResponse(Request request) throws IOException {
+        long waitSince = System.currentTimeMillis();
+        while (true) {
+            try {
+                return request.future.get(100, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                long lastActivity = Math.max(waitSince, lastReceivedMillis);
+                if (System.currentTimeMillis() - lastActivity > RESPONSE_TIMEOUT_MILLIS) {
+                    synchronized (pending) {
+                        pending.remove(request.id);
+                    }
+                    throw new IOException("Timed out waiting for response to: " + request);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for response to: " + request, e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw new IOException(cause.getMessage(), cause);
+                }
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    private void readLoop() {
+        HttpMessageDecoder decoder = new HttpMessageDecoder();
+        ByteBuffer buf = ByteBuffer.allocate(AbstractShell.BUFFER_SIZE);
+        IOException error = null;
+        try {
+            while (!closed) {
+                selector.select();
+                selector.selectedKeys().clear();
+                int read;
+                while ((read = channel.read(buf)) > 0) {
+                    buf.flip();
+                    decoder.feed(buf);
+                    buf.clear();
+                    lastReceivedMillis = System.currentTimeMillis();
+                }
+                Message message;
+                while ((message = decoder.next()) != null) {
+                    dispatch(message);
+                }
+                if (read == -1) {
+                    throw new EOFException("Connection closed by the shell.");
+                }
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (ClosedSelectorException e) {
+            // Closed: just exit.
+        } finally {
+            close(error != null ? error : new IOException("Connection to the shell closed."));
+            try {
+                selector.close();
+            } catch (IOException e) {
+                Log.log(e);
+            }
+        }
+    }
+
+    private void dispatch(Message message) {
+        Request request = null;
+        String requestId = message.headers.get(REQUEST_ID);
+        synchronized (pending) {
+            if (requestId != null) {
+                try {
+                    request = pending.remove(Integer.parseInt(requestId));
+                } catch (NumberFormatException e) {
+                    Log.log("Invalid request id: " + requestId);
+                }
+            } else {
+                // The shell doesn't give the request id back: it answers the requests in order.
+                Iterator<Request> it = pending.values().iterator();
+                if (it.hasNext()) {
+                    request = it.next();
+                    it.remove();
+                }
+            }
+        }
+        if (request == null) {
+            Log.log("Received response for request not available: " + message);
+            return;
+        }
+        request.future.complete(message.contents);
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return the number of requests still waiting for a response.
+     */
+    int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return for how long the oldest request waiting for a response is waiting (0 if there's none).
+     */
+    long getOldestPendingMillis() {
+        synchronized (pending) {
+            Iterator<Request> it = pending.values().iterator();
+            return it.hasNext() ? System.currentTimeMillis() - it.next().sentMillis : 0;
+        }
+    }
+
+    void close() {
+        close(new IOException("Connection to the shell closed."));
+    }
+
+    /**
+     * Closes the connection (all the pending requests fail with the given error).
+     */
+    private void close(IOException error) {
+        Request[] requests;
+        synchronized (pending) {
+            if (!closed) {
+                closed = true;
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                selector.wakeup();
+            }
+            requests = pending.values().toArray(new Request[0]);
+            pending.clear();
+        }
+        for (Request request : requests) {
+            request.future.completeExceptionally(error);
+        }
+        Selector currentWriteSelector = writeSelector;
+        if (currentWriteSelector != null) {
+            currentWriteSelector.wakeup(); // A write may be waiting with the writeLock held.
+        }
+        synchronized (writeLock) {
+            if (writeSelector != null) {
+                try {
+                    writeSelector.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+                writeSelector = null;
+            }
+        }
+    }
+}
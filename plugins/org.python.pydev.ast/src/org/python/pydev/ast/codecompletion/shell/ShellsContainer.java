@@ -26,29 +26,24 @@ public class ShellsContainer {
      * this works as follows:
      * we have the interpreter as that the shell is related to as the 1st key
      *
-     * and then we have the id with the shell type that points to the actual shell
+     * and then we have the id with the shell type that points to the pool with the actual shells
      *
      * @see #MAIN_THREAD_SHELL
      * @see #OTHER_THREADS_SHELL
      */
-    private static Map<String, Map<ShellId, AbstractShell>> shells = new HashMap<>();
+    private static Map<String, Map<ShellId, ShellsPool>> shells = new HashMap<>();
 
     /**
      * simple stop of a shell (it may be later restarted)
      */
     public static void stopServerShell(IInterpreterInfo interpreter, ShellId id) {
         synchronized (shells) {
-            Map<ShellId, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            AbstractShell pythonShell = typeToShell.get(id);
-
-            if (pythonShell != null) {
-                try {
-                    pythonShell.endIt();
-                } catch (Exception e) {
-                    // ignore... we are ending it anyway...
-                }
+            Map<ShellId, ShellsPool> typeToShell = getTypeToShellFromId(interpreter);
+            ShellsPool pool = typeToShell.remove(id); //there's no exception if it was not there in the 1st place...
+
+            if (pool != null) {
+                pool.dispose();
             }
-            typeToShell.remove(id); //there's no exception if it was not there in the 1st place...
         }
     }
 
@@ -62,20 +57,13 @@ public class ShellsContainer {
                         AbstractShell.class);
             }
 
-            for (Iterator<Map<ShellId, AbstractShell>> iter = shells.values().iterator(); iter.hasNext();) {
+            for (Iterator<Map<ShellId, ShellsPool>> iter = shells.values().iterator(); iter.hasNext();) {
                 AbstractShell.finishedForGood = true; //we may no longer restart shells
 
-                Map<ShellId, AbstractShell> rel = iter.next();
+                Map<ShellId, ShellsPool> rel = iter.next();
                 if (rel != null) {
-                    for (Iterator<AbstractShell> iter2 = rel.values().iterator(); iter2.hasNext();) {
-                        AbstractShell element = iter2.next();
-                        if (element != null) {
-                            try {
-                                element.shutdown(); //shutdown
-                            } catch (Exception e) {
-                                Log.log(e); //let's log it... this should not happen
-                            }
-                        }
+                    for (ShellsPool pool : rel.values()) {
+                        pool.shutdown();
                     }
                 }
             }
@@ -97,11 +85,9 @@ public class ShellsContainer {
                             AbstractShell.class);
                 }
 
-                for (Map<ShellId, AbstractShell> val : shells.values()) {
-                    for (AbstractShell val2 : val.values()) {
-                        if (val2 != null) {
-                            val2.endIt();
-                        }
+                for (Map<ShellId, ShellsPool> val : shells.values()) {
+                    for (ShellsPool pool : val.values()) {
+                        pool.endAll();
                     }
                     IInterpreterManager[] interpreterManagers = InterpreterManagersAPI.getAllInterpreterManagers();
                     for (IInterpreterManager iInterpreterManager : interpreterManagers) {
@@ -118,6 +104,13 @@ public class ShellsContainer {
                     //Clear the global modules cache!
                     ModulesManager.clearCache();
                 }
+
+                // Start new shells in the background so that the next requests don't have to wait for them.
+                for (Map<ShellId, ShellsPool> val : shells.values()) {
+                    for (ShellsPool pool : val.values()) {
+                        pool.warmUp();
+                    }
+                }
             } catch (Exception e) {
                 Log.log(e);
                 ret += e.getMessage() + "\n";
@@ -128,11 +121,11 @@ public class ShellsContainer {
 
     /**
      * @param interpreter the interpreter whose shell we want.
-     * @return a map with the type of the shell mapping to the shell itself
+     * @return a map with the type of the shell mapping to the pool with the shells
      */
-    private static Map<ShellId, AbstractShell> getTypeToShellFromId(IInterpreterInfo interpreter) {
+    private static Map<ShellId, ShellsPool> getTypeToShellFromId(IInterpreterInfo interpreter) {
         synchronized (shells) {
-            Map<ShellId, AbstractShell> typeToShell = shells.get(interpreter.getExecutableOrJar());
+            Map<ShellId, ShellsPool> typeToShell = shells.get(interpreter.getExecutableOrJar());
 
             if (typeToShell == null) {
                 typeToShell = new HashMap<>();
@@ -155,8 +148,13 @@ public class ShellsContainer {
     public static void putServerShell(IPythonNature nature, ShellId id, AbstractShell shell) {
         synchronized (shells) {
             try {
-                Map<ShellId, AbstractShell> typeToShell = getTypeToShellFromId(nature.getProjectInterpreter());
-                typeToShell.put(id, shell);
+                IInterpreterInfo interpreter = nature.getProjectInterpreter();
+                Map<ShellId, ShellsPool> typeToShell = getTypeToShellFromId(interpreter);
+                if (shell == null) {
+                    typeToShell.remove(id);
+                } else {
+                    typeToShell.put(id, new ShellsPool(interpreter, id, shell));
+                }
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
@@ -179,7 +177,8 @@ public class ShellsContainer {
      * @see #MAIN_THREAD_SHELL
      * @see #OTHER_THREADS_SHELL
      *
-     * @return the shell with the given id related to some nature
+     * @return the shell with the given id related to some nature (the one with less requests waiting in the
+     * pool of shells for the given id).
      *
      * @throws CoreException
      * @throws IOException
@@ -187,7 +186,7 @@ public class ShellsContainer {
      */
     private static AbstractShell getServerShell(IInterpreterInfo interpreter, int relatedTo, ShellId id)
             throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
-        AbstractShell pythonShell = null;
+        ShellsPool pool;
         synchronized (shells) {
             if (DebugSettings.DEBUG_CODE_COMPLETION) {
                 org.python.pydev.shared_core.log.ToLogFile.toLogFile("Synchronizing on shells...", AbstractShell.class);
@@ -210,44 +209,27 @@ public class ShellsContainer {
                                 + interpreter.getExecutableOrJar(),
                         AbstractShell.class);
             }
-            Map<ShellId, AbstractShell> typeToShell = getTypeToShellFromId(interpreter);
-            pythonShell = typeToShell.get(id);
+            Map<ShellId, ShellsPool> typeToShell = getTypeToShellFromId(interpreter);
+            pool = typeToShell.get(id);
 
-            if (pythonShell == null) {
+            if (pool == null) {
                 if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("pythonShell == null", AbstractShell.class);
+                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("pool == null", AbstractShell.class);
                 }
-                if (id == ShellId.CYTHON_MAIN_THREAD_SHELL || id == ShellId.CYTHON_OTHER_THREADS_SHELL) {
-                    pythonShell = new CythonShell();
-                } else {
-                    if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
-                        pythonShell = new PythonShell();
-
-                    } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
-                        pythonShell = new JythonShell();
-
-                    } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
-                        pythonShell = new IronpythonShell();
-
-                    } else {
-                        throw new RuntimeException("unknown related id");
-                    }
-                }
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("pythonShell.startIt()", AbstractShell.class);
-                    org.python.pydev.shared_core.log.ToLogFile.addLogLevel();
-                }
-                pythonShell.startIt(interpreter); //first start it
-                if (DebugSettings.DEBUG_CODE_COMPLETION) {
-                    org.python.pydev.shared_core.log.ToLogFile.remLogLevel();
-                    org.python.pydev.shared_core.log.ToLogFile.toLogFile("Finished pythonShell.startIt()",
-                            AbstractShell.class);
-                }
-
-                //then make it accessible
-                typeToShell.put(id, pythonShell);
+                pool = new ShellsPool(interpreter, relatedTo, id);
+                typeToShell.put(id, pool);
             }
+        }
 
+        // Note: not synchronized on the shells (if it must be started, it shouldn't block other pools).
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            org.python.pydev.shared_core.log.ToLogFile.toLogFile("pool.get()", AbstractShell.class);
+            org.python.pydev.shared_core.log.ToLogFile.addLogLevel();
+        }
+        AbstractShell pythonShell = pool.get();
+        if (DebugSettings.DEBUG_CODE_COMPLETION) {
+            org.python.pydev.shared_core.log.ToLogFile.remLogLevel();
+            org.python.pydev.shared_core.log.ToLogFile.toLogFile("Finished pool.get()", AbstractShell.class);
         }
         return pythonShell;
     }
@@ -0,0 +1,344 @@
+package org.python.pydev.ast.codecompletion.shell;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.python.copiedfromeclipsesrc.JDTNotAvailableException;
+import org.python.pydev.core.IInterpreterInfo;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.core.MisconfigurationException;
+import org.python.pydev.core.ShellId;
+import org.python.pydev.core.log.Log;
+
+/**
+ * The shells for a given interpreter and shell id.
+ *
+ * Shells are started in the background (so that they're already warm when needed) and requests are dispatched
+ * to the shell with less requests waiting for a response. Shells which die or which stop answering are removed
+ * and replaced in the background.
+ *
+ * If starting a shell fails, the pool isn't refilled again until a backoff time elapses (which doubles on each
+ * consecutive failure) and only one shell is started at a time until some start succeeds.
+ */
+final class ShellsPool {
+
+    /**
+     * Number of shells used for requests done from non-UI threads (which may do many requests in parallel).
+     * The other shells (UI thread, cython) always have a single shell.
+     */
+    /*default*/ static int OTHER_THREADS_POOL_SIZE = Math.max(1,
+            Integer.getInteger("pydev.completion.shells", Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
+
+    /**
+     * A shell whose oldest request is waiting for more than this time is considered stuck and is replaced.
+     */
+    /*default*/ static long STUCK_SHELL_MILLIS = 4L * ShellConnection.RESPONSE_TIMEOUT_MILLIS;
+
+    /**
+     * Time to wait before starting shells in the background after a start failure (doubled on each consecutive
+     * failure up to MAX_START_BACKOFF_MILLIS).
+     */
+    /*default*/ static long START_BACKOFF_MILLIS = 1000;
+
+    /*default*/ static long MAX_START_BACKOFF_MILLIS = 60 * 1000;
+
+    private final IInterpreterInfo interpreter;
+    private final int relatedTo;
+    private final ShellId id;
+    private final int size;
+
+    /**
+     * Shells already started. Changes must be done holding the lock of this pool.
+     */
+    private final List<AbstractShell> shells = new ArrayList<>();
+
+    /**
+     * Shells being started in the background.
+     */
+    private int starting = 0;
+
+    /**
+     * Number of consecutive failures starting a shell (reset when some shell starts successfully).
+     */
+    private int startFailures = 0;
+
+    /**
+     * Time of the last failure starting a shell.
+     */
+    private long lastStartFailureMillis;
+
+    private boolean disposed = false;
+
+    ShellsPool(IInterpreterInfo interpreter, int relatedTo, ShellId id) {
+        this.interpreter = interpreter;
+        this.relatedTo = relatedTo;
+        this.id = id;
+        this.size = getSize(id);
+    }
+
+    /**
+     * @return the number of shells kept for the given id.
+     */
+    static int getSize(ShellId id) {
+        return id == ShellId.OTHER_THREADS_SHELL ? OTHER_THREADS_POOL_SIZE : 1;
+    }
+
+    /**
+     * Creates a pool with a single shell which is already started (it's not replaced if it dies).
+     */
+    ShellsPool(IInterpreterInfo interpreter, ShellId id, AbstractShell shell) {
+        this.interpreter = interpreter;
+        this.relatedTo = -1;
+        this.id = id;
+        this.size = 0;
+        this.shells.add(shell);
+    }
+
+    /**
+     * @return the shell with the least load (if no shell is alive, a shell is started in this thread).
+     */
+    AbstractShell get() throws IOException, JDTNotAvailableException, CoreException, MisconfigurationException {
+        AbstractShell shell;
+        List<AbstractShell> removed;
+        synchronized (this) {
+            if (size == 0) {
+                return shells.get(0);
+            }
+            removed = removeDeadShells();
+        }
+        for (AbstractShell r : removed) {
+            // Ending it also makes the requests waiting for it fail.
+            r.endIt();
+        }
+
+        synchronized (this) {
+            shell = getLeastLoaded();
+            while (shell == null && starting > 0) {
+                // Some shell is already being started: wait for it.
+                try {
+                    this.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                shell = getLeastLoaded();
+            }
+            if (shell != null) {
+                // Keep the pool full.
+                fill();
+                return shell;
+            }
+            starting++; // Others requesting a shell will wait for this one.
+        }
+
+        // Nothing alive: start one in this thread (the others are started in the background).
+        boolean started = false;
+        try {
+            shell = createShell();
+            shell.startIt(interpreter);
+            synchronized (this) {
+                startFailures = 0;
+                if (disposed) {
+                    shell.endIt();
+                    throw new RuntimeException("Shells were already disposed.");
+                }
+                shells.add(shell);
+                started = true;
+            }
+            return shell;
+        } finally {
+            synchronized (this) {
+                starting--;
+                if (started) {
+                    fill();
+                } else if (!disposed) {
+                    onStartFailed();
+                }
+                this.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Starts the shells in the background (so that they're warm when requested).
+     */
+    synchronized void warmUp() {
+        fill();
+    }
+
+    /**
+     * Starts shells in the background until the pool is full (after start failures, only a single shell is started
+     * once the backoff time elapses). Must be called holding the lock.
+     */
+    private void fill() {
+        if (startFailures > 0) {
+            if (!disposed && starting == 0 && shells.size() < size
+                    && System.currentTimeMillis() - lastStartFailureMillis >= getStartBackoffMillis()) {
+                startInBackground();
+            }
+            return;
+        }
+        while (!disposed && shells.size() + starting < size) {
+            startInBackground();
+        }
+    }
+
+    /**
+     * @return the time to wait after the last start failure before trying to start a shell again.
+     */
+    private long getStartBackoffMillis() {
+        long backoff = START_BACKOFF_MILLIS << Math.min(startFailures - 1, 16);
+        return Math.min(backoff, MAX_START_BACKOFF_MILLIS);
+    }
+
+    private void onStartFailed() {
+        startFailures++;
+        lastStartFailureMillis = System.currentTimeMillis();
+    }
+
+    private AbstractShell getLeastLoaded() {
+        AbstractShell best = null;
+        int bestPending = Integer.MAX_VALUE;
+        for (AbstractShell shell : shells) {
+            if (!shell.isAlive()) {
+                continue;
+            }
+            int pending = shell.getPendingRequests();
+            if (pending < bestPending) {
+                best = shell;
+                bestPending = pending;
+                if (pending == 0) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Removes the shells which died or which stopped answering (they're replaced by new shells afterwards).
+     *
+     * @return the shells removed (which should be ended without holding the lock).
+     */
+    private List<AbstractShell> removeDeadShells() {
+        List<AbstractShell> removed = new ArrayList<>(0);
+        for (int i = shells.size() - 1; i >= 0; i--) {
+            AbstractShell shell = shells.get(i);
+            boolean stuck = shell.getOldestPendingMillis() > STUCK_SHELL_MILLIS;
+            if (stuck || !shell.isAlive()) {
+                shells.remove(i);
+                removed.add(shell);
+                if (stuck) {
+                    Log.log("Replacing code-completion shell which stopped answering (" + id + ").");
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void startInBackground() {
+        starting++;
+        Job job = new Job("Starting code-completion shell") {
+
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                AbstractShell shell = null;
+                try {
+                    shell = createShell();
+                    shell.startIt(interpreter);
+                } catch (Exception e) {
+                    Log.log(e);
+                    if (shell != null) {
+                        shell.endIt();
+                    }
+                    shell = null;
+                }
+                synchronized (ShellsPool.this) {
+                    starting--;
+                    if (shell != null) {
+                        if (disposed) {
+                            shell.endIt();
+                        } else {
+                            shells.add(shell);
+                            if (startFailures > 0) {
+                                // Starting works again: start the others.
+                                startFailures = 0;
+                                fill();
+                            }
+                        }
+                    } else if (!disposed) {
+                        onStartFailed();
+                    }
+                    ShellsPool.this.notifyAll();
+                }
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.setPriority(Job.SHORT);
+        job.schedule();
+    }
+
+    private AbstractShell createShell() throws IOException, CoreException {
+        if (id == ShellId.CYTHON_MAIN_THREAD_SHELL || id == ShellId.CYTHON_OTHER_THREADS_SHELL) {
+            return new CythonShell();
+        }
+        if (relatedTo == IPythonNature.INTERPRETER_TYPE_PYTHON) {
+            return new PythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_JYTHON) {
+            return new JythonShell();
+
+        } else if (relatedTo == IPythonNature.INTERPRETER_TYPE_IRONPYTHON) {
+            return new IronpythonShell();
+
+        }
+        throw new RuntimeException("unknown related id");
+    }
+
+    /**
+     * Ends all the shells (new shells are started when requested).
+     */
+    synchronized void endAll() {
+        for (AbstractShell shell : shells) {
+            try {
+                shell.endIt();
+            } catch (Exception e) {
+                // ignore... we are ending it anyway...
+            }
+        }
+        if (size > 0) {
+            shells.clear();
+        }
+    }
+
+    /**
+     * Ends all the shells and doesn't start new ones.
+     */
+    synchronized void dispose() {
+        disposed = true;
+        endAll();
+        shells.clear();
+    }
+
+    /**
+     * Destroys the processes without closing the connections (intended for shutdowns).
+     */
+    synchronized void shutdown() {
+        disposed = true;
+        for (AbstractShell shell : shells) {
+            try {
+                shell.shutdown();
+            } catch (Exception e) {
+                Log.log(e); //let's log it... this should not happen
+            }
+        }
+        shells.clear();
+    }
+}
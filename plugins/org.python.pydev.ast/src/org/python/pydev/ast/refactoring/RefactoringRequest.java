@@ -8,6 +8,7 @@ package org.python.pydev.ast.refactoring;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -36,6 +37,7 @@ import org.python.pydev.core.preferences.InterpreterGeneralPreferences;
 import org.python.pydev.core.structure.CompletionRecursionException;
 import org.python.pydev.core.structure.DecoratableObject;
 import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.visitors.scope.ASTEntry;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
@@ -59,6 +61,21 @@ public class RefactoringRequest extends DecoratableObject {
      */
     public static final String SIMPLE_RESOURCE_RENAME = "simpleResourceRename";
 
+    /**
+     * Key for an IOccurrencesListener to be notified of the occurrences found in each module while the references
+     * are still being searched.
+     */
+    public static final String FIND_REFERENCES_OCCURRENCES_LISTENER = "findReferencesOccurrencesListener";
+
+    /**
+     * Listener notified of the occurrences found in each module (in the order in which the modules are merged in
+     * the results). May be called from any thread.
+     */
+    public interface IOccurrencesListener {
+
+        void onOccurrencesFound(String moduleName, File file, Collection<ASTEntry> occurrences);
+    }
+
     /**
      * The file associated with the editor where the refactoring is being requested
      */
@@ -393,12 +410,23 @@ public class RefactoringRequest extends DecoratableObject {
         return (boolean) getAdditionalInfo(SIMPLE_RESOURCE_RENAME, false);
     }
 
+    public void setOccurrencesListener(IOccurrencesListener listener) {
+        setAdditionalInfo(FIND_REFERENCES_OCCURRENCES_LISTENER, listener);
+    }
+
+    public IOccurrencesListener getOccurrencesListener() {
+        return (IOccurrencesListener) getAdditionalInfo(FIND_REFERENCES_OCCURRENCES_LISTENER, null);
+    }
+
     public void setFileResource(IFile file2) {
         this.iFileResource = file2;
 
     }
 
-    public List<IDefinition> findActualDefinitions(ICompletionState completionCache) {
+    /**
+     * Synchronized as the references in other modules may be searched in multiple threads.
+     */
+    public synchronized List<IDefinition> findActualDefinitions(ICompletionState completionCache) {
         if (this.actualDefinitions == null) {
             List<IDefinition> actualDefinitions = new ArrayList<IDefinition>();
             try {
@@ -168,6 +168,8 @@ class CompletionServer:
         self.socket = None  # socket to send messages.
         self.exit_process_on_kill = True
         self.processor = Processor()
+        self._buffer = b''
+        self._request_id = None
 
     def connect_to_server(self):
         from _pydev_bundle._pydev_saved_modules import socket
@@ -209,7 +211,53 @@ class CompletionServer:
             totalsent = totalsent + sent
 
     def send(self, msg):
-        self.socket.sendall(bytearray(msg, 'utf-8'))
+        msg = bytearray(msg, 'utf-8')
+        if self._request_id is not None:
+            # Answer with the id of the request being processed (many requests may be in-flight).
+            header = 'Content-Length: %s\r\nRequest-Id: %s\r\n\r\n' % (len(msg), self._request_id)
+            msg = bytearray(header, 'utf-8') + msg
+        self.socket.sendall(msg)
+
+    def _recv(self):
+        received = self.socket.recv(BUFFER_SIZE)
+        if len(received) == 0:
+            raise Exit()  # ok, connection ended
+        self._buffer += received
+
+    def read_message(self):
+        '''
+        Reads the next message. It may be received with headers (Content-Length and Request-Id) -- in which
+        case the response is sent with the same Request-Id -- or just be terminated by END@@.
+
+        @return tuple(message, request_id)
+        '''
+        while True:
+            if self._buffer.startswith(b'@@'):
+                i = self._buffer.find(MSG_END.encode('utf-8'))
+                if i != -1:
+                    i += len(MSG_END)
+                    data = self._buffer[:i]
+                    self._buffer = self._buffer[i:]
+                    return data.decode('utf-8'), None
+
+            elif self._buffer:
+                i = self._buffer.find(b'\r\n\r\n')
+                if i != -1:
+                    headers = {}
+                    for line in self._buffer[:i].split(b'\r\n'):
+                        name, _, value = line.partition(b':')
+                        headers[name.strip()] = value.strip()
+                    start = i + 4
+                    end = start + int(headers[b'Content-Length'])
+                    if len(self._buffer) >= end:
+                        data = self._buffer[start:end]
+                        self._buffer = self._buffer[end:]
+                        request_id = headers.get(b'Request-Id')
+                        if request_id is not None:
+                            request_id = request_id.decode('utf-8')
+                        return data.decode('utf-8'), request_id
+
+            self._recv()
 
     def run(self):
         # Echo server program
@@ -224,13 +272,7 @@ class CompletionServer:
             dbg(SERVER_NAME + ' Connected to java server', INFO1)
 
             while not self.ended:
-                data = ''
-
-                while data.find(MSG_END) == -1:
-                    received = self.socket.recv(BUFFER_SIZE)
-                    if len(received) == 0:
-                        raise Exit()  # ok, connection ended
-                    data = data + received.decode('utf-8')
+                data, self._request_id = self.read_message()
 
                 try:
                     try:
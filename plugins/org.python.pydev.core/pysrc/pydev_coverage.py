@@ -21,11 +21,39 @@ def is_valid_py_file(path):
     return is_valid
 
 
+def print_measured_files():
+    '''
+    Prints the files measured in the data files which will be combined (so that the java side only
+    needs to get the report for those files again).
+    '''
+    import glob
+    import sys
+    from coverage import CoverageData  # @UnresolvedImport
+
+    for data_file in glob.glob('.coverage.*'):
+        if hasattr(CoverageData, 'read_file'):  # coverage 4.x
+            data = CoverageData()
+            data.read_file(data_file)
+        else:
+            data = CoverageData(basename=data_file)
+            data.read()
+        for measured in data.measured_files():
+            sys.stdout.write('@@MEASURED:%s\n' % (measured,))
+
+    # If this isn't printed, the java side considers that any file may have changed.
+    sys.stdout.write('@@MEASURED_END\n')
+
+
 def execute():
     import os
     import sys
 
     files = None
+    print_measured = False
+    if '--pydev-print-measured' in sys.argv:
+        sys.argv.remove('--pydev-print-measured')
+        print_measured = True
+
     if 'combine' not in sys.argv:
 
         if '--pydev-analyze' in sys.argv:
@@ -81,6 +109,13 @@ def execute():
         sys.stderr.write('Warning: Could not determine version of python module coverage.'
                          '\nEnsure coverage version is >= 4.3\n')
 
+    if print_measured:
+        # Note: must be done before combining (which removes the data files).
+        try:
+            print_measured_files()
+        except:
+            import traceback;traceback.print_exc()
+
     from coverage.cmdline import main  # @UnresolvedImport
 
     if files is not None:
@@ -0,0 +1,174 @@
+'''
+Long-running process used to run linters (i.e.: pylint, flake8, mypy) without paying the interpreter/linter
+startup for each analyzed file.
+
+Each request is a json line in stdin:
+
+    {"module": "pylint", "args": [...], "cwd": "..."}
+
+And for each request a json line is written to stdout with the output of running the module as
+`python -m <module> <args>` (in-process):
+
+    {"stdout": "...", "stderr": "...", "returncode": 0}
+
+Anything written to the stdout of the process other than the responses (i.e.: by a linter plugin writing to
+sys.__stdout__ or to the file descriptor directly) is redirected to stderr.
+
+The process exits when stdin is closed.
+'''
+import io
+import json
+import os
+import sys
+import time
+
+
+class _Capture(object):
+
+    def __init__(self):
+        self.stdout = io.TextIOWrapper(io.BytesIO(), encoding='utf-8', errors='replace', write_through=True)
+        self.stderr = io.TextIOWrapper(io.BytesIO(), encoding='utf-8', errors='replace', write_through=True)
+
+    def __enter__(self):
+        self._original = sys.stdout, sys.stderr
+        sys.stdout, sys.stderr = self.stdout, self.stderr
+        return self
+
+    def __exit__(self, *args):
+        for stream in (self.stdout, self.stderr):
+            try:
+                stream.flush()
+            except Exception:
+                pass
+        sys.stdout, sys.stderr = self._original
+
+    def getvalues(self):
+        return tuple(stream.buffer.getvalue().decode('utf-8', 'replace') for stream in (self.stdout, self.stderr))
+
+
+def _exit_code(exc):
+    code = exc.code
+    if code is None:
+        return 0
+    if isinstance(code, int):
+        return code
+    sys.stderr.write('%s\n' % (code,))
+    return 1
+
+
+_last_run_time = [0]
+
+
+def _evict_changed_astroid_modules():
+    '''
+    astroid keeps the modules it inferred in a cache: remove the ones whose files changed since the last
+    run (and the cache of module names to files, as files may have been added/removed).
+    '''
+    try:
+        import astroid  # @UnresolvedImport
+        manager = astroid.MANAGER
+    except Exception:
+        return
+
+    last_run_time = _last_run_time[0]
+    _last_run_time[0] = time.time()
+    try:
+        for modname, module in list(manager.astroid_cache.items()):
+            path = getattr(module, 'file', None)
+            if path:
+                try:
+                    if os.path.getmtime(path) >= last_run_time:
+                        del manager.astroid_cache[modname]
+                except OSError:
+                    del manager.astroid_cache[modname]
+        manager._mod_file_cache.clear()
+    except Exception:
+        manager.clear_cache()
+
+
+def _run_module(module, args):
+    if module == 'mypy':
+        # Note: mypy's main may do an os._exit() (so, use the api which doesn't).
+        from mypy import api  # @UnresolvedImport
+        stdout, stderr, returncode = api.run(args)
+        sys.stdout.write(stdout)
+        sys.stderr.write(stderr)
+        return returncode
+
+    if module == 'pylint':
+        _evict_changed_astroid_modules()
+
+    import runpy
+    sys.argv = [module] + list(args)
+    try:
+        runpy.run_module(module, run_name='__main__', alter_sys=True)
+    except SystemExit as e:
+        return _exit_code(e)
+    return 0
+
+
+def handle_request(request):
+    original_cwd = os.getcwd()
+    original_argv = sys.argv
+    original_path = sys.path[:]
+
+    returncode = 1
+    with _Capture() as capture:
+        try:
+            cwd = request.get('cwd')
+            if cwd:
+                os.chdir(cwd)
+                sys.path.insert(0, cwd)
+            returncode = _run_module(request['module'], request.get('args', []))
+        except SystemExit as e:
+            returncode = _exit_code(e)
+        except BaseException:
+            import traceback
+            traceback.print_exc()
+        finally:
+            sys.argv = original_argv
+            sys.path[:] = original_path
+            os.chdir(original_cwd)
+
+    stdout, stderr = capture.getvalues()
+    return {'stdout': stdout, 'stderr': stderr, 'returncode': returncode}
+
+
+def _redirect_stdout():
+    '''
+    :return: a stream to write the responses (the original stdout) -- afterwards, writing to sys.stdout,
+        sys.__stdout__ or to the stdout file descriptor writes to stderr.
+    '''
+    sys.stdout.flush()
+    responses_fd = os.dup(1)
+    os.dup2(2, 1)
+    sys.stdout = sys.stderr
+    return io.open(responses_fd, 'w', encoding='utf-8', newline='\n')
+
+
+def main():
+    # Keep the streams to communicate with the java side (the module may replace sys.stdin/sys.stdout).
+    stdin = sys.stdin
+    stdout = _redirect_stdout()
+
+    # The modules in the directory of this script must not shadow the modules of the analyzed project.
+    script_dir = os.path.dirname(os.path.abspath(__file__))
+    sys.path[:] = [p for p in sys.path if os.path.abspath(p or '.') != script_dir]
+    while True:
+        line = stdin.readline()
+        if not line:
+            break
+        line = line.strip()
+        if not line:
+            continue
+        try:
+            response = handle_request(json.loads(line))
+        except Exception as e:
+            response = {'stdout': '', 'stderr': 'Error handling request: %s' % (e,), 'returncode': 1}
+        stdout.write(json.dumps(response))
+        stdout.write('\n')
+        stdout.flush()
+
+
+if __name__ == '__main__':
+    main()
@@ -0,0 +1,91 @@
+import json
+import os
+import subprocess
+import sys
+
+import pytest
+
+FAKE_LINTER_MAIN = '''
+import os
+import sys
+from fake_linter import counter
+counter.append(1)
+sys.stdout.write('args: %s\\n' % (' '.join(sys.argv[1:]),))
+sys.stdout.write('cwd: %s\\n' % (os.path.basename(os.getcwd()),))
+sys.stdout.write('runs: %s\\n' % (len(counter),))
+sys.stderr.write('some error\\n')
+if '--write-to-real-stdout' in sys.argv:
+    sys.__stdout__.write('to sys.__stdout__\\n')
+    sys.__stdout__.flush()
+    os.write(1, b'to fd 1\\n')
+if '--fail' in sys.argv:
+    sys.exit('failed')
+sys.exit(3)
+'''
+
+
+@pytest.fixture
+def daemon(tmpdir):
+    linter_dir = tmpdir.mkdir('linter').mkdir('fake_linter')
+    linter_dir.join('__init__.py').write('counter = []\n')
+    linter_dir.join('__main__.py').write(FAKE_LINTER_MAIN)
+    tmpdir.mkdir('project')
+
+    env = os.environ.copy()
+    env['PYTHONPATH'] = str(tmpdir.join('linter'))
+    daemon_file = os.path.join(os.path.dirname(os.path.dirname(__file__)), 'pydev_linter_daemon.py')
+    p = subprocess.Popen([sys.executable, '-u', daemon_file], stdin=subprocess.PIPE, stdout=subprocess.PIPE,
+                         stderr=subprocess.PIPE, env=env)
+
+    def request(**kwargs):
+        kwargs.setdefault('module', 'fake_linter')
+        kwargs.setdefault('cwd', str(tmpdir.join('project')))
+        p.stdin.write(json.dumps(kwargs).encode('utf-8') + b'\n')
+        p.stdin.flush()
+        return json.loads(p.stdout.readline().decode('utf-8'))
+
+    request.process = p
+    yield request
+    p.stdin.close()
+    assert p.wait() == 0
+
+
+def test_linter_daemon_runs_module(daemon):
+    response = daemon(args=['a.py', '--opt'])
+    assert response['returncode'] == 3
+    assert 'args: a.py --opt\n' in response['stdout']
+    assert 'cwd: project\n' in response['stdout']
+    assert 'runs: 1\n' in response['stdout']
+    assert response['stderr'] == 'some error\n'
+
+    # The module is imported only once (but its __main__ is run at each request).
+    response = daemon(args=['b.py', '--fail'])
+    assert response['returncode'] == 1
+    assert 'args: b.py --fail\n' in response['stdout']
+    assert 'runs: 2\n' in response['stdout']
+    assert response['stderr'] == 'some error\nfailed\n'
+
+
+def test_linter_daemon_module_not_found(daemon):
+    response = daemon(module='not_there_module', args=[])
+    assert response['returncode'] == 1
+    assert 'not_there_module' in response['stderr']
+
+    response = daemon(args=['c.py'])
+    assert response['returncode'] == 3
+    assert 'runs: 1\n' in response['stdout']
+
+
+def test_linter_daemon_output_to_real_stdout(daemon):
+    # Writing to the real stdout must not break the responses (it's redirected to stderr).
+    response = daemon(args=['d.py', '--write-to-real-stdout'])
+    assert response['returncode'] == 3
+    assert 'to sys.__stdout__' not in response['stdout']
+
+    response = daemon(args=['e.py'])
+    assert 'args: e.py\n' in response['stdout']
+
+    daemon.process.stdin.close()
+    stderr = daemon.process.stderr.read().decode('utf-8')
+    assert 'to sys.__stdout__\n' in stderr
+    assert 'to fd 1\n' in stderr
@@ -232,6 +232,7 @@ class CythonJsonServer(object):
             dbg(SERVER_NAME + ' Connected to java server')
 
             content_len = -1
+            request_id = None
             while True:
                 dbg('Will read line...')
                 line = self._read_line()
@@ -244,6 +245,10 @@ class CythonJsonServer(object):
                     dbg('Found content len: %s' % (content_len,))
                     continue
 
+                if line.startswith(b'Request-Id:'):
+                    request_id = line.strip().split(b':', 1)[1].strip().decode('utf-8')
+                    continue
+
                 if content_len != -1:
                     # If we previously received a content length, read until a '\r\n'.
                     if line == b'\r\n':
@@ -261,7 +266,11 @@ class CythonJsonServer(object):
                         if not isinstance(output, bytes):
                             output = output.encode('utf-8', 'replace')
 
-                        self.send('Content-Length: %s\r\n\r\n' % (len(output),))
+                        if request_id is not None:
+                            self.send('Content-Length: %s\r\nRequest-Id: %s\r\n\r\n' % (len(output), request_id))
+                            request_id = None
+                        else:
+                            self.send('Content-Length: %s\r\n\r\n' % (len(output),))
                         self.send(output)
 
                     continue
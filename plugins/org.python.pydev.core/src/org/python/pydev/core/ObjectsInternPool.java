@@ -9,18 +9,22 @@
  */
 package org.python.pydev.core;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This pool is to be regarded as a way to have less object instances for a given class,
  * so, if you have tons of equal strings, you could pass them here and make them be the same
- * to save memory. Note that it is created with weak-references for both, the key and the value,
+ * to save memory. Note that it is created with weak-references for the strings,
  * so, it should be safe to assume that it will be available for garbage collecting once
  * no other place has a reference to the same string.
- * 
+ *
+ * The pool may be accessed concurrently (lookups of strings already in the pool don't lock).
+ *
  * Still, use this with care...
  */
 public final class ObjectsInternPool {
@@ -28,8 +32,50 @@ public final class ObjectsInternPool {
     private ObjectsInternPool() {
     }
 
-    private static final Map<String, WeakReference<String>> weakHashMap = new WeakHashMap<String, WeakReference<String>>();
-    public static final Object lock = new Object();
+    /**
+     * A weak reference to an interned string which may be used as the key in the map (it keeps the hash of the
+     * string and compares the referent).
+     *
+     * Note that after the referent is collected it's only equal to itself (so, it's removed from the map
+     * when it's polled from the reference queue).
+     */
+    private static final class WeakKey extends WeakReference<String> {
+
+        private final int hash;
+
+        private WeakKey(String referent, ReferenceQueue<String> queue) {
+            super(referent, queue);
+            this.hash = referent.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof WeakKey)) {
+                return false;
+            }
+            WeakKey other = (WeakKey) obj;
+            if (hash != other.hash) {
+                return false;
+            }
+            String s = get();
+            return s != null && s.equals(other.get());
+        }
+    }
+
+    private static final ConcurrentHashMap<WeakKey, WeakKey> map = new ConcurrentHashMap<WeakKey, WeakKey>();
+    private static final ReferenceQueue<String> queue = new ReferenceQueue<String>();
+
+    private static final LongAdder requests = new LongAdder();
+    private static final LongAdder deduplicated = new LongAdder();
+    private static final LongAdder bytesSaved = new LongAdder();
 
     /**
      * This is a way to intern a String in the regular heap (instead of the String.intern which uses the perm-gen).
@@ -38,64 +84,76 @@ public final class ObjectsInternPool {
         if (o == null) {
             return null;
         }
-        synchronized (lock) {
-            WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-            if (w == null) {
-                //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
-                //passed, it'll create a new array only with the parts we want.
-                o = new String(o);
-                //garbage collected or still not there...
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
-
-            } else {
-                final String ret = w.get();
-                if (ret == null && o != null) {
-                    //garbage collected just in time hum?
-                    o = new String(o);
-                    weakHashMap.put(o, new WeakReference<String>(o));
-                    return o;
+        expungeStaleEntries();
+        requests.increment();
 
-                } else {
+        WeakKey lookup = new WeakKey(o, null);
+        while (true) {
+            WeakKey existing = map.get(lookup);
+            if (existing != null) {
+                String ret = existing.get();
+                if (ret != null) {
+                    if (ret != o) {
+                        deduplicated.increment();
+                        bytesSaved.add(estimateSize(o));
+                    }
                     return ret;
                 }
+                //garbage collected just in time (it'll be removed when it's polled from the queue)
+            }
+            WeakKey key = new WeakKey(o, queue);
+            WeakKey prev = map.putIfAbsent(key, key);
+            if (prev == null) {
+                return o;
             }
+            //some other thread added it in the meanwhile: try again
+            key.clear();
         }
     }
 
     /**
-     * Same thing as intern, but the client is responsible for synchronizing on the lock object of this class!
-     * 
-     * Note that this should be done on a fast process where many objects will be added (but only on fast processes
-     * that want to avoid synchronizing at each step).
+     * Interns all the strings in the passed array (the array is changed in-place).
      */
-    public static String internUnsynched(String o) {
-        if (o == null) {
-            return null;
+    public static void internAll(String[] strings) {
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = intern(strings[i]);
         }
-        WeakReference<String> w = (WeakReference<String>) weakHashMap.get(o);
-        if (w == null) {
-            //Yes, the String constructor will do things properly, so, if a big string is actually backed up by the one
-            //passed, it'll create a new array only with the parts we want.
-            o = new String(o);
-            //garbage collected or still not there...
-            weakHashMap.put(o, new WeakReference<String>(o));
-            return o;
-
-        } else {
-            final String ret = w.get();
-            if (ret == null && o != null) {
-                //garbage collected just in time hum?
-                o = new String(o);
-                weakHashMap.put(o, new WeakReference<String>(o));
-                return o;
+    }
 
-            } else {
-                return ret;
-            }
+    private static void expungeStaleEntries() {
+        Reference<? extends String> ref;
+        while ((ref = queue.poll()) != null) {
+            map.remove(ref);
         }
     }
 
+    /**
+     * Approximate size of the string (header + array) which isn't kept because an equal string was interned.
+     */
+    private static long estimateSize(String o) {
+        return 40 + o.length();
+    }
+
+    /**
+     * @return the number of strings currently in the pool (some of those may already be garbage-collected).
+     */
+    public static int size() {
+        expungeStaleEntries();
+        return map.size();
+    }
+
+    /**
+     * @return a string with the statistics of the pool (number of requests, how many were deduplicated and an
+     * estimate of the bytes saved).
+     */
+    public static String getStats() {
+        long req = requests.sum();
+        long dedup = deduplicated.sum();
+        return "ObjectsInternPool[size=" + size() + ", requests=" + req + ", deduplicated=" + dedup
+                + ", dedupRatio=" + (req == 0 ? 0 : (dedup * 100 / req)) + "%, bytesSaved=" + bytesSaved.sum()
+                + "]";
+    }
+
     /**
      * Class used to store items interned locally in a map (without weak references)
      */
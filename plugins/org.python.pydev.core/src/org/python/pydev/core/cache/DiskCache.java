@@ -221,6 +221,15 @@ public final class DiskCache {
         }
     }
 
+    /**
+     * @return the key with the same module name of the passed key (or null if not available).
+     */
+    public CompleteIndexKey get(CompleteIndexKey key) {
+        synchronized (lock) {
+            return keys.get(key);
+        }
+    }
+
     /**
      * @return a copy of the keys available
      */
@@ -0,0 +1,304 @@
+package org.python.pydev.core.concurrency;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.python.pydev.core.log.Log;
+
+/**
+ * Executes runnables in a bounded ForkJoinPool where each runnable is scheduled in a lane (the lower the lane,
+ * the higher the priority: whenever a worker is available it gets the oldest runnable from the lowest lane which
+ * has something pending).
+ *
+ * Note that it's up to the runnable to check whether it's still needed when it's run (i.e.: a runnable which
+ * was superseded by a newer request should just return as fast as possible).
+ */
+public final class PriorityLanesExecutor {
+
+    private static final class Entry implements Comparable<Entry> {
+
+        private final Runnable runnable;
+        private final int lane;
+        private final long seq;
+        private final long scheduledNanos;
+        private final Group group;
+
+        private Entry(Runnable runnable, int lane, long seq, Group group) {
+            this.runnable = runnable;
+            this.lane = lane;
+            this.seq = seq;
+            this.group = group;
+            this.scheduledNanos = System.nanoTime();
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (lane != o.lane) {
+                return lane < o.lane ? -1 : 1;
+            }
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    /**
+     * A group of runnables which may be waited on (and which may have a limit on the number of pending runnables,
+     * so that a producer which is faster than the consumers blocks instead of filling the memory).
+     */
+    public final class Group {
+
+        private final int maxPending;
+        private final Object groupLock = new Object();
+        private int pending;
+
+        private Group(int maxPending) {
+            this.maxPending = maxPending;
+        }
+
+        /**
+         * Schedules the runnable (blocks while the number of pending runnables in this group is >= maxPending).
+         */
+        public void schedule(Runnable runnable, int lane) {
+            synchronized (groupLock) {
+                while (pending >= maxPending) {
+                    try {
+                        groupLock.wait(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                pending++;
+            }
+            PriorityLanesExecutor.this.schedule(runnable, lane, this);
+        }
+
+        /**
+         * Waits until all the runnables scheduled in this group are finished.
+         */
+        public void waitToFinish() {
+            synchronized (groupLock) {
+                while (pending > 0) {
+                    try {
+                        groupLock.wait(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+
+        public int getPending() {
+            synchronized (groupLock) {
+                return pending;
+            }
+        }
+
+        private void onFinished() {
+            synchronized (groupLock) {
+                pending--;
+                groupLock.notifyAll();
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final PriorityBlockingQueue<Entry> queue = new PriorityBlockingQueue<Entry>();
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicInteger[] queuedPerLane;
+    private final AtomicInteger running = new AtomicInteger();
+
+    private final Object pauseLock = new Object();
+    private int pauseLevel = 0;
+
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalRunNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * @param name the name used for the threads of this executor.
+     * @param parallelism the max number of runnables which may run at the same time.
+     * @param lanes the number of lanes available (valid lanes are from 0 to lanes - 1).
+     */
+    public PriorityLanesExecutor(final String name, int parallelism, int lanes) {
+        if (lanes <= 0) {
+            throw new AssertionError("The number of lanes must be > 0.");
+        }
+        queuedPerLane = new AtomicInteger[lanes];
+        for (int i = 0; i < lanes; i++) {
+            queuedPerLane[i] = new AtomicInteger();
+        }
+        final AtomicInteger threadId = new AtomicInteger();
+        ForkJoinPool.ForkJoinWorkerThreadFactory factory = new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + " " + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        this.pool = new ForkJoinPool(Math.max(1, parallelism), factory, null, true);
+    }
+
+    /**
+     * Creates a group which may be used to wait for a set of runnables.
+     *
+     * @param maxPending the max number of runnables from the group which may be pending at a given time.
+     */
+    public Group createGroup(int maxPending) {
+        return new Group(Math.max(1, maxPending));
+    }
+
+    public void schedule(Runnable runnable, int lane) {
+        schedule(runnable, lane, null);
+    }
+
+    private void schedule(Runnable runnable, int lane, Group group) {
+        if (lane < 0 || lane >= queuedPerLane.length) {
+            throw new IllegalArgumentException("Invalid lane: " + lane);
+        }
+        queuedPerLane[lane].incrementAndGet();
+        queue.add(new Entry(runnable, lane, seq.incrementAndGet(), group));
+        pool.execute(this::runNext);
+    }
+
+    /**
+     * Each call to schedule() submits one call to this method (which will run the entry with the highest priority
+     * available at that point, which is not necessarily the one scheduled in that call).
+     */
+    private void runNext() {
+        synchronized (pauseLock) {
+            if (pauseLevel > 0) {
+                // It'll be rescheduled when the pause level goes back to 0.
+                return;
+            }
+        }
+        Entry entry = queue.poll();
+        if (entry == null) {
+            return;
+        }
+        queuedPerLane[entry.lane].decrementAndGet();
+        running.incrementAndGet();
+        long startNanos = System.nanoTime();
+        long waitNanos = startNanos - entry.scheduledNanos;
+        totalWaitNanos.add(waitNanos);
+        long currMax;
+        while (waitNanos > (currMax = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(currMax, waitNanos)) {
+                break;
+            }
+        }
+        try {
+            entry.runnable.run();
+        } catch (Throwable e) {
+            Log.log(e);
+        } finally {
+            totalRunNanos.add(System.nanoTime() - startNanos);
+            completed.increment();
+            running.decrementAndGet();
+            if (entry.group != null) {
+                entry.group.onFinished();
+            }
+        }
+    }
+
+    /**
+     * While paused, runnables already running go on, but no new runnable is started.
+     * Each call to pushPause() must have a matching call to popPause().
+     */
+    public void pushPause() {
+        synchronized (pauseLock) {
+            pauseLevel++;
+        }
+    }
+
+    public void popPause() {
+        int toReschedule = 0;
+        synchronized (pauseLock) {
+            pauseLevel--;
+            if (pauseLevel < 0) {
+                pauseLevel = 0;
+                Log.log("popPause() called without a matching pushPause().");
+            }
+            if (pauseLevel == 0) {
+                toReschedule = queue.size();
+            }
+        }
+        for (int i = 0; i < toReschedule; i++) {
+            pool.execute(this::runNext);
+        }
+    }
+
+    /**
+     * @return the number of runnables waiting to run (in all lanes).
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public int getQueueDepth(int lane) {
+        return queuedPerLane[lane].get();
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return the average time (in millis) that runnables waited in the queue before starting.
+     */
+    public double getAverageWaitMillis() {
+        long count = completed.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(totalWaitNanos.sum()) / 1000.0 / count;
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    /**
+     * @return the average time (in millis) that runnables took to run.
+     */
+    public double getAverageRunMillis() {
+        long count = completed.sum();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMicros(totalRunNanos.sum()) / 1000.0 / count;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("PriorityLanesExecutor[parallelism=").append(getParallelism())
+                .append(", running=").append(getRunning()).append(", queued=");
+        for (int i = 0; i < queuedPerLane.length; i++) {
+            if (i > 0) {
+                buf.append('/');
+            }
+            buf.append(queuedPerLane[i].get());
+        }
+        return buf.append(", completed=").append(getCompletedCount())
+                .append(String.format(", avgWaitMs=%.2f, maxWaitMs=%d, avgRunMs=%.2f]", getAverageWaitMillis(),
+                        getMaxWaitMillis(), getAverageRunMillis()))
+                .toString();
+    }
+}
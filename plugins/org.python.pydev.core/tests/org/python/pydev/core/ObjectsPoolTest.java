@@ -6,32 +6,55 @@
  */
 package org.python.pydev.core;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 /**
  * @author fabioz
- *
- * Outer lock not synched internal
- * 6.837
- * 
- * With outer lock and synched internal
- * 7.2
- * 
- * Only synched internal
- * 7.5
  */
 public class ObjectsPoolTest extends TestCase {
 
     public void testObjectsPool() throws Exception {
         String intern = ObjectsInternPool.intern(new String("foo"));
         assertSame(ObjectsInternPool.intern(new String("foo")), intern);
+        assertNull(ObjectsInternPool.intern(null));
+    }
+
+    public void testInternAll() throws Exception {
+        String intern = ObjectsInternPool.intern(new String("bar"));
+        String[] strings = new String[] { new String("bar"), new String("baz"), new String("baz") };
+        ObjectsInternPool.internAll(strings);
+        assertSame(intern, strings[0]);
+        assertSame(strings[1], strings[2]);
+    }
 
-        //        Timer t = new Timer();
-        //        synchronized (ObjectsPool.lock){
-        //            for(int i=0;i<100000000;i++){
-        //                ObjectsPool.internUnsynched("foo");
-        //            }
-        //        }
-        //        t.printDiff();
+    public void testConcurrentIntern() throws Exception {
+        final String[][] results = new String[4][];
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < results.length; t++) {
+            final int iThread = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    String[] found = new String[1000];
+                    for (int i = 0; i < found.length; i++) {
+                        found[i] = ObjectsInternPool.intern(new String("concurrent" + i));
+                    }
+                    results[iThread] = found;
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int i = 0; i < 1000; i++) {
+            for (int t = 1; t < results.length; t++) {
+                assertSame(results[0][i], results[t][i]);
+            }
+        }
     }
 }
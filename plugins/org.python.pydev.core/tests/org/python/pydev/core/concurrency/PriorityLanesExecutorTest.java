@@ -0,0 +1,107 @@
+package org.python.pydev.core.concurrency;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class PriorityLanesExecutorTest extends TestCase {
+
+    private Runnable blockUntil(final CountDownLatch started, final CountDownLatch release) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private Runnable addTo(final List<String> lst, final String val) {
+        return new Runnable() {
+
+            @Override
+            public void run() {
+                lst.add(val);
+            }
+        };
+    }
+
+    public void testLanesPriority() throws Exception {
+        PriorityLanesExecutor executor = new PriorityLanesExecutor("test", 1, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.schedule(blockUntil(started, release), 0);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        PriorityLanesExecutor.Group group = executor.createGroup(100);
+        group.schedule(addTo(order, "build1"), 2);
+        group.schedule(addTo(order, "delta1"), 1);
+        group.schedule(addTo(order, "build2"), 2);
+        group.schedule(addTo(order, "editor1"), 0);
+        group.schedule(addTo(order, "delta2"), 1);
+        assertEquals(5, executor.getQueueDepth());
+        assertEquals(2, executor.getQueueDepth(2));
+
+        release.countDown();
+        group.waitToFinish();
+        assertEquals("[editor1, delta1, delta2, build1, build2]", order.toString());
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(6, executor.getCompletedCount());
+    }
+
+    public void testGroupBlocksWhenTooManyPending() throws Exception {
+        final PriorityLanesExecutor executor = new PriorityLanesExecutor("test", 2, 1);
+        final PriorityLanesExecutor.Group group = executor.createGroup(3);
+        final AtomicInteger maxPending = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        for (int i = 0; i < 30; i++) {
+            group.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    int pending = group.getPending();
+                    if (pending > maxPending.get()) {
+                        maxPending.set(pending);
+                    }
+                    try {
+                        Thread.sleep(2);
+                    } catch (InterruptedException e) {
+                    }
+                    finished.incrementAndGet();
+                }
+            }, 0);
+        }
+        group.waitToFinish();
+        assertEquals(30, finished.get());
+        assertTrue("Max pending: " + maxPending.get(), maxPending.get() <= 3);
+        assertEquals(0, group.getPending());
+    }
+
+    public void testPause() throws Exception {
+        PriorityLanesExecutor executor = new PriorityLanesExecutor("test", 2, 2);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        executor.pushPause();
+        PriorityLanesExecutor.Group group = executor.createGroup(10);
+        group.schedule(addTo(order, "a"), 1);
+        group.schedule(addTo(order, "b"), 0);
+        Thread.sleep(100);
+        assertEquals(0, order.size());
+        assertEquals(2, executor.getQueueDepth());
+
+        executor.popPause();
+        group.waitToFinish();
+        assertEquals(2, order.size());
+        assertEquals(0, executor.getQueueDepth());
+    }
+}
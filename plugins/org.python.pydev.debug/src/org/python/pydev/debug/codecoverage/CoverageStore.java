@@ -0,0 +1,199 @@
+package org.python.pydev.debug.codecoverage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.python.pydev.core.log.Log;
+import org.python.pydev.shared_core.utils.PlatformUtils;
+
+/**
+ * Keeps the coverage of each file (as line bitsets) across refreshes (and restarts), so that a refresh only has
+ * to ask the coverage module for the files whose coverage may have changed (files measured in new runs or
+ * files changed in the disk).
+ *
+ * Not thread-safe (it's only used while refreshing the coverage information).
+ */
+public final class CoverageStore {
+
+    public static final String FILENAME = "coverage_store.dat";
+
+    private static final int VERSION = 1;
+
+    public static final class FileCoverage {
+
+        public final String path;
+        public final long lastModified;
+        public final long length;
+
+        /**
+         * Lines with statements.
+         */
+        public final BitSet statements;
+
+        /**
+         * Lines with statements which were not executed.
+         */
+        public final BitSet missed;
+
+        public FileCoverage(String path, long lastModified, long length, BitSet statements, BitSet missed) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.statements = statements;
+            this.missed = missed;
+        }
+
+        public int getStmts() {
+            return statements.cardinality();
+        }
+
+        public int getMiss() {
+            return missed.cardinality();
+        }
+
+        /**
+         * @return the lines not executed (i.e.: "1, 5-6, 8").
+         */
+        public String getNotExecuted() {
+            return CoverageXmlInfo.FillCacheFromXmlHandler.calculateMissingBuf(missed);
+        }
+    }
+
+    private final Map<String, FileCoverage> files = new HashMap<>();
+
+    /**
+     * The state of the combined data file when the store was last updated (if the data file doesn't match it
+     * anymore, the whole store must be considered stale).
+     */
+    private long dataFileLastModified = -1;
+    private long dataFileLength = -1;
+
+    public static String getKey(String path) {
+        return PlatformUtils.isWindowsPlatform() ? path.toLowerCase() : path;
+    }
+
+    public FileCoverage get(String path) {
+        return files.get(getKey(path));
+    }
+
+    public void put(FileCoverage coverage) {
+        files.put(getKey(coverage.path), coverage);
+    }
+
+    public void remove(String path) {
+        files.remove(getKey(path));
+    }
+
+    public int size() {
+        return files.size();
+    }
+
+    /**
+     * @return whether the given file has its coverage stored and wasn't changed since.
+     */
+    public boolean isUpToDate(File file) {
+        FileCoverage coverage = files.get(getKey(file.toString()));
+        return coverage != null && coverage.lastModified == file.lastModified() && coverage.length == file.length();
+    }
+
+    public boolean matchesDataFile(File dataFile) {
+        return dataFileLength != -1 && dataFile.lastModified() == dataFileLastModified
+                && dataFile.length() == dataFileLength;
+    }
+
+    /**
+     * @param dataFile the combined data file (or null to mark the whole store as stale).
+     */
+    public void setDataFile(File dataFile) {
+        if (dataFile == null || !dataFile.exists()) {
+            dataFileLastModified = -1;
+            dataFileLength = -1;
+        } else {
+            dataFileLastModified = dataFile.lastModified();
+            dataFileLength = dataFile.length();
+        }
+    }
+
+    public void clear() {
+        files.clear();
+        setDataFile(null);
+    }
+
+    public void save(File file) throws IOException {
+        File tempFile = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024))) {
+            out.writeInt(VERSION);
+            out.writeLong(dataFileLastModified);
+            out.writeLong(dataFileLength);
+            out.writeInt(files.size());
+            for (FileCoverage coverage : files.values()) {
+                out.writeUTF(coverage.path);
+                out.writeLong(coverage.lastModified);
+                out.writeLong(coverage.length);
+                writeBitSet(out, coverage.statements);
+                writeBitSet(out, coverage.missed);
+            }
+        }
+        file.delete();
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to rename: " + tempFile + " to: " + file);
+        }
+    }
+
+    /**
+     * @return the store saved in the given file (or an empty store if it can't be read).
+     */
+    public static CoverageStore load(File file) {
+        CoverageStore store = new CoverageStore();
+        if (!file.exists()) {
+            return store;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            if (in.readInt() != VERSION) {
+                return store;
+            }
+            long dataFileLastModified = in.readLong();
+            long dataFileLength = in.readLong();
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                store.put(new FileCoverage(path, lastModified, length, readBitSet(in), readBitSet(in)));
+            }
+            store.dataFileLastModified = dataFileLastModified;
+            store.dataFileLength = dataFileLength;
+        } catch (Exception e) {
+            Log.log("Error reading coverage store: " + file, e);
+            store.clear();
+        }
+        return store;
+    }
+
+    private static void writeBitSet(DataOutputStream out, BitSet bitSet) throws IOException {
+        long[] words = bitSet.toLongArray();
+        out.writeInt(words.length);
+        for (long word : words) {
+            out.writeLong(word);
+        }
+    }
+
+    private static BitSet readBitSet(DataInputStream in) throws IOException {
+        long[] words = new long[in.readInt()];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = in.readLong();
+        }
+        return BitSet.valueOf(words);
+    }
+}
@@ -1,8 +1,11 @@
 package org.python.pydev.debug.codecoverage;
 
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.BitSet;
 import java.util.TreeSet;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -10,7 +13,7 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
 import org.python.pydev.core.log.Log;
-import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.debug.codecoverage.CoverageStore.FileCoverage;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -47,13 +50,21 @@ public class CoverageXmlInfo {
     public static class FillCacheFromXmlHandler extends DefaultHandler {
 
         private CoverageCache cache;
+        private CoverageStore store;
         private File file;
-        private int stmts = 0;
-        private int miss = 0;
-        private TreeSet<Integer> missedLines = new TreeSet<>();
+        private BitSet statements = new BitSet();
+        private BitSet missedLines = new BitSet();
 
         public FillCacheFromXmlHandler(CoverageCache cache) {
+            this(cache, null);
+        }
+
+        /**
+         * @param store if not null, the coverage of each file is also put in the store.
+         */
+        public FillCacheFromXmlHandler(CoverageCache cache, CoverageStore store) {
             this.cache = cache;
+            this.store = store;
         }
 
         @Override
@@ -62,17 +73,15 @@ public class CoverageXmlInfo {
             if (qName.equals("class")) {
                 String filename = attributes.getValue("filename");
                 file = new File(filename);
-                stmts = 0;
-                miss = 0;
-                missedLines.clear();
+                statements = new BitSet();
+                missedLines = new BitSet();
             } else if (qName.equals("line")) {
                 try {
                     int lineNum = Integer.parseInt(attributes.getValue("number"));
-                    stmts += 1;
+                    statements.set(lineNum);
                     String hits = attributes.getValue("hits");
                     if ("0".equals(hits)) {
-                        miss += 1;
-                        missedLines.add(lineNum);
+                        missedLines.set(lineNum);
                     }
                 } catch (Exception e) {
                     Log.log(e);
@@ -84,19 +93,33 @@ public class CoverageXmlInfo {
         @Override
         public void endElement(String uri, String localName, String qName) throws SAXException {
             if (qName.equals("class")) {
-                cache.addFile(file, file.getParentFile(), stmts, miss, calculateMissingBuf(missedLines));
+                FileCoverage coverage = new FileCoverage(file.toString(), file.lastModified(), file.length(),
+                        statements, missedLines);
+                cache.addFile(file, file.getParentFile(), coverage.getStmts(), coverage.getMiss(),
+                        coverage.getNotExecuted());
+                if (store != null) {
+                    store.put(coverage);
+                }
                 file = null;
-                stmts = 0;
-                miss = 0;
-                missedLines.clear();
+                statements = new BitSet();
+                missedLines = new BitSet();
             }
         }
 
         public static String calculateMissingBuf(TreeSet<Integer> missedLines) {
+            BitSet bitSet = new BitSet();
+            for (Integer missedLine : missedLines) {
+                bitSet.set(missedLine);
+            }
+            return calculateMissingBuf(bitSet);
+        }
+
+        public static String calculateMissingBuf(BitSet missedLines) {
             int last = -1;
             int gapStart = -1;
             FastStringBuffer missingBuf = new FastStringBuffer();
-            for (Integer missedLine : missedLines) {
+            for (int missedLine = missedLines.nextSetBit(0); missedLine >= 0; missedLine = missedLines
+                    .nextSetBit(missedLine + 1)) {
                 if (last == -1) {
                     last = gapStart = missedLine;
                 } else {
@@ -135,9 +158,18 @@ public class CoverageXmlInfo {
     }
 
     public static void analyze(CoverageCache cache, File coverageXmlLocation) throws SAXException, IOException {
-        String fileContents = FileUtils.getFileContents(coverageXmlLocation);
+        analyze(cache, null, coverageXmlLocation);
+    }
+
+    /**
+     * Parses the xml directly from the file (each file is added to the cache/store as soon as it's parsed).
+     */
+    public static void analyze(CoverageCache cache, CoverageStore store, File coverageXmlLocation)
+            throws SAXException, IOException {
         SAXParser parser = getSAXParser();
-        parser.parse(new ByteArrayInputStream(fileContents.getBytes()), new FillCacheFromXmlHandler(cache));
+        try (InputStream in = new BufferedInputStream(new FileInputStream(coverageXmlLocation), 64 * 1024)) {
+            parser.parse(in, new FillCacheFromXmlHandler(cache, store));
+        }
     }
 
 }
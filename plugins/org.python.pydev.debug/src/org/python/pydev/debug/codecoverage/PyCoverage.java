@@ -13,7 +13,9 @@ package org.python.pydev.debug.codecoverage;
 
 import java.io.File;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.runtime.IPath;
@@ -23,12 +25,14 @@ import org.python.pydev.ast.listing_utils.PyFileListing.PyFileInfo;
 import org.python.pydev.ast.runners.UniversalRunner;
 import org.python.pydev.ast.runners.UniversalRunner.AbstractRunner;
 import org.python.pydev.core.log.Log;
+import org.python.pydev.debug.codecoverage.CoverageStore.FileCoverage;
 import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.debug.ui.launching.PythonRunnerConfig;
 import org.python.pydev.plugin.nature.PythonNature;
 import org.python.pydev.shared_core.io.FileUtils;
 import org.python.pydev.shared_core.io.ThreadStreamReader;
 import org.python.pydev.shared_core.string.FastStringBuffer;
+import org.python.pydev.shared_core.string.StringUtils;
 import org.python.pydev.shared_core.structure.Tuple;
 
 /**
@@ -47,10 +51,47 @@ public class PyCoverage {
 
     public CoverageCache cache = new CoverageCache();
 
+    /**
+     * Name of the data file with the combined information of all the runs.
+     */
+    private static final String COMBINED_DATA_FILE = ".coverage";
+
+    /**
+     * Prefix of the data files written for each run (combined in the refresh).
+     */
+    private static final String RUN_DATA_FILES_PREFIX = ".coverage.";
+
+    private static final String MEASURED_PREFIX = "@@MEASURED:";
+    private static final String MEASURED_END = "@@MEASURED_END";
+
+    /**
+     * The coverage of each file from previous refreshes (lazily loaded).
+     */
+    private CoverageStore store;
+
+    private CoverageStore getStore() {
+        if (store == null) {
+            store = CoverageStore.load(new File(getCoverageDirLocation(), CoverageStore.FILENAME));
+        }
+        return store;
+    }
+
+    private void saveStore() {
+        try {
+            getStore().save(new File(getCoverageDirLocation(), CoverageStore.FILENAME));
+        } catch (Exception e) {
+            Log.log(e);
+        }
+    }
+
     /**
      * This method contacts the python server so that we get the information on the files that are below the directory passed as a parameter
      * and stores the information needed on the cache.
      *
+     * The refresh is incremental: only the files measured in the runs done since the last refresh (or files
+     * changed in the disk) are reported again by the coverage module, the others are gotten from the
+     * {@link CoverageStore}.
+     *
      * @param file
      *            should be the root folder from where we want cache info.
      */
@@ -97,23 +138,79 @@ public class PyCoverage {
                         + " does not have an associated nature.");
             }
             AbstractRunner runner = UniversalRunner.getRunner(nature);
+            File coverageDirLocation = getCoverageDirLocation();
+            File combinedDataFile = new File(coverageDirLocation, COMBINED_DATA_FILE);
+            CoverageStore store = getStore();
+
+            // If the combined data changed without passing through here, nothing in the store can be reused.
+            boolean reuseStore = store.matchesDataFile(combinedDataFile);
+
+            if (FileUtils.getFilesStartingWith(coverageDirLocation, RUN_DATA_FILES_PREFIX).size() > 0) {
+                //First, combine the results of the many runs we may have (getting the files measured in them).
+                Tuple<String, String> output = runner.runScriptAndGetOutput(PythonRunnerConfig.getCoverageScript(),
+                        new String[] { "combine", "--append", "--pydev-print-measured" }, coverageDirLocation,
+                        monitor);
+
+                String out = output.o1;
+                if (out != null) {
+                    FastStringBuffer otherOutput = new FastStringBuffer();
+                    boolean measuredComplete = false;
+                    for (String line : StringUtils.iterLines(out)) {
+                        String trimmed = line.trim();
+                        if (trimmed.startsWith(MEASURED_PREFIX)) {
+                            // Its coverage must be reported again (even if it's not below the container now).
+                            store.remove(trimmed.substring(MEASURED_PREFIX.length()));
+                        } else if (trimmed.equals(MEASURED_END)) {
+                            measuredComplete = true;
+                        } else {
+                            otherOutput.append(line);
+                        }
+                    }
+                    if (!measuredComplete) {
+                        reuseStore = false;
+                    }
+                    out = otherOutput.toString().trim();
+                } else {
+                    reuseStore = false;
+                }
+                if (out != null && out.length() > 0) {
+                    Log.logInfo(out);
+                }
+                if (output.o2 != null && output.o2.length() > 0) {
+                    if (output.o2.startsWith("Coverage.py warning:")) {
+                        Log.logInfo(output.o2);
 
-            //First, combine the results of the many runs we may have.
-            Tuple<String, String> output = runner.runScriptAndGetOutput(PythonRunnerConfig.getCoverageScript(),
-                    new String[] { "combine", "--append" }, getCoverageDirLocation(), monitor);
+                    } else {
+                        Log.log(output.o2);
+                    }
+                }
+            }
 
-            if (output.o1 != null && output.o1.length() > 0) {
-                Log.logInfo(output.o1);
+            if (!reuseStore) {
+                store.clear();
             }
-            if (output.o2 != null && output.o2.length() > 0) {
-                if (output.o2.startsWith("Coverage.py warning:")) {
-                    Log.logInfo(output.o2);
 
+            // Until the end of this refresh, the store is only valid if everything goes well.
+            store.setDataFile(null);
+            List<File> toAnalyze = new ArrayList<>();
+            for (PyFileInfo info : pyFilesBelow.getFoundPyFileInfos()) {
+                File f = info.getFile();
+                if (!store.isUpToDate(f)) {
+                    toAnalyze.add(f);
                 } else {
-                    Log.log(output.o2);
+                    FileCoverage coverage = store.get(f.toString());
+                    cache.addFile(f, f.getParentFile(), coverage.getStmts(), coverage.getMiss(),
+                            coverage.getNotExecuted());
                 }
             }
 
+            if (toAnalyze.size() == 0) {
+                store.setDataFile(combinedDataFile);
+                saveStore();
+                monitor.setTaskName("Finished");
+                return;
+            }
+
             //we have to make a process to execute the script. it should look
             // like:
             //coverage.py -r [-m] FILE1 FILE2 ...
@@ -124,7 +221,6 @@ public class PyCoverage {
             //python coverage.py -r -m files....
 
             monitor.setTaskName("Starting shell to get info...");
-            File coverageDirLocation = getCoverageDirLocation();
             File coverageXmlLocation = new File(coverageDirLocation, "coverage.xml");
             if (coverageXmlLocation.exists()) {
                 coverageXmlLocation.delete();
@@ -137,13 +233,12 @@ public class PyCoverage {
                 Tuple<Process, String> tup = runner.createProcess(PythonRunnerConfig.getCoverageScript(),
                         new String[] { "--pydev-analyze" }, coverageDirLocation, monitor);
                 p = tup.o1;
-                String files = "";
+                FastStringBuffer files = new FastStringBuffer(toAnalyze.size() * 60);
 
-                for (Iterator<PyFileInfo> iter = pyFilesBelow.getFoundPyFileInfos().iterator(); iter.hasNext();) {
-                    String fStr = iter.next().getFile().toString();
-                    files += fStr + "|";
+                for (File f : toAnalyze) {
+                    files.append(f.toString()).append('|');
                 }
-                files += "\r";
+                files.append('\r');
                 monitor.setTaskName("Writing to shell...");
 
                 //No need to synchronize as we'll waitFor() the process before getting the contents.
@@ -154,7 +249,7 @@ public class PyCoverage {
 
                 monitor.worked(1);
                 OutputStream outputStream = p.getOutputStream();
-                outputStream.write(files.getBytes());
+                outputStream.write(files.toString().getBytes());
                 outputStream.close();
 
                 monitor.setTaskName("Waiting for process to finish...");
@@ -198,8 +293,16 @@ public class PyCoverage {
                 if (!coverageXmlLocation.exists()) {
                     Log.log("Expected file: " + coverageXmlLocation + " to be written to analyze coverage info.");
                 } else {
-                    CoverageXmlInfo.analyze(cache, coverageXmlLocation);
+                    // Files not reported (i.e.: invalid files) shouldn't be kept with a previous coverage.
+                    for (File f : toAnalyze) {
+                        store.remove(f.toString());
+                    }
+                    CoverageXmlInfo.analyze(cache, store, coverageXmlLocation);
+                    if (exitValue == 0 && !monitor.isCanceled()) {
+                        store.setDataFile(combinedDataFile);
+                    }
                 }
+                saveStore();
 
                 monitor.setTaskName("Finished");
             } catch (Exception e) {
@@ -234,6 +337,8 @@ public class PyCoverage {
      */
     public void clearInfo() {
         cache.clear();
+        getStore().clear();
+        new File(getCoverageDirLocation(), CoverageStore.FILENAME).delete();
         File dir = getCoverageDirLocation();
         try {
             //Clear the files we created when running the coverages.
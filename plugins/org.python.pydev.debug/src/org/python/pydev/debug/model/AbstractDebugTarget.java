@@ -647,6 +647,12 @@ public abstract class AbstractDebugTarget extends AbstractDebugTargetWithTransmi
         if (t != null) {
             IStackFrame stackFrame[] = threadNstack.stack;
             t.setSuspended(true, stackFrame);
+            if (reason != DebugEvent.CLIENT_REQUEST && stackFrame != null && stackFrame.length > 0
+                    && stackFrame[0] instanceof PyStackFrame) {
+                // The top frame will be selected: get its variables while the UI is still being updated (not
+                // done when suspending on a client request as in this case all the threads are usually suspended).
+                ((PyStackFrame) stackFrame[0]).prefetchVariables();
+            }
             fireEvent(new DebugEvent(t, DebugEvent.SUSPEND, reason));
         }
     }
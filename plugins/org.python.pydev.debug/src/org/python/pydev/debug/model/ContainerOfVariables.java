@@ -14,7 +14,10 @@ public class ContainerOfVariables {
     private WeakReference<IVariablesContainerParent> parent;
     private volatile boolean onAskGetNewVars = true;
 
-    private final static Object lock = new Object();
+    /**
+     * Each container has its own lock (so, a slow response for some container doesn't block the others).
+     */
+    private final Object lock = new Object();
     private volatile boolean gettingInitialVariables = false;
     private final VariablesLoader variablesLoader;
 
@@ -68,8 +71,19 @@ public class ContainerOfVariables {
         return this.variables;
     }
 
+    /**
+     * Requests the variables in advance (so that they're possibly already available when the UI asks for them).
+     */
+    public void prefetchVariables() {
+        if (onAskGetNewVars) {
+            variablesLoader.prefetchVariables();
+        }
+    }
+
     public void forceGetNewVariables() {
         this.onAskGetNewVars = true;
+        // A response still not received may be for the previous suspend.
+        variablesLoader.clearPending();
         IVariablesContainerParent p = this.parent.get();
         if (p == null) {
             return;
@@ -181,6 +181,13 @@ public class PyStackFrame extends PlatformObject
         variableContainer.forceGetNewVariables();
     }
 
+    /**
+     * Requests the variables of this frame in the background (they're used when the UI asks for them).
+     */
+    public void prefetchVariables() {
+        variableContainer.prefetchVariables();
+    }
+
     @Override
     public boolean hasVariables() throws DebugException {
         return true;
@@ -9,22 +9,43 @@ package org.python.pydev.debug.model;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.debug.core.DebugException;
 import org.python.pydev.debug.model.remote.AbstractDebuggerCommand;
 import org.python.pydev.debug.model.remote.GetVariableCommand;
-import org.python.pydev.debug.model.remote.ICommandResponseListener;
 import org.python.pydev.shared_core.log.Log;
 
-public class VariablesLoader implements ICommandResponseListener {
+public class VariablesLoader {
+
+    /**
+     * A request for the variables (the variables are set when the response arrives).
+     */
+    private static final class Request {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile PyVariable[] variables;
+        private volatile boolean discarded;
+    }
 
     private volatile PyVariable[] currentVariables;
-    private volatile PyVariable[] oldVariables;
     private final ContainerOfVariables parent;
     private IProgressMonitor monitor;
     private boolean addGlobalsVariable;
 
+    /**
+     * The request which is still waiting for a response (may have been posted in advance by prefetchVariables).
+     * Guarded by this.
+     */
+    private Request pending;
+
+    /**
+     * The request posted by prefetchVariables which wasn't used by fetchVariables yet. Guarded by this.
+     */
+    private Request prefetched;
+
     public VariablesLoader(ContainerOfVariables parent, boolean addGlobalsVariable) {
         this.parent = parent;
         this.addGlobalsVariable = addGlobalsVariable;
@@ -39,19 +60,64 @@ public class VariablesLoader implements ICommandResponseListener {
     }
 
     public PyVariable[] fetchVariables() {
-        oldVariables = currentVariables;
-        currentVariables = null;
+        Request request;
+        synchronized (this) {
+            request = prefetched;
+            prefetched = null;
+        }
+        if (request == null) {
+            request = requestVariables();
+        }
+        if (request == null) {
+            return new PyVariable[0];
+        }
+        return waitForCommand(request);
+    }
+
+    /**
+     * Posts the command to get the variables without waiting for the response (a fetchVariables afterwards uses
+     * the response of this request).
+     */
+    public synchronized void prefetchVariables() {
+        if (prefetched == null) {
+            prefetched = requestVariables();
+        }
+    }
+
+    /**
+     * Discards a request still waiting for a response (its response is no longer valid).
+     */
+    public synchronized void clearPending() {
+        if (pending != null) {
+            pending.discarded = true;
+            pending = null;
+        }
+        prefetched = null;
+    }
+
+    /**
+     * @return the request still waiting for a response or a new request (null if there's no target).
+     */
+    private synchronized Request requestVariables() {
+        if (pending != null) {
+            return pending;
+        }
         AbstractDebugTarget target = this.getTarget();
         if (target == null) {
-            return new PyVariable[0];
+            return null;
         }
         GetVariableCommand variableCommand = this.parent.getVariableCommand(target);
-        variableCommand.setCompletionListener(this);
+        if (variableCommand == null) {
+            return null;
+        }
+        final Request request = new Request();
+        variableCommand.setCompletionListener((cmd) -> commandComplete(request, cmd));
+        pending = request;
         target.postCommand(variableCommand);
-        return waitForCommand();
+        return request;
     }
 
-    private PyVariable[] waitForCommand() {
+    private PyVariable[] waitForCommand(Request request) {
         try {
             // VariablesView does not deal well with children changing asynchronously.
             // it causes unneeded scrolling, because view preserves selection instead
@@ -59,43 +125,61 @@ public class VariablesLoader implements ICommandResponseListener {
             // I try to minimize the occurrence here, by giving pydevd time to complete the
             // task before we are forced to do asynchronous notification.
             int i = 150; //up to 1.5 seconds
-            while (--i > 0 && currentVariables == null) {
+            while (--i > 0 && !request.done.await(10, TimeUnit.MILLISECONDS)) {
                 if (this.monitor != null && this.monitor.isCanceled() == true) {
                     //canceled request... let's return
                     return new PyVariable[0];
                 }
-                Thread.sleep(10); //10 millis
             }
         } catch (InterruptedException e) {
             Log.log(e);
         }
 
-        if (currentVariables != null) {
-            return currentVariables;
+        PyVariable[] variables = request.variables;
+        if (variables != null) {
+            return variables;
+        }
+        synchronized (this) {
+            // Not reused in a new fetch (but if the response arrives later on, it's still set asynchronously).
+            if (pending == request) {
+                pending = null;
+            }
         }
         return new PyVariable[0];
     }
 
-    @Override
-    public void commandComplete(AbstractDebuggerCommand cmd) {
-        AbstractDebugTarget target = getTarget();
-        IVariableLocator locator = getLocator();
-        if (target == null || locator == null) {
-            return;
-        }
-        PyVariable[] temp = PyVariableCollection.getCommandVariables(cmd, target, locator);
-
-        if (addGlobalsVariable) {
-            PyVariable[] temp1 = new PyVariable[temp.length + 1];
-            System.arraycopy(temp, 0, temp1, 1, temp.length);
-            temp1[0] = new PyVariableCollection(target, "Globals", "frame.f_globals", "Global variables",
-                    this.parent.getGlobalLocator(), "");
-            temp = temp1;
+    private void commandComplete(Request request, AbstractDebuggerCommand cmd) {
+        synchronized (this) {
+            if (pending == request) {
+                pending = null;
+            }
         }
+        try {
+            if (request.discarded) {
+                return;
+            }
+            AbstractDebugTarget target = getTarget();
+            IVariableLocator locator = getLocator();
+            if (target == null || locator == null) {
+                return;
+            }
+            PyVariable[] temp = PyVariableCollection.getCommandVariables(cmd, target, locator);
+
+            if (addGlobalsVariable) {
+                PyVariable[] temp1 = new PyVariable[temp.length + 1];
+                System.arraycopy(temp, 0, temp1, 1, temp.length);
+                temp1[0] = new PyVariableCollection(target, "Globals", "frame.f_globals", "Global variables",
+                        this.parent.getGlobalLocator(), "");
+                temp = temp1;
+            }
 
-        PyVariable[] newVars = this.verifyVariablesModified(temp, oldVariables);
+            PyVariable[] newVars = this.verifyVariablesModified(temp, currentVariables);
 
-        currentVariables = parent.setVariables(newVars);
+            currentVariables = newVars;
+            request.variables = parent.setVariables(newVars);
+        } finally {
+            request.done.countDown();
+        }
     }
 
     /**
@@ -12,54 +12,20 @@ package org.python.pydev.debug.model;
 import java.io.ByteArrayInputStream;
 import java.net.URLDecoder;
 
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IStatus;
-import org.python.pydev.core.log.Log;
-import org.python.pydev.debug.core.PydevDebugPlugin;
 import org.python.pydev.shared_core.structure.Tuple;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
-import org.xml.sax.SAXNotRecognizedException;
-import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.helpers.DefaultHandler;
 
 public class XMLMessage extends DefaultHandler {
 
     //------------------------- static stuff
-    private static SAXParserFactory parserFactory = SAXParserFactory.newInstance();
-    static {
-        try {
-            parserFactory.setFeature("http://xml.org/sax/features/namespaces", false);
-            parserFactory.setFeature("http://xml.org/sax/features/validation", false);
-            parserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-dtd-grammar", false);
-            parserFactory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-        } catch (SAXNotRecognizedException | SAXNotSupportedException | ParserConfigurationException e) {
-            Log.log(e);
-        }
-    }
-
-    private static SAXParser getSAXParser() throws CoreException {
-        SAXParser parser = null;
-        try {
-            synchronized (parserFactory) {
-                parser = parserFactory.newSAXParser();
-            }
-        } catch (ParserConfigurationException e) {
-            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML SAX error", e));
-        } catch (SAXException e) {
-            throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML SAX error", e));
-        }
-        return parser;
-    }
-
     public static Tuple<String, Integer> getMessage(String payload) {
         XMLMessage m = new XMLMessage();
         try {
-            SAXParser parser = getSAXParser();
+            SAXParser parser = XMLUtils.getSAXParser();
             parser.parse(new ByteArrayInputStream(payload.getBytes()), m);
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -67,12 +67,27 @@ public class XMLUtils {
         }
     }
 
+    /**
+     * Creating a parser is expensive (and many messages are parsed when many threads are suspended/resumed at
+     * once), so, each thread reuses the same parser (which is reset when requested again).
+     */
+    private static final ThreadLocal<SAXParser> threadParser = new ThreadLocal<>();
+
+    /**
+     * @return a parser for the current thread (note: the parser is reused by the next call in the same thread, so,
+     * it must not be kept after the parsing is finished).
+     */
     public static SAXParser getSAXParser() throws CoreException {
-        SAXParser parser = null;
+        SAXParser parser = threadParser.get();
+        if (parser != null) {
+            parser.reset();
+            return parser;
+        }
         try {
             synchronized (parserFactory) {
                 parser = parserFactory.newSAXParser();
             }
+            threadParser.set(parser);
         } catch (ParserConfigurationException e) {
             throw new CoreException(PydevDebugPlugin.makeStatus(IStatus.ERROR, "Unexpected XML SAX error", e));
         } catch (SAXException e) {
@@ -6,11 +6,12 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.Socket;
-import java.util.Dictionary;
-import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.runtime.IStatus;
 import org.python.pydev.core.log.Log;
@@ -44,7 +45,7 @@ public class DebuggerReader implements Runnable {
     /**
      * commands waiting for response. Their keys are the sequence ids
      */
-    private Dictionary<Integer, AbstractDebuggerCommand> responseQueue = new Hashtable<Integer, AbstractDebuggerCommand>();
+    private final Map<Integer, AbstractDebuggerCommand> responseQueue = new ConcurrentHashMap<>();
 
     /**
      * we read from this
@@ -67,7 +68,8 @@ public class DebuggerReader implements Runnable {
     public DebuggerReader(Socket s, AbstractDebugTargetWithTransmission r) throws IOException {
         remote = (AbstractDebugTarget) r;
         socket = s;
-        in = socket.getInputStream();
+        // Buffered as the headers are read one byte at a time.
+        in = new BufferedInputStream(socket.getInputStream(), 32 * 1024);
     }
 
     /**
@@ -81,10 +83,7 @@ public class DebuggerReader implements Runnable {
      * @param cmd
      */
     public void addToResponseQueue(AbstractDebuggerCommand cmd) {
-        int sequence = cmd.getSequence();
-        synchronized (responseQueue) {
-            responseQueue.put(sequence, cmd);
-        }
+        responseQueue.put(cmd.getSequence(), cmd);
     }
 
     /**
@@ -92,20 +91,24 @@ public class DebuggerReader implements Runnable {
      */
     private void processCommand(String cmdLine) {
         try {
-            String[] cmdParsed = cmdLine.split("\t", 3);
-            int cmdCode = Integer.parseInt(cmdParsed[0]);
-            int seqCode = Integer.parseInt(cmdParsed[1]);
-            String payload = cmdParsed[2];
+            // Format: cmdCode\tseqCode\tpayload (the payload may have tabs).
+            int i = cmdLine.indexOf('\t');
+            int j = cmdLine.indexOf('\t', i + 1);
+            if (i == -1 || j == -1) {
+                throw new RuntimeException("Unexpected command: " + cmdLine);
+            }
+            String cmdCodeStr = cmdLine.substring(0, i);
+            String seqCodeStr = cmdLine.substring(i + 1, j);
+            int cmdCode = Integer.parseInt(cmdCodeStr);
+            int seqCode = Integer.parseInt(seqCodeStr);
+            String payload = cmdLine.substring(j + 1);
 
             // is there a response waiting
-            AbstractDebuggerCommand cmd;
-            synchronized (responseQueue) {
-                cmd = responseQueue.remove(new Integer(seqCode));
-            }
+            AbstractDebuggerCommand cmd = responseQueue.remove(seqCode);
 
             if (cmd == null) {
                 if (remote != null) {
-                    remote.processCommand(cmdParsed[0], cmdParsed[1], payload);
+                    remote.processCommand(cmdCodeStr, seqCodeStr, payload);
                 } else {
                     PydevDebugPlugin.log(IStatus.ERROR, "internal error, command received no target", null);
                 }
@@ -144,7 +147,7 @@ public class DebuggerReader implements Runnable {
                     done = true;
                 } else {
                     if (contents.length() > 0) {
-                        processCommand(contents.toString());
+                        processCommand(contents);
                     }
                 }
             } catch (Exception e1) {
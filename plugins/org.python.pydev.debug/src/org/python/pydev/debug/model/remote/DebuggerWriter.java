@@ -6,13 +6,16 @@
  */
 package org.python.pydev.debug.model.remote;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.python.pydev.core.log.Log;
 
@@ -28,20 +31,26 @@ public class DebuggerWriter implements Runnable {
     private Socket socket;
 
     /**
-     * a list of RemoteDebuggerCommands
+     * a list of RemoteDebuggerCommands (unbounded: commands must not be dropped when many are posted at once,
+     * i.e.: when resuming/suspending many threads).
      */
-    private BlockingQueue<AbstractDebuggerCommand> cmdQueue = new ArrayBlockingQueue<>(64);
+    private final BlockingQueue<AbstractDebuggerCommand> cmdQueue = new LinkedBlockingQueue<>();
 
-    private OutputStreamWriter out;
+    private final Writer out;
 
     /**
      * Volatile, as multiple threads may ask it to be 'done'
      */
     private volatile boolean done = false;
 
+    /**
+     * The thread writing the commands (interrupted when done so that it stops waiting for commands).
+     */
+    private volatile Thread writerThread;
+
     public DebuggerWriter(Socket s) throws IOException {
         socket = s;
-        out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+        out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), 32 * 1024);
     }
 
     /**
@@ -53,23 +62,29 @@ public class DebuggerWriter implements Runnable {
 
     public void done() {
         this.done = true;
+        Thread t = writerThread;
+        if (t != null) {
+            t.interrupt();
+        }
     }
 
     /**
-     * Loops and writes commands to the output
+     * Waits for commands and writes them to the output (all the commands available are written before
+     * flushing).
      */
     @Override
     public void run() {
+        writerThread = Thread.currentThread();
+        List<AbstractDebuggerCommand> cmds = new ArrayList<>();
         while (!done) {
-            AbstractDebuggerCommand cmd = null;
             try {
-                cmd = cmdQueue.poll(100, TimeUnit.MILLISECONDS);
+                cmds.add(cmdQueue.take());
             } catch (InterruptedException e) {
-                cmd = null;
-                Log.log(e);
+                continue; // done() was called (checked in the loop).
             }
+            cmdQueue.drainTo(cmds);
             try {
-                if (cmd != null) {
+                for (AbstractDebuggerCommand cmd : cmds) {
                     String outgoing;
                     try {
                         outgoing = cmd.getOutgoing();
@@ -84,13 +99,14 @@ public class DebuggerWriter implements Runnable {
                     cmd.aboutToSend();
                     out.write(outgoing);
                     out.write("\n");
-                    out.flush();
                 }
+                out.flush();
             } catch (IOException e) {
                 done = true;
             } catch (Throwable e1) {
                 Log.log(e1); //Unexpected error (but not done).
             }
+            cmds.clear();
             if ((socket == null) || !socket.isConnected()) {
                 done = true;
             }
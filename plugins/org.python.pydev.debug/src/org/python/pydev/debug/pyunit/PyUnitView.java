@@ -566,6 +566,25 @@ public class PyUnitView extends ViewPartWithOrientation implements IViewWithCont
         notifyTest(result, true);
     }
 
+    /**
+     * Notifies that some test results have been added (the tree is redrawn and the counters are updated only once).
+     */
+    /*default*/void notifyTests(List<PyUnitTestResult> results) {
+        if (this.disposed) {
+            return;
+        }
+
+        tree.setRedraw(false);
+        try {
+            for (PyUnitTestResult result : results) {
+                notifyTest(result, false);
+            }
+            updateCountersAndBar();
+        } finally {
+            tree.setRedraw(true);
+        }
+    }
+
     /*default*/void notifyTestStarted(PyUnitTestStarted result) {
         if (this.disposed) {
             return;
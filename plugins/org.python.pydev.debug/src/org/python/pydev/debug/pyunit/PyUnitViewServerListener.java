@@ -7,7 +7,9 @@
 package org.python.pydev.debug.pyunit;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
@@ -15,12 +17,15 @@ import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.ui.progress.UIJob;
 import org.python.pydev.core.log.Log;
-import org.python.pydev.shared_core.callbacks.ICallback0;
-import org.python.pydev.shared_core.structure.LinkedListWarningOnSlowOperations;
 
 /**
  * Used to properly pass notifications in the UI thread to the PyUnitView.
- * 
+ *
+ * Notifications are just queued (without locking) in the thread which receives them and are handled in batches
+ * in the UI thread: the update job is scheduled when the first notification after an update arrives (and isn't
+ * rescheduled on the following ones, which would postpone the update for as long as results keep arriving), so,
+ * while the tests run, the view is updated at most once every TIMEOUT millis.
+ *
  * @author fabioz
  */
 final class PyUnitViewServerListener implements IPyUnitServerListener {
@@ -28,28 +33,119 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
     private PyUnitView view;
     private Object lockView = new Object();
 
-    private LinkedList<ICallback0<Object>> notifications = new LinkedListWarningOnSlowOperations<ICallback0<Object>>();
+    private static final class TestNotification {
+
+        private final String status;
+        private final String location;
+        private final String test;
+        private final String capturedOutput;
+        private final String errorContents;
+        private final String time;
+
+        private TestNotification(String status, String location, String test, String capturedOutput,
+                String errorContents, String time) {
+            this.status = status;
+            this.location = location;
+            this.test = test;
+            this.capturedOutput = capturedOutput;
+            this.errorContents = errorContents;
+            this.time = time;
+        }
+    }
+
+    private static final class StartTestNotification {
+
+        private final String location;
+        private final String test;
+
+        private StartTestNotification(String location, String test) {
+            this.location = location;
+            this.test = test;
+        }
+    }
+
+    private static final class FinishedNotification {
+
+        private final String totalTime;
+
+        private FinishedNotification(String totalTime) {
+            this.totalTime = totalTime;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Object> notifications = new ConcurrentLinkedQueue<Object>();
+
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
 
     private Job updateJob = new UIJob("Update unittest view") {
 
         @Override
         public IStatus runInUIThread(IProgressMonitor monitor) {
-            ArrayList<ICallback0<Object>> arrayList;
-            synchronized (notifications) {
-                arrayList = new ArrayList<ICallback0<Object>>(notifications);
-                notifications.clear();
-            }
-            for (ICallback0<Object> iCallback0 : arrayList) {
+            // Reset before getting the notifications (any notification added from now on schedules a new update).
+            updateScheduled.set(false);
+
+            List<PyUnitTestResult> results = new ArrayList<PyUnitTestResult>();
+            PyUnitTestStarted lastStarted = null;
+            Object notification;
+            while ((notification = notifications.poll()) != null) {
                 try {
-                    iCallback0.call();
+                    if (notification instanceof TestNotification) {
+                        TestNotification n = (TestNotification) notification;
+                        PyUnitTestResult result = new PyUnitTestResult(testRun, n.status, n.location, n.test,
+                                n.capturedOutput, n.errorContents, n.time);
+                        testRun.addResult(result);
+                        results.add(result);
+
+                    } else if (notification instanceof StartTestNotification) {
+                        StartTestNotification n = (StartTestNotification) notification;
+                        lastStarted = new PyUnitTestStarted(testRun, n.location, n.test);
+                        testRun.addStartTest(lastStarted);
+
+                    } else if (notification instanceof FinishedNotification) {
+                        notifyViewTests(results);
+                        results.clear();
+                        lastStarted = null;
+
+                        String totalTime = ((FinishedNotification) notification).totalTime;
+                        testRun.setFinished(true);
+                        if (totalTime != null) {
+                            testRun.setTotalTime(totalTime);
+                        }
+                        synchronized (lockView) {
+                            if (view != null) {
+                                view.notifyFinished(testRun);
+                            }
+                        }
+                    }
                 } catch (Exception e) {
                     Log.log(e);
                 }
             }
+
+            if (results.size() > 0) {
+                notifyViewTests(results);
+
+            } else if (lastStarted != null) {
+                synchronized (lockView) {
+                    if (view != null) {
+                        view.notifyTestStarted(lastStarted);
+                    }
+                }
+            }
             return Status.OK_STATUS;
         }
     };
 
+    private void notifyViewTests(List<PyUnitTestResult> results) {
+        if (results.size() > 0) {
+            synchronized (lockView) {
+                if (view != null) {
+                    view.notifyTests(results);
+                }
+            }
+        }
+    }
+
     private final PyUnitTestRun testRun;
 
     public PyUnitViewServerListener(IPyUnitServer pyUnitServer, PyUnitTestRun testRun) {
@@ -63,78 +159,38 @@ final class PyUnitViewServerListener implements IPyUnitServerListener {
         this(pyUnitServer, new PyUnitTestRun(pyUnitLaunch));
     }
 
+    /**
+     * The time (in millis) between the first notification after an update of the view and the next update.
+     */
     public static int TIMEOUT = 25;
     public static int JOBS_PRIORITY = Job.SHORT;
-    private boolean finishedNotified = false;
+    private final AtomicBoolean finishedNotified = new AtomicBoolean();
 
-    @Override
-    public void notifyTest(final String status, final String location, final String test, final String capturedOutput,
-            final String errorContents, final String time) {
-        synchronized (notifications) {
-            notifications.add(new ICallback0<Object>() {
-
-                @Override
-                public Object call() {
-                    PyUnitTestResult result = new PyUnitTestResult(testRun, status, location, test, capturedOutput,
-                            errorContents, time);
-                    testRun.addResult(result);
-                    synchronized (lockView) {
-                        if (view != null) {
-                            view.notifyTest(result);
-                        }
-                    }
-                    return null;
-                }
-            });
+    private void scheduleUpdate() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            updateJob.schedule(TIMEOUT);
         }
-        updateJob.schedule(TIMEOUT);
     }
 
     @Override
-    public void notifyStartTest(final String location, final String test) {
-        synchronized (notifications) {
-            notifications.add(new ICallback0<Object>() {
-
-                @Override
-                public Object call() {
-                    PyUnitTestStarted result = new PyUnitTestStarted(testRun, location, test);
-                    testRun.addStartTest(result);
-                    synchronized (lockView) {
-                        if (view != null) {
-                            view.notifyTestStarted(result);
-                        }
-                    }
-                    return null;
-                }
-            });
-        }
-        updateJob.schedule(TIMEOUT);
+    public void notifyTest(String status, String location, String test, String capturedOutput,
+            String errorContents, String time) {
+        notifications.add(new TestNotification(status, location, test, capturedOutput, errorContents, time));
+        scheduleUpdate();
     }
 
     @Override
-    public void notifyFinished(final String totalTime) {
-        synchronized (notifications) {
-            if (!finishedNotified) {
-                finishedNotified = true;
-                notifications.add(new ICallback0<Object>() {
-
-                    @Override
-                    public Object call() {
-                        testRun.setFinished(true);
-                        if (totalTime != null) {
-                            testRun.setTotalTime(totalTime);
-                        }
-                        synchronized (lockView) {
-                            if (view != null) {
-                                view.notifyFinished(testRun);
-                            }
-                        }
-                        return null;
-                    }
-                });
-            }
+    public void notifyStartTest(String location, String test) {
+        notifications.add(new StartTestNotification(location, test));
+        scheduleUpdate();
+    }
+
+    @Override
+    public void notifyFinished(String totalTime) {
+        if (finishedNotified.compareAndSet(false, true)) {
+            notifications.add(new FinishedNotification(totalTime));
         }
-        updateJob.schedule(TIMEOUT);
+        scheduleUpdate();
     }
 
     @Override
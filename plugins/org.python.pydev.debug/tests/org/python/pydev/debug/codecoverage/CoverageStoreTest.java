@@ -0,0 +1,82 @@
+package org.python.pydev.debug.codecoverage;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.BitSet;
+
+import org.python.pydev.debug.codecoverage.CoverageStore.FileCoverage;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class CoverageStoreTest extends TestCase {
+
+    private File baseDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("coverage_store_test").toFile();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static BitSet bits(int... lines) {
+        BitSet bitSet = new BitSet();
+        for (int line : lines) {
+            bitSet.set(line);
+        }
+        return bitSet;
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        File source = new File(baseDir, "mod.py");
+        FileUtils.writeStrToFile("a = 10\nb = 20\n", source);
+        File dataFile = new File(baseDir, ".coverage");
+        FileUtils.writeStrToFile("data", dataFile);
+
+        CoverageStore store = new CoverageStore();
+        store.put(new FileCoverage(source.toString(), source.lastModified(), source.length(), bits(1, 2, 5, 6, 8),
+                bits(1, 5, 6, 8)));
+        store.setDataFile(dataFile);
+        File storeFile = new File(baseDir, CoverageStore.FILENAME);
+        store.save(storeFile);
+
+        CoverageStore loaded = CoverageStore.load(storeFile);
+        assertEquals(1, loaded.size());
+        assertTrue(loaded.matchesDataFile(dataFile));
+        assertTrue(loaded.isUpToDate(source));
+        FileCoverage coverage = loaded.get(source.toString());
+        assertEquals(5, coverage.getStmts());
+        assertEquals(4, coverage.getMiss());
+        assertEquals("1, 5-6, 8", coverage.getNotExecuted());
+    }
+
+    public void testChangedFileNotUpToDate() throws Exception {
+        File source = new File(baseDir, "mod.py");
+        FileUtils.writeStrToFile("a = 10\n", source);
+
+        CoverageStore store = new CoverageStore();
+        store.put(new FileCoverage(source.toString(), source.lastModified(), source.length(), bits(1), bits()));
+        assertTrue(store.isUpToDate(source));
+        assertFalse(store.isUpToDate(new File(baseDir, "other.py")));
+
+        FileUtils.writeStrToFile("a = 10\nb = 20\n", source);
+        assertFalse(store.isUpToDate(source));
+
+        store.clear();
+        assertEquals(0, store.size());
+        assertFalse(store.matchesDataFile(source));
+    }
+
+    public void testLoadInvalidFile() throws Exception {
+        File storeFile = new File(baseDir, CoverageStore.FILENAME);
+        FileUtils.writeStrToFile("invalid", storeFile);
+        assertEquals(0, CoverageStore.load(storeFile).size());
+        assertEquals(0, CoverageStore.load(new File(baseDir, "not_there")).size());
+    }
+}
@@ -11,6 +11,7 @@ import java.util.ResourceBundle;
 
 import org.eclipse.core.runtime.Plugin;
 import org.osgi.framework.BundleContext;
+import org.python.pydev.core.log.Log;
 
 /**
  * The main plugin class to be used in the desktop.
@@ -57,6 +58,22 @@ public class ParserPlugin extends Plugin {
         return plugin;
     }
 
+    /**
+     * @return the version of this plugin (or an empty string if the plugin isn't running -- i.e.: in tests).
+     */
+    public static String getVersion() {
+        ParserPlugin p = plugin;
+        if (p == null) {
+            return "";
+        }
+        try {
+            return p.getBundle().getHeaders().get("Bundle-Version");
+        } catch (Exception e) {
+            Log.log(e);
+            return "";
+        }
+    }
+
     /**
      * Returns the string from the plugin's resource bundle,
      * or 'key' if not found.
@@ -287,7 +287,8 @@ public class PyParser extends BaseParser implements IPyParser {
             version = IGrammarVersionProvider.LATEST_GRAMMAR_PY3_VERSION;
         }
         long documentTime = System.currentTimeMillis();
-        ParseOutput obj = reparseDocument(new ParserInfo(document, version, true, additionalGrammarsToCheck));
+        ParseOutput obj = reparseDocumentIncrementally(
+                new ParserInfo(document, version, true, additionalGrammarsToCheck));
 
         IFile original = null;
         IAdaptable adaptable = null;
@@ -361,6 +362,34 @@ public class PyParser extends BaseParser implements IPyParser {
         return obj;
     }
 
+    /**
+     * The contents/ast of the last successful parse (used to reparse only what changed in the next parse).
+     */
+    private volatile PyParserIncremental.State incrementalState;
+
+    /**
+     * Parses only the part of the document which changed since the last parse (if possible, otherwise does
+     * a full parse).
+     */
+    private ParseOutput reparseDocumentIncrementally(ParserInfo info) {
+        if (!PyParserIncremental.ENABLED || info.grammarVersion == IPythonNature.GRAMMAR_PYTHON_VERSION_CYTHON) {
+            return reparseDocument(info);
+        }
+        long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
+        String startDoc = info.document.get();
+
+        ParseOutput obj = PyParserIncremental.reparse(info, startDoc, modifiedTime, incrementalState);
+        if (obj == null) {
+            obj = reparseDocument(info, startDoc, modifiedTime);
+        }
+        PyParserIncremental.State state = PyParserIncremental.createState(startDoc, obj, info.grammarVersion);
+        if (state != null || obj.error == null) {
+            // Note: when there are errors the last state is kept (the next parse is still based on it).
+            incrementalState = state;
+        }
+        return obj;
+    }
+
     //static methods that can be used to get the ast (and error if any) --------------------------------------
 
     public final static class ParserInfo implements IGrammarVersionProvider {
@@ -465,10 +494,19 @@ public class PyParser extends BaseParser implements IPyParser {
      */
     public final static List<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>> successfulParseListeners = new ArrayList<ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>>>();
 
+    /*default*/ static void notifySuccessfulParseListeners(ISimpleNode root, Throwable error, ParserInfo info) {
+        Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(root, error,
+                info);
+
+        for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
+            callback.call(param);
+        }
+    }
+
     /**
      * Create the char array to parse based on the initial document and our parser limitations.
      */
-    private static char[] createCharArrayToParse(String startDoc) {
+    /*default*/ static char[] createCharArrayToParse(String startDoc) {
         int length = startDoc.length();
         int skipAtStart = 0;
         if (startDoc.startsWith(FileUtils.BOM_UTF8)) {
@@ -555,7 +593,13 @@ public class PyParser extends BaseParser implements IPyParser {
         //reason for this stamp).
         long modifiedTime = ((IDocumentExtension4) info.document).getModificationStamp();
         String startDoc = info.document.get();
+        return reparseDocument(info, startDoc, modifiedTime);
+    }
 
+    /**
+     * Parses the given contents (which should be the contents of info.document at the given modification stamp).
+     */
+    private static ParseOutput reparseDocument(ParserInfo info, String startDoc, long modifiedTime) {
         if (startDoc.trim().length() == 0) {
             //If empty, don't bother to parse!
             return new ParseOutput(new Module(new stmtType[0]), null, modifiedTime);
@@ -587,12 +631,7 @@ public class PyParser extends BaseParser implements IPyParser {
 
             //only notify successful parses
             if (successfulParseListeners.size() > 0) {
-                Tuple3<ISimpleNode, Throwable, ParserInfo> param = new Tuple3<ISimpleNode, Throwable, ParserInfo>(
-                        returnVar.o1, returnVar.o2, info);
-
-                for (ICallback<Object, Tuple3<ISimpleNode, Throwable, ParserInfo>> callback : successfulParseListeners) {
-                    callback.call(param);
-                }
+                notifySuccessfulParseListeners(returnVar.o1, returnVar.o2, info);
             }
 
             returnVar.o2 = grammar.getErrorOnParsing();
@@ -0,0 +1,533 @@
+package org.python.pydev.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.SpecialStr;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.Pass;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.parser.jython.ast.decoratorsType;
+import org.python.pydev.parser.jython.ast.stmtType;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+/**
+ * Reparses only the top-level statements which enclose the region that changed since the last (successful) parse.
+ *
+ * The changed region is computed from the previous and the new contents (common prefix/suffix). The region is
+ * extended to whole top-level statements (along with their decorators and the comments after them, which the
+ * parser attaches to the previous statement), only that part is parsed with the regular grammar and the resulting
+ * nodes are put in a new module along with the (unchanged) nodes from the previous module.
+ *
+ * When the number of lines changes, the nodes after the region must be shifted. As those nodes may be in use by
+ * other threads (i.e.: the previous ast is still being used for code analysis), they are never changed in place:
+ * copies with the new lines are used in the new module instead (which is still much faster than parsing those).
+ *
+ * If something doesn't work as expected (i.e.: the region doesn't parse without errors), null is returned and
+ * clients must do a full parse.
+ */
+public final class PyParserIncremental {
+
+    /**
+     * Whether incremental parsing should be used in the editor.
+     */
+    public static final boolean ENABLED = !"false".equals(System.getProperty("pydev.parser.incremental"));
+
+    /**
+     * Documents with fewer lines than this are always fully parsed (as it's already fast).
+     */
+    public static final int MIN_LINES = Integer.getInteger("pydev.parser.incremental.min.lines", 300);
+
+    private static final String SENTINEL = "pass\n";
+
+    /**
+     * The contents and ast from the last parse.
+     */
+    public static final class State {
+
+        private final String text;
+        private final int[] lineStarts;
+        private final Module ast;
+        private final int grammarVersion;
+
+        private State(String text, int[] lineStarts, Module ast, int grammarVersion) {
+            this.text = text;
+            this.lineStarts = lineStarts;
+            this.ast = ast;
+            this.grammarVersion = grammarVersion;
+        }
+    }
+
+    private PyParserIncremental() {
+    }
+
+    /**
+     * @return the state to be used in a later incremental parse or null if the given output can't be used as
+     * the base for an incremental parse.
+     */
+    public static State createState(String text, ParseOutput output, int grammarVersion) {
+        if (output == null || output.error != null || !(output.ast instanceof Module)) {
+            return null;
+        }
+        if (text.startsWith(FileUtils.BOM_UTF8) || text.startsWith(FileUtils.BOM_UNICODE)) {
+            return null;
+        }
+        int[] lineStarts = computeLineStarts(text);
+        if (lineStarts.length < MIN_LINES) {
+            return null;
+        }
+        return new State(text, lineStarts, (Module) output.ast, grammarVersion);
+    }
+
+    /**
+     * @return the parse output for the new contents or null if it wasn't possible to do an incremental parse
+     * (in which case a full parse must be done).
+     */
+    public static ParseOutput reparse(ParserInfo info, String newText, long modificationStamp, State previous) {
+        if (previous == null || !info.generateTree || previous.grammarVersion != info.grammarVersion) {
+            return null;
+        }
+        if (newText.startsWith(FileUtils.BOM_UTF8) || newText.startsWith(FileUtils.BOM_UNICODE)) {
+            return null;
+        }
+        String oldText = previous.text;
+        int oldLen = oldText.length();
+        int newLen = newText.length();
+
+        int prefix = 0;
+        int maxPrefix = Math.min(oldLen, newLen);
+        while (prefix < maxPrefix && oldText.charAt(prefix) == newText.charAt(prefix)) {
+            prefix++;
+        }
+        if (prefix == oldLen && prefix == newLen) {
+            return new ParseOutput(previous.ast, null, modificationStamp);
+        }
+        int suffix = 0;
+        int maxSuffix = maxPrefix - prefix;
+        while (suffix < maxSuffix && oldText.charAt(oldLen - 1 - suffix) == newText.charAt(newLen - 1 - suffix)) {
+            suffix++;
+        }
+        // A '\r' followed by a '\n' is a single line break, so, don't let the change start or end between those.
+        if (prefix > 0 && oldText.charAt(prefix - 1) == '\r') {
+            prefix--;
+        }
+        int oldChangeEnd = oldLen - suffix;
+        if (suffix > 0 && oldChangeEnd > 0 && oldText.charAt(oldChangeEnd - 1) == '\r'
+                && oldText.charAt(oldChangeEnd) == '\n') {
+            suffix--;
+            oldChangeEnd++;
+        }
+
+        int[] lineStarts = previous.lineStarts;
+        int totalLines = lineStarts.length;
+        // Note: if the change starts at the start of a line, the previous line is also considered changed (i.e.:
+        // comments added before a statement must be reparsed with the previous statement, which gets them).
+        int firstChangedLine = lineOfOffset(lineStarts, Math.max(0, prefix - 1));
+        int lastChangedLine = lineOfOffset(lineStarts, Math.max(prefix, oldChangeEnd - 1));
+
+        int lineDelta = countLineBreaks(newText, prefix, newLen - suffix) - countLineBreaks(oldText, prefix,
+                oldChangeEnd);
+
+        // Compute the line where each top-level statement starts (statements in the same line are together).
+        stmtType[] body = previous.ast.body;
+        if (body == null) {
+            return null;
+        }
+        int regionStartLine = 1;
+        int regionStartStmt = 0;
+        int regionEndLine = totalLines + 1; // exclusive
+        int regionEndStmt = body.length; // exclusive
+        int lastBoundary = 0;
+        for (int i = 0; i < body.length; i++) {
+            int startLine = getStatementStartLine(body[i], oldText, lineStarts, lastBoundary);
+            if (startLine <= lastBoundary) {
+                continue; // Not a boundary (in the same line of the previous statement or not at column 0).
+            }
+            if (lastBoundary == 0) {
+                startLine = 1; // Comments before the first statement may be attached to it.
+            }
+            lastBoundary = startLine;
+            if (startLine <= firstChangedLine) {
+                regionStartLine = startLine;
+                regionStartStmt = i;
+            } else if (startLine > lastChangedLine) {
+                regionEndLine = startLine;
+                regionEndStmt = i;
+                break;
+            }
+        }
+        if (regionStartLine == 1 && regionEndLine > totalLines) {
+            return null; // The whole document would be parsed anyways.
+        }
+
+        boolean untilEnd = regionEndLine > totalLines;
+        int regionStartOffset = lineStarts[regionStartLine - 1];
+        int newRegionEndOffset;
+        if (untilEnd) {
+            newRegionEndOffset = newLen;
+        } else {
+            newRegionEndOffset = lineStarts[regionEndLine - 1] + (newLen - oldLen);
+        }
+        if (newRegionEndOffset < regionStartOffset) {
+            return null;
+        }
+
+        Module regionModule = parseRegion(info, newText.substring(regionStartOffset, newRegionEndOffset), untilEnd);
+        if (regionModule == null || regionModule.body == null) {
+            return null;
+        }
+        if (regionStartLine > 1) {
+            try {
+                regionModule.accept(new LineShifter(regionStartLine - 1));
+            } catch (Exception e) {
+                return null;
+            }
+            if (regionModule.specialsBefore != null && regionModule.specialsBefore.size() > 0) {
+                // Comments in the start of the region would be attached to the module (and not to a statement).
+                return null;
+            }
+        }
+
+        int afterCount = body.length - regionEndStmt;
+        int afterStart = regionStartStmt + regionModule.body.length;
+        stmtType[] newBody = new stmtType[afterStart + afterCount];
+        System.arraycopy(body, 0, newBody, 0, regionStartStmt);
+        System.arraycopy(regionModule.body, 0, newBody, regionStartStmt, regionModule.body.length);
+        if (lineDelta == 0) {
+            System.arraycopy(body, regionEndStmt, newBody, afterStart, afterCount);
+        } else {
+            try {
+                for (int i = 0; i < afterCount; i++) {
+                    newBody[afterStart + i] = (stmtType) createShiftedCopy(body[regionEndStmt + i], lineDelta);
+                }
+            } catch (Exception e) {
+                return null; // Some node can't be copied: do a full parse.
+            }
+        }
+
+        Module newModule = new Module(newBody);
+        Module previousModule = previous.ast;
+        Module forSpecialsBefore = regionStartLine == 1 ? regionModule : previousModule;
+        newModule.beginLine = forSpecialsBefore.beginLine;
+        newModule.beginColumn = forSpecialsBefore.beginColumn;
+        if (forSpecialsBefore.specialsBefore != null) {
+            newModule.getSpecialsBefore().addAll(forSpecialsBefore.specialsBefore);
+        }
+        if (regionEndStmt == body.length) {
+            if (regionModule.specialsAfter != null) {
+                newModule.getSpecialsAfter().addAll(regionModule.specialsAfter);
+            }
+        } else if (previousModule.specialsAfter != null) {
+            try {
+                newModule.specialsAfter = shiftedSpecials(previousModule.specialsAfter, lineDelta);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        if (PyParser.successfulParseListeners.size() > 0) {
+            PyParser.notifySuccessfulParseListeners(newModule, null, info);
+        }
+        return new ParseOutput(newModule, null, modificationStamp);
+    }
+
+    /**
+     * @param untilEnd if false, the region is followed by other statements, so, a sentinel statement is added
+     * after it so that the comments at the end of the region are attached to the same nodes they'd be in a full
+     * parse (and not to the module).
+     *
+     * @return the module for the given contents or null if it had errors.
+     */
+    private static Module parseRegion(ParserInfo info, String contents, boolean untilEnd) {
+        if (!untilEnd) {
+            contents += SENTINEL;
+        }
+        char[] charArray = PyParser.createCharArrayToParse(contents);
+        try {
+            IGrammar grammar = PyParser.createGrammar(true, info.grammarVersion, charArray);
+            SimpleNode root = grammar.file_input();
+            if (grammar.getErrorOnParsing() != null || !(root instanceof Module)) {
+                return null;
+            }
+            AdditionalGrammarVersionsToCheck additionalGrammarVersionsToCheck = info.additionalGrammarVersionsToCheck;
+            if (additionalGrammarVersionsToCheck != null) {
+                for (int grammarVersion : additionalGrammarVersionsToCheck.getGrammarVersions()) {
+                    if (grammarVersion == info.grammarVersion) {
+                        continue;
+                    }
+                    IGrammar additional = PyParser.createGrammar(false, grammarVersion, charArray);
+                    additional.file_input();
+                    if (additional.getErrorOnParsing() != null) {
+                        return null;
+                    }
+                }
+            }
+            Module module = (Module) root;
+            if (!untilEnd) {
+                stmtType[] body = module.body;
+                if (body == null || body.length == 0 || !(body[body.length - 1] instanceof Pass)) {
+                    return null;
+                }
+                if (hasComments(body[body.length - 1])) {
+                    // Comments attached to the sentinel would be attached to the next statement in a full parse.
+                    return null;
+                }
+                stmtType[] newBody = new stmtType[body.length - 1];
+                System.arraycopy(body, 0, newBody, 0, newBody.length);
+                module.body = newBody;
+            }
+            return module;
+        } catch (Throwable e) {
+            // Any error: just do a full parse.
+            return null;
+        }
+    }
+
+    private static boolean hasComments(SimpleNode node) {
+        return hasComments(node.specialsBefore) || hasComments(node.specialsAfter);
+    }
+
+    private static boolean hasComments(List<Object> specials) {
+        if (specials != null) {
+            for (Object o : specials) {
+                if (o instanceof commentType) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the line where the given top-level statement starts (considering its decorators) or a value
+     * <= lastBoundary if the statement must not be considered a boundary.
+     */
+    private static int getStatementStartLine(stmtType stmt, String text, int[] lineStarts, int lastBoundary) {
+        int line = stmt.beginLine;
+        decoratorsType[] decs = null;
+        if (stmt instanceof FunctionDef) {
+            decs = ((FunctionDef) stmt).decs;
+        } else if (stmt instanceof ClassDef) {
+            decs = ((ClassDef) stmt).decs;
+        }
+        if (decs != null) {
+            for (decoratorsType dec : decs) {
+                if (dec != null) {
+                    line = Math.min(line, dec.beginLine);
+                    if (dec.func != null) {
+                        line = Math.min(line, dec.func.beginLine);
+                    }
+                }
+            }
+        }
+        if (line < 1 || line > lineStarts.length) {
+            return lastBoundary;
+        }
+        if (!startsAtColumn0(text, lineStarts[line - 1])) {
+            return lastBoundary;
+        }
+        // Note: comments right before it are not part of the statement (the parser adds those as specials after
+        // the previous statement), so, a change in those lines reparses the previous statement.
+        return line;
+    }
+
+    private static boolean startsAtColumn0(String text, int offset) {
+        if (offset >= text.length()) {
+            return false;
+        }
+        char c = text.charAt(offset);
+        return !Character.isWhitespace(c);
+    }
+
+    /**
+     * @return an array where the position i has the offset where the line i + 1 starts.
+     */
+    private static int[] computeLineStarts(String text) {
+        int len = text.length();
+        int[] starts = new int[16];
+        int count = 1;
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '\r') {
+                if (i + 1 < len && text.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            } else if (c != '\n') {
+                continue;
+            }
+            if (count == starts.length) {
+                int[] newStarts = new int[starts.length * 2];
+                System.arraycopy(starts, 0, newStarts, 0, count);
+                starts = newStarts;
+            }
+            starts[count] = i + 1;
+            count++;
+        }
+        if (starts[count - 1] == len && count > 1) {
+            count--; // The last line break doesn't start a new line.
+        }
+        int[] ret = new int[count];
+        System.arraycopy(starts, 0, ret, 0, count);
+        return ret;
+    }
+
+    /**
+     * @return the (1-based) line of the given offset.
+     */
+    private static int lineOfOffset(int[] lineStarts, int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    private static int countLineBreaks(String text, int start, int end) {
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                count++;
+            } else if (c == '\r') {
+                if (i + 1 >= text.length() || text.charAt(i + 1) != '\n') {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a copy of the given node (and its children and specials) with the lines shifted by the given delta
+     * (the passed node is not changed).
+     */
+    private static SimpleNode createShiftedCopy(SimpleNode node, int delta) throws Exception {
+        SimpleNode copy = node.createCopy(false);
+
+        // The copy has the same structure, so, the nodes are visited in the same order in both.
+        List<SimpleNode> originalNodes = NodesCollector.collect(node);
+        List<SimpleNode> copiedNodes = NodesCollector.collect(copy);
+        int size = originalNodes.size();
+        if (size != copiedNodes.size()) {
+            throw new RuntimeException("Copy with a different structure.");
+        }
+        for (int i = 0; i < size; i++) {
+            SimpleNode original = originalNodes.get(i);
+            SimpleNode copied = copiedNodes.get(i);
+            if (original.getClass() != copied.getClass()) {
+                throw new RuntimeException("Copy with a different structure.");
+            }
+            copied.beginLine = original.beginLine + delta;
+            copied.beginColumn = original.beginColumn;
+            copied.specialsBefore = shiftedSpecials(original.specialsBefore, delta);
+            copied.specialsAfter = shiftedSpecials(original.specialsAfter, delta);
+        }
+        return copy;
+    }
+
+    /**
+     * @return a new list with copies of the given specials with the lines shifted by the given delta.
+     */
+    private static List<Object> shiftedSpecials(List<Object> specials, int delta) {
+        if (specials == null) {
+            return null;
+        }
+        List<Object> ret = new ArrayList<Object>(specials.size());
+        for (Object o : specials) {
+            if (o instanceof commentType) {
+                commentType c = ((commentType) o).createCopy(false);
+                c.beginLine += delta;
+                ret.add(c);
+            } else if (o instanceof SpecialStr) {
+                SpecialStr s = (SpecialStr) o;
+                ret.add(new SpecialStr(s.str, s.beginLine + delta, s.beginCol));
+            } else if (o instanceof ISpecialStr) {
+                throw new RuntimeException("Unable to shift: " + o.getClass());
+            } else {
+                ret.add(o);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Collects all the nodes visited (in the order they're visited).
+     */
+    private static final class NodesCollector extends VisitorBase {
+
+        private final List<SimpleNode> nodes = new ArrayList<SimpleNode>();
+
+        private static List<SimpleNode> collect(SimpleNode node) throws Exception {
+            NodesCollector collector = new NodesCollector();
+            node.accept(collector);
+            return collector.nodes;
+        }
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            nodes.add(node);
+            return null;
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+    }
+
+    /**
+     * Adds a delta to the lines of all the nodes (and comments) visited.
+     */
+    private static final class LineShifter extends VisitorBase {
+
+        private final int delta;
+
+        private LineShifter(int delta) {
+            this.delta = delta;
+        }
+
+        @Override
+        protected Object unhandled_node(SimpleNode node) throws Exception {
+            node.beginLine += delta;
+            shiftSpecials(node.specialsBefore);
+            shiftSpecials(node.specialsAfter);
+            return null;
+        }
+
+        private void shiftSpecials(List<Object> specials) {
+            if (specials == null) {
+                return;
+            }
+            for (int i = 0; i < specials.size(); i++) {
+                Object o = specials.get(i);
+                if (o instanceof commentType) {
+                    ((commentType) o).beginLine += delta;
+                } else if (o instanceof SpecialStr) {
+                    SpecialStr s = (SpecialStr) o;
+                    specials.set(i, new SpecialStr(s.str, s.beginLine + delta, s.beginCol));
+                } else if (o instanceof ISpecialStr) {
+                    throw new RuntimeException("Unable to shift: " + o.getClass());
+                }
+            }
+        }
+
+        @Override
+        public void traverse(SimpleNode node) throws Exception {
+            node.traverse(this);
+        }
+    }
+}
@@ -426,7 +426,8 @@ public final class FastDefinitionsParser {
             if (this.length <= currIndex) {
                 return;
             }
-            startClass(getNextIdentifier(c), row, startClassCol, col, leadingTabsInLine);
+            String className = getNextIdentifier(c);
+            startClass(className, getClassBases(parsingUtils), row, startClassCol, col, leadingTabsInLine);
 
         } else if ((c == 'd' && (funcDefDeltaIndex = matchFunction()) != -1) ||
                 (c == 'a' && (funcDefDeltaIndex = matchAsyncFunction()) != -1)) {
@@ -559,6 +560,85 @@ public final class FastDefinitionsParser {
 
     private final ObjectsPoolMap interned = new ObjectsPoolMap();
 
+    /**
+     * Buffer with the contents of the parenthesis of a class definition.
+     */
+    private final FastStringBuffer basesBuffer = new FastStringBuffer();
+
+    /**
+     * Gets the bases of the class whose name was just read (i.e.: 'class A(B, mod.C, metaclass=M):' has B and mod.C
+     * as bases). Only bases which are dotted names are gotten (for subscripts or calls such as 'Generic[T]' the
+     * name before the subscript/call is used and keyword arguments, star args or other expressions are skipped).
+     *
+     * Note that the current index is not changed (the parenthesis is still skipped later on) and the position of
+     * the bases created is the position of the class name.
+     *
+     * @return the bases found or null if there are no bases.
+     */
+    private exprType[] getClassBases(ParsingUtils parsingUtils) throws SyntaxErrorException {
+        int i = skipWhitespaces(currIndex);
+        if (i >= length || cs[i] != '(') {
+            return null;
+        }
+        parsingUtils.eatPar(i, basesBuffer.clear(), '(');
+
+        List<exprType> bases = null;
+        for (String part : StringUtils.split(basesBuffer.toString(), ',')) {
+            exprType base = createClassBase(part.trim());
+            if (base != null) {
+                if (bases == null) {
+                    bases = new ArrayList<exprType>(2);
+                }
+                bases.add(base);
+            }
+        }
+        return bases == null ? null : bases.toArray(new exprType[bases.size()]);
+    }
+
+    /**
+     * @return a Name or Attribute for the dotted name in the start of the given part or null if the part doesn't
+     * start with a dotted name followed by nothing, a subscript or a call.
+     */
+    private exprType createClassBase(String part) {
+        int partLen = part.length();
+        int i = 0;
+        while (i < partLen && (Character.isJavaIdentifierPart(part.charAt(i)) || part.charAt(i) == '.')) {
+            i++;
+        }
+        if (i == 0) {
+            return null;
+        }
+        String rest = part.substring(i).trim();
+        if (rest.length() > 0 && rest.charAt(0) != '[' && rest.charAt(0) != '(') {
+            return null; // i.e.: metaclass=M or A if x else B
+        }
+        String dottedName = part.substring(0, i);
+        if (dottedName.startsWith(".") || dottedName.endsWith(".") || dottedName.contains("..")) {
+            return null;
+        }
+
+        int line = row;
+        int col = this.col;
+        exprType base = null;
+        for (String name : StringUtils.dotSplit(dottedName)) {
+            if (!Character.isJavaIdentifierStart(name.charAt(0))) {
+                return null;
+            }
+            name = ObjectsInternPool.internLocal(interned, name);
+            if (base == null) {
+                base = new Name(name, Name.Load, false);
+            } else {
+                NameTok attr = new NameTok(name, NameTok.Attrib);
+                attr.beginLine = line;
+                attr.beginColumn = col;
+                base = new Attribute(base, attr, Attribute.Load);
+            }
+            base.beginLine = line;
+            base.beginColumn = col;
+        }
+        return base;
+    }
+
     /**
      * Start a new method scope with the given row and column.
      * @param startMethodRow the row where the scope should start
@@ -580,14 +660,16 @@ public final class FastDefinitionsParser {
      * Start a new class scope with the given row and column.
      * @param startClassRow the row where the scope should start
      * @param startClassCol the column where the scope should start
+     * @param bases the bases of the class (may be null)
      * @param leadingTabsInLine2
      */
-    private void startClass(String name, int startClassRow, int startClassCol, int nameCol, int leadingTabs) {
+    private void startClass(String name, exprType[] bases, int startClassRow, int startClassCol, int nameCol,
+            int leadingTabs) {
         NameTok nameTok = new NameTok(name, NameTok.ClassName);
         nameTok.beginLine = startClassRow;
         nameTok.beginColumn = nameCol;
 
-        ClassDef classDef = new ClassDef(nameTok, null, null, null, null, null, null);
+        ClassDef classDef = new ClassDef(nameTok, bases, null, null, null, null, null);
         classDef.beginLine = startClassRow;
         classDef.beginColumn = startClassCol;
 
@@ -0,0 +1,586 @@
+package org.python.pydev.parser.jython;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.stmtType;
+
+/**
+ * Compact binary serialization of the ast (org.python.pydev.parser.jython.ast), so that an ast can be recreated
+ * without running the grammar again.
+ *
+ * The node classes are described by their public fields (sorted by name), so, FORMAT_VERSION must be raised if
+ * the way a field is written changes (changes in the node classes themselves are already handled as the class
+ * and field names are checked when reading).
+ *
+ * The strings and classes are written only once (later occurrences just reference the previous entry).
+ *
+ * Note: specials which are not comments, SpecialStr or strings can't be serialized (an IOException is thrown).
+ */
+public final class SimpleNodeSerializer {
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int KIND_INT = 0;
+    private static final int KIND_BOOLEAN = 1;
+    private static final int KIND_STRING = 2;
+    private static final int KIND_INT_ARRAY = 3;
+    private static final int KIND_VALUE = 4;
+    private static final int KIND_SPECIAL_STR = 5;
+    private static final int KIND_NODE = 6;
+    private static final int KIND_NODE_ARRAY = 7;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_NODE = 1;
+    private static final int TAG_SPECIAL_STR = 2;
+    private static final int TAG_STRING = 3;
+    private static final int TAG_INTEGER = 4;
+    private static final int TAG_LONG = 5;
+    private static final int TAG_BIG_INTEGER = 6;
+    private static final int TAG_FLOAT = 7;
+    private static final int TAG_DOUBLE = 8;
+
+    /**
+     * How to write/create the nodes of a given class.
+     */
+    private static final class NodeClassInfo {
+
+        private final Class<?> nodeClass;
+        private final Constructor<?> constructor;
+        private final Object[] constructorArgs;
+        private final Field[] fields;
+        private final int[] kinds;
+
+        private NodeClassInfo(Class<?> nodeClass) throws IOException {
+            this.nodeClass = nodeClass;
+            Constructor<?>[] constructors = nodeClass.getConstructors();
+            if (constructors.length == 0) {
+                throw new IOException("No public constructor in: " + nodeClass);
+            }
+            constructor = constructors[0];
+            Class<?>[] parameterTypes = constructor.getParameterTypes();
+            constructorArgs = new Object[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                constructorArgs[i] = getDefaultValue(parameterTypes[i]);
+            }
+
+            List<Field> lst = new ArrayList<Field>();
+            for (Field field : nodeClass.getFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getDeclaringClass() == SimpleNode.class) {
+                    continue; // The SimpleNode fields are handled separately.
+                }
+                lst.add(field);
+            }
+            fields = lst.toArray(new Field[0]);
+            Arrays.sort(fields, new Comparator<Field>() {
+
+                @Override
+                public int compare(Field o1, Field o2) {
+                    return o1.getName().compareTo(o2.getName());
+                }
+            });
+            kinds = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                kinds[i] = getKind(fields[i]);
+            }
+        }
+
+        private static int getKind(Field field) throws IOException {
+            Class<?> type = field.getType();
+            if (type == int.class) {
+                return KIND_INT;
+            }
+            if (type == boolean.class) {
+                return KIND_BOOLEAN;
+            }
+            if (type == String.class) {
+                return KIND_STRING;
+            }
+            if (type == int[].class) {
+                return KIND_INT_ARRAY;
+            }
+            if (type == Object.class) {
+                return KIND_VALUE;
+            }
+            if (type == ISpecialStr.class) {
+                return KIND_SPECIAL_STR;
+            }
+            if (SimpleNode.class.isAssignableFrom(type)) {
+                return KIND_NODE;
+            }
+            if (type.isArray() && SimpleNode.class.isAssignableFrom(type.getComponentType())) {
+                return KIND_NODE_ARRAY;
+            }
+            throw new IOException("Unable to serialize field: " + field);
+        }
+
+        private static Object getDefaultValue(Class<?> type) {
+            if (type == int.class) {
+                return 0;
+            }
+            if (type == boolean.class) {
+                return false;
+            }
+            return null;
+        }
+
+        private SimpleNode create() throws IOException {
+            try {
+                return (SimpleNode) constructor.newInstance(constructorArgs);
+            } catch (Exception e) {
+                throw new IOException("Unable to create: " + nodeClass, e);
+            }
+        }
+    }
+
+    private static final Map<Class<?>, NodeClassInfo> classInfos = new ConcurrentHashMap<Class<?>, NodeClassInfo>();
+
+    private static NodeClassInfo getClassInfo(Class<?> nodeClass) throws IOException {
+        NodeClassInfo info = classInfos.get(nodeClass);
+        if (info == null) {
+            info = new NodeClassInfo(nodeClass);
+            classInfos.put(nodeClass, info);
+        }
+        return info;
+    }
+
+    private SimpleNodeSerializer() {
+    }
+
+    /**
+     * Writes the given ast to the output.
+     *
+     * @throws IOException if some error happened writing or if the ast has something which can't be serialized.
+     */
+    public static void write(SimpleNode node, DataOutput out) throws IOException {
+        try {
+            new Writer(out).writeNode(node);
+        } catch (StackOverflowError e) {
+            throw new IOException("Ast too deep to be serialized.");
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * @return the ast read from the input (written with write()).
+     *
+     * @throws IOException if some error happened reading or if the contents are not valid.
+     */
+    public static SimpleNode read(DataInput in) throws IOException {
+        try {
+            Object ret = new Reader(in).readValue();
+            if (ret != null && !(ret instanceof SimpleNode)) {
+                throw new IOException("Expected node. Found: " + ret.getClass());
+            }
+            return (SimpleNode) ret;
+        } catch (StackOverflowError e) {
+            throw new IOException("Ast too deep to be read.");
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static final class Writer {
+
+        private final DataOutput out;
+        private final Map<String, Integer> strings = new HashMap<String, Integer>();
+        private final Map<Class<?>, Integer> classes = new HashMap<Class<?>, Integer>();
+
+        private Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        private void writeNode(SimpleNode node) throws IOException, IllegalAccessException {
+            if (node == null) {
+                out.writeByte(TAG_NULL);
+                return;
+            }
+            out.writeByte(TAG_NODE);
+            Class<? extends SimpleNode> nodeClass = node.getClass();
+            NodeClassInfo info = getClassInfo(nodeClass);
+            Integer classIndex = classes.get(nodeClass);
+            if (classIndex != null) {
+                writeVarInt(classIndex);
+            } else {
+                writeVarInt(classes.size());
+                classes.put(nodeClass, classes.size());
+                writeString(nodeClass.getName());
+                writeVarInt(info.fields.length);
+                for (Field field : info.fields) {
+                    writeString(field.getName());
+                }
+            }
+            writeVarInt(node.beginLine);
+            writeVarInt(node.beginColumn);
+
+            Field[] fields = info.fields;
+            int[] kinds = info.kinds;
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                switch (kinds[i]) {
+                    case KIND_INT:
+                        writeVarInt(field.getInt(node));
+                        break;
+                    case KIND_BOOLEAN:
+                        out.writeBoolean(field.getBoolean(node));
+                        break;
+                    case KIND_STRING:
+                        writeString((String) field.get(node));
+                        break;
+                    case KIND_INT_ARRAY:
+                        int[] ints = (int[]) field.get(node);
+                        if (ints == null) {
+                            writeVarInt(-1);
+                        } else {
+                            writeVarInt(ints.length);
+                            for (int j : ints) {
+                                writeVarInt(j);
+                            }
+                        }
+                        break;
+                    case KIND_NODE:
+                        writeNode((SimpleNode) field.get(node));
+                        break;
+                    case KIND_NODE_ARRAY:
+                        SimpleNode[] children = (SimpleNode[]) field.get(node);
+                        if (children == null) {
+                            writeVarInt(-1);
+                        } else {
+                            writeVarInt(children.length);
+                            for (SimpleNode c : children) {
+                                writeNode(c);
+                            }
+                        }
+                        break;
+                    default:
+                        writeValue(field.get(node));
+                        break;
+                }
+            }
+            writeSpecials(node.specialsBefore);
+            writeSpecials(node.specialsAfter);
+        }
+
+        private void writeSpecials(List<Object> specials) throws IOException, IllegalAccessException {
+            if (specials == null) {
+                writeVarInt(0);
+                return;
+            }
+            int size = specials.size();
+            writeVarInt(size);
+            for (int i = 0; i < size; i++) {
+                writeValue(specials.get(i));
+            }
+        }
+
+        private void writeValue(Object o) throws IOException, IllegalAccessException {
+            if (o == null) {
+                out.writeByte(TAG_NULL);
+            } else if (o instanceof SimpleNode) {
+                writeNode((SimpleNode) o);
+            } else if (o instanceof SpecialStr) {
+                SpecialStr specialStr = (SpecialStr) o;
+                out.writeByte(TAG_SPECIAL_STR);
+                writeString(specialStr.str);
+                writeVarInt(specialStr.beginLine);
+                writeVarInt(specialStr.beginCol);
+            } else if (o instanceof String) {
+                out.writeByte(TAG_STRING);
+                writeString((String) o);
+            } else if (o instanceof Integer) {
+                out.writeByte(TAG_INTEGER);
+                writeVarInt((Integer) o);
+            } else if (o instanceof Long) {
+                out.writeByte(TAG_LONG);
+                out.writeLong((Long) o);
+            } else if (o instanceof BigInteger) {
+                out.writeByte(TAG_BIG_INTEGER);
+                writeString(o.toString());
+            } else if (o instanceof Float) {
+                out.writeByte(TAG_FLOAT);
+                out.writeFloat((Float) o);
+            } else if (o instanceof Double) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeDouble((Double) o);
+            } else {
+                throw new IOException("Unable to serialize: " + o.getClass());
+            }
+        }
+
+        /**
+         * Strings are written as an index in the strings table (0 means null and size + 1 means that a new string
+         * follows).
+         */
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = strings.get(s);
+            if (index != null) {
+                writeVarInt(index);
+                return;
+            }
+            index = strings.size() + 1;
+            strings.put(s, index);
+            writeVarInt(index);
+            int len = s.length();
+            for (int i = 0; i < len; i++) {
+                if (Character.isSurrogate(s.charAt(i))) {
+                    // Not checking whether it's a valid pair: just write the chars as they are.
+                    writeVarInt(-len - 1);
+                    out.writeChars(s);
+                    return;
+                }
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            out.write(bytes);
+        }
+
+        /**
+         * Writes an int using a variable number of bytes (zig-zag encoded so that small negative numbers such as
+         * -1 are also small).
+         */
+        private void writeVarInt(int value) throws IOException {
+            int v = (value << 1) ^ (value >> 31);
+            while ((v & ~0x7F) != 0) {
+                out.writeByte((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            out.writeByte(v);
+        }
+    }
+
+    private static final class Reader {
+
+        private final DataInput in;
+        private final List<String> strings = new ArrayList<String>();
+        private final List<NodeClassInfo> classes = new ArrayList<NodeClassInfo>();
+
+        private Reader(DataInput in) {
+            this.in = in;
+        }
+
+        private Object readValue() throws IOException, IllegalAccessException {
+            int tag = in.readByte();
+            switch (tag) {
+                case TAG_NULL:
+                    return null;
+                case TAG_NODE:
+                    return readNodeContents();
+                case TAG_SPECIAL_STR:
+                    String str = readString();
+                    int beginLine = readVarInt();
+                    int beginCol = readVarInt();
+                    return new SpecialStr(str, beginLine, beginCol);
+                case TAG_STRING:
+                    return readString();
+                case TAG_INTEGER:
+                    return readVarInt();
+                case TAG_LONG:
+                    return in.readLong();
+                case TAG_BIG_INTEGER:
+                    return new BigInteger(readString());
+                case TAG_FLOAT:
+                    return in.readFloat();
+                case TAG_DOUBLE:
+                    return in.readDouble();
+                default:
+                    throw new IOException("Invalid tag: " + tag);
+            }
+        }
+
+        private SimpleNode readNode() throws IOException, IllegalAccessException {
+            Object o = readValue();
+            if (o != null && !(o instanceof SimpleNode)) {
+                throw new IOException("Expected node. Found: " + o.getClass());
+            }
+            return (SimpleNode) o;
+        }
+
+        private SimpleNode readNodeContents() throws IOException, IllegalAccessException {
+            int classIndex = readVarInt();
+            NodeClassInfo info;
+            if (classIndex < classes.size()) {
+                info = classes.get(classIndex);
+            } else if (classIndex == classes.size()) {
+                info = readClassInfo();
+                classes.add(info);
+            } else {
+                throw new IOException("Invalid class index: " + classIndex);
+            }
+            SimpleNode node = info.create();
+            node.beginLine = readVarInt();
+            node.beginColumn = readVarInt();
+
+            Field[] fields = info.fields;
+            int[] kinds = info.kinds;
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                switch (kinds[i]) {
+                    case KIND_INT:
+                        field.setInt(node, readVarInt());
+                        break;
+                    case KIND_BOOLEAN:
+                        field.setBoolean(node, in.readBoolean());
+                        break;
+                    case KIND_STRING:
+                        field.set(node, readString());
+                        break;
+                    case KIND_INT_ARRAY:
+                        int len = readVarInt();
+                        if (len >= 0) {
+                            int[] ints = new int[len];
+                            for (int j = 0; j < len; j++) {
+                                ints[j] = readVarInt();
+                            }
+                            field.set(node, ints);
+                        }
+                        break;
+                    case KIND_NODE:
+                        field.set(node, readNode());
+                        break;
+                    case KIND_NODE_ARRAY:
+                        int size = readVarInt();
+                        if (size >= 0) {
+                            Object[] children = (Object[]) Array.newInstance(field.getType().getComponentType(),
+                                    size);
+                            for (int j = 0; j < size; j++) {
+                                children[j] = readNode();
+                            }
+                            field.set(node, children);
+                        }
+                        break;
+                    default:
+                        field.set(node, readValue());
+                        break;
+                }
+            }
+            readSpecials(node, false);
+            readSpecials(node, true);
+
+            if (node instanceof ClassDef) {
+                setParent(((ClassDef) node).body, node);
+            } else if (node instanceof FunctionDef) {
+                setParent(((FunctionDef) node).body, node);
+            }
+            return node;
+        }
+
+        /**
+         * Same thing that the tree builder does for the functions/classes in the body of a function/class.
+         */
+        private static void setParent(stmtType[] body, SimpleNode parent) {
+            if (body == null) {
+                return;
+            }
+            for (stmtType b : body) {
+                if (b instanceof ClassDef || b instanceof FunctionDef) {
+                    b.parent = parent;
+                }
+            }
+        }
+
+        /**
+         * Reads the class written and checks that its fields are still the same.
+         */
+        private NodeClassInfo readClassInfo() throws IOException {
+            String className = readString();
+            Class<?> nodeClass;
+            try {
+                nodeClass = Class.forName(className, false, SimpleNodeSerializer.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Class not available: " + className);
+            }
+            if (!SimpleNode.class.isAssignableFrom(nodeClass)) {
+                throw new IOException("Not a node class: " + className);
+            }
+            NodeClassInfo info = getClassInfo(nodeClass);
+            int fieldsLen = readVarInt();
+            if (fieldsLen != info.fields.length) {
+                throw new IOException("Fields changed in: " + className);
+            }
+            for (int i = 0; i < fieldsLen; i++) {
+                if (!info.fields[i].getName().equals(readString())) {
+                    throw new IOException("Fields changed in: " + className);
+                }
+            }
+            return info;
+        }
+
+        private void readSpecials(SimpleNode node, boolean after) throws IOException, IllegalAccessException {
+            int size = readVarInt();
+            if (size == 0) {
+                return;
+            }
+            List<Object> specials = after ? node.getSpecialsAfter() : node.getSpecialsBefore();
+            for (int i = 0; i < size; i++) {
+                specials.add(readValue());
+            }
+        }
+
+        private String readString() throws IOException {
+            int index = readVarInt();
+            if (index == 0) {
+                return null;
+            }
+            if (index <= strings.size()) {
+                return strings.get(index - 1);
+            }
+            if (index != strings.size() + 1) {
+                throw new IOException("Invalid string index: " + index);
+            }
+            int len = readVarInt();
+            String s;
+            if (len < 0) {
+                int charsLen = -len - 1;
+                char[] chars = new char[charsLen];
+                for (int i = 0; i < charsLen; i++) {
+                    chars[i] = in.readChar();
+                }
+                s = new String(chars);
+            } else {
+                byte[] bytes = new byte[len];
+                in.readFully(bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+            }
+            strings.add(s);
+            return s;
+        }
+
+        private int readVarInt() throws IOException {
+            int v = 0;
+            int shift = 0;
+            while (true) {
+                int b = in.readByte();
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    break;
+                }
+                shift += 7;
+                if (shift > 28) {
+                    throw new IOException("Invalid var int.");
+                }
+            }
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
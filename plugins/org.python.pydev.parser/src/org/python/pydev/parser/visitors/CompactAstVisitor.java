@@ -0,0 +1,101 @@
+package org.python.pydev.parser.visitors;
+
+import java.util.List;
+
+import org.python.pydev.core.ObjectsInternPool;
+import org.python.pydev.core.log.Log;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Name;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.shared_core.structure.LowMemoryArrayList;
+
+/**
+ * Makes an ast which is kept in memory for a long time use a bit less memory. Currently it's only applied to the
+ * asts of the interpreter modules kept in the modules manager cache (see: SystemModulesManager.shouldCompactAsts())
+ * and only when enabled with -Dpydev.ast.compact=true.
+ * Clients which just go through an ast and don't keep it (such as the OccurrencesAnalyzer or
+ * AbstractAdditionalTokensInfo.addAstInfo) don't use it, as it wouldn't make them use less memory.
+ *
+ * The compacted ast:
+ * - has the specials lists trimmed to their size (or set to null when empty);
+ * - has the ids of Name/NameTok shared with the other modules (interned in the ObjectsInternPool).
+ *
+ * That's all: the node positions aren't packed and the specials aren't moved elsewhere, so, the savings are
+ * modest (about 14% of the memory retained by the ast of pydevd.py, not counting the names shared among modules).
+ *
+ * Note that the specials themselves are kept (the pretty-printer -- used to show hovers and to create overrides --
+ * needs them to print the code properly) and that it's still possible to add new specials afterwards.
+ */
+public final class CompactAstVisitor extends VisitorBase {
+
+    /**
+     * Disabled by default (the savings are modest): may be enabled with -Dpydev.ast.compact=true
+     */
+    public static final boolean ENABLED = "true".equals(System.getProperty("pydev.ast.compact"));
+
+    private int trimmedLists;
+
+    private CompactAstVisitor() {
+    }
+
+    /**
+     * Compacts the passed ast in-place.
+     *
+     * @return the number of specials lists which were trimmed or removed.
+     */
+    public static int compact(SimpleNode ast) {
+        if (ast == null) {
+            return 0;
+        }
+        CompactAstVisitor visitor = new CompactAstVisitor();
+        try {
+            ast.accept(visitor);
+        } catch (Exception e) {
+            Log.log(e);
+        }
+        return visitor.trimmedLists;
+    }
+
+    @Override
+    protected Object unhandled_node(SimpleNode node) throws Exception {
+        node.specialsBefore = compactSpecials(node.specialsBefore);
+        node.specialsAfter = compactSpecials(node.specialsAfter);
+        return null;
+    }
+
+    @Override
+    public void traverse(SimpleNode node) throws Exception {
+        node.traverse(this);
+    }
+
+    @Override
+    public Object visitName(Name node) throws Exception {
+        node.id = ObjectsInternPool.intern(node.id);
+        return super.visitName(node);
+    }
+
+    @Override
+    public Object visitNameTok(NameTok node) throws Exception {
+        node.id = ObjectsInternPool.intern(node.id);
+        return super.visitNameTok(node);
+    }
+
+    private List<Object> compactSpecials(List<Object> specials) {
+        if (specials == null) {
+            return null;
+        }
+        if (specials.isEmpty()) {
+            trimmedLists++;
+            return null;
+        }
+        if (specials instanceof LowMemoryArrayList) {
+            LowMemoryArrayList<Object> list = (LowMemoryArrayList<Object>) specials;
+            if (list.internalArray().length != list.size()) {
+                trimmedLists++;
+                list.trim();
+            }
+        }
+        return specials;
+    }
+}
@@ -0,0 +1,177 @@
+package org.python.pydev.parser;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.ISpecialStr;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class PyParserIncrementalTest extends TestCase {
+
+    private static final int VERSION = IPythonNature.LATEST_GRAMMAR_PY3_VERSION;
+
+    private static String createContents() {
+        FastStringBuffer buf = new FastStringBuffer("# header\n'''module doc'''\nimport os\n\n", 0);
+        for (int i = 0; i < 40; i++) {
+            buf.append("# comment for f").append(i).append('\n');
+            buf.append("@decorator\ndef f").append(i).append("(a, b=2):\n");
+            buf.append("    x = a + b  # trailing\n    if x:\n        return [x, (1, 2)]\n    return x\n\n");
+            buf.append("class C").append(i).append("(object):\n    # inside\n    def m(self):\n        pass\n\n");
+        }
+        buf.append("x = 1; y = 2\n# last comment\n");
+        return buf.toString();
+    }
+
+    /**
+     * @return a representation of the nodes with their lines/cols and specials.
+     */
+    private static String dump(SimpleNode root) throws Exception {
+        final FastStringBuffer buf = new FastStringBuffer();
+        root.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                buf.append(node.getClass().getSimpleName()).append(':').append(node.beginLine).append(':')
+                        .append(node.beginColumn);
+                dumpSpecials(" before:", node.specialsBefore);
+                dumpSpecials(" after:", node.specialsAfter);
+                buf.append('\n');
+                return null;
+            }
+
+            private void dumpSpecials(String prefix, java.util.List<Object> specials) {
+                if (specials == null) {
+                    return;
+                }
+                for (Object o : specials) {
+                    buf.append(prefix);
+                    if (o instanceof commentType) {
+                        commentType c = (commentType) o;
+                        buf.append(c.id).append('@').append(c.beginLine).append(':').append(c.beginColumn);
+                    } else if (o instanceof ISpecialStr) {
+                        ISpecialStr s = (ISpecialStr) o;
+                        buf.append(s.toString()).append('@').append(s.getBeginLine()).append(':')
+                                .append(s.getBeginCol());
+                    } else {
+                        buf.append(o.toString());
+                    }
+                }
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        });
+        return buf.toString();
+    }
+
+    private static ParseOutput fullParse(String contents) {
+        return PyParser.reparseDocument(new ParserInfo(new Document(contents), VERSION, null));
+    }
+
+    private ParseOutput checkIncremental(String oldContents, String newContents) throws Exception {
+        return checkIncremental(fullParse(oldContents), oldContents, newContents);
+    }
+
+    private ParseOutput checkIncremental(ParseOutput previous, String oldContents, String newContents)
+            throws Exception {
+        assertNull(previous.error);
+        PyParserIncremental.State state = PyParserIncremental.createState(oldContents, previous, VERSION);
+        assertNotNull(state);
+
+        ParseOutput incremental = PyParserIncremental.reparse(new ParserInfo(new Document(newContents), VERSION, null),
+                newContents, 1, state);
+        assertNotNull("Expected incremental parse to work.", incremental);
+        ParseOutput full = fullParse(newContents);
+        assertNull(full.error);
+        assertEquals(dump((SimpleNode) full.ast), dump((SimpleNode) incremental.ast));
+        return incremental;
+    }
+
+    public void testEditInStatementKeepsOtherNodes() throws Exception {
+        String contents = createContents();
+        String newContents = contents.replace("def f20(a, b=2):\n    x = a + b", "def f20(a, b=2):\n    x = a - b");
+        ParseOutput previous = fullParse(contents);
+        ParseOutput incremental = checkIncremental(previous, contents, newContents);
+
+        Module oldModule = (Module) previous.ast;
+        Module newModule = (Module) incremental.ast;
+        assertEquals(oldModule.body.length, newModule.body.length);
+        int changed = 0;
+        for (int i = 0; i < oldModule.body.length; i++) {
+            if (oldModule.body[i] != newModule.body[i]) {
+                changed++;
+            }
+        }
+        assertEquals(1, changed);
+    }
+
+    public void testEditInComments() throws Exception {
+        String contents = createContents();
+        checkIncremental(contents, contents.replace("# comment for f10\n", "# comment changed for f10\n"));
+        checkIncremental(contents, contents.replace("    # inside\n", "    # inside changed\n"));
+        checkIncremental(contents, contents.replace("# header\n", "# header changed\n"));
+    }
+
+    public void testLinesAdded() throws Exception {
+        String contents = createContents();
+        checkIncremental(contents, contents.replace("class C30(object):\n", "class C30(object):\n    a = 10\n"));
+        checkIncremental(contents, contents.replace("class C30(object):\n", "# new comment\nclass C30(object):\n"));
+        checkIncremental(contents, contents.replace("class C30(object):\n    # inside\n", "class C30(object):\n"));
+    }
+
+    public void testLinesAddedShiftsCopiesOfFollowingNodes() throws Exception {
+        String contents = createContents();
+        String newContents = contents.replace("def f20(a, b=2):\n", "def f20(a, b=2):\n    a = 1\n    b = 2\n");
+        ParseOutput previous = fullParse(contents);
+        String previousDump = dump((SimpleNode) previous.ast);
+        ParseOutput incremental = checkIncremental(previous, contents, newContents);
+
+        Module oldModule = (Module) previous.ast;
+        Module newModule = (Module) incremental.ast;
+        assertEquals(oldModule.body.length, newModule.body.length);
+        int same = 0;
+        for (int i = 0; i < oldModule.body.length; i++) {
+            if (oldModule.body[i] == newModule.body[i]) {
+                same++;
+            } else if (same == i && i > 0) {
+                // Statements after the changed one are copies with the lines shifted.
+                for (int j = i + 1; j < oldModule.body.length; j++) {
+                    assertNotSame(oldModule.body[j], newModule.body[j]);
+                    assertEquals(oldModule.body[j].beginLine + 2, newModule.body[j].beginLine);
+                }
+            }
+        }
+        assertTrue(same > 0);
+        // The previous ast must not be changed.
+        assertEquals(previousDump, dump((SimpleNode) previous.ast));
+    }
+
+    public void testWindowsLineDelimiters() throws Exception {
+        String contents = createContents().replace("\n", "\r\n");
+        checkIncremental(contents, contents.replace("return [x, (1, 2)]", "return [x, (1, 2, 3)]"));
+        checkIncremental(contents, contents.replace("def f5(a, b=2):\r\n", "def f5(a, b=2):\r\n    a = 1\r\n"));
+    }
+
+    public void testErrorsRequireFullParse() throws Exception {
+        String contents = createContents();
+        ParseOutput previous = fullParse(contents);
+        PyParserIncremental.State state = PyParserIncremental.createState(contents, previous, VERSION);
+        String newContents = contents.replace("def f20(a, b=2):", "def f20(a, b=2");
+        assertNull(PyParserIncremental.reparse(new ParserInfo(new Document(newContents), VERSION, null),
+                newContents, 1, state));
+    }
+
+    public void testSmallDocumentsNotIncremental() throws Exception {
+        String contents = "a = 10\n";
+        assertNull(PyParserIncremental.createState(contents, fullParse(contents), VERSION));
+    }
+}
@@ -1639,4 +1639,34 @@ public class FastDefinitionsParserTest extends TestCase {
         assertEquals("method", NodeUtils.getRepresentationString(((FunctionDef) m.body[0]).name));
     }
 
+    public void testClassBases() {
+        Module m = (Module) FastDefinitionsParser.parse("" +
+                "class A(B, mod.C, Generic[T, U], metaclass=Meta):\n" +
+                "    pass\n" +
+                "class D(\n" +
+                "    E,  # comment, with comma\n" +
+                "    *bases, **kwargs):\n" +
+                "    pass\n" +
+                "class F:\n" +
+                "    class G(F): pass\n" +
+                "");
+        assertEquals(3, m.body.length);
+        ClassDef classDef = (ClassDef) m.body[0];
+        assertEquals(3, classDef.bases.length);
+        assertEquals("B", ((Name) classDef.bases[0]).id);
+        assertEquals("mod.C", NodeUtils.getFullRepresentationString(classDef.bases[1]));
+        assertEquals("Generic", NodeUtils.getFullRepresentationString(classDef.bases[2]));
+
+        classDef = (ClassDef) m.body[1];
+        assertEquals("D", ((NameTok) classDef.name).id);
+        assertEquals(1, classDef.bases.length);
+        assertEquals("E", ((Name) classDef.bases[0]).id);
+
+        classDef = (ClassDef) m.body[2];
+        assertNull(classDef.bases);
+        ClassDef inner = (ClassDef) classDef.body[0];
+        assertEquals("G", ((NameTok) inner.name).id);
+        assertEquals("F", ((Name) inner.bases[0]).id);
+    }
+
 }
@@ -0,0 +1,175 @@
+package org.python.pydev.parser.jython;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.PyParser.ParserInfo;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.jython.ast.commentType;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+import junit.framework.TestCase;
+
+public class SimpleNodeSerializerTest extends TestCase {
+
+    private static final String CONTENTS = "" +
+            "# comment\n" +
+            "'''doc'''\n" +
+            "from __future__ import annotations\n" +
+            "import os.path as p, sys\n" +
+            "a = b'bytes' + u'unicode' + r'raw\\d' + f'fs {a!r:>10}'\n" +
+            "n = 10, 0x1F, 1.5, 3j, 99999999999999999999999, -1\n" +
+            "x = [i for i in range(10) if i % 2] + {k: v for k, v in {}.items()}\n" +
+            "y = a if b else (lambda *args, **kwargs: None)\n" +
+            "z = a[1:2:3], a[...], a[1, 2:3]\n" +
+            "assert a < b <= c is not d not in e\n" +
+            "\n" +
+            "@decorator(1)\n" +
+            "class A(B, metaclass=M):  # class comment\n" +
+            "    '''class doc'''\n" +
+            "\n" +
+            "    def method(self, a: int = 1, *args, b, c=2, **kwargs) -> 'ret':\n" +
+            "        global g\n" +
+            "        with open(a) as f, open(b):\n" +
+            "            yield from f\n" +
+            "        try:\n" +
+            "            pass\n" +
+            "        except (A, B) as e:\n" +
+            "            raise X() from e\n" +
+            "        finally:\n" +
+            "            del a\n" +
+            "\n" +
+            "    async def coro(self):\n" +
+            "        async for i in x:\n" +
+            "            await i\n" +
+            "        def inner():\n" +
+            "            nonlocal z\n" +
+            "\n" +
+            "match command:\n" +
+            "    case [Point(x=0, y=0), *rest]:\n" +
+            "        pass\n" +
+            "    case {'a': 1}:\n" +
+            "        pass\n" +
+            "    case 1 | 2 as v:\n" +
+            "        pass\n" +
+            "    case _:\n" +
+            "        pass\n" +
+            "while (n := n - 1):\n" +
+            "    continue\n" +
+            "# last comment\n";
+
+    private static Module parse(String contents) {
+        ParseOutput output = PyParser.reparseDocument(
+                new ParserInfo(new Document(contents), IPythonNature.LATEST_GRAMMAR_PY3_VERSION, null));
+        assertNull(output.error);
+        return (Module) output.ast;
+    }
+
+    private static SimpleNode roundTrip(SimpleNode node) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            SimpleNodeSerializer.write(node, out);
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            return SimpleNodeSerializer.read(in);
+        }
+    }
+
+    /**
+     * @return a representation of the nodes with their lines/cols and specials.
+     */
+    private static String dump(SimpleNode root) throws Exception {
+        final FastStringBuffer buf = new FastStringBuffer();
+        root.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                buf.append(node.getClass().getSimpleName()).append(':').append(node.beginLine).append(':')
+                        .append(node.beginColumn);
+                dumpSpecials(node.specialsBefore);
+                buf.append(" /");
+                dumpSpecials(node.specialsAfter);
+                buf.append('\n');
+                return null;
+            }
+
+            private void dumpSpecials(List<Object> specials) {
+                if (specials == null) {
+                    return;
+                }
+                for (Object o : specials) {
+                    buf.append(' ').append(o.getClass().getSimpleName()).append('=');
+                    if (o instanceof commentType) {
+                        commentType c = (commentType) o;
+                        buf.append(c.id).append('@').append(c.beginLine).append(':').append(c.beginColumn);
+                    } else if (o instanceof ISpecialStr) {
+                        ISpecialStr s = (ISpecialStr) o;
+                        buf.append(s.toString()).append('@').append(s.getBeginLine()).append(':')
+                                .append(s.getBeginCol());
+                    } else {
+                        buf.append(o.toString());
+                    }
+                }
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        });
+        return buf.toString();
+    }
+
+    public void testRoundTrip() throws Exception {
+        Module module = parse(CONTENTS);
+        Module read = (Module) roundTrip(module);
+        assertNotSame(module, read);
+        assertEquals(module, read);
+        assertEquals(module.toString(), read.toString());
+        assertEquals(dump(module), dump(read));
+    }
+
+    public void testParentRestored() throws Exception {
+        Module read = (Module) roundTrip(parse(CONTENTS));
+        ClassDef classDef = null;
+        for (SimpleNode node : read.body) {
+            if (node instanceof ClassDef) {
+                classDef = (ClassDef) node;
+            }
+        }
+        assertNotNull(classDef);
+        assertNull(classDef.parent);
+        FunctionDef coro = (FunctionDef) classDef.body[2];
+        assertSame(classDef, coro.parent);
+        FunctionDef inner = (FunctionDef) coro.body[1];
+        assertSame(coro, inner.parent);
+    }
+
+    public void testInvalidContents() throws Exception {
+        byte[] bytes;
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(stream)) {
+            SimpleNodeSerializer.write(parse(CONTENTS), out);
+        }
+        bytes = stream.toByteArray();
+        byte[] truncated = new byte[bytes.length / 2];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        try {
+            SimpleNodeSerializer.read(new DataInputStream(new ByteArrayInputStream(truncated)));
+            fail("Expected IOException.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.python.pydev.parser.visitors;
+
+import org.python.pydev.parser.PyParserTestBase;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.parser.jython.ast.ClassDef;
+import org.python.pydev.parser.jython.ast.FunctionDef;
+import org.python.pydev.parser.jython.ast.Module;
+import org.python.pydev.parser.jython.ast.NameTok;
+import org.python.pydev.parser.jython.ast.VisitorBase;
+import org.python.pydev.parser.prettyprinterv2.PrettyPrinterPrefsV2;
+import org.python.pydev.parser.prettyprinterv2.PrettyPrinterV2;
+import org.python.pydev.shared_core.structure.LowMemoryArrayList;
+
+public class CompactAstVisitorTest extends PyParserTestBase {
+
+    private static final String CODE = "" +
+            "X = (1 + 2) * 3\n" +
+            "\n" +
+            "def method_name(a, b=(1, 2), *args, c=[1, 2], **kwargs) -> int:\n" +
+            "    # comment\n" +
+            "    return (a +\n" +
+            "            b)  # trailing\n" +
+            "\n" +
+            "class ClassName(object):\n" +
+            "    y = [(i) for i in range(10)]\n" +
+            "    z = {'a': (1,)}\n";
+
+    private String print(SimpleNode ast) throws Exception {
+        return new PrettyPrinterV2(new PrettyPrinterPrefsV2("\n", "    ", versionProvider)).print(ast);
+    }
+
+    public void testPrintUnchanged() throws Exception {
+        SimpleNode ast = parseLegalDocStr(CODE);
+        String expected = print(ast);
+        assertTrue(CompactAstVisitor.compact(ast) > 0);
+        assertEquals(expected, print(ast));
+    }
+
+    public void testSpecialsTrimmed() throws Exception {
+        Module ast = (Module) parseLegalDocStr(CODE);
+        CompactAstVisitor.compact(ast);
+        ast.accept(new VisitorBase() {
+
+            @Override
+            protected Object unhandled_node(SimpleNode node) throws Exception {
+                check(node.specialsBefore);
+                check(node.specialsAfter);
+                return null;
+            }
+
+            private void check(java.util.List<Object> specials) {
+                if (specials != null) {
+                    assertFalse(specials.isEmpty());
+                    if (specials instanceof LowMemoryArrayList) {
+                        assertEquals(specials.size(), ((LowMemoryArrayList<Object>) specials).internalArray().length);
+                    }
+                }
+            }
+
+            @Override
+            public void traverse(SimpleNode node) throws Exception {
+                node.traverse(this);
+            }
+        });
+    }
+
+    public void testNamesShared() throws Exception {
+        Module ast1 = (Module) parseLegalDocStr(CODE);
+        Module ast2 = (Module) parseLegalDocStr(CODE);
+        NameTok name1 = (NameTok) ((FunctionDef) ast1.body[1]).name;
+        NameTok name2 = (NameTok) ((FunctionDef) ast2.body[1]).name;
+        assertNotSame(name1.id, name2.id);
+
+        CompactAstVisitor.compact(ast1);
+        CompactAstVisitor.compact(ast2);
+        assertSame(name1.id, name2.id);
+        assertSame(((NameTok) ((ClassDef) ast1.body[2]).name).id, ((NameTok) ((ClassDef) ast2.body[2]).name).id);
+    }
+
+    public void testCompactNull() throws Exception {
+        assertEquals(0, CompactAstVisitor.compact(null));
+    }
+}
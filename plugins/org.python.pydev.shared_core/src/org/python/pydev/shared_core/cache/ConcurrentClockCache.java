@@ -0,0 +1,308 @@
+package org.python.pydev.shared_core.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.python.pydev.shared_core.callbacks.ICallback;
+
+/**
+ * A cache which may be accessed concurrently by many threads (lookups never block each other).
+ *
+ * The entries are split among segments (selected by the key hash) and each segment is bounded by a weight (which
+ * is computed by a weigher given in the constructor -- i.e.: it's usually the estimated size in bytes of the entry).
+ *
+ * Eviction follows the CLOCK algorithm: a hit just marks the entry as referenced (so, there's no reordering on a
+ * read as in the LRUMap) and when the weight of a segment is over its limit, the entries in that segment are
+ * swept: referenced entries get a second chance and the others are evicted.
+ *
+ * Note: clients don't need to synchronize the access to this cache.
+ */
+public final class ConcurrentClockCache<Key, Val> implements Cache<Key, Val> {
+
+    private static final class Node<Key, Val> {
+
+        private final Key key;
+        private final Val value;
+        private final int weight;
+        private volatile boolean referenced;
+
+        private Node(Key key, Val value, int weight) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    private static final class Segment<Key, Val> {
+
+        private final ConcurrentHashMap<Key, Node<Key, Val>> map = new ConcurrentHashMap<>();
+
+        /**
+         * The 'clock': nodes are added in the tail and the hand sweeps from the head (nodes which were already
+         * removed from the map are just discarded when found).
+         */
+        private final ConcurrentLinkedQueue<Node<Key, Val>> clock = new ConcurrentLinkedQueue<>();
+
+        private final AtomicLong weight = new AtomicLong();
+
+        private final ReentrantLock evictionLock = new ReentrantLock();
+
+        /**
+         * Number of nodes in the clock which are no longer in the map (removed or replaced).
+         */
+        private final AtomicInteger staleNodes = new AtomicInteger();
+    }
+
+    private final Segment<Key, Val>[] segments;
+    private final int segmentMask;
+    private final long maxWeightPerSegment;
+    private final ICallback<Integer, Val> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache where each entry has weight == 1 (so, maxWeight is the max number of entries).
+     */
+    public ConcurrentClockCache(long maxWeight) {
+        this(maxWeight, null);
+    }
+
+    /**
+     * @param maxWeight the max weight for all the entries in this cache.
+     * @param weigher used to compute the weight of a value when it's added (if null, all entries have weight == 1).
+     */
+    public ConcurrentClockCache(long maxWeight, ICallback<Integer, Val> weigher) {
+        this(maxWeight, weigher, Runtime.getRuntime().availableProcessors());
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentClockCache(long maxWeight, ICallback<Integer, Val> weigher, int concurrencyLevel) {
+        if (maxWeight <= 0) {
+            throw new AssertionError("Max weight must be > 0.");
+        }
+        int nSegments = 1;
+        while (nSegments < concurrencyLevel && nSegments < 64 && maxWeight / (nSegments * 2) > 0) {
+            nSegments <<= 1;
+        }
+        this.segments = new Segment[nSegments];
+        for (int i = 0; i < nSegments; i++) {
+            this.segments[i] = new Segment<>();
+        }
+        this.segmentMask = nSegments - 1;
+        this.maxWeightPerSegment = Math.max(1, maxWeight / nSegments);
+        this.weigher = weigher;
+    }
+
+    private Segment<Key, Val> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & segmentMask];
+    }
+
+    @Override
+    public Val getObj(Key key) {
+        Node<Key, Val> node = segmentFor(key).map.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (!node.referenced) {
+            node.referenced = true;
+        }
+        hits.increment();
+        return node.value;
+    }
+
+    @Override
+    public void add(Key key, Val val) {
+        Segment<Key, Val> segment = segmentFor(key);
+        Node<Key, Val> node = new Node<>(key, val, weigh(val));
+        Node<Key, Val> old = segment.map.put(key, node);
+        onAdded(segment, node, old);
+    }
+
+    /**
+     * Adds the value only if there's currently no value for the given key.
+     *
+     * @return the value which is in the cache after this call (the passed value if it was added or the previous
+     * value if it was already there).
+     */
+    public Val addIfAbsent(Key key, Val val) {
+        Segment<Key, Val> segment = segmentFor(key);
+        Node<Key, Val> node = new Node<>(key, val, weigh(val));
+        Node<Key, Val> old = segment.map.putIfAbsent(key, node);
+        if (old != null) {
+            old.referenced = true;
+            return old.value;
+        }
+        onAdded(segment, node, null);
+        return val;
+    }
+
+    private int weigh(Val val) {
+        if (weigher == null) {
+            return 1;
+        }
+        Integer w = weigher.call(val);
+        return w == null || w < 1 ? 1 : w;
+    }
+
+    private void onAdded(Segment<Key, Val> segment, Node<Key, Val> node, Node<Key, Val> old) {
+        long delta = node.weight;
+        if (old != null) {
+            delta -= old.weight;
+            onNodeStale(segment);
+        }
+        segment.clock.add(node);
+        if (segment.weight.addAndGet(delta) > maxWeightPerSegment) {
+            evict(segment);
+        }
+    }
+
+    private void onNodeStale(Segment<Key, Val> segment) {
+        if (segment.staleNodes.incrementAndGet() > segment.map.size() + 64) {
+            if (segment.evictionLock.tryLock()) {
+                try {
+                    purgeStaleNodes(segment);
+                } finally {
+                    segment.evictionLock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Must be called with the eviction lock held.
+     */
+    private void purgeStaleNodes(Segment<Key, Val> segment) {
+        segment.staleNodes.set(0);
+        Iterator<Node<Key, Val>> it = segment.clock.iterator();
+        while (it.hasNext()) {
+            Node<Key, Val> node = it.next();
+            if (segment.map.get(node.key) != node) {
+                it.remove();
+            }
+        }
+    }
+
+    private void evict(Segment<Key, Val> segment) {
+        // If some other thread is already evicting in this segment, let it do the work.
+        if (!segment.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            // Each node may be seen at most twice (once to clear the reference bit and another to evict it).
+            int maxSteps = segment.map.size() * 2 + 1;
+            while (segment.weight.get() > maxWeightPerSegment && maxSteps > 0) {
+                Node<Key, Val> node = segment.clock.poll();
+                if (node == null) {
+                    break;
+                }
+                if (segment.map.get(node.key) != node) {
+                    segment.staleNodes.decrementAndGet();
+                    continue; // Already replaced or removed.
+                }
+                maxSteps--;
+                if (node.referenced) {
+                    node.referenced = false;
+                    segment.clock.add(node);
+                    continue;
+                }
+                if (segment.map.remove(node.key, node)) {
+                    segment.weight.addAndGet(-node.weight);
+                    evictions.increment();
+                }
+            }
+        } finally {
+            segment.evictionLock.unlock();
+        }
+    }
+
+    @Override
+    public void remove(Key key) {
+        Segment<Key, Val> segment = segmentFor(key);
+        Node<Key, Val> old = segment.map.remove(key);
+        if (old != null) {
+            segment.weight.addAndGet(-old.weight);
+            onNodeStale(segment);
+        }
+    }
+
+    /**
+     * Note: entries added concurrently with a clear() may or may not be kept (but the ones kept are still in the
+     * clock to be evicted).
+     */
+    @Override
+    public void clear() {
+        for (Segment<Key, Val> segment : segments) {
+            segment.evictionLock.lock();
+            try {
+                // Only remove the nodes seen (and discount their weight) -- a concurrent add() may be putting a new
+                // node in the map (and in the clock), which must not be removed from the clock as it'd never be
+                // evicted afterwards.
+                for (Node<Key, Val> node : segment.map.values()) {
+                    if (segment.map.remove(node.key, node)) {
+                        segment.weight.addAndGet(-node.weight);
+                    }
+                }
+                purgeStaleNodes(segment);
+            } finally {
+                segment.evictionLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void removeStaleEntries() {
+        // Removed nodes are discarded from the clock lazily, so, this is the time to do it.
+        for (Segment<Key, Val> segment : segments) {
+            segment.evictionLock.lock();
+            try {
+                purgeStaleNodes(segment);
+            } finally {
+                segment.evictionLock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<Key, Val> segment : segments) {
+            size += segment.map.size();
+        }
+        return size;
+    }
+
+    public long getWeight() {
+        long weight = 0;
+        for (Segment<Key, Val> segment : segments) {
+            weight += segment.weight.get();
+        }
+        return weight;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentClockCache[size=" + size() + ", weight=" + getWeight() + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+}
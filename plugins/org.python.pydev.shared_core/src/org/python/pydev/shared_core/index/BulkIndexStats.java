@@ -0,0 +1,31 @@
+package org.python.pydev.shared_core.index;
+
+/**
+ * Statistics on an IndexApi.indexInBulk call.
+ */
+public final class BulkIndexStats {
+
+    public final int documents;
+    public final int failed;
+    public final long chars;
+    public final long millis;
+    public final int threads;
+
+    public BulkIndexStats(int documents, int failed, long chars, long millis, int threads) {
+        this.documents = documents;
+        this.failed = failed;
+        this.chars = chars;
+        this.millis = millis;
+        this.threads = threads;
+    }
+
+    public double getDocumentsPerSecond() {
+        return millis <= 0 ? documents * 1000.0 : documents * 1000.0 / millis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Indexed %d documents (%d chars) in %.2fs with %d threads: %.1f docs/s (%d failed).",
+                documents, chars, millis / 1000.0, threads, getDocumentsPerSecond(), failed);
+    }
+}
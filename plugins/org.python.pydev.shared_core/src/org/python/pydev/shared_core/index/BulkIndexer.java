@@ -0,0 +1,192 @@
+package org.python.pydev.shared_core.index;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.python.pydev.shared_core.log.Log;
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Indexes documents with many threads: the calling thread produces batches of documents which are consumed by
+ * the indexing threads (which read the contents and add them to the writer -- the analysis/tokenization of the
+ * contents is done by the writer in the thread which adds the documents, so, it's also done in parallel).
+ *
+ * The queue between the producer and the consumers is bounded (so, only a few batches are in memory at once).
+ */
+final class BulkIndexer {
+
+    /**
+     * Documents added at once to the writer.
+     */
+    /*default*/ static int BATCH_SIZE = 64;
+
+    /**
+     * The writer is committed whenever this number of documents is indexed.
+     */
+    /*default*/ static int COMMIT_INTERVAL = 10000;
+
+    private static final List<IBulkDocument> END = new ArrayList<>(0);
+
+    private final IndexWriter writer;
+    private final String fieldName;
+    private final int threads;
+    private final BlockingQueue<List<IBulkDocument>> queue;
+
+    private final AtomicInteger indexed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong chars = new AtomicLong();
+    private volatile Throwable fatalError;
+
+    BulkIndexer(IndexWriter writer, String fieldName, int threads) {
+        this.writer = writer;
+        this.fieldName = fieldName;
+        this.threads = Math.max(1, threads);
+        this.queue = new ArrayBlockingQueue<>(this.threads * 2);
+    }
+
+    BulkIndexStats index(Iterator<? extends IBulkDocument> documents, IProgressMonitor monitor)
+            throws IOException, OperationCanceledException {
+        long initialTime = System.currentTimeMillis();
+        List<Thread> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread("PyDev: Bulk indexing " + i) {
+                @Override
+                public void run() {
+                    consume();
+                }
+            };
+            t.setDaemon(true);
+            t.start();
+            workers.add(t);
+        }
+
+        boolean cancelled = false;
+        try {
+            List<IBulkDocument> batch = new ArrayList<>(BATCH_SIZE);
+            while (documents.hasNext()) {
+                if (monitor.isCanceled()) {
+                    cancelled = true;
+                    break;
+                }
+                batch.add(documents.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    if (!put(batch)) {
+                        break;
+                    }
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!cancelled && batch.size() > 0) {
+                put(batch);
+            }
+        } finally {
+            for (int i = 0; i < threads; i++) {
+                put(END);
+            }
+            for (Thread t : workers) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        if (fatalError != null) {
+            throw new IOException("Error while indexing in bulk.", fatalError);
+        }
+        if (cancelled) {
+            throw new OperationCanceledException();
+        }
+        return new BulkIndexStats(indexed.get(), failed.get(), chars.get(),
+                System.currentTimeMillis() - initialTime, threads);
+    }
+
+    /**
+     * @return false if it wasn't possible to put it in the queue (the consumers stopped because of some error).
+     */
+    private boolean put(List<IBulkDocument> batch) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (fatalError != null) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void consume() {
+        FastStringBuffer buf = new FastStringBuffer();
+        char[] readBuf = new char[8192];
+        try {
+            while (true) {
+                List<IBulkDocument> batch = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    if (fatalError != null) {
+                        return; // Some other consumer failed: stop too.
+                    }
+                    continue;
+                }
+                if (batch == END) {
+                    return;
+                }
+                List<Document> docs = new ArrayList<>(batch.size());
+                List<IBulkDocument> added = new ArrayList<>(batch.size());
+                for (IBulkDocument bulkDocument : batch) {
+                    try (Reader reader = bulkDocument.createContentsReader()) {
+                        buf.clear();
+                        int read;
+                        while ((read = reader.read(readBuf)) != -1) {
+                            buf.append(readBuf, 0, read);
+                        }
+                        Document doc = IndexApi.createDocument(bulkDocument.getFields());
+                        //Note: TextField should be analyzed/normalized in Analyzer.createComponents(String)
+                        doc.add(new TextField(fieldName, buf.toString(), Field.Store.NO));
+                        docs.add(doc);
+                        added.add(bulkDocument);
+                        chars.addAndGet(buf.length());
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        Log.log("Error reading contents to index: " + bulkDocument.getFields(), e);
+                    }
+                }
+                if (docs.isEmpty()) {
+                    continue;
+                }
+                writer.addDocuments(docs);
+                for (IBulkDocument bulkDocument : added) {
+                    bulkDocument.onIndexed();
+                }
+
+                int size = docs.size();
+                int total = indexed.addAndGet(size);
+                if (total / COMMIT_INTERVAL != (total - size) / COMMIT_INTERVAL) {
+                    writer.commit();
+                }
+            }
+        } catch (Throwable e) {
+            fatalError = e;
+            // Discard what's pending so that the producer is not blocked.
+            queue.clear();
+        }
+    }
+}
@@ -29,7 +29,6 @@ public class CodeAnalyzer extends Analyzer {
 
     public CodeAnalyzer() {
         super();
-        fieldNameToStreamComponents.put("__default__", createDefaultComponents());
     }
 
     @Override
@@ -38,7 +37,9 @@ public class CodeAnalyzer extends Analyzer {
         if (streamComponents != null) {
             return streamComponents;
         }
-        return fieldNameToStreamComponents.get("__default__");
+        // Note: a new one is created for each call as it's called once per indexing thread (the ones registered
+        // are shared, so, they may only be used when indexing from a single thread).
+        return createDefaultComponents();
     }
 
     Map<String, TokenStreamComponents> fieldNameToStreamComponents = new HashMap<>();
@@ -0,0 +1,27 @@
+package org.python.pydev.shared_core.index;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+/**
+ * A document to be indexed with IndexApi.indexInBulk.
+ */
+public interface IBulkDocument {
+
+    /**
+     * @return the fields to be stored (not analyzed) in the document.
+     */
+    Map<String, String> getFields();
+
+    /**
+     * @return a reader with the contents to be indexed (called from an indexing thread, so, it may do I/O).
+     */
+    Reader createContentsReader() throws IOException;
+
+    /**
+     * Called (from an indexing thread) after the document is added to the index.
+     */
+    default void onIndexed() {
+    }
+}
@@ -22,6 +22,7 @@ import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -54,6 +55,8 @@ import org.apache.lucene.search.WildcardQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Path;
 import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.io.FileUtils;
@@ -72,12 +75,24 @@ public class IndexApi {
 
     public static final String luceneSuffix = "L481";
 
+    /**
+     * Default number of threads to be used in indexInBulk.
+     */
+    public static final int BULK_INDEX_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Memory used to buffer documents before they're flushed to a new segment (the lucene default is 16MB, which
+     * creates too many small segments when indexing a big number of files).
+     */
+    /*default*/ static double RAM_BUFFER_SIZE_MB = 64;
+
     private final Directory indexDir;
     private IndexWriter writer;
     private SearcherManager searchManager;
     private SearcherFactory searcherFactory;
     private int maxMatches = Integer.MAX_VALUE;
     private CodeAnalyzer analyzer;
+    private boolean applyAllDeletes;
     private final Object lock = new Object();
 
     protected IndexApi(Object /*Directory*/ indexDirObj, boolean applyAllDeletes) throws IOException {
@@ -116,6 +131,7 @@ public class IndexApi {
         this.analyzer = new CodeAnalyzer();
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
         config.setCommitOnClose(true);
+        config.setRAMBufferSizeMB(RAM_BUFFER_SIZE_MB);
         config.setOpenMode(OpenMode.CREATE_OR_APPEND);
         try {
             writer = new IndexWriter(this.indexDir, config);
@@ -126,6 +142,17 @@ public class IndexApi {
 
         searcherFactory = new SearcherFactory();
         searchManager = new SearcherManager(writer, applyAllDeletes, false, searcherFactory);
+        this.applyAllDeletes = applyAllDeletes;
+    }
+
+    /**
+     * Makes the changes done in the writer visible to the searches (note that searches already refresh if
+     * needed, so, this only needs to be called to avoid paying for it in the next search).
+     */
+    public void refresh() throws IOException {
+        if (this.searchManager != null) {
+            this.searchManager.maybeRefreshBlocking();
+        }
     }
 
     public void registerTokenizer(String fieldName, TokenStreamComponents tokenStream) {
@@ -163,7 +190,7 @@ public class IndexApi {
         }
     }
 
-    private Document createDocument(Map<String, String> fieldsToIndex) {
+    /*default*/ static Document createDocument(Map<String, String> fieldsToIndex) {
         Document doc = new Document();
 
         Set<Entry<String, String>> entrySet = fieldsToIndex.entrySet();
@@ -235,6 +262,28 @@ public class IndexApi {
         this.writer.addDocument(doc);
     }
 
+    /**
+     * Indexes the given documents using many threads (the contents of the documents are read and tokenized in the
+     * indexing threads and added in batches to the writer -- which is committed periodically and at the end).
+     *
+     * @param threads the number of threads to be used (usually BULK_INDEX_THREADS).
+     * @throws OperationCanceledException if the monitor is cancelled (note that what was already indexed is kept
+     * in the writer).
+     */
+    public BulkIndexStats indexInBulk(Iterator<? extends IBulkDocument> documents, String fieldName, int threads,
+            IProgressMonitor monitor) throws IOException, OperationCanceledException {
+        if (this.writer == null) {
+            return new BulkIndexStats(0, 0, 0, 0, 0);
+        }
+        BulkIndexStats stats = new BulkIndexer(this.writer, fieldName, threads).index(documents, monitor);
+        this.writer.commit();
+        this.refresh();
+        if (DEBUG) {
+            System.out.println(stats);
+        }
+        return stats;
+    }
+
     public void index(IPath filepath, long modifiedTime, Reader reader, String fieldName) throws IOException {
         if (this.writer == null) {
             return;
@@ -412,13 +461,47 @@ public class IndexApi {
      * @param fields the fields to be loaded.
      */
     public void visitAllDocs(IDocumentsVisitor visitor, String... fields) throws IOException {
-        boolean applyAllDeletes = true;
+        search(new MatchAllDocsQuery(), true, Integer.MAX_VALUE, visitor, fields);
+    }
+
+    /**
+     * Searches in a near-real-time reader (so, changes done in the writer are seen even if not committed).
+     *
+     * This method may be called concurrently: if applyAllDeletes is the same used in the creation of this
+     * index, the searcher is shared (otherwise, a new reader is opened for the search).
+     */
+    public SearchResult search(Query query, boolean applyAllDeletes, IDocumentsVisitor visitor, String... fields)
+            throws IOException {
+        return search(query, applyAllDeletes, maxMatches, visitor, fields);
+    }
+
+    private SearchResult search(Query query, boolean applyAllDeletes, int maxMatches, IDocumentsVisitor visitor,
+            String... fields) throws IOException {
+        SearcherManager manager = this.searchManager;
+        if (manager == null) {
+            throw new IOException("Index already disposed.");
+        }
+        if (applyAllDeletes == this.applyAllDeletes) {
+            manager.maybeRefreshBlocking();
+            IndexSearcher searcher = manager.acquire();
+            try {
+                return search(searcher, query, maxMatches, visitor, fields);
+            } finally {
+                manager.release(searcher);
+            }
+        }
         try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
+            return search(searcherFactory.newSearcher(reader, null), query, maxMatches, visitor, fields);
+        }
+    }
 
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
-            Query query = new MatchAllDocsQuery();
-            TopDocs docs = searcher.search(query, Integer.MAX_VALUE);
-            ScoreDoc[] scoreDocs = docs.scoreDocs;
+    private SearchResult search(IndexSearcher searcher, Query query, int maxMatches, IDocumentsVisitor visitor,
+            String... fields) throws IOException {
+        TopDocs search = searcher.search(query, maxMatches);
+        ScoreDoc[] scoreDocs = search.scoreDocs;
+
+        if (visitor != null) {
+            IndexReader reader = searcher.getIndexReader();
             int length = scoreDocs.length;
             for (int i = 0; i < length; i++) {
                 ScoreDoc scoreDoc = scoreDocs[i];
@@ -428,34 +511,8 @@ public class IndexApi {
                 visitor.visit(new DocumentInfo(document, scoreDoc.doc));
             }
         }
-    }
-
-    public SearchResult search(Query query, boolean applyAllDeletes, IDocumentsVisitor visitor, String... fields)
-            throws IOException {
-        try {
-            this.writer.commit();
-        } catch (Exception e) {
-            Log.log(e);
-        }
-        try (IndexReader reader = DirectoryReader.open(writer, applyAllDeletes, false);) {
-            IndexSearcher searcher = searcherFactory.newSearcher(reader, null);
-
-            TopDocs search = searcher.search(query, maxMatches);
-            ScoreDoc[] scoreDocs = search.scoreDocs;
-
-            if (visitor != null) {
-                int length = scoreDocs.length;
-                for (int i = 0; i < length; i++) {
-                    ScoreDoc scoreDoc = scoreDocs[i];
-                    DocumentStoredFieldVisitor fieldVisitor = new DocumentStoredFieldVisitor(fields);
-                    reader.document(scoreDoc.doc, fieldVisitor);
-                    Document document = fieldVisitor.getDocument();
-                    visitor.visit(new DocumentInfo(document, scoreDoc.doc));
-                }
-            }
 
-            return new SearchResult(scoreDocs);
-        }
+        return new SearchResult(scoreDocs);
     }
 
     public void removeDocs(Map<String, Collection<String>> fieldToValuesToRemove) throws IOException {
@@ -42,6 +42,7 @@ import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -1065,6 +1066,47 @@ public class FileUtils {
 
     }
 
+    /**
+     * Removes the least recently modified files in the subdirectories of the given directory (i.e.: a disk cache where
+     * each entry is at dir/xx/entry) so that at most 80% of maxFiles are kept (if there are more than maxFiles).
+     */
+    public static void trimLeastRecentlyModified(File dir, int maxFiles) {
+        File[] subDirs = dir.listFiles();
+        if (subDirs == null) {
+            return;
+        }
+        List<File> files = new ArrayList<File>();
+        for (File subDir : subDirs) {
+            File[] entries = subDir.listFiles();
+            if (entries != null) {
+                files.addAll(Arrays.asList(entries));
+            }
+        }
+        if (files.size() <= maxFiles) {
+            return;
+        }
+        final int size = files.size();
+        final long[] lastModified = new long[size];
+        Integer[] indexes = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            lastModified[i] = files.get(i).lastModified();
+            indexes[i] = i;
+        }
+        Arrays.sort(indexes, new Comparator<Integer>() {
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Long.compare(lastModified[o1], lastModified[o2]);
+            }
+        });
+        int toRemove = size - (int) (maxFiles * 0.8);
+        for (int i = 0; i < toRemove; i++) {
+            if (!files.get(indexes[i]).delete()) {
+                Log.logInfo("Unable to remove: " + files.get(indexes[i]));
+            }
+        }
+    }
+
     public static long lastModified(File file) {
         try {
             // Has a higher precision.
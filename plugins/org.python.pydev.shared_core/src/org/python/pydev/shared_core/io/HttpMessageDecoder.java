@@ -0,0 +1,157 @@
+package org.python.pydev.shared_core.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.python.pydev.shared_core.string.FastStringBuffer;
+
+/**
+ * Decodes messages in the format used in HttpProtocolUtils (header lines, an empty line and then the contents
+ * with the size given in the Content-Length header) from bytes received in arbitrary chunks (i.e.: from a
+ * non-blocking channel).
+ */
+public final class HttpMessageDecoder {
+
+    public static final String CONTENT_LENGTH = "Content-Length";
+
+    public static final class Message {
+
+        /**
+         * Header name to value (i.e.: Content-Length, Request-Id).
+         */
+        public final Map<String, String> headers;
+        public final String contents;
+
+        private Message(Map<String, String> headers, String contents) {
+            this.headers = headers;
+            this.contents = contents;
+        }
+
+        @Override
+        public String toString() {
+            return "Message[" + headers + "]";
+        }
+    }
+
+    private byte[] buffer = new byte[32 * 1024];
+
+    /**
+     * Position of the first byte not consumed.
+     */
+    private int start = 0;
+
+    /**
+     * Position after the last byte received.
+     */
+    private int end = 0;
+
+    /**
+     * Adds the remaining bytes of the given buffer to the bytes to be decoded.
+     */
+    public void feed(ByteBuffer bytes) {
+        int len = bytes.remaining();
+        if (end + len > buffer.length) {
+            int available = end - start;
+            if (available + len > buffer.length) {
+                byte[] newBuffer = new byte[Math.max(buffer.length * 2, available + len)];
+                System.arraycopy(buffer, start, newBuffer, 0, available);
+                buffer = newBuffer;
+            } else {
+                System.arraycopy(buffer, start, buffer, 0, available);
+            }
+            start = 0;
+            end = available;
+        }
+        bytes.get(buffer, end, len);
+        end += len;
+    }
+
+    /**
+     * @return the next complete message received or null if there's still no complete message available.
+     * @throws IOException if the bytes received don't respect the protocol.
+     */
+    public Message next() throws IOException {
+        int headersEnd = indexOfEmptyLine();
+        if (headersEnd == -1) {
+            return null;
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        int lineStart = start;
+        for (int i = start; i < headersEnd; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n') {
+                addHeader(headers, lineStart, i);
+                lineStart = i + 2;
+                i++;
+            }
+        }
+        addHeader(headers, lineStart, headersEnd);
+
+        String contentLen = headers.get(CONTENT_LENGTH);
+        if (contentLen == null) {
+            throw new IOException("Content-Length not passed in header. Found: " + headers);
+        }
+        int len;
+        try {
+            len = Integer.parseInt(contentLen);
+        } catch (NumberFormatException e) {
+            throw new IOException("Error getting number of bytes to load. Found: " + contentLen);
+        }
+        int contentsStart = headersEnd + 4;
+        if (end - contentsStart < len) {
+            return null;
+        }
+        String contents = new String(buffer, contentsStart, len, StandardCharsets.UTF_8);
+        start = contentsStart + len;
+        if (start == end) {
+            start = 0;
+            end = 0;
+        }
+        return new Message(headers, contents);
+    }
+
+    private void addHeader(Map<String, String> headers, int lineStart, int lineEnd) throws IOException {
+        if (lineStart == lineEnd) {
+            return;
+        }
+        String line = new String(buffer, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8);
+        int i = line.indexOf(':');
+        if (i == -1) {
+            throw new IOException("Unexpected header: " + line);
+        }
+        headers.put(line.substring(0, i).trim(), line.substring(i + 1).trim());
+    }
+
+    /**
+     * @return the index of the \r\n\r\n which ends the headers or -1 if not available.
+     */
+    private int indexOfEmptyLine() {
+        for (int i = start; i + 3 < end; i++) {
+            if (buffer[i] == '\r' && buffer[i + 1] == '\n' && buffer[i + 2] == '\r' && buffer[i + 3] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the bytes for a message with the given contents and additional headers (pairs of name, value).
+     */
+    public static byte[] encode(String contents, String... headerNamesAndValues) {
+        byte[] bytes = contents.getBytes(StandardCharsets.UTF_8);
+        FastStringBuffer buf = new FastStringBuffer(64);
+        buf.append(CONTENT_LENGTH).append(": ").append(bytes.length).append("\r\n");
+        for (int i = 0; i + 1 < headerNamesAndValues.length; i += 2) {
+            buf.append(headerNamesAndValues[i]).append(": ").append(headerNamesAndValues[i + 1]).append("\r\n");
+        }
+        buf.append("\r\n");
+        byte[] header = buf.getBytes();
+        byte[] ret = new byte[header.length + bytes.length];
+        System.arraycopy(header, 0, ret, 0, header.length);
+        System.arraycopy(bytes, 0, ret, header.length, bytes.length);
+        return ret;
+    }
+}
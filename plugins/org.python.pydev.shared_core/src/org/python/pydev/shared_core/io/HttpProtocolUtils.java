@@ -1,6 +1,5 @@
 package org.python.pydev.shared_core.io;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
@@ -9,6 +8,11 @@ import org.python.pydev.shared_core.callbacks.ICallback;
 import org.python.pydev.shared_core.log.Log;
 import org.python.pydev.shared_core.string.FastStringBuffer;
 
+/**
+ * Reads messages with a Content-Length header followed by an empty line and the contents.
+ *
+ * Note: headers are read one byte at a time, so, the stream passed should be buffered.
+ */
 public class HttpProtocolUtils {
     /**
      * can be specified to debug this class
@@ -17,7 +21,6 @@ public class HttpProtocolUtils {
 
     private byte[] buffer = new byte[32 * 1024];
     private FastStringBuffer contents = new FastStringBuffer();
-    private ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 
     public String readContents(InputStream in, ICallback<String, Object> onUnexpectedMessage) throws IOException {
         int bytesToRead = -1;
@@ -34,14 +37,14 @@ public class HttpProtocolUtils {
                     return null;
                 }
 
+                // Read directly into a buffer big enough for the payload (and decode from it without copying).
+                byte[] bytes = bytesToRead <= buffer.length ? buffer : new byte[bytesToRead];
+                int read = 0;
                 int bytesRead;
-                while ((bytesRead = in.read(buffer, 0, Math.min(bytesToRead, buffer.length))) > 0) {
-                    byteArrayOutputStream.write(buffer, 0, bytesRead);
-                    bytesToRead -= bytesRead;
+                while (read < bytesToRead && (bytesRead = in.read(bytes, read, bytesToRead - read)) > 0) {
+                    read += bytesRead;
                 }
-                byte[] bytes = byteArrayOutputStream.toByteArray();
-                byteArrayOutputStream.reset();
-                return new String(bytes, StandardCharsets.UTF_8);
+                return new String(bytes, 0, read, StandardCharsets.UTF_8);
             } else {
                 // Header found
                 String contentLen = "Content-Length: ";
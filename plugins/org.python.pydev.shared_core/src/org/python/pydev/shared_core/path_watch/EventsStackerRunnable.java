@@ -11,9 +11,12 @@ import java.io.FileFilter;
 import java.nio.file.Path;
 import java.nio.file.WatchKey;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.eclipse.core.runtime.Assert;
 import org.python.pydev.shared_core.callbacks.ListenerList;
@@ -25,8 +28,10 @@ import org.python.pydev.shared_core.structure.OrderedMap;
 /**
  * This object will stack many ADD/REMOVE changes into a single change. It also deals with OVERFLOW changes, which
  * mean that too many changes occurred and thus can't be properly mapped to the actual events. In this case,
- * a notification that the base path was removed and then added again is issued (listener clients must take care
- * of properly dealing with this notification, as no events of added/removed children will be issued in this case).
+ * the watched directory is listed again and compared with its last known state (so, only the children which
+ * actually changed are reported). If the watched path is not a directory, a notification that the base path was
+ * removed and then added again is issued (listener clients must take care of properly dealing with this
+ * notification, as no events of added/removed children will be issued in this case).
  *
  * @author fabioz
  */
@@ -91,8 +96,25 @@ public class EventsStackerRunnable implements Runnable {
      */
     private final FileFilter dirFilter;
 
+    /**
+     * The time of the last modification of the files we're interested in directly in the directory we're watching
+     * (used to know what changed when an overflow happens).
+     */
+    private final Map<File, Long> internalFileToLastModifiedTime = new HashMap<File, Long>();
+
     private static final Long DIRECTORY_WITH_NOTHING_INTERESTING = 0L;
 
+    /**
+     * The initial state of the watched directories is computed in a single (low priority) thread (it may be
+     * slow for big directories such as site-packages, so, we don't want many of those running in parallel).
+     */
+    private static final ExecutorService initializationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "EventsStackerRunnable initialization");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
     private volatile boolean initializationFinished = false;
 
     private final Object lockInitialization = new Object();
@@ -115,14 +137,18 @@ public class EventsStackerRunnable implements Runnable {
         this.fileFilter = fileFilter;
         this.dirFilter = dirFilter;
         if (isDir) {
-            new Thread() {
+            initializationExecutor.execute(new Runnable() {
                 @Override
                 public void run() {
                     try {
                         File[] listFiles = file.listFiles();
                         if (listFiles != null) {
                             for (File f : listFiles) {
-                                if (f.isDirectory()) {
+                                if (!f.isDirectory()) {
+                                    if (fileFilter.accept(f)) {
+                                        internalFileToLastModifiedTime.put(f, f.lastModified());
+                                    }
+                                } else {
                                     if (dirFilter.accept(f)) {
                                         long lastModifiedTimeFromDir = FileUtils.getLastModifiedTimeFromDir(f,
                                                 fileFilter, dirFilter, LEVELS_TO_GET_MODIFIED_TIME);
@@ -142,7 +168,7 @@ public class EventsStackerRunnable implements Runnable {
                     }
 
                 };
-            }.start();
+            });
         } else {
             initializationFinished = true;
         }
@@ -195,7 +221,11 @@ public class EventsStackerRunnable implements Runnable {
             }
         }
 
-        if (currentOverflow != null) {
+        if (currentOverflow != null && isDir) {
+            // Only compare what's currently in the directory with its last known state.
+            currentFileToEvent = rescan();
+
+        } else if (currentOverflow != null) {
             for (IFilesystemChangesListener iFilesystemChangesListener : listeners) {
                 //Say that the dir was removed...
                 File watched = file;
@@ -250,6 +280,11 @@ public class EventsStackerRunnable implements Runnable {
                         if (!fileFilter.accept(currKey)) {
                             continue;
                         }
+                        if (value == ADDED && currKey.exists()) {
+                            internalFileToLastModifiedTime.put(currKey, currKey.lastModified());
+                        } else {
+                            internalFileToLastModifiedTime.remove(currKey);
+                        }
                     }
                 }
             }
@@ -278,6 +313,43 @@ public class EventsStackerRunnable implements Runnable {
         }
     }
 
+    /**
+     * @return the children of the watched directory which may have changed since the last known state (i.e.: new
+     * or changed files, removed files and directories and all the current directories -- which are then checked
+     * based on the time of their contents).
+     */
+    private Map<File, Integer> rescan() {
+        Map<File, Integer> events = new OrderedMap<File, Integer>();
+        Set<File> found = new HashSet<File>();
+        File[] listFiles = file.listFiles();
+        if (listFiles != null) {
+            for (File f : listFiles) {
+                found.add(f);
+                if (f.isDirectory()) {
+                    if (dirFilter.accept(f)) {
+                        events.put(f, ADDED);
+                    }
+                } else if (fileFilter.accept(f)) {
+                    Long lastModified = internalFileToLastModifiedTime.get(f);
+                    if (lastModified == null || lastModified != f.lastModified()) {
+                        events.put(f, ADDED);
+                    }
+                }
+            }
+        }
+        for (File f : internalDirToLastModifiedTime.keySet()) {
+            if (!found.contains(f)) {
+                events.put(f, REMOVED);
+            }
+        }
+        for (File f : internalFileToLastModifiedTime.keySet()) {
+            if (!found.contains(f)) {
+                events.put(f, REMOVED);
+            }
+        }
+        return events;
+    }
+
     /**
      * On overflow we'll clear all the other events and just send the overflow (any subsequent event is
      * ignored until the overflow is signaled).
@@ -18,4 +18,14 @@ public interface IPathWatch {
 
     void setDirectoryFileFilter(FileFilter fileFilter, FileFilter dirsFilter);
 
+    /**
+     * @return the number of paths currently registered in the native watch service.
+     */
+    int getWatchCount();
+
+    /**
+     * @return the maximum time (in millis) between receiving an event and reporting it to the listeners.
+     */
+    long getMaxEventLagMillis();
+
 }
\ No newline at end of file
@@ -20,8 +20,11 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.Assert;
 import org.python.pydev.shared_core.callbacks.ListenerList;
@@ -34,7 +37,10 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  *
  * Service to watch filesystem changes at a given path. Works with the default watch service from JDK 1.7.
  *
- * Multiple events are stacked and reported as soon as it happens (from a non-main thread).
+ * Multiple events are stacked and reported (from a non-main thread) when no new event arrives for the same path
+ * for {@link #COALESCE_MILLIS} (so, a burst of changes -- i.e.: a pip install -- is reported as a single change set
+ * for each path watched). Listeners are notified in a thread other than the one polling the watch service (so, a slow
+ * listener doesn't make the events from the OS overflow).
  *
  * Note that if a directory being watched is removed, it should notify that the given path was removed
  * (and will remove all the listeners for the path afterwards).
@@ -43,6 +49,18 @@ import org.python.pydev.shared_core.string.FastStringBuffer;
  */
 public class PathWatch implements IPathWatch {
 
+    /**
+     * Time without new events for a path until its events are reported.
+     *
+     * May be customized with -Dpydev.path_watch.coalesce.millis=XXX
+     */
+    /*default*/ static long COALESCE_MILLIS = Long.getLong("pydev.path_watch.coalesce.millis", 100);
+
+    /**
+     * Maximum time that the events of a path may be hold (if new events keep on arriving).
+     */
+    /*default*/ static long MAX_COALESCE_MILLIS = 20 * COALESCE_MILLIS;
+
     /**
      * The service that'll give us notifications.
      */
@@ -66,8 +84,19 @@ public class PathWatch implements IPathWatch {
             .synchronizedMap(new HashMap<WatchKey, Path>());
 
     private final PollThread pollThread;
+    private final DispatchThread dispatchThread;
     private final Object lock = new Object();
 
+    /**
+     * The stackers with events to be reported (and when their first and last events were received).
+     * Access must be synchronized on the map itself.
+     */
+    private final Map<EventsStackerRunnable, long[]> pendingDispatch = new LinkedHashMap<>();
+
+    private volatile long maxEventLagMillis = 0;
+    private volatile long lastEventLagMillis = 0;
+    private volatile long dispatchedChangeSets = 0;
+
     private volatile boolean disposed = false;
 
     private FileFilter fileFilter = new FileFilter() {
@@ -98,6 +127,81 @@ public class PathWatch implements IPathWatch {
         pollThread.setDaemon(true);
         pollThread.setPriority(Thread.MIN_PRIORITY + 1); //Just a bit above minimum.
         pollThread.start();
+
+        dispatchThread = new DispatchThread();
+        dispatchThread.setDaemon(true);
+        dispatchThread.setPriority(Thread.MIN_PRIORITY + 1);
+        dispatchThread.start();
+    }
+
+    /**
+     * Marks that the given stacker has events to be reported.
+     */
+    private void scheduleDispatch(EventsStackerRunnable stacker) {
+        long now = System.currentTimeMillis();
+        synchronized (pendingDispatch) {
+            long[] times = pendingDispatch.get(stacker);
+            if (times == null) {
+                pendingDispatch.put(stacker, new long[] { now, now });
+            } else {
+                times[1] = now;
+            }
+            pendingDispatch.notifyAll();
+        }
+    }
+
+    private class DispatchThread extends Thread {
+
+        public DispatchThread() {
+            super("PathWatch dispatch");
+        }
+
+        @Override
+        public void run() {
+            while (!disposed) {
+                EventsStackerRunnable stacker = null;
+                long lag = 0;
+                synchronized (pendingDispatch) {
+                    long waitFor = 0; // 0 means wait until notified.
+                    long now = System.currentTimeMillis();
+                    Iterator<Entry<EventsStackerRunnable, long[]>> it = pendingDispatch.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Entry<EventsStackerRunnable, long[]> entry = it.next();
+                        long[] times = entry.getValue();
+                        long readyAt = Math.min(times[1] + COALESCE_MILLIS, times[0] + MAX_COALESCE_MILLIS);
+                        if (readyAt <= now) {
+                            stacker = entry.getKey();
+                            lag = now - times[0];
+                            it.remove();
+                            break;
+                        }
+                        waitFor = waitFor == 0 ? readyAt - now : Math.min(waitFor, readyAt - now);
+                    }
+                    if (stacker == null) {
+                        try {
+                            pendingDispatch.wait(waitFor);
+                        } catch (InterruptedException e) {
+                            // Ignore (if disposed we'll exit).
+                        }
+                        continue;
+                    }
+                }
+
+                try {
+                    stacker.run();
+                } catch (Exception e) {
+                    if (log != null) {
+                        log.append("Unexpected exception" + e + "\n");
+                    }
+                    Log.log(e);
+                }
+                lastEventLagMillis = lag;
+                if (lag > maxEventLagMillis) {
+                    maxEventLagMillis = lag;
+                }
+                dispatchedChangeSets++;
+            }
+        }
     }
 
     private class PollThread extends Thread {
@@ -163,7 +267,8 @@ public class PathWatch implements IPathWatch {
 
                         for (WatchEvent<?> e : list) {
                             Path context = (Path) e.context();
-                            Path resolve = watchedPath.resolve(context);
+                            // Note: an OVERFLOW has no context (it's related to the watched path itself).
+                            Path resolve = context != null ? watchedPath.resolve(context) : watchedPath;
                             File file = new File(resolve.toString());
                             Kind<?> kind = e.kind();
                             if (log != null) {
@@ -179,8 +284,8 @@ public class PathWatch implements IPathWatch {
                                     stacker.removed(file);
                                 } else {
                                 }
-                                //On an overflow, wait a bit and signal that all files being watched were removed,
-                                //do a list and say that the current files were added again.
+                                //On an overflow, the watched directory is listed again when the events are reported
+                                //(and only the children which changed are reported).
                                 stacker.overflow(file);
 
                             } else {
@@ -202,15 +307,8 @@ public class PathWatch implements IPathWatch {
                             }
                         }
 
-                        try {
-                            stacker.run();
-                        } catch (Exception e1) {
-                            if (log != null) {
-                                log.append("Unexpected exception" + e1 + "\n");
-                            }
-                            Log.log(e1);
-                        }
                     }
+                    scheduleDispatch(stacker);
                 } catch (Exception e) {
                     if (log != null) {
                         log.append("Unexpected exception" + e + "\n");
@@ -246,7 +344,12 @@ public class PathWatch implements IPathWatch {
                 list.remove(listener);
                 if (list.getListeners().length == 0) {
                     pathToStacker.remove(watchedPath);
-                    keyToPath.remove(stacker.key);
+                    WatchKey key = stacker.key;
+                    if (key != null) {
+                        keyToPath.remove(key);
+                        // Release the OS resources (i.e.: inotify watches on Linux).
+                        key.cancel();
+                    }
                 }
             }
         }
@@ -304,11 +407,39 @@ public class PathWatch implements IPathWatch {
                 }
                 pollThread.interrupt();
             }
+            synchronized (pendingDispatch) {
+                pendingDispatch.clear();
+                pendingDispatch.notifyAll();
+            }
         } catch (Exception e) {
             Log.log(e);
         }
     }
 
+    @Override
+    public int getWatchCount() {
+        return keyToPath.size();
+    }
+
+    @Override
+    public long getMaxEventLagMillis() {
+        return maxEventLagMillis;
+    }
+
+    /**
+     * @return the time (in millis) between the first event and the notification of the last change set reported.
+     */
+    public long getLastEventLagMillis() {
+        return lastEventLagMillis;
+    }
+
+    /**
+     * @return the number of change sets reported to listeners (each change set has the events of a path watched).
+     */
+    public long getDispatchedChangeSets() {
+        return dispatchedChangeSets;
+    }
+
     /* (non-Javadoc)
      * @see org.python.pydev.shared_core.path_watch.IPathWatch#track(java.io.File, org.python.pydev.shared_core.path_watch.IFilesystemChangesListener)
      */
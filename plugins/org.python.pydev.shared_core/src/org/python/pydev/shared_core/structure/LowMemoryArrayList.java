@@ -236,7 +236,12 @@ public class LowMemoryArrayList<E> implements List<E> {
 
     @Override
     public E set(int index, E element) {
-        throw new RuntimeException("Not implemented");
+        if (index >= size || index < 0) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        E oldValue = data[index];
+        data[index] = element;
+        return oldValue;
     }
 
     @Override
@@ -0,0 +1,132 @@
+package org.python.pydev.shared_core.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.python.pydev.shared_core.callbacks.ICallback;
+
+import junit.framework.TestCase;
+
+public class ConcurrentClockCacheTest extends TestCase {
+
+    public void testAddGetRemove() throws Exception {
+        ConcurrentClockCache<String, String> cache = new ConcurrentClockCache<>(10, null, 1);
+        assertNull(cache.getObj("a"));
+        cache.add("a", "A");
+        assertEquals("A", cache.getObj("a"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        assertEquals("A", cache.addIfAbsent("a", "B"));
+        assertEquals("A", cache.getObj("a"));
+
+        cache.remove("a");
+        assertNull(cache.getObj("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getWeight());
+    }
+
+    public void testEvictionGivesSecondChance() throws Exception {
+        ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(3, null, 1);
+        cache.add(1, 1);
+        cache.add(2, 2);
+        cache.add(3, 3);
+        assertEquals(Integer.valueOf(1), cache.getObj(1)); // 1 is referenced now.
+
+        cache.add(4, 4);
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(Integer.valueOf(1), cache.getObj(1));
+        assertNull(cache.getObj(2));
+    }
+
+    public void testWeigher() throws Exception {
+        ICallback<Integer, String> weigher = new ICallback<Integer, String>() {
+
+            @Override
+            public Integer call(String arg) {
+                return arg.length();
+            }
+        };
+        ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<>(10, weigher, 1);
+        cache.add(1, "aaaa");
+        cache.add(2, "bbbb");
+        assertEquals(8, cache.getWeight());
+        cache.add(3, "cccc");
+        assertTrue(cache.getWeight() <= 10);
+        assertEquals(2, cache.size());
+
+        cache.add(3, "c");
+        assertTrue(cache.getWeight() <= 10);
+        cache.clear();
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(100);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        int key = (i * 7 + offset) % 500;
+                        if (cache.getObj(key) == null) {
+                            cache.add(key, key);
+                        }
+                        if (i % 13 == 0) {
+                            cache.remove(key);
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // A thread may skip the eviction while another one is finishing it, so, allow some slack.
+        assertTrue(cache.getWeight() <= 100 + threads.size());
+        assertEquals(cache.size(), cache.getWeight());
+        cache.removeStaleEntries();
+    }
+
+    public void testClearWhileAdding() throws Exception {
+        final ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(100, null, 1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final int offset = t * 100000;
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        cache.add(offset + i, i);
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (int i = 0; i < 200; i++) {
+            cache.clear();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(cache.size(), cache.getWeight());
+
+        // All the entries which were kept must still be evictable.
+        for (int i = 0; i < 1000; i++) {
+            cache.add(-1 - i, i);
+        }
+        assertTrue(cache.getWeight() <= 100);
+        for (int t = 0; t < 4; t++) {
+            for (int i = 0; i < 20000; i++) {
+                assertNull(cache.getObj(t * 100000 + i));
+            }
+        }
+    }
+}
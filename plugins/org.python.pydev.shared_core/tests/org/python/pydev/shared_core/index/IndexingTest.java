@@ -11,17 +11,26 @@
 ******************************************************************************/
 package org.python.pydev.shared_core.index;
 
+import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.lucene.analysis.Analyzer.TokenStreamComponents;
 import org.apache.lucene.store.RAMDirectory;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Path;
 import org.eclipse.jface.text.Document;
 import org.eclipse.jface.text.IDocument;
@@ -218,4 +227,83 @@ public class IndexingTest extends TestCase {
         result = indexApi.searchWildcard(fieldNameToValues, true, visitor, null, IFields.FILENAME);
         assertEquals(2, result.getNumberOfDocumentMatches());
     }
+
+    public void testConcurrentSearchesSeeChangesWithoutCommit() throws Exception {
+        for (int i = 0; i < 50; i++) {
+            indexApi.index(new Path("mod" + i + ".py"), i, "common token" + (i % 5));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        return indexApi.searchExact("token3", IFields.GENERAL_CONTENTS, true)
+                                .getNumberOfDocumentMatches();
+                    }
+                }));
+            }
+            for (Future<Integer> future : futures) {
+                assertEquals(10, future.get().intValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        HashMap<String, Collection<String>> map = new HashMap<>();
+        map.put(IFields.MODIFIED_TIME, Arrays.asList("3", "8"));
+        indexApi.removeDocs(map);
+        assertEquals(8, indexApi.searchExact("token3", IFields.GENERAL_CONTENTS, true).getNumberOfDocumentMatches());
+    }
+
+    public void testIndexInBulk() throws Exception {
+        final Set<String> indexed = Collections.synchronizedSet(new HashSet<String>());
+        List<IBulkDocument> docs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            final String name = "mod" + i;
+            final String contents = i == 7 ? null : "common token" + (i % 5);
+            docs.add(new IBulkDocument() {
+
+                @Override
+                public Map<String, String> getFields() {
+                    Map<String, String> fields = new HashMap<>();
+                    fields.put(IFields.FILENAME, name);
+                    return fields;
+                }
+
+                @Override
+                public Reader createContentsReader() throws IOException {
+                    if (contents == null) {
+                        throw new IOException("Unable to read: " + name);
+                    }
+                    return new StringReader(contents);
+                }
+
+                @Override
+                public void onIndexed() {
+                    indexed.add(name);
+                }
+            });
+        }
+        int initialBatchSize = BulkIndexer.BATCH_SIZE;
+        int initialCommitInterval = BulkIndexer.COMMIT_INTERVAL;
+        BulkIndexer.BATCH_SIZE = 7;
+        BulkIndexer.COMMIT_INTERVAL = 100;
+        try {
+            BulkIndexStats stats = indexApi.indexInBulk(docs.iterator(), IFields.GENERAL_CONTENTS, 4,
+                    new NullProgressMonitor());
+            assertEquals(499, stats.documents);
+            assertEquals(1, stats.failed);
+            assertEquals(4, stats.threads);
+        } finally {
+            BulkIndexer.BATCH_SIZE = initialBatchSize;
+            BulkIndexer.COMMIT_INTERVAL = initialCommitInterval;
+        }
+        assertEquals(499, indexed.size());
+        assertFalse(indexed.contains("mod7"));
+        assertEquals(100, indexApi.searchExact("token3", IFields.GENERAL_CONTENTS, true).getNumberOfDocumentMatches());
+        assertEquals(99, indexApi.searchExact("token2", IFields.GENERAL_CONTENTS, true).getNumberOfDocumentMatches());
+    }
 }
@@ -117,6 +117,29 @@ public class FileUtilsTest extends TestCase {
         assertEquals(lastModifiedTimeFromDir, FileUtils.lastModified(f1a));
     }
 
+    public void testTrimLeastRecentlyModified() throws Exception {
+        baseDir.mkdir();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            File dir = new File(baseDir, "d" + (i % 3));
+            dir.mkdir();
+            File f = new File(dir, "f" + i);
+            FileUtils.writeStrToFile("test", f);
+            f.setLastModified(now - (10 - i) * 10000L);
+        }
+        FileUtils.trimLeastRecentlyModified(baseDir, 10);
+        assertEquals(10, FileUtils.getFilesStartingWith(new File(baseDir, "d0"), "f").size()
+                + FileUtils.getFilesStartingWith(new File(baseDir, "d1"), "f").size()
+                + FileUtils.getFilesStartingWith(new File(baseDir, "d2"), "f").size());
+
+        // Only the 4 most recent are kept.
+        FileUtils.trimLeastRecentlyModified(baseDir, 5);
+        for (int i = 0; i < 10; i++) {
+            File f = new File(new File(baseDir, "d" + (i % 3)), "f" + i);
+            assertEquals("f" + i, i >= 6, f.exists());
+        }
+    }
+
     public void testGetPythonFileEncodingBytes() throws Exception {
         assertEquals("utf-8", FileUtils.getPythonFileEncoding("#coding: utf-8\n".getBytes()));
         assertEquals("utf-8", FileUtils.getPythonFileEncoding("\n#coding: utf-8\n".getBytes()));
@@ -0,0 +1,65 @@
+package org.python.pydev.shared_core.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.python.pydev.shared_core.io.HttpMessageDecoder.Message;
+
+import junit.framework.TestCase;
+
+public class HttpMessageDecoderTest extends TestCase {
+
+    public void testDecodeInChunks() throws Exception {
+        byte[] msg1 = HttpMessageDecoder.encode("@@IMPORTS:os\nEND@@", "Request-Id", "1");
+        byte[] msg2 = HttpMessageDecoder.encode("não", "Request-Id", "2");
+        byte[] all = new byte[msg1.length + msg2.length];
+        System.arraycopy(msg1, 0, all, 0, msg1.length);
+        System.arraycopy(msg2, 0, all, msg1.length, msg2.length);
+
+        // Feed one byte at a time (messages must only be available when complete).
+        HttpMessageDecoder decoder = new HttpMessageDecoder();
+        for (int i = 0; i < msg1.length; i++) {
+            assertNull(decoder.next());
+            decoder.feed(ByteBuffer.wrap(all, i, 1));
+        }
+        Message first = decoder.next();
+        assertEquals("@@IMPORTS:os\nEND@@", first.contents);
+        assertEquals("1", first.headers.get("Request-Id"));
+        assertNull(decoder.next());
+
+        decoder.feed(ByteBuffer.wrap(all, msg1.length, msg2.length));
+        Message second = decoder.next();
+        assertEquals("não", second.contents);
+        assertEquals("2", second.headers.get("Request-Id"));
+        assertEquals("4", second.headers.get(HttpMessageDecoder.CONTENT_LENGTH));
+        assertNull(decoder.next());
+    }
+
+    public void testDecodeBigMessages() throws Exception {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            buf.append((char) ('a' + (i % 26)));
+        }
+        String contents = buf.toString();
+        HttpMessageDecoder decoder = new HttpMessageDecoder();
+        for (int i = 0; i < 3; i++) {
+            decoder.feed(ByteBuffer.wrap(HttpMessageDecoder.encode(contents)));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(contents, decoder.next().contents);
+        }
+        assertNull(decoder.next());
+    }
+
+    public void testContentLengthRequired() throws Exception {
+        HttpMessageDecoder decoder = new HttpMessageDecoder();
+        decoder.feed(ByteBuffer.wrap("Request-Id: 1\r\n\r\nab".getBytes(StandardCharsets.UTF_8)));
+        try {
+            decoder.next();
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
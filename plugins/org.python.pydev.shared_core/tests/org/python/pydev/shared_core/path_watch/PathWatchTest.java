@@ -457,6 +457,57 @@ public class PathWatchTest extends TestCase {
         assertEquals(0, changes.size());
     }
 
+    public void testOverflowRescansDir() throws Exception {
+        baseDir.mkdir();
+        File unchanged = new File(baseDir, "unchanged.py");
+        FileUtils.writeStrToFile("a = 10", unchanged);
+        File toRemove = new File(baseDir, "to_remove.py");
+        FileUtils.writeStrToFile("a = 10", toRemove);
+        File pkg = new File(baseDir, "pkg");
+        pkg.mkdir();
+        FileUtils.writeStrToFile("a = 10", new File(pkg, "__init__.py"));
+
+        final List<Tuple<String, File>> changes = new ArrayList<Tuple<String, File>>();
+        ListenerList<IFilesystemChangesListener> list = new ListenerList<IFilesystemChangesListener>(
+                IFilesystemChangesListener.class);
+        list.add(new IFilesystemChangesListener() {
+
+            @Override
+            public void removed(File file) {
+                changes.add(new Tuple<String, File>("removed", file));
+            }
+
+            @Override
+            public void added(File file) {
+                changes.add(new Tuple<String, File>("added", file));
+            }
+        });
+        EventsStackerRunnable stack = new EventsStackerRunnable(null, Paths.get(FileUtils.getFileAbsolutePath(baseDir)),
+                list, baseDir, pyFilesFilter, acceptAllFilter);
+        stack.run(); //Waits for the initialization.
+        assertEquals(0, changes.size());
+
+        File added = new File(baseDir, "added.py");
+        FileUtils.writeStrToFile("a = 10", added);
+        assertTrue(toRemove.delete());
+        stack.overflow(baseDir);
+        stack.run();
+
+        // Only what actually changed is reported (not the whole dir).
+        assertEquals(2, changes.size());
+        assertTrue(changes.contains(new Tuple<String, File>("added", added)));
+        assertTrue(changes.contains(new Tuple<String, File>("removed", toRemove)));
+    }
+
+    public void testWatchCount() throws Exception {
+        baseDir.mkdir();
+        TrackChangesListener listener = new TrackChangesListener();
+        pathWatch.track(baseDir, listener);
+        assertEquals(1, pathWatch.getWatchCount());
+        pathWatch.stopTrack(baseDir, listener);
+        assertEquals(0, pathWatch.getWatchCount());
+    }
+
     private void waitUntilCondition(ICallback<String, Object> call) {
         try {
             TestUtils.waitUntilCondition(call);
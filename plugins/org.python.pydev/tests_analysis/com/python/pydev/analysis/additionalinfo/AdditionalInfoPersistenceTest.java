@@ -0,0 +1,228 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.python.pydev.core.IInfo;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.cache.DiskCache;
+import org.python.pydev.shared_core.io.FileUtils;
+
+public class AdditionalInfoPersistenceTest extends AdditionalInfoTestsBase {
+
+    private File baseDir;
+    private File modulesDir;
+    private File persistingFolder;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_additional_info_persistence_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+        modulesDir = new File(baseDir, "modules");
+        modulesDir.mkdir();
+        persistingFolder = new File(baseDir, "persist");
+        persistingFolder.mkdir();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    /**
+     * @return a new info which saves to (and loads from) the persisting folder (along with its deltas).
+     */
+    private AdditionalProjectInterpreterInfo createInfo() throws Exception {
+        final File persistingFolder = this.persistingFolder;
+        final File modulesDir = this.modulesDir;
+        return new AdditionalProjectInterpreterInfo(new AdditionalInfoProjectStub("empty")) {
+
+            @Override
+            protected File getPersistingLocation() {
+                return AdditionalInfoPersistenceTest.this.getPersistingLocation();
+            }
+
+            @Override
+            protected File getPersistingFolder() {
+                return persistingFolder;
+            }
+
+            @Override
+            protected Set<String> getPythonPathFolders() {
+                return new HashSet<>(Arrays.asList(modulesDir.getAbsolutePath()));
+            }
+
+            @Override
+            protected String getUIRepresentation() {
+                return "Stub for: " + modulesDir;
+            }
+        };
+    }
+
+    private File getPersistingLocation() {
+        return new File(persistingFolder, "info.pydevinfo");
+    }
+
+    private void addModule(AdditionalProjectInterpreterInfo info, String moduleName, String contents,
+            boolean generateDelta) throws Exception {
+        File file = new File(modulesDir, moduleName + ".py");
+        FileUtils.writeStrToFile(contents, file);
+        info.addAstInfo(new ModulesKey(moduleName, file), generateDelta);
+    }
+
+    private AdditionalProjectInterpreterInfo reload() throws Exception {
+        AdditionalProjectInterpreterInfo info = createInfo();
+        assertTrue(info.loadInternal());
+        return info;
+    }
+
+    public void testClassHierarchyIndexRestoredWithDeltas() throws Exception {
+        AdditionalProjectInterpreterInfo info = createInfo();
+        addModule(info, "mod1", "class A(Base):\n    pass\n", false);
+        addModule(info, "mod2", "class B(mod.Base):\n    pass\n", false);
+        info.save();
+
+        info = reload();
+        assertTrue(info.getClassHierarchyIndex().isComplete());
+        assertEquals(new HashSet<>(Arrays.asList("mod1", "mod2")),
+                info.getClassHierarchyIndex().getModulesWithSubclasses("Base"));
+
+        // A delete in the deltas is applied to the loaded index (and the index is kept when saved again).
+        info.removeInfoFromModule("mod2", true);
+        for (int i = 0; i < 2; i++) {
+            info = reload();
+            assertTrue(info.getClassHierarchyIndex().isComplete());
+            assertEquals(new HashSet<>(Arrays.asList("mod1")),
+                    info.getClassHierarchyIndex().getModulesWithSubclasses("Base"));
+        }
+
+        // An insert in the deltas has no AST: the index can't be trusted until rebuilt.
+        addModule(info, "mod3", "class C(Base):\n    pass\n", true);
+        for (int i = 0; i < 2; i++) {
+            info = reload();
+            assertFalse(info.getClassHierarchyIndex().isComplete());
+        }
+    }
+
+    /**
+     * @return a sorted representation of the infos (with everything which is saved for each info).
+     */
+    private static List<String> toStr(Iterable<IInfo> infos) {
+        List<String> ret = new ArrayList<>();
+        for (IInfo info : infos) {
+            ret.add(info.getType() + " " + info.getName() + " " + info.getDeclaringModuleName() + " "
+                    + info.getPath() + " " + info.getFile() + " " + info.getLine() + ":" + info.getCol());
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    private void checkSameTokens(AdditionalProjectInterpreterInfo expected, AdditionalProjectInterpreterInfo actual,
+            String... qualifiers) {
+        for (int getWhat : new int[] { AbstractAdditionalTokensInfo.TOP_LEVEL, AbstractAdditionalTokensInfo.INNER }) {
+            for (String qualifier : qualifiers) {
+                assertEquals(toStr(expected.getTokensStartingWith(qualifier, getWhat)),
+                        toStr(actual.getTokensStartingWith(qualifier, getWhat)));
+                assertEquals(toStr(expected.getTokensEqualTo(qualifier, getWhat)),
+                        toStr(actual.getTokensEqualTo(qualifier, getWhat)));
+            }
+        }
+    }
+
+    private void checkSavedInBinaryFormat() throws Exception {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(getPersistingLocation()))) {
+            assertEquals(TreeIO.BINARY_MAGIC, in.readInt());
+            assertEquals(AbstractAdditionalTokensInfo.version, in.readInt());
+        }
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        AdditionalProjectInterpreterInfo info = createInfo();
+        addModule(info, "mod1", ""
+                + "class Foo(object):\n"
+                + "    attr = 1\n"
+                + "    def method(self):\n"
+                + "        self.other = 2\n"
+                + "def foo_func():\n"
+                + "    pass\n"
+                + "foo_name = 10\n", false);
+        addModule(info, "mod2", ""
+                + "class Foo2:\n"
+                + "    class Inner:\n"
+                + "        def method(self):\n"
+                + "            pass\n"
+                + "def bar():\n"
+                + "    pass\n", false);
+        // Foo, Foo2, foo_func and foo_name.
+        assertEquals(4, info.getTokensStartingWith("foo", AbstractAdditionalTokensInfo.TOP_LEVEL).size());
+        // Foo.method and Foo2.Inner.method.
+        assertEquals(2, info.getTokensEqualTo("method", AbstractAdditionalTokensInfo.INNER).size());
+        info.save();
+        checkSavedInBinaryFormat();
+        assertFalse(new File(persistingFolder, "info.pydevinfo.tmp").exists());
+
+        AdditionalProjectInterpreterInfo loaded = reload();
+        checkSameTokens(info, loaded, "foo", "Foo", "Foo2", "foo_func", "bar", "method", "attr", "other", "Inner",
+                "m", "");
+        assertEquals(toStr(info.getAllTokens()), toStr(loaded.getAllTokens()));
+    }
+
+    public void testLoadFromTextFormat() throws Exception {
+        File file = new File(modulesDir, "mod1.py");
+        FileUtils.writeStrToFile("class Foo:\n    attr = 1\n", file);
+
+        // The info as saved by the last version which used the text format.
+        String contents = ""
+                + "-- VERSION_" + AbstractAdditionalTokensInfo.lastTextVersion + "\n"
+                + "-- START DISKCACHE_" + DiskCache.VERSION + "\n"
+                + new File(persistingFolder, "v1_indexcache").getAbsolutePath() + "\n"
+                + "mod1|0|" + file + "\n"
+                + "-- END DISKCACHE\n"
+                + "-- START DICTIONARY\n"
+                + "3\n"
+                + "1=" + file + "\n"
+                + "2=mod1\n"
+                + "3=Foo\n"
+                + "-- END DICTIONARY\n"
+                + "-- START TREE 1\n"
+                + "1\n"
+                + "foo|1|Foo!1^1#7*" + ((2 << 3) | IInfo.CLASS_WITH_IMPORT_TYPE) + "@\n"
+                + "-- END TREE\n"
+                + "-- START TREE 2\n"
+                + "1\n"
+                + "att|1|attr!3&1^2#5*" + ((2 << 3) | IInfo.ATTRIBUTE_WITH_IMPORT_TYPE) + "@\n"
+                + "-- END TREE\n";
+        FileUtils.writeStrToFile(contents, getPersistingLocation());
+
+        AdditionalProjectInterpreterInfo info = reload();
+        List<String> expectedTopLevel = Arrays
+                .asList(IInfo.CLASS_WITH_IMPORT_TYPE + " Foo mod1 null " + file + " 1:7");
+        List<String> expectedInner = Arrays
+                .asList(IInfo.ATTRIBUTE_WITH_IMPORT_TYPE + " attr mod1 Foo " + file + " 2:5");
+        assertEquals(expectedTopLevel,
+                toStr(info.getTokensEqualTo("Foo", AbstractAdditionalTokensInfo.TOP_LEVEL)));
+        assertEquals(expectedInner, toStr(info.getTokensStartingWith("at", AbstractAdditionalTokensInfo.INNER)));
+
+        // It's rewritten in the binary format (and loaded from it afterwards).
+        checkSavedInBinaryFormat();
+        info = reload();
+        assertEquals(expectedTopLevel,
+                toStr(info.getTokensEqualTo("Foo", AbstractAdditionalTokensInfo.TOP_LEVEL)));
+        assertEquals(expectedInner, toStr(info.getTokensStartingWith("at", AbstractAdditionalTokensInfo.INNER)));
+        assertFalse(info.getClassHierarchyIndex().isComplete());
+    }
+}
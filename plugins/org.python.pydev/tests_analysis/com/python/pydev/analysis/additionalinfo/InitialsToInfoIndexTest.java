@@ -0,0 +1,123 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.python.pydev.core.IInfo;
+
+import junit.framework.TestCase;
+
+public class InitialsToInfoIndexTest extends TestCase {
+
+    private static IInfo info(String name, String module) {
+        return new ClassInfo(name, module, null, true, null, null, 0, 0);
+    }
+
+    public void testAddAndRemove() throws Exception {
+        InitialsToInfoIndex index = new InitialsToInfoIndex();
+        index.add("bar", new FuncInfo("Bar", "mod1", null, null, null, 1, 1));
+        index.add("foo", new FuncInfo("Foo", "mod1", null, null, null, 2, 1));
+        index.add("bar", new FuncInfo("Bar", "mod2", null, null, null, 1, 1));
+        //duplicated (same name/module/path) is not added again
+        index.add("bar", new FuncInfo("Bar", "mod2", null, null, null, 1, 1));
+
+        InitialsToInfoIndex.Snapshot snapshot = index.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals(2, snapshot.get("bar").length);
+        assertEquals(1, snapshot.get("foo").length);
+
+        index.removeInfoFromModule("mod1");
+        //the previous snapshot is not changed
+        assertEquals(2, snapshot.get("bar").length);
+
+        snapshot = index.getSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals("mod2", snapshot.get("bar")[0].getDeclaringModuleName());
+        assertNull(snapshot.get("foo"));
+    }
+
+    public void testAddAllKeepsSorted() throws Exception {
+        InitialsToInfoIndex index = new InitialsToInfoIndex();
+        index.add("ccc", new ClassInfo("Ccc", "mod1", null, null, null, 1, 1));
+
+        SortedMap<String, List<IInfo>> batch = new TreeMap<String, List<IInfo>>();
+        for (int i = 0; i < 20; i++) {
+            InitialsToInfoIndex.addToBatch(batch, "aaa", new FuncInfo("aaa" + i, "mod2", null, null, null, i, 1));
+        }
+        InitialsToInfoIndex.addToBatch(batch, "ccc", new FuncInfo("ccc", "mod2", null, null, null, 1, 1));
+        InitialsToInfoIndex.addToBatch(batch, "ddd", new FuncInfo("ddd", "mod2", null, null, null, 1, 1));
+        index.addAll(batch);
+
+        InitialsToInfoIndex.Snapshot snapshot = index.getSnapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals("aaa", snapshot.keys[0]);
+        assertEquals("ccc", snapshot.keys[1]);
+        assertEquals("ddd", snapshot.keys[2]);
+        assertEquals(20, snapshot.get("aaa").length);
+        assertEquals(2, snapshot.get("ccc").length);
+
+        assertEquals(0, snapshot.lowerBound("a"));
+        assertEquals(1, snapshot.lowerBound("b"));
+        assertEquals(3, snapshot.lowerBound("e"));
+
+        List<IInfo> all = new ArrayList<IInfo>();
+        index.addAllInfosTo(all);
+        assertEquals(23, all.size());
+
+        index.clear();
+        assertEquals(0, index.getSnapshot().size());
+    }
+
+    public void testAddAllExistingKeys() throws Exception {
+        InitialsToInfoIndex index = new InitialsToInfoIndex();
+        IInfo a1 = info("aaa", "mod1");
+        IInfo b1 = info("bbb", "mod1");
+        index.add("aa", a1);
+        index.add("bb", b1);
+
+        InitialsToInfoIndex.Snapshot snapshot = index.getSnapshot();
+        IInfo[] bBucket = snapshot.get("bb");
+
+        IInfo a2 = info("aab", "mod2");
+        SortedMap<String, List<IInfo>> batch = new TreeMap<String, List<IInfo>>();
+        InitialsToInfoIndex.addToBatch(batch, "aa", a2);
+        InitialsToInfoIndex.addToBatch(batch, "aa", a1); // duplicate: not added again
+        index.addAll(batch);
+
+        // No new keys: the keys are kept and only the changed bucket is replaced.
+        assertSame(snapshot, index.getSnapshot());
+        assertSame(bBucket, index.getSnapshot().get("bb"));
+        assertEquals(Arrays.asList(a1, a2), Arrays.asList(index.getSnapshot().get("aa")));
+    }
+
+    public void testAddAllNewKeys() throws Exception {
+        InitialsToInfoIndex index = new InitialsToInfoIndex();
+        IInfo b1 = info("bbb", "mod1");
+        index.add("bb", b1);
+        InitialsToInfoIndex.Snapshot snapshot = index.getSnapshot();
+
+        SortedMap<String, List<IInfo>> batch = new TreeMap<String, List<IInfo>>();
+        IInfo a1 = info("aaa", "mod2");
+        IInfo b2 = info("bbc", "mod2");
+        IInfo c1 = info("ccc", "mod2");
+        InitialsToInfoIndex.addToBatch(batch, "aa", a1);
+        InitialsToInfoIndex.addToBatch(batch, "bb", b2);
+        InitialsToInfoIndex.addToBatch(batch, "cc", c1);
+        index.addAll(batch);
+
+        // The previous snapshot is unchanged.
+        assertEquals(1, snapshot.size());
+        assertEquals(Arrays.asList(b1), Arrays.asList(snapshot.get("bb")));
+
+        InitialsToInfoIndex.Snapshot newSnapshot = index.getSnapshot();
+        assertEquals(Arrays.asList("aa", "bb", "cc"), Arrays.asList(newSnapshot.keys));
+        assertEquals(Arrays.asList(b1, b2), Arrays.asList(newSnapshot.get("bb")));
+
+        index.removeInfoFromModule("mod2");
+        assertEquals(Arrays.asList("bb"), Arrays.asList(index.getSnapshot().keys));
+        assertEquals(Arrays.asList(b1), Arrays.asList(index.getSnapshot().get("bb")));
+    }
+}
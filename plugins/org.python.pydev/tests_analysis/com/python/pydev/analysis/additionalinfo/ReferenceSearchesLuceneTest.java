@@ -0,0 +1,120 @@
+package com.python.pydev.analysis.additionalinfo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.python.pydev.core.DeltaSaver;
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.OrderedMap;
+
+public class ReferenceSearchesLuceneTest extends AdditionalInfoTestsBase {
+
+    private AdditionalProjectInterpreterInfo info;
+    private ReferenceSearchesLucene referenceSearches;
+    private File baseDir;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        baseDir = FileUtils.getTempFileAt(new File("."), "data_temp_reference_searches_lucene_test");
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        baseDir.mkdir();
+        final File persistingFolder = new File(baseDir, "persist");
+        final File modulesDir = new File(baseDir, "modules");
+        modulesDir.mkdir();
+
+        AdditionalInfoProjectStub project = new AdditionalInfoProjectStub("empty");
+        info = new AdditionalProjectInterpreterInfo(project) {
+
+            @Override
+            protected File getPersistingLocation() {
+                return null;
+            }
+
+            @Override
+            protected File getPersistingFolder() {
+                return persistingFolder;
+            }
+
+            @Override
+            protected Set<String> getPythonPathFolders() {
+                return new HashSet<>(Arrays.asList(modulesDir.getAbsolutePath()));
+            }
+
+            @Override
+            protected String getUIRepresentation() {
+                return "Stub for: " + modulesDir;
+            }
+
+            @Override
+            protected DeltaSaver<Object> createDeltaSaver() {
+                return null;
+            }
+
+        };
+        referenceSearches = (ReferenceSearchesLucene) info.getReferenceSearches();
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        // Closes the index (so that its directory can be removed).
+        ReferenceSearchesLucene.disposeAll();
+        if (baseDir.exists()) {
+            FileUtils.deleteDirectoryTree(baseDir);
+        }
+        super.tearDown();
+    }
+
+    private void setModuleContents(String moduleName, String contents) throws Exception {
+        File file = new File(new File(baseDir, "modules"), moduleName + ".py");
+        boolean existed = file.exists();
+        long lastModified = file.lastModified();
+        FileUtils.writeStrToFile(contents, file);
+        if (existed) {
+            // Make sure that the change is noticed.
+            file.setLastModified(lastModified + 2000);
+        }
+        info.removeInfoFromModule(moduleName, false);
+        info.addAstInfo(new ModulesKey(moduleName, file), false);
+    }
+
+    private List<String> search(String token) {
+        OrderedMap<String, Set<String>> fieldNameToValues = new OrderedMap<>();
+        fieldNameToValues.put(IReferenceSearches.FIELD_CONTENTS, new HashSet<>(Arrays.asList(token)));
+        List<String> ret = new ArrayList<>();
+        for (ModulesKey key : referenceSearches.searchInIndex(info, fieldNameToValues, new NullProgressMonitor())) {
+            ret.add(key.name);
+        }
+        Collections.sort(ret);
+        return ret;
+    }
+
+    public void testIncrementalUpdate() throws Exception {
+        setModuleContents("mod1", "def foo():\n    pass\n");
+        setModuleContents("mod2", "bar = 10\n");
+
+        // The first search indexes everything.
+        assertEquals(Arrays.asList("mod1"), search("foo"));
+        assertEquals(Arrays.asList("mod2"), search("bar"));
+
+        // Afterwards only the modules notified as changed are updated in the index.
+        setModuleContents("mod2", "from mod1 import foo\nfoo()\n");
+        assertEquals(Arrays.asList("mod1", "mod2"), search("foo"));
+        assertEquals(Arrays.asList(), search("bar"));
+
+        setModuleContents("mod3", "bar = 20\n");
+        assertEquals(Arrays.asList("mod3"), search("bar"));
+
+        info.removeInfoFromModule("mod1", false);
+        assertEquals(Arrays.asList("mod2"), search("foo"));
+    }
+}
@@ -0,0 +1,197 @@
+package org.python.pydev.ast.codecompletion.revisited;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.python.pydev.core.ModulesKey;
+import org.python.pydev.core.ModulesKeyForFolder;
+import org.python.pydev.core.ModulesKeyForZip;
+import org.python.pydev.shared_core.io.FileUtils;
+
+import junit.framework.TestCase;
+
+public class ModulesKeysJournalTest extends TestCase {
+
+    private static final List<ModulesKey> NO_KEYS = Collections.emptyList();
+
+    private File baseDir;
+    private File file;
+    private int initialCompactSlack;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("modules_journal_test").toFile();
+        file = new File(baseDir, ModulesKeysJournal.FILENAME);
+        initialCompactSlack = ModulesKeysJournal.COMPACT_SLACK;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        ModulesKeysJournal.COMPACT_SLACK = initialCompactSlack;
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static PyPublicTreeMap<ModulesKey, ModulesKey> createKeys(int count) {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = new PyPublicTreeMap<ModulesKey, ModulesKey>();
+        for (int i = 0; i < count; i++) {
+            add(keys, new ModulesKey("mod" + i, new File("/lib/mod" + i + ".py")));
+        }
+        add(keys, new ModulesKey("empty", null));
+        add(keys, new ModulesKeyForFolder("pack.__init__", new File("/lib/pack")));
+        add(keys, new ModulesKeyForZip("zip1", new File("/lib/lib.zip"), "zip1.py", true));
+        add(keys, new ModulesKeyForZip("zip2", new File("/lib/lib.zip"), "zip2", false));
+        add(keys, new ModulesKeyForZip("zip3", new File("/lib/lib.zip"), null, true));
+        return keys;
+    }
+
+    private static void add(PyPublicTreeMap<ModulesKey, ModulesKey> keys, ModulesKey key) {
+        keys.remove(key);
+        keys.put(key, key);
+    }
+
+    private static PyPublicTreeMap<ModulesKey, ModulesKey> copy(PyPublicTreeMap<ModulesKey, ModulesKey> keys) {
+        return new PyPublicTreeMap<ModulesKey, ModulesKey>(keys);
+    }
+
+    private static void assertSameKeys(PyPublicTreeMap<ModulesKey, ModulesKey> expected,
+            PyPublicTreeMap<ModulesKey, ModulesKey> found) {
+        assertEquals(expected.keySet().toString(), found.keySet().toString());
+        for (ModulesKey key : expected.values()) {
+            ModulesKey other = found.get(key);
+            assertSame(key.getClass(), other.getClass());
+            assertEquals(key.file, other.file);
+            if (key instanceof ModulesKeyForZip) {
+                assertEquals(((ModulesKeyForZip) key).zipModulePath, ((ModulesKeyForZip) other).zipModulePath);
+                assertEquals(((ModulesKeyForZip) key).isFile, ((ModulesKeyForZip) other).isFile);
+            }
+        }
+    }
+
+    private PyPublicTreeMap<ModulesKey, ModulesKey> loadNew() throws Exception {
+        return new ModulesKeysJournal(file).load();
+    }
+
+    public void testSaveAndLoad() throws Exception {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = createKeys(100);
+        ModulesKeysJournal journal = new ModulesKeysJournal(file);
+        assertFalse(journal.canAppend());
+        journal.rewrite(copy(keys));
+        assertTrue(journal.canAppend());
+        assertSameKeys(keys, loadNew());
+    }
+
+    public void testOnlyChangesAppended() throws Exception {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = createKeys(100);
+        ModulesKeysJournal journal = new ModulesKeysJournal(file);
+        journal.rewrite(copy(keys));
+        assertEquals(105, journal.getRecords());
+        long initialLength = file.length();
+
+        ModulesKey removed = new ModulesKey("mod10", null);
+        keys.remove(removed);
+        ModulesKey newMod = new ModulesKey("new_mod", new File("/lib/new_mod.py"));
+        add(keys, newMod);
+        ModulesKey changed = new ModulesKey("mod20", new File("/lib/changed/mod20.py"));
+        add(keys, changed);
+        assertTrue(journal.append(Arrays.asList(newMod, changed), Arrays.asList(removed), keys.size()));
+        assertEquals(108, journal.getRecords());
+        assertTrue(file.length() - initialLength < 100);
+        assertSameKeys(keys, loadNew());
+
+        // Nothing changed: nothing written.
+        long length = file.length();
+        assertTrue(journal.append(NO_KEYS, NO_KEYS, keys.size()));
+        assertEquals(length, file.length());
+
+        // Appending after a load also works.
+        journal = new ModulesKeysJournal(file);
+        journal.load();
+        removed = new ModulesKey("zip1", null);
+        keys.remove(removed);
+        assertTrue(journal.append(NO_KEYS, Arrays.asList(removed), keys.size()));
+        assertEquals(109, journal.getRecords());
+        assertSameKeys(keys, loadNew());
+
+        // If the file is removed, it must be rewritten.
+        file.delete();
+        assertFalse(journal.canAppend());
+        assertFalse(journal.append(NO_KEYS, Arrays.asList(new ModulesKey("zip2", null)), keys.size()));
+    }
+
+    public void testCompaction() throws Exception {
+        ModulesKeysJournal.COMPACT_SLACK = 10;
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = createKeys(10);
+        ModulesKeysJournal journal = new ModulesKeysJournal(file);
+        journal.rewrite(copy(keys));
+        int rewrites = 0;
+        for (int i = 0; i < 40; i++) {
+            ModulesKey key = new ModulesKey("mod" + (i % 10), new File("/lib/" + i + "/mod.py"));
+            add(keys, key);
+            if (!journal.append(Arrays.asList(key), NO_KEYS, keys.size())) {
+                journal.rewrite(copy(keys));
+                rewrites++;
+            }
+            assertTrue(journal.getRecords() <= 2 * keys.size() + ModulesKeysJournal.COMPACT_SLACK);
+        }
+        assertTrue(rewrites > 0);
+        assertSameKeys(keys, loadNew());
+    }
+
+    public void testTruncatedRecordIgnored() throws Exception {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = createKeys(10);
+        ModulesKeysJournal journal = new ModulesKeysJournal(file);
+        journal.rewrite(copy(keys));
+        PyPublicTreeMap<ModulesKey, ModulesKey> initial = copy(keys);
+        long initialLength = file.length();
+
+        ModulesKey newMod = new ModulesKey("new_mod", new File("/lib/new_mod.py"));
+        add(keys, newMod);
+        assertTrue(journal.append(Arrays.asList(newMod), NO_KEYS, keys.size()));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 3);
+        }
+
+        journal = new ModulesKeysJournal(file);
+        assertSameKeys(initial, journal.load());
+
+        // The partial record is discarded on the next append.
+        keys = initial;
+        ModulesKey removed = new ModulesKey("mod1", null);
+        keys.remove(removed);
+        assertTrue(journal.append(NO_KEYS, Arrays.asList(removed), keys.size()));
+        assertTrue(file.length() > initialLength);
+        assertSameKeys(keys, loadNew());
+    }
+
+    public void testInvalidChecksum() throws Exception {
+        PyPublicTreeMap<ModulesKey, ModulesKey> keys = createKeys(10);
+        ModulesKeysJournal journal = new ModulesKeysJournal(file);
+        journal.rewrite(copy(keys));
+        PyPublicTreeMap<ModulesKey, ModulesKey> initial = copy(keys);
+
+        ModulesKey newMod = new ModulesKey("new_mod", new File("/lib/new_mod.py"));
+        assertTrue(journal.append(Arrays.asList(newMod), NO_KEYS, keys.size() + 1));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 2);
+            raf.write('X');
+        }
+        assertSameKeys(initial, loadNew());
+    }
+
+    public void testInvalidHeader() throws Exception {
+        FileUtils.writeStrToFile("MODULES_MANAGER_V3\n", file);
+        try {
+            loadNew();
+            fail("Expected IOException.");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
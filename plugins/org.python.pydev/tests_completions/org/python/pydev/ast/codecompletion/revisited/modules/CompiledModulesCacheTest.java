@@ -0,0 +1,89 @@
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.python.pydev.core.IToken;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.structure.Tuple;
+
+import junit.framework.TestCase;
+
+public class CompiledModulesCacheTest extends TestCase {
+
+    private File baseDir;
+    private File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("compiled_modules_cache_test").toFile();
+        file = new File(baseDir, CompiledModulesCache.FILENAME);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static Map<String, Tuple<File, IToken[]>> createModules(int count) {
+        Map<String, Tuple<File, IToken[]>> modules = new TreeMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = "mod" + i;
+            IToken[] toks = new IToken[i % 20];
+            for (int j = 0; j < toks.length; j++) {
+                toks[j] = new CompiledToken("tok" + j, "doc " + j, j % 2 == 0 ? "(a, b)" : "", name,
+                        IToken.TYPE_FUNCTION, null);
+            }
+            modules.put(name, new Tuple<File, IToken[]>(i % 2 == 0 ? null : new File("/lib/" + name + ".so"), toks));
+        }
+        return modules;
+    }
+
+    public void testWriteAndGet() throws Exception {
+        String key = CompiledModulesCache.computeKey(Arrays.asList(baseDir.toString()), new String[] { "sys" });
+        CompiledModulesCache.write(file, key, createModules(100));
+
+        CompiledModulesCache cache = CompiledModulesCache.open(file);
+        assertEquals(key, cache.getKey());
+        assertEquals(100, cache.size());
+        assertNull(cache.get("not_there", null));
+
+        Tuple<File, IToken[]> info = cache.get("mod15", null);
+        assertEquals(new File("/lib/mod15.so"), info.o1);
+        assertEquals(15, info.o2.length);
+        assertEquals("tok2", info.o2[2].getRepresentation());
+        assertEquals("(a, b)", info.o2[2].getArgs());
+        assertEquals("doc 2", info.o2[2].getDocStr());
+        assertEquals("mod15", info.o2[2].getParentPackage());
+        assertEquals(IToken.TYPE_FUNCTION, info.o2[2].getType());
+        assertNull(cache.get("mod10", null).o1);
+    }
+
+    public void testKeyChangesWithBuiltins() throws Exception {
+        String key = CompiledModulesCache.computeKey(Arrays.asList(baseDir.toString()), new String[] { "sys" });
+        assertEquals(key,
+                CompiledModulesCache.computeKey(Arrays.asList(baseDir.toString()), new String[] { "sys" }));
+        assertFalse(key.equals(
+                CompiledModulesCache.computeKey(Arrays.asList(baseDir.toString()), new String[] { "sys", "os" })));
+    }
+
+    public void testTruncatedFileNotUsed() throws Exception {
+        CompiledModulesCache.write(file, "key", createModules(10));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        try {
+            CompiledModulesCache.open(file);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
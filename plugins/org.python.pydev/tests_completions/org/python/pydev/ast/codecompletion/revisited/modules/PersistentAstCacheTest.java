@@ -0,0 +1,98 @@
+package org.python.pydev.ast.codecompletion.revisited.modules;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.eclipse.jface.text.Document;
+import org.python.pydev.core.IGrammarVersionProvider.AdditionalGrammarVersionsToCheck;
+import org.python.pydev.core.IPythonNature;
+import org.python.pydev.parser.PyParser;
+import org.python.pydev.parser.jython.SimpleNode;
+import org.python.pydev.shared_core.io.FileUtils;
+import org.python.pydev.shared_core.parsing.BaseParser.ParseOutput;
+
+import junit.framework.TestCase;
+
+public class PersistentAstCacheTest extends TestCase {
+
+    private File baseDir;
+    private File initialCacheDir;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        baseDir = Files.createTempDirectory("ast_cache_test").toFile();
+        initialCacheDir = PersistentAstCache.cacheDir;
+        PersistentAstCache.cacheDir = baseDir;
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        PersistentAstCache.cacheDir = initialCacheDir;
+        FileUtils.deleteDirectoryTree(baseDir);
+        super.tearDown();
+    }
+
+    private static SimpleNode parse(String contents) {
+        ParseOutput output = PyParser.reparseDocument(new PyParser.ParserInfo(new Document(contents),
+                IPythonNature.LATEST_GRAMMAR_PY3_VERSION, null));
+        assertNull(output.error);
+        return (SimpleNode) output.ast;
+    }
+
+    public void testKeys() throws Exception {
+        int version = IPythonNature.LATEST_GRAMMAR_PY3_VERSION;
+        String key = PersistentAstCache.createKey("a = 10", version, null);
+        assertEquals(key, PersistentAstCache.createKey("a = 10", version, null));
+        assertFalse(key.equals(PersistentAstCache.createKey("a = 11", version, null)));
+        assertFalse(key.equals(
+                PersistentAstCache.createKey("a = 10", IPythonNature.GRAMMAR_PYTHON_VERSION_3_6, null)));
+
+        AdditionalGrammarVersionsToCheck additional = new AdditionalGrammarVersionsToCheck();
+        additional.add(IPythonNature.GRAMMAR_PYTHON_VERSION_3_6);
+        assertFalse(key.equals(PersistentAstCache.createKey("a = 10", version, additional)));
+    }
+
+    public void testPutAndGet() throws Exception {
+        String contents = "class A(object):\n    def m(self):\n        return 1  # comment\n";
+        String key = PersistentAstCache.createKey(contents, IPythonNature.LATEST_GRAMMAR_PY3_VERSION, null);
+        assertNull(PersistentAstCache.get(key));
+
+        SimpleNode ast = parse(contents);
+        PersistentAstCache.put(key, ast);
+        PersistentAstCache.waitForPendingWrites();
+        SimpleNode cached = PersistentAstCache.get(key);
+        assertNotNull(cached);
+        assertNotSame(ast, cached);
+        assertEquals(ast, cached);
+    }
+
+    public void testCorruptEntryIgnored() throws Exception {
+        String contents = "a = 10\n";
+        String key = PersistentAstCache.createKey(contents, IPythonNature.LATEST_GRAMMAR_PY3_VERSION, null);
+        PersistentAstCache.put(key, parse(contents));
+        PersistentAstCache.waitForPendingWrites();
+        File file = new File(new File(baseDir, key.substring(0, 2)), key + ".ast");
+        assertTrue(file.exists());
+        FileUtils.writeBytesToFile(new byte[] { 1, 2, 3 }, file);
+
+        assertNull(PersistentAstCache.get(key));
+        assertFalse(file.exists());
+    }
+
+    public void testTrim() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            String contents = "a = " + i + "\n";
+            PersistentAstCache.put(
+                    PersistentAstCache.createKey(contents, IPythonNature.LATEST_GRAMMAR_PY3_VERSION, null),
+                    parse(contents));
+        }
+        PersistentAstCache.waitForPendingWrites();
+        FileUtils.trimLeastRecentlyModified(baseDir, 5);
+        int count = 0;
+        for (File dir : baseDir.listFiles()) {
+            count += dir.listFiles().length;
+        }
+        assertEquals(4, count);
+    }
+}